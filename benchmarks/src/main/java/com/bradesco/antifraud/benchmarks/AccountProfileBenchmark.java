@@ -0,0 +1,61 @@
+package com.bradesco.antifraud.benchmarks;
+
+import com.bradesco.antifraud.model.Transaction.TransactionType;
+import com.bradesco.antifraud.service.fraud.profile.AccountProfileStore;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Profile update (done once per committed transaction) and the lock-free deviation read
+ * done by the scorer, with 100 thousand and 1 million profiled accounts.
+ * The setup prints the store's footprint per account.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-XX:MaxDirectMemorySize=1g")
+@State(Scope.Benchmark)
+public class AccountProfileBenchmark {
+
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    @Param({"100000", "1000000"})
+    public int accounts;
+
+    private AccountProfileStore store;
+    private UUID[] ids;
+
+    @Setup
+    public void setUp() {
+        store = new AccountProfileStore(accounts, 0.1);
+        ids = new UUID[accounts];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < accounts; i++) {
+            ids[i] = UUID.randomUUID();
+            for (int t = 0; t < 4; t++) {
+                store.update(ids[i], TYPES[random.nextInt(TYPES.length)], random.nextInt(1, 5000),
+                        random.nextInt(24), ids[random.nextInt(i + 1)], i);
+            }
+        }
+        System.out.printf("%n%d accounts, %d bytes per account%n", store.accounts(), store.memoryBytes() / store.accounts());
+    }
+
+    @Benchmark
+    public void update() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        store.update(ids[random.nextInt(accounts)], TYPES[random.nextInt(TYPES.length)], random.nextInt(1, 5000),
+                random.nextInt(24), ids[random.nextInt(accounts)], System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public AccountProfileStore.Deviation deviation() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return store.deviation(ids[random.nextInt(accounts)], TYPES[random.nextInt(TYPES.length)],
+                random.nextInt(1, 5000), random.nextInt(24), ids[random.nextInt(accounts)]);
+    }
+}
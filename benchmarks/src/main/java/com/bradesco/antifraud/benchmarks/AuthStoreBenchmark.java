@@ -0,0 +1,65 @@
+package com.bradesco.antifraud.benchmarks;
+
+import com.bradesco.antifraud.service.SessionService;
+import com.bradesco.antifraud.service.TokenService;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session and login-token lookups under contention: several threads reading sessions
+ * while another keeps creating them, and threads issuing and redeeming tokens.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class AuthStoreBenchmark {
+
+    private static final int SESSIONS = 100_000;
+
+    private SessionService sessionService;
+    private TokenService tokenService;
+    private String[] sessionIds;
+
+    @Setup
+    public void setUp() {
+        sessionService = new SessionService(SESSIONS * 2, Duration.ofHours(1));
+        tokenService = new TokenService(SESSIONS * 2);
+        sessionIds = new String[SESSIONS];
+        for (int i = 0; i < SESSIONS; i++) {
+            sessionIds[i] = UUID.randomUUID().toString();
+            sessionService.storeSession(sessionIds[i], UUID.randomUUID());
+        }
+    }
+
+    @Benchmark
+    @Group("sessions")
+    @GroupThreads(3)
+    public UUID sessionLookup() {
+        return sessionService.getUserIdBySession(sessionIds[ThreadLocalRandom.current().nextInt(SESSIONS)]);
+    }
+
+    @Benchmark
+    @Group("sessions")
+    @GroupThreads(1)
+    public void sessionStore() {
+        // Overwrites existing ids, so the store size stays constant
+        sessionService.storeSession(sessionIds[ThreadLocalRandom.current().nextInt(SESSIONS)], UUID.randomUUID());
+    }
+
+    @Benchmark
+    @Group("tokens")
+    @GroupThreads(4)
+    public UUID tokenIssueAndRedeem() {
+        UUID token = UUID.randomUUID();
+        tokenService.storeToken(token.toString(), token, Duration.ofMinutes(15));
+        return tokenService.validateAndConsumeToken(token);
+    }
+}
@@ -0,0 +1,133 @@
+package com.bradesco.antifraud.benchmarks;
+
+import com.bradesco.antifraud.AntiFraudSystemApplication;
+import com.bradesco.antifraud.model.Account;
+import com.bradesco.antifraud.model.Customer;
+import com.bradesco.antifraud.repository.AccountRepository;
+import com.bradesco.antifraud.repository.CustomerRepository;
+import com.bradesco.antifraud.service.ledger.AccountLedger;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code POST /auth/login} and {@code POST /transactions/payment} over HTTP against the whole
+ * application, booted once per execution mode: Tomcat's platform-thread pool
+ * ({@code spring.threads.virtual.enabled=false}) or virtual threads. 64 client threads keep
+ * requests in flight. The application runs on an in-memory H2 database with emails kept in
+ * memory, so the only blocking left is bcrypt, the connection pool and the client/server
+ * sharing the same cores.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(64)
+@State(Scope.Benchmark)
+public class ExecutionModeBenchmark {
+
+    private static final int ACCOUNTS = 1_000;
+    private static final String PASSWORD = "senha-benchmark";
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private URI loginUri;
+    private URI paymentUri;
+    private String loginBody;
+    private String[] accountIds;
+    private String[] sources;
+
+    @Setup
+    public void setUp() {
+        context = SpringApplication.run(AntiFraudSystemApplication.class,
+                "--server.port=0",
+                "--spring.threads.virtual.enabled=" + "virtual".equals(mode),
+                "--spring.datasource.url=jdbc:h2:mem:modes;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.show-sql=false",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--antifraud.email.transport=memory",
+                // Random transfers between the same accounts eventually score as mule rings; keep them flowing
+                "--antifraud.fraud.block-threshold=101");
+
+        CustomerRepository customers = context.getBean(CustomerRepository.class);
+        AccountRepository accounts = context.getBean(AccountRepository.class);
+        AccountLedger ledger = context.getBean(AccountLedger.class);
+        Customer customer = Fixtures.customer();
+        customer.setId(null);
+        customer.setPassword(context.getBean(PasswordEncoder.class).encode(PASSWORD));
+        customer = customers.save(customer);
+
+        // Payments go between random pairs: a few hot payees would only measure the ledger's stripe locks
+        accountIds = new String[ACCOUNTS];
+        sources = new String[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountIds[i] = open(accounts, ledger, customer, "C-" + i).getId().toString();
+            sources[i] = "{\"id\":\"" + accountIds[i] + "\",\"customer\":{\"id\":\"" + customer.getId() + "\"}}";
+        }
+
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        loginUri = URI.create("http://localhost:" + port + "/auth/login");
+        paymentUri = URI.create("http://localhost:" + port + "/transactions/payment");
+        loginBody = "{\"email\":\"" + customer.getEmail() + "\",\"password\":\"" + PASSWORD + "\"}";
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    private static Account open(AccountRepository accounts, AccountLedger ledger, Customer customer, String number) {
+        Account account = Fixtures.account(customer, number);
+        account.setId(null);
+        account.setBalance(new BigDecimal("1000000000.00"));
+        account = accounts.save(account);
+        ledger.open(account);
+        return account;
+    }
+
+    private int post(URI uri, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Benchmark
+    public int login() throws IOException, InterruptedException {
+        return post(loginUri, loginBody);
+    }
+
+    @Benchmark
+    public int payment() throws IOException, InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(ACCOUNTS);
+        int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        return post(paymentUri, "{\"tipo\":\"PAGAMENTO\",\"valor\":12.34,\"dataHora\":\"2025-06-08T10:00:00\","
+                + "\"contaDeOrigem\":" + sources[from] + ",\"contaDeDestino\":{\"id\":\"" + accountIds[to] + "\"}}");
+    }
+}
@@ -0,0 +1,64 @@
+package com.bradesco.antifraud.benchmarks;
+
+import com.bradesco.antifraud.model.Account;
+import com.bradesco.antifraud.model.Address;
+import com.bradesco.antifraud.model.Customer;
+import com.bradesco.antifraud.model.Transaction;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Representative domain objects shared by the benchmarks.
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    static Customer customer() {
+        return Customer.builder()
+                .id(UUID.randomUUID())
+                .name("Maria da Silva")
+                .cpf("123.456.789-09")
+                .dateOfBirth(LocalDate.of(1985, 5, 20))
+                .email("maria.silva@example.com")
+                .phone("+5511999998888")
+                .password("$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z6tbSZoH9U5p2nHLlQf0xQ7S")
+                .address(Address.builder()
+                        .street("Avenida Paulista")
+                        .number("1000")
+                        .neighborhood("Bela Vista")
+                        .city("São Paulo")
+                        .state("SP")
+                        .zipCode("01310-100")
+                        .build())
+                .build();
+    }
+
+    static Account account(Customer customer, String number) {
+        return Account.builder()
+                .id(UUID.randomUUID())
+                .accountNumber(number)
+                .agency("0001")
+                .balance(new BigDecimal("15230.75"))
+                .accountType(Account.AccountType.CORRENTE)
+                .accountStatus(Account.AccountStatus.ATIVA)
+                .customer(customer)
+                .build();
+    }
+
+    static Transaction transfer(Account from, Account to, String value) {
+        return Transaction.builder()
+                .id(UUID.randomUUID())
+                .tipo(Transaction.TransactionType.TRANSFERENCIA)
+                .valor(new BigDecimal(value))
+                .dataHora(LocalDateTime.of(2025, 6, 8, 10, 30))
+                .descricao("Transferência entre contas")
+                .contaDeOrigem(from)
+                .contaDeDestino(to)
+                .build();
+    }
+}
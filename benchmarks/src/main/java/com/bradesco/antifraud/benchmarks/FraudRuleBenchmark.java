@@ -0,0 +1,98 @@
+package com.bradesco.antifraud.benchmarks;
+
+import com.bradesco.antifraud.model.Transaction;
+import com.bradesco.antifraud.service.fraud.ActivityFeatures;
+import com.bradesco.antifraud.service.fraud.rules.Feature;
+import com.bradesco.antifraud.service.fraud.rules.FeatureVector;
+import com.bradesco.antifraud.service.fraud.rules.FraudRuleDefinition;
+import com.bradesco.antifraud.service.fraud.rules.FraudRuleSet;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation of a compiled rule set against one transaction, as done on every payment by
+ * {@code FraudScoringService.score}. Rules are generated with 1 to 3 thresholds over random
+ * features, most of them restricted to one transaction type, and review actions only, so
+ * no block rule cuts evaluation short.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FraudRuleBenchmark {
+
+    private static final Feature[] NUMERIC = {
+            Feature.AMOUNT, Feature.HOUR_OF_DAY, Feature.COUNT_LAST_MINUTE, Feature.COUNT_LAST_HOUR,
+            Feature.SUM_LAST_DAY, Feature.DISTINCT_DESTINATIONS_LAST_DAY, Feature.SECONDS_SINCE_LAST,
+            Feature.DESTINATION_AGE_HOURS
+    };
+    private static final String[] OPERATORS = {"<", "<=", ">", ">="};
+    private static final String[] TYPES = {"DEPOSITO", "SAQUE", "TRANSFERENCIA", "PAGAMENTO"};
+
+    @Param({"50", "500"})
+    public int rules;
+
+    private FraudRuleSet ruleSet;
+    private FeatureVector[] vectors;
+    private Transaction transaction;
+    private ActivityFeatures activity;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<FraudRuleDefinition> definitions = new ArrayList<>(rules);
+        for (int i = 0; i < rules; i++) {
+            // Shaped like hand-written rules: a type, a few thresholds and sometimes an "or" group
+            StringBuilder when = new StringBuilder();
+            if (random.nextInt(10) > 0) {
+                when.append("type == ").append(TYPES[random.nextInt(TYPES.length)]).append(" and ");
+            }
+            when.append(clause(random));
+            for (int c = random.nextInt(3); c > 0; c--) {
+                when.append(" and ").append(clause(random));
+            }
+            if (random.nextInt(4) == 0) {
+                when.append(" and (").append(clause(random)).append(" or ").append(clause(random)).append(')');
+            }
+            definitions.add(new FraudRuleDefinition("RULE_" + i, 1 + random.nextInt(10), "review", when.toString()));
+        }
+        ruleSet = FraudRuleSet.compile(definitions);
+
+        vectors = new FeatureVector[1024];
+        for (int i = 0; i < vectors.length; i++) {
+            FeatureVector vector = new FeatureVector();
+            vector.set(Feature.TYPE, random.nextInt(TYPES.length));
+            for (Feature feature : NUMERIC) {
+                vector.set(feature, random.nextInt(20_000));
+            }
+            vectors[i] = vector;
+        }
+
+        transaction = Fixtures.transfer(Fixtures.account(Fixtures.customer(), "1"),
+                Fixtures.account(Fixtures.customer(), "2"), "6200.00");
+        activity = new ActivityFeatures(1, 15000, 4, 42000, 9, 120000, 3, 45_000);
+    }
+
+    private static String clause(Random random) {
+        return NUMERIC[random.nextInt(NUMERIC.length)].ruleName() + ' '
+                + OPERATORS[random.nextInt(OPERATORS.length)] + ' ' + random.nextInt(20_000);
+    }
+
+    @Benchmark
+    public FraudRuleSet.Outcome evaluate() {
+        return ruleSet.evaluate(vectors[ThreadLocalRandom.current().nextInt(vectors.length)]);
+    }
+
+    @Benchmark
+    public FraudRuleSet.Outcome buildVectorAndEvaluate() {
+        return ruleSet.evaluate(FeatureVector.of(transaction, 620000, activity, 3_600_000L, false));
+    }
+}
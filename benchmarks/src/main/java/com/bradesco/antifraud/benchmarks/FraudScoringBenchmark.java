@@ -0,0 +1,79 @@
+package com.bradesco.antifraud.benchmarks;
+
+import com.bradesco.antifraud.model.Account;
+import com.bradesco.antifraud.model.Customer;
+import com.bradesco.antifraud.model.Transaction;
+import com.bradesco.antifraud.service.fraud.FraudScore;
+import com.bradesco.antifraud.service.fraud.FraudScoringService;
+import com.bradesco.antifraud.service.fraud.graph.TransferGraph;
+import com.bradesco.antifraud.service.fraud.profile.AccountProfileStore;
+import com.bradesco.antifraud.service.fraud.rules.FraudRuleEngine;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.ClassPathResource;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The in-memory part of {@code TransactionService.processTransaction}: scoring a payment
+ * against the account's activity windows, profile and transfer graph (plus the bundled
+ * analyst rules) and recording it afterwards. Balance updates
+ * themselves run in SQL inside the ledger and are not covered here.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FraudScoringBenchmark {
+
+    @Param({"1000", "100000"})
+    public int accounts;
+
+    private FraudScoringService service;
+    private Transaction[] transactions;
+
+    @Setup
+    public void setUp() {
+        // Production defaults: idle windows kept a day, payees 90 days, up to a million pairs
+        service = new FraudScoringService(50, 80, Duration.ofDays(1), Duration.ofDays(90), 1_000_000,
+                new FraudRuleEngine(new ClassPathResource("fraud-rules.json"), new ObjectMapper()),
+                new AccountProfileStore(accounts, 0.1), new TransferGraph(Duration.ofDays(7), 1.0));
+        Customer customer = Fixtures.customer();
+        Account[] pool = new Account[accounts];
+        for (int i = 0; i < accounts; i++) {
+            pool[i] = Fixtures.account(customer, String.valueOf(i));
+        }
+        transactions = new Transaction[4096];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < transactions.length; i++) {
+            transactions[i] = Fixtures.transfer(pool[random.nextInt(accounts)], pool[random.nextInt(accounts)],
+                    random.nextInt(1, 5000) + ".50");
+        }
+        // Give every account some history so the windows are not empty
+        for (Transaction transaction : transactions) {
+            service.record(transaction);
+        }
+    }
+
+    private Transaction next() {
+        return transactions[ThreadLocalRandom.current().nextInt(transactions.length)];
+    }
+
+    @Benchmark
+    public FraudScore score() {
+        return service.score(next());
+    }
+
+    @Benchmark
+    public FraudScore scoreAndRecord() {
+        Transaction transaction = next();
+        FraudScore score = service.score(transaction);
+        service.record(transaction);
+        return score;
+    }
+}
@@ -0,0 +1,67 @@
+package com.bradesco.antifraud.benchmarks;
+
+import com.bradesco.antifraud.model.Account;
+import com.bradesco.antifraud.model.Customer;
+import com.bradesco.antifraud.model.Transaction;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson (de)serialization of the entities returned and accepted by the API, configured
+ * like the Spring Boot default mapper (ISO dates, unknown properties ignored).
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+
+    private ObjectMapper objectMapper;
+    private Transaction transaction;
+    private Customer customer;
+    private byte[] transactionJson;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        objectMapper = JsonMapper.builder()
+                .findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+        customer = Fixtures.customer();
+        Account from = Fixtures.account(customer, "12345-6");
+        Account to = Fixtures.account(customer, "65432-1");
+        transaction = Fixtures.transfer(from, to, "250.00");
+        // Same shape as a POST /transactions/payment body
+        transactionJson = ("{\"tipo\":\"TRANSFERENCIA\",\"valor\":250.00,\"dataHora\":\"2025-06-08T10:30:00\","
+                + "\"descricao\":\"Transferência entre contas\","
+                + "\"contaDeOrigem\":{\"id\":\"" + from.getId() + "\"},"
+                + "\"contaDeDestino\":{\"id\":\"" + to.getId() + "\"}}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] serializeTransaction() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(transaction);
+    }
+
+    @Benchmark
+    public byte[] serializeCustomer() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(customer);
+    }
+
+    @Benchmark
+    public Transaction deserializeTransaction() throws IOException {
+        return objectMapper.readValue(transactionJson, Transaction.class);
+    }
+}
@@ -0,0 +1,95 @@
+package com.bradesco.antifraud.benchmarks;
+
+import com.bradesco.antifraud.dto.AccountDto;
+import com.bradesco.antifraud.dto.CustomerDto;
+import com.bradesco.antifraud.dto.TransactionDto;
+import com.bradesco.antifraud.dto.TransactionMapper;
+import com.bradesco.antifraud.mapper.AccountMapper;
+import com.bradesco.antifraud.mapper.CustomerMapper;
+import com.bradesco.antifraud.model.Account;
+import com.bradesco.antifraud.model.Customer;
+import com.bradesco.antifraud.model.Transaction;
+
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MapStruct conversions between the entities and their DTOs.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapperBenchmark {
+
+    private AccountMapper accountMapper;
+    private CustomerMapper customerMapper;
+    private TransactionMapper transactionMapper;
+    private Account account;
+    private AccountDto accountDto;
+    private Customer customer;
+    private CustomerDto customerDto;
+    private Transaction transaction;
+    private TransactionDto transactionDto;
+    private TransactionDto transactionPatch;
+    private Transaction updated;
+
+    @Setup
+    public void setUp() {
+        accountMapper = Mappers.getMapper(AccountMapper.class);
+        customerMapper = Mappers.getMapper(CustomerMapper.class);
+        customer = Fixtures.customer();
+        account = Fixtures.account(customer, "12345-6");
+        accountDto = accountMapper.toDto(account);
+        customerDto = customerMapper.toDto(customer);
+        transactionMapper = Mappers.getMapper(TransactionMapper.class);
+        transaction = Fixtures.transfer(account, Fixtures.account(customer, "65432-1"), "250.00");
+        transactionDto = transactionMapper.toDto(transaction);
+        // What a PATCH carries: the fields being changed, everything else null
+        transactionPatch = TransactionDto.builder()
+                .valor(transaction.getValor())
+                .descricao(transaction.getDescricao())
+                .build();
+        updated = transactionMapper.toEntity(transactionDto);
+    }
+
+    @Benchmark
+    public AccountDto accountToDto() {
+        return accountMapper.toDto(account);
+    }
+
+    @Benchmark
+    public Account accountToEntity() {
+        return accountMapper.toEntity(accountDto);
+    }
+
+    @Benchmark
+    public CustomerDto customerToDto() {
+        return customerMapper.toDto(customer);
+    }
+
+    @Benchmark
+    public Customer customerToEntity() {
+        return customerMapper.toEntity(customerDto);
+    }
+
+    @Benchmark
+    public TransactionDto transactionToDto() {
+        return transactionMapper.toDto(transaction);
+    }
+
+    @Benchmark
+    public Transaction transactionToEntity() {
+        return transactionMapper.toEntity(transactionDto);
+    }
+
+    // Updates the same entity every time; the patch sets the values it already has
+    @Benchmark
+    public Transaction transactionPartialUpdate() {
+        return transactionMapper.partialUpdate(transactionPatch, updated);
+    }
+}
@@ -0,0 +1,185 @@
+package com.bradesco.antifraud.benchmarks;
+
+import com.bradesco.antifraud.model.Transaction;
+import com.bradesco.antifraud.service.journal.PaymentJournal;
+import com.bradesco.antifraud.service.journal.PaymentRecord;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time until a payment can be acknowledged: appending it to the {@link PaymentJournal}
+ * (synced to disk, group commit across threads) versus posting it synchronously the way
+ * {@code AccountLedger.post} does (conditional debit, credit, transaction row and two
+ * ledger entries in one database transaction). The database side runs on an embedded H2
+ * file database, which does not sync every commit and has no network round-trips, so it
+ * understates what PostgreSQL costs on the current path.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PaymentJournalBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+
+    private Path directory;
+    private PaymentJournal journal;
+    private UUID[] accountIds;
+    private String url;
+
+    @Setup
+    public void setUp() throws IOException, SQLException {
+        directory = Files.createTempDirectory("journal-bench");
+        // Segments are dropped as the "applier" catches up, like the service does after each batch
+        journal = new PaymentJournal(directory.resolve("journal"), 64 << 20, entry -> {
+            if (entry.sequence() % 4096 == 0) {
+                journal.markApplied(entry.sequence());
+            }
+        });
+
+        accountIds = new UUID[ACCOUNTS];
+        url = "jdbc:h2:file:" + directory.resolve("db").toAbsolutePath() + ";DB_CLOSE_DELAY=-1";
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("create table accounts (id uuid primary key, balance numeric(38, 2) not null)");
+            statement.execute("create table transaction (id uuid primary key, tipo varchar(20), valor numeric(38, 2), "
+                    + "data_hora timestamp, descricao varchar(255), conta_de_origem_id uuid, conta_de_destino_id uuid)");
+            statement.execute("create table ledger_entries (sequence bigint auto_increment primary key, account_id uuid, "
+                    + "transaction_id uuid, kind varchar(20), amount numeric(38, 2), created_at timestamp)");
+            try (PreparedStatement insert = connection.prepareStatement("insert into accounts values (?, ?)")) {
+                for (int i = 0; i < ACCOUNTS; i++) {
+                    accountIds[i] = UUID.randomUUID();
+                    insert.setObject(1, accountIds[i]);
+                    insert.setBigDecimal(2, new BigDecimal("1000000000.00"));
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, SQLException {
+        journal.close();
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("shutdown");
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Database {
+
+        Connection connection;
+        PreparedStatement debit;
+        PreparedStatement credit;
+        PreparedStatement insertTransaction;
+        PreparedStatement insertEntry;
+
+        @Setup
+        public void setUp(PaymentJournalBenchmark benchmark) throws SQLException {
+            connection = DriverManager.getConnection(benchmark.url, "sa", "");
+            connection.setAutoCommit(false);
+            debit = connection.prepareStatement("update accounts set balance = balance - ? where id = ? and balance >= ?");
+            credit = connection.prepareStatement("update accounts set balance = balance + ? where id = ?");
+            insertTransaction = connection.prepareStatement("insert into transaction values (?, ?, ?, ?, ?, ?, ?)");
+            insertEntry = connection.prepareStatement("insert into ledger_entries "
+                    + "(account_id, transaction_id, kind, amount, created_at) values (?, ?, ?, ?, ?)");
+        }
+
+        @TearDown
+        public void tearDown() throws SQLException {
+            connection.close();
+        }
+    }
+
+    private PaymentRecord payment() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new PaymentRecord(UUID.randomUUID(), Transaction.TransactionType.TRANSFERENCIA,
+                BigDecimal.valueOf(random.nextLong(100, 500_000), 2), LocalDateTime.now(), "Pagamento de fornecedor",
+                accountIds[random.nextInt(ACCOUNTS)], accountIds[random.nextInt(ACCOUNTS)]);
+    }
+
+    @Benchmark
+    public long journalAppend() {
+        return journal.append(payment());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long journalAppend4Threads() {
+        return journal.append(payment());
+    }
+
+    @Benchmark
+    public void databasePost(Database database) throws SQLException {
+        post(database, payment());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void databasePost4Threads(Database database) throws SQLException {
+        post(database, payment());
+    }
+
+    private static void post(Database database, PaymentRecord payment) throws SQLException {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            database.debit.setBigDecimal(1, payment.amount());
+            database.debit.setObject(2, payment.sourceId());
+            database.debit.setBigDecimal(3, payment.amount());
+            database.debit.executeUpdate();
+            database.credit.setBigDecimal(1, payment.amount());
+            database.credit.setObject(2, payment.destinationId());
+            database.credit.executeUpdate();
+
+            database.insertTransaction.setObject(1, payment.id());
+            database.insertTransaction.setString(2, payment.type().name());
+            database.insertTransaction.setBigDecimal(3, payment.amount());
+            database.insertTransaction.setObject(4, payment.dataHora());
+            database.insertTransaction.setString(5, payment.descricao());
+            database.insertTransaction.setObject(6, payment.sourceId());
+            database.insertTransaction.setObject(7, payment.destinationId());
+            database.insertTransaction.executeUpdate();
+
+            entry(database, payment.sourceId(), payment.id(), "DEBIT", payment.amount().negate(), now);
+            entry(database, payment.destinationId(), payment.id(), "CREDIT", payment.amount(), now);
+            database.insertEntry.executeBatch();
+            database.connection.commit();
+        } catch (SQLException e) {
+            // Opposite transfers can time out on each other's row locks; the real path orders its locks
+            database.connection.rollback();
+        }
+    }
+
+    private static void entry(Database database, UUID accountId, UUID transactionId, String kind, BigDecimal amount,
+                              LocalDateTime now) throws SQLException {
+        database.insertEntry.setObject(1, accountId);
+        database.insertEntry.setObject(2, transactionId);
+        database.insertEntry.setString(3, kind);
+        database.insertEntry.setBigDecimal(4, amount);
+        database.insertEntry.setObject(5, now);
+        database.insertEntry.addBatch();
+    }
+}
@@ -0,0 +1,58 @@
+package com.bradesco.antifraud.benchmarks;
+
+import com.bradesco.antifraud.model.Account;
+import com.bradesco.antifraud.model.Customer;
+import com.bradesco.antifraud.model.Transaction;
+import com.bradesco.antifraud.service.TransactionService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TransactionService#validate}, for an accepted transfer and for a rejected one
+ * (the rejection allocates a {@link ResponseStatusException} with its stack trace).
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionValidationBenchmark {
+
+    private TransactionService service;
+    private Transaction transfer;
+    private Transaction transferWithoutDestination;
+
+    @Setup
+    public void setUp() {
+        // validate() only inspects the transaction, none of the collaborators are used
+        service = new TransactionService(null, null, null, null, null, Optional.empty(), null, null, null,
+                new SimpleMeterRegistry(), 500);
+        Customer customer = Fixtures.customer();
+        Account from = Fixtures.account(customer, "12345-6");
+        Account to = Fixtures.account(customer, "65432-1");
+        transfer = Fixtures.transfer(from, to, "250.00");
+        transferWithoutDestination = Fixtures.transfer(from, null, "250.00");
+    }
+
+    @Benchmark
+    public Transaction validTransfer() {
+        service.validate(transfer);
+        return transfer;
+    }
+
+    @Benchmark
+    public Object rejectedTransfer() {
+        try {
+            service.validate(transferWithoutDestination);
+            return null;
+        } catch (ResponseStatusException e) {
+            return e;
+        }
+    }
+}
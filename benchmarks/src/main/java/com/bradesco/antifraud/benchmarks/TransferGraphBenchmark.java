@@ -0,0 +1,70 @@
+package com.bradesco.antifraud.benchmarks;
+
+import com.bradesco.antifraud.service.fraud.graph.TransferGraph;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfer graph with 3 transfers per account and 0.1% of the accounts flagged: adding a
+ * transfer, the lock-free "within 2 hops of a flagged account" check, the fan-in/fan-out
+ * reads done by the scorer and the cycle search behind the summary endpoint.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class TransferGraphBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int accounts;
+
+    private TransferGraph graph;
+    private UUID[] ids;
+
+    @Setup
+    public void setUp() {
+        graph = new TransferGraph(Duration.ofDays(7), 1.0);
+        ids = new UUID[accounts];
+        for (int i = 0; i < accounts; i++) {
+            ids[i] = UUID.randomUUID();
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < accounts * 3; i++) {
+            graph.record(ids[random.nextInt(accounts)], ids[random.nextInt(accounts)], random.nextInt(1, 5000));
+        }
+        for (int i = 0; i < accounts / 1000; i++) {
+            graph.flag(ids[random.nextInt(accounts)]);
+        }
+    }
+
+    private UUID any() {
+        return ids[ThreadLocalRandom.current().nextInt(accounts)];
+    }
+
+    @Benchmark
+    public void record() {
+        graph.record(any(), any(), 100);
+    }
+
+    @Benchmark
+    public boolean withinTwoHopsOfFlagged() {
+        return graph.isWithinHopsOfFlagged(any(), 2);
+    }
+
+    @Benchmark
+    public int fanInAndOut() {
+        return graph.fanIn(any()) + graph.fanOut(any());
+    }
+
+    @Benchmark
+    public int cyclesThrough() {
+        return graph.cyclesThrough(any(), 4).size();
+    }
+}
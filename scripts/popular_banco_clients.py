@@ -1,3 +1,5 @@
+import json
+
 import requests
 from faker import Faker
 
@@ -22,14 +24,21 @@ def gerar_cliente():
         "password": "senha123"
     }
 
-def criar_clientes(qtd=5):
-    for _ in range(qtd):
-        cliente = gerar_cliente()
-        response = requests.post(BASE_URL, json=cliente)
-        if response.status_code == 201:
-            print(f"✅ Cliente criado: {cliente['name']} | ID: {response.json()['id']}")
-        else:
-            print(f"❌ Erro ao criar {cliente['name']}: {response.status_code} - {response.text}")
+def criar_clientes(qtd=5, lote=1000):
+    # Um POST /customers/import por lote de NDJSON em vez de um POST por cliente
+    for inicio in range(0, qtd, lote):
+        clientes = [gerar_cliente() for _ in range(min(lote, qtd - inicio))]
+        corpo = "\n".join(json.dumps(cliente, ensure_ascii=False) for cliente in clientes)
+        response = requests.post(f"{BASE_URL}/import", data=corpo.encode("utf-8"),
+                                 headers={"Content-Type": "application/x-ndjson"})
+        if response.status_code != 200:
+            print(f"❌ Erro no lote {inicio // lote}: {response.status_code} - {response.text}")
+            continue
+        resultado = response.json()
+        print(f"✅ Lote {inicio // lote}: {resultado['inserted']} criados, {resultado['rejected']} rejeitados")
+        for linha in resultado["rows"]:
+            if linha["status"] == "REJECTED":
+                print(f"   ❌ {clientes[linha['row']]['name']}: {linha['error']}")
 
 if __name__ == "__main__":
-    criar_clientes(10000) 
+    criar_clientes(10000)
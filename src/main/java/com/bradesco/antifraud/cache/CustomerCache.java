@@ -0,0 +1,141 @@
+package com.bradesco.antifraud.cache;
+
+import com.bradesco.antifraud.model.Address;
+import com.bradesco.antifraud.model.Customer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded, expiring cache of customers reachable by id and by email. The email index only
+ * stores ids, so a customer is held once.
+ * <p>
+ * Every invalidation bumps a generation counter. A loader result is only cached if no
+ * invalidation happened while it was being read, so a lookup racing with an update can
+ * never put the old row back. Copies are stored and returned, so callers never share
+ * an instance with the cache or with a persistence context.
+ */
+@Component
+public class CustomerCache {
+
+    public record Stats(int size, long hits, long misses, double hitRatio, long expired, long evicted) {
+    }
+
+    private final ExpiringStore<UUID, Customer> byId;
+    private final ExpiringStore<String, UUID> byEmail;
+    private final Duration ttl;
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public CustomerCache(@Value("${antifraud.customer-cache.capacity:10000}") int capacity,
+                         @Value("${antifraud.customer-cache.ttl:PT5M}") Duration ttl) {
+        this.byId = new ExpiringStore<>("customers-by-id", capacity);
+        this.byEmail = new ExpiringStore<>("customers-by-email", capacity);
+        this.ttl = ttl;
+    }
+
+    public Optional<Customer> findById(UUID id, Function<UUID, Optional<Customer>> loader) {
+        if (id == null) {
+            return loader.apply(null);
+        }
+        Customer cached = byId.get(id);
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(copy(cached));
+        }
+        misses.increment();
+        long stamp = generation.get();
+        Optional<Customer> loaded = loader.apply(id);
+        loaded.ifPresent(customer -> put(customer, stamp));
+        return loaded;
+    }
+
+    public Optional<Customer> findByEmail(String email, Function<String, Optional<Customer>> loader) {
+        if (email == null) {
+            return loader.apply(null);
+        }
+        UUID id = byEmail.get(email);
+        Customer cached = id == null ? null : byId.get(id);
+        if (cached != null && email.equals(cached.getEmail())) {
+            hits.increment();
+            return Optional.of(copy(cached));
+        }
+        misses.increment();
+        long stamp = generation.get();
+        Optional<Customer> loaded = loader.apply(email);
+        loaded.ifPresent(customer -> put(customer, stamp));
+        return loaded;
+    }
+
+    /**
+     * Drops the customer and every given email mapping. Call after the change is saved.
+     */
+    public void invalidate(UUID id, String... emails) {
+        generation.incrementAndGet();
+        byId.remove(id);
+        for (String email : emails) {
+            if (email != null) {
+                byEmail.remove(email);
+            }
+        }
+    }
+
+    public Stats stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        ExpiringStore.Stats ids = byId.stats();
+        return new Stats(ids.size(), hitCount, missCount, total == 0 ? 0.0 : (double) hitCount / total,
+                ids.expired(), ids.evicted());
+    }
+
+    @Scheduled(fixedDelayString = "${antifraud.auth.expiry-sweep-ms:1000}")
+    public void evictExpired() {
+        byId.expire();
+        byEmail.expire();
+    }
+
+    private void put(Customer customer, long stamp) {
+        if (customer.getId() == null || generation.get() != stamp) {
+            return;
+        }
+        byId.put(customer.getId(), copy(customer), ttl);
+        if (customer.getEmail() != null) {
+            byEmail.put(customer.getEmail(), customer.getId(), ttl);
+        }
+        // An invalidation may have slipped in between the check and the puts
+        if (generation.get() != stamp) {
+            byId.remove(customer.getId());
+        }
+    }
+
+    private static Customer copy(Customer customer) {
+        Address address = customer.getAddress();
+        return Customer.builder()
+                .id(customer.getId())
+                .name(customer.getName())
+                .cpf(customer.getCpf())
+                .dateOfBirth(customer.getDateOfBirth())
+                .email(customer.getEmail())
+                .phone(customer.getPhone())
+                .password(customer.getPassword())
+                .address(address == null ? null : Address.builder()
+                        .street(address.getStreet())
+                        .number(address.getNumber())
+                        .neighborhood(address.getNeighborhood())
+                        .city(address.getCity())
+                        .state(address.getState())
+                        .zipCode(address.getZipCode())
+                        .build())
+                .build();
+    }
+}
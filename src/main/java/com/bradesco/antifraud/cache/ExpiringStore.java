@@ -0,0 +1,215 @@
+package com.bradesco.antifraud.cache;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Key/value store whose entries expire after a per-entry time to live and are actively
+ * removed, not just hidden on read.
+ * <p>
+ * Expiry is tracked with a hashed timing wheel: each entry sits in the bucket of the tick
+ * its deadline falls in, and advancing the wheel only visits the buckets of elapsed ticks,
+ * so eviction costs amortized O(1) per entry. Entries whose deadline is more than one
+ * rotation away stay in their bucket until the wheel comes around again. The store also
+ * has a hard capacity: when it is full, the oldest entry is evicted to make room.
+ * <p>
+ * Reads are lock-free and compare deadlines against a monotonic clock
+ * ({@link System#nanoTime()} by default). Writes and wheel advances share one lock.
+ * The wheel is advanced on every write and by calling {@link #expire()} periodically.
+ */
+public final class ExpiringStore<K, V> {
+
+    public record Stats(String name, int size, int capacity, long expired, long evicted) {
+    }
+
+    private static final Duration DEFAULT_TICK = Duration.ofSeconds(1);
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final String name;
+    private final int capacity;
+    private final long tickNanos;
+    private final int mask;
+    private final LongSupplier nanoClock;
+    private final long origin;
+
+    private final Map<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+    private final Entry<K, V>[] wheel;
+    // Sentinel of the insertion-ordered list used for capacity eviction
+    private final Entry<K, V> oldest = new Entry<>(null, null, 0);
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long currentTick;
+    private long expired;
+    private long evicted;
+
+    public ExpiringStore(String name, int capacity) {
+        this(name, capacity, DEFAULT_TICK, DEFAULT_WHEEL_SIZE, System::nanoTime);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ExpiringStore(String name, int capacity, Duration tick, int wheelSize, LongSupplier nanoClock) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.name = name;
+        this.capacity = capacity;
+        this.tickNanos = tick.toNanos();
+        int size = Integer.highestOneBit(Math.max(wheelSize - 1, 1)) << 1;
+        this.mask = size - 1;
+        this.nanoClock = nanoClock;
+        this.origin = nanoClock.getAsLong();
+        this.wheel = new Entry[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Entry<>(null, null, 0);
+        }
+    }
+
+    public void put(K key, V value, Duration ttl) {
+        long now = nanoClock.getAsLong();
+        Entry<K, V> entry = new Entry<>(key, value, now + ttl.toNanos());
+        lock.lock();
+        try {
+            advance(now);
+            Entry<K, V> previous = entries.put(key, entry);
+            if (previous != null) {
+                previous.unlink();
+            }
+            entry.linkWheel(wheel[(int) (Math.max(tickOf(entry.deadline), currentTick + 1) & mask)]);
+            entry.linkOrder(oldest);
+            while (entries.size() > capacity) {
+                Entry<K, V> victim = oldest.orderNext;
+                entries.remove(victim.key, victim);
+                victim.unlink();
+                evicted++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the live value for the key, or {@code null} if absent or expired.
+     */
+    public V get(K key) {
+        Entry<K, V> entry = entries.get(key);
+        return entry != null && entry.isLive(nanoClock.getAsLong()) ? entry.value : null;
+    }
+
+    /**
+     * Removes the key and returns its value if it was still live. At most one of several
+     * concurrent callers gets the value, which makes this suitable for one-time tokens.
+     */
+    public V remove(K key) {
+        lock.lock();
+        try {
+            Entry<K, V> entry = entries.remove(key);
+            if (entry == null) {
+                return null;
+            }
+            entry.unlink();
+            return entry.isLive(nanoClock.getAsLong()) ? entry.value : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Evicts every entry whose deadline has passed and returns how many were removed.
+     */
+    public int expire() {
+        lock.lock();
+        try {
+            long before = expired;
+            advance(nanoClock.getAsLong());
+            return (int) (expired - before);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Stats stats() {
+        lock.lock();
+        try {
+            return new Stats(name, entries.size(), capacity, expired, evicted);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Deadline rounded up to a tick, so every entry in a swept bucket of the current round is due
+    private long tickOf(long deadline) {
+        return Math.ceilDiv(deadline - origin, tickNanos);
+    }
+
+    private void advance(long now) {
+        long nowTick = (now - origin) / tickNanos;
+        if (nowTick <= currentTick) {
+            return;
+        }
+        long ticks = Math.min(nowTick - currentTick, wheel.length);
+        for (long i = 1; i <= ticks; i++) {
+            Entry<K, V> head = wheel[(int) ((currentTick + i) & mask)];
+            Entry<K, V> entry = head.wheelNext;
+            while (entry != head) {
+                Entry<K, V> next = entry.wheelNext;
+                if (!entry.isLive(now)) {
+                    entries.remove(entry.key, entry);
+                    entry.unlink();
+                    expired++;
+                }
+                entry = next;
+            }
+        }
+        currentTick = nowTick;
+    }
+
+    private static final class Entry<K, V> {
+        final K key;
+        final V value;
+        final long deadline;
+
+        Entry<K, V> wheelPrev = this;
+        Entry<K, V> wheelNext = this;
+        Entry<K, V> orderPrev = this;
+        Entry<K, V> orderNext = this;
+
+        Entry(K key, V value, long deadline) {
+            this.key = key;
+            this.value = value;
+            this.deadline = deadline;
+        }
+
+        boolean isLive(long now) {
+            return deadline - now > 0;
+        }
+
+        void linkWheel(Entry<K, V> head) {
+            wheelPrev = head.wheelPrev;
+            wheelNext = head;
+            head.wheelPrev.wheelNext = this;
+            head.wheelPrev = this;
+        }
+
+        void linkOrder(Entry<K, V> head) {
+            orderPrev = head.orderPrev;
+            orderNext = head;
+            head.orderPrev.orderNext = this;
+            head.orderPrev = this;
+        }
+
+        void unlink() {
+            wheelPrev.wheelNext = wheelNext;
+            wheelNext.wheelPrev = wheelPrev;
+            orderPrev.orderNext = orderNext;
+            orderNext.orderPrev = orderPrev;
+            wheelPrev = wheelNext = orderPrev = orderNext = this;
+        }
+    }
+}
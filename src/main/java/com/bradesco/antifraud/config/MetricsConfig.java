@@ -0,0 +1,92 @@
+package com.bradesco.antifraud.config;
+
+import com.bradesco.antifraud.cache.CustomerCache;
+import com.bradesco.antifraud.cache.ExpiringStore;
+import com.bradesco.antifraud.service.EmailService;
+import com.bradesco.antifraud.service.SessionService;
+import com.bradesco.antifraud.service.TokenService;
+import com.bradesco.antifraud.service.accesslog.AccessLogWriter;
+import com.bradesco.antifraud.service.fraud.FraudScoringService;
+import com.bradesco.antifraud.service.fraud.graph.TransferGraph;
+import com.bradesco.antifraud.service.fraud.profile.AccountProfileStore;
+import com.bradesco.antifraud.service.ledger.AccountRollups;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.function.Function;
+
+/**
+ * Gauges for the in-memory stores and queues, read on every scrape.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder inMemoryStoreMetrics(TokenService tokenService, SessionService sessionService,
+                                            CustomerCache customerCache, FraudScoringService fraudScoringService,
+                                            AccountProfileStore profileStore, TransferGraph transferGraph,
+                                            AccessLogWriter accessLogWriter,
+                                            EmailService emailService, AccountRollups accountRollups) {
+        return registry -> {
+            bindStore(registry, "tokens", tokenService, TokenService::stats);
+            bindStore(registry, "sessions", sessionService, SessionService::stats);
+            bindStore(registry, "payees", fraudScoringService, FraudScoringService::payeeStats);
+
+            Gauge.builder("antifraud.customer-cache.size", customerCache, cache -> cache.stats().size())
+                    .register(registry);
+            Gauge.builder("antifraud.customer-cache.hit-ratio", customerCache, cache -> cache.stats().hitRatio())
+                    .register(registry);
+
+            Gauge.builder("antifraud.fraud.tracked-accounts", fraudScoringService, FraudScoringService::trackedAccounts)
+                    .register(registry);
+
+            Gauge.builder("antifraud.fraud.profiles.accounts", profileStore, AccountProfileStore::accounts)
+                    .register(registry);
+            Gauge.builder("antifraud.fraud.profiles.memory", profileStore, AccountProfileStore::memoryBytes)
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder("antifraud.fraud.graph.accounts", transferGraph, TransferGraph::accounts)
+                    .register(registry);
+
+            FunctionCounter.builder("antifraud.rollups.folded", accountRollups, AccountRollups::folded)
+                    .register(registry);
+
+            Gauge.builder("antifraud.access-log.pending", accessLogWriter, AccessLogWriter::pending)
+                    .register(registry);
+            FunctionCounter.builder("antifraud.access-log.written", accessLogWriter, AccessLogWriter::written)
+                    .register(registry);
+            FunctionCounter.builder("antifraud.access-log.dropped", accessLogWriter, AccessLogWriter::dropped)
+                    .register(registry);
+            FunctionCounter.builder("antifraud.access-log.spilled", accessLogWriter, AccessLogWriter::spilled)
+                    .register(registry);
+
+            Gauge.builder("antifraud.email.tracked", emailService, EmailService::tracked)
+                    .register(registry);
+            Gauge.builder("antifraud.email.in-flight", emailService, EmailService::inFlight)
+                    .register(registry);
+            Gauge.builder("antifraud.email.pending", emailService, EmailService::pending)
+                    .register(registry);
+        };
+    }
+
+    // Micrometer only holds the object a meter reads weakly, so it must be the owning bean and
+    // not a method reference to it: nothing else would keep that reference alive past a GC
+    private static <T> void bindStore(MeterRegistry registry, String store, T owner,
+                                      Function<T, ExpiringStore.Stats> stats) {
+        Gauge.builder("antifraud.store.size", owner, o -> stats.apply(o).size())
+                .tag("store", store)
+                .register(registry);
+        FunctionCounter.builder("antifraud.store.expired", owner, o -> stats.apply(o).expired())
+                .tag("store", store)
+                .register(registry);
+        FunctionCounter.builder("antifraud.store.evicted", owner, o -> stats.apply(o).evicted())
+                .tag("store", store)
+                .register(registry);
+    }
+}
@@ -0,0 +1,21 @@
+package com.bradesco.antifraud.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Timers of the {@code antifraud.transaction.stage} metric, one per stage of payment
+ * processing, shared by the services that take part in it.
+ */
+public final class TransactionStageTimers {
+
+    private TransactionStageTimers() {
+    }
+
+    public static Timer stageTimer(MeterRegistry meterRegistry, String stage) {
+        return Timer.builder("antifraud.transaction.stage")
+                .description("Time spent in each stage of payment processing")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+}
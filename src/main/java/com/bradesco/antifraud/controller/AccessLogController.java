@@ -1,5 +1,8 @@
 package com.bradesco.antifraud.controller;
 
+import com.bradesco.antifraud.dto.AccessLogDto;
+import com.bradesco.antifraud.dto.AccessLogFilter;
+import com.bradesco.antifraud.dto.AccessLogPage;
 import com.bradesco.antifraud.model.AccessLog;
 import com.bradesco.antifraud.service.AccessLogService;
 
@@ -8,10 +11,14 @@ import lombok.RequiredArgsConstructor;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.servlet.http.HttpServletRequest;
 
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -19,8 +26,50 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class AccessLogController {
 
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final AccessLogService accessLogService;
 
+    // Busca para investigação, da mais recente para a mais antiga; filtros combináveis, paginação por cursor
+    @GetMapping
+    public ResponseEntity<AccessLogPage> search(@RequestParam(required = false) UUID customerId,
+                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                                @RequestParam(required = false) String action,
+                                                @RequestParam(required = false) String status,
+                                                @RequestParam(required = false) String ipAddress,
+                                                @RequestParam(required = false) String sessionId,
+                                                @RequestParam(required = false) String cursor,
+                                                @RequestParam(defaultValue = "50") int limit) {
+        AccessLogFilter filter = filter(customerId, from, to, action, status, ipAddress, sessionId, limit);
+        return ResponseEntity.ok(accessLogService.search(filter, cursor, limit));
+    }
+
+    // Busca nos arquivos das partições já expiradas (leitura sequencial, para investigações)
+    @GetMapping("/archive")
+    public ResponseEntity<List<AccessLogDto>> searchArchive(@RequestParam(required = false) UUID customerId,
+                                                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                                            @RequestParam(required = false) String action,
+                                                            @RequestParam(required = false) String status,
+                                                            @RequestParam(required = false) String ipAddress,
+                                                            @RequestParam(required = false) String sessionId,
+                                                            @RequestParam(defaultValue = "50") int limit) {
+        AccessLogFilter filter = filter(customerId, from, to, action, status, ipAddress, sessionId, limit);
+        return ResponseEntity.ok(accessLogService.searchArchive(filter, limit));
+    }
+
+    private static AccessLogFilter filter(UUID customerId, LocalDateTime from, LocalDateTime to, String action,
+                                          String status, String ipAddress, String sessionId, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must be before to");
+        }
+        return new AccessLogFilter(customerId, from, to, action, status, ipAddress, sessionId);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<AccessLog> getById(@PathVariable UUID id) {
         return ResponseEntity.ok(accessLogService.findById(id));
@@ -4,6 +4,7 @@ import com.bradesco.antifraud.dto.AccountDto;
 import com.bradesco.antifraud.dto.CreateAccountDTO;
 import com.bradesco.antifraud.mapper.AccountMapper;
 import com.bradesco.antifraud.model.Account;
+import com.bradesco.antifraud.model.LedgerEntry;
 import com.bradesco.antifraud.service.AccountService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -13,6 +14,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.net.URI;
+import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -32,6 +34,14 @@ class AccountController {
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
+    // Balance history, oldest first; pass the last sequence received as "after" for the next page
+    @GetMapping("/{id}/ledger")
+    public ResponseEntity<List<LedgerEntry>> getLedger(@PathVariable String id,
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(accountService.getLedger(UUID.fromString(id), after, limit));
+    }
+
     // Create a new Account
     @PostMapping("/newaccount")
     public ResponseEntity<CreateAccountDTO> createAccount(@RequestBody AccountDto newAccountDTO) {
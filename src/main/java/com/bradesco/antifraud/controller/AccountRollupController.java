@@ -0,0 +1,55 @@
+package com.bradesco.antifraud.controller;
+
+import com.bradesco.antifraud.dto.AccountRollupSummary;
+import com.bradesco.antifraud.service.ledger.AccountRollups;
+import com.bradesco.antifraud.service.ledger.AccountRollups.Granularity;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/accounts")
+@RequiredArgsConstructor
+public class AccountRollupController {
+
+    private final AccountRollups rollups;
+
+    // Movimentação da conta por tipo, em buckets de hora, dia ou mês; sem período, só o bucket atual
+    @GetMapping("/{id}/rollups")
+    public ResponseEntity<AccountRollupSummary> rollups(@PathVariable UUID id,
+                                                        @RequestParam(defaultValue = "DAY") Granularity granularity,
+                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        if (!rollups.enabled()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "account rollups are disabled");
+        }
+        LocalDateTime start = from != null ? from : granularity.start(LocalDateTime.now());
+        LocalDateTime end = to != null ? to : granularity.next(granularity.start(start));
+        if (!start.isBefore(end)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must be before to");
+        }
+        LocalDateTime retainedSince = rollups.retainedSince(granularity);
+        if (retainedSince != null && granularity.start(start).isBefore(retainedSince)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    granularity + " rollups are only kept since " + retainedSince);
+        }
+        return ResponseEntity.ok(rollups.summary(id, granularity, start, end));
+    }
+
+    // Recalcula todos os rollups a partir da tabela de transações (ex.: após correções feitas direto no banco)
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<AccountRollups.Rebuild> rebuild() {
+        if (!rollups.enabled()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "account rollups are disabled");
+        }
+        return ResponseEntity.ok(rollups.rebuild());
+    }
+}
@@ -5,6 +5,7 @@ import java.time.Duration;
 import java.util.Map;
 import java.util.UUID;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -18,6 +19,7 @@ import org.springframework.web.bind.annotation.RestController;
 import com.bradesco.antifraud.dto.LoginRequest;
 import com.bradesco.antifraud.dto.LoginResponse;
 import com.bradesco.antifraud.dto.TokenValidationRequest;
+import com.bradesco.antifraud.exception.authExceptions.PasswordHashingSaturatedException;
 import com.bradesco.antifraud.model.Customer;
 import com.bradesco.antifraud.model.EmailRequest;
 import com.bradesco.antifraud.service.AccessLogService;
@@ -25,7 +27,10 @@ import com.bradesco.antifraud.service.CustomerService;
 import com.bradesco.antifraud.service.EmailService;
 import com.bradesco.antifraud.service.SessionService;
 import com.bradesco.antifraud.service.TokenService;
+import com.bradesco.antifraud.service.auth.LoginAttemptGuard;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -47,24 +52,50 @@ public class AuthController {
     private final AccessLogService accessLogService;
     private final TokenService tokenService;
     private final SessionService sessionService;
+    private final LoginAttemptGuard loginAttemptGuard;
+    private final MeterRegistry meterRegistry;
     private static final SecureRandom random = new SecureRandom();
 
     @Operation(summary = "User login", description = "Performs login and sends a verification token by email.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Token sent to email"),
-            @ApiResponse(responseCode = "401", description = "Invalid credentials", content = @Content)
+            @ApiResponse(responseCode = "401", description = "Invalid credentials", content = @Content),
+            @ApiResponse(responseCode = "429", description = "Too many failed logins from this address, subnet or account", content = @Content),
+            @ApiResponse(responseCode = "503", description = "Password hashing saturated, retry shortly", content = @Content)
     })
     @PostMapping("/login")
     public ResponseEntity<?> login(
             @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "User login data", required = true, content = @Content(schema = @Schema(implementation = LoginRequest.class))) @RequestBody @Valid LoginRequest request,
             HttpServletRequest httpRequest) {
+        Timer.Sample loginSample = Timer.start(meterRegistry);
+        String clientAddress = LoginAttemptGuard.clientAddress(httpRequest);
+        // Refused before the lookup and the bcrypt check, so an attack costs almost nothing
+        if (loginAttemptGuard.blockedBy(clientAddress, request.email()).isPresent()) {
+            accessLogService.createLog(null, httpRequest, "LOGIN", "FAILURE-THROTTLED");
+            loginSample.stop(loginTimer("throttled"));
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(loginAttemptGuard.retryAfter().toSeconds()))
+                    .body("Too many failed login attempts");
+        }
+
         Customer customer = customerService.findByEmail(request.email());
         String status;
-        if (customer == null || !passwordEncoder.matches(request.password(), customer.getPassword())) {
+        boolean matches;
+        try {
+            matches = customer != null && passwordMatches(request.password(), customer.getPassword());
+        } catch (PasswordHashingSaturatedException e) {
+            // Not a failed login: the guard does not count it
+            accessLogService.createLog(customer.getId(), httpRequest, "LOGIN", "FAILURE-HASHING_SATURATED");
+            loginSample.stop(loginTimer("hashing_saturated"));
+            throw e;
+        }
+        if (!matches) {
             status = "FAILURE-INVALID_CREDENTIALS";
+            loginAttemptGuard.recordFailure(clientAddress, request.email());
             if (customer != null) {
                 accessLogService.createLog(customer.getId(), httpRequest, "LOGIN", status);
             }
+            loginSample.stop(loginTimer("invalid_credentials"));
             return ResponseEntity.status(401).body("Invalid credentials");
         }
 
@@ -82,9 +113,29 @@ public class AuthController {
         status = "SUCCESS-TOKEN_SENT";
         accessLogService.createLog(customer.getId(), httpRequest, "LOGIN", status);
 
+        loginSample.stop(loginTimer("token_sent"));
         return ResponseEntity.ok("Verification token sent to email");
     }
 
+    // bcrypt dominates the login latency, so it gets its own timer
+    private boolean passwordMatches(String rawPassword, String encodedPassword) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return passwordEncoder.matches(rawPassword, encodedPassword);
+        } finally {
+            sample.stop(Timer.builder("antifraud.auth.password-check")
+                    .description("Time spent verifying the password hash")
+                    .register(meterRegistry));
+        }
+    }
+
+    private Timer loginTimer(String outcome) {
+        return Timer.builder("antifraud.auth.login")
+                .description("Login handling time, password check included")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
     @Operation(summary = "Verify login token", description = "Validates the token sent to the email and returns the session token.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Valid token, session created", content = @Content(schema = @Schema(implementation = LoginResponse.class))),
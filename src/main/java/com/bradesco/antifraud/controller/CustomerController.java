@@ -1,14 +1,19 @@
 package com.bradesco.antifraud.controller;
 
 import com.bradesco.antifraud.model.Customer;
+import com.bradesco.antifraud.service.CustomerImportService;
 import com.bradesco.antifraud.service.CustomerService;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.UUID;
 
@@ -17,7 +22,10 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class CustomerController {
 
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
     private final CustomerService customerService;
+    private final CustomerImportService importService;
 
     @GetMapping("/{id}")
     public ResponseEntity<Customer> getById(@PathVariable UUID id) {
@@ -30,6 +38,17 @@ public class CustomerController {
         return ResponseEntity.status(201).body(created);
     }
 
+    // Importação em lote: NDJSON, array JSON ou CSV com cabeçalho. O resultado de cada linha é escrito
+    // na resposta à medida que os lotes terminam; síncrono para não esbarrar no timeout de requisições assíncronas
+    @PostMapping(value = "/import", consumes = {"application/x-ndjson", MediaType.APPLICATION_JSON_VALUE, "text/csv"})
+    public void importCustomers(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        CustomerImportService.Format format = TEXT_CSV.isCompatibleWith(MediaType.parseMediaType(request.getContentType()))
+                ? CustomerImportService.Format.CSV
+                : CustomerImportService.Format.JSON;
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        importService.importCustomers(request.getInputStream(), format, response.getOutputStream());
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<Customer> updateCustomer(@PathVariable UUID id, @RequestBody @Valid Customer customer) {
         Customer updated = customerService.update(id, customer);
@@ -2,9 +2,12 @@ package com.bradesco.antifraud.controller;
 
 import com.bradesco.antifraud.model.EmailRequest;
 import com.bradesco.antifraud.service.EmailService;
+import com.bradesco.antifraud.service.email.EmailDispatch;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.UUID;
+
 @RestController()
 @RequestMapping("/sendmailTest")
 class EmailSystem {
@@ -15,9 +18,14 @@ class EmailSystem {
     }
 
     @PostMapping()
-    public ResponseEntity<String> sendMail(@RequestBody EmailRequest emailRequest) {
+    public ResponseEntity<UUID> sendMail(@RequestBody EmailRequest emailRequest) {
+
+        UUID id = emailService.sendEmail(emailRequest);
+        return ResponseEntity.accepted().body(id); // 202 (envio em segundo plano, consultar pelo id)
+    }
 
-        emailService.sendEmail(emailRequest);
-        return ResponseEntity.ok("Email sent successfully");
+    @GetMapping("/{id}")
+    public ResponseEntity<EmailDispatch> status(@PathVariable UUID id) {
+        return ResponseEntity.of(emailService.status(id));
     }
 }
@@ -0,0 +1,38 @@
+package com.bradesco.antifraud.controller;
+
+import com.bradesco.antifraud.service.fraud.graph.FlaggedAccountService;
+import com.bradesco.antifraud.service.fraud.graph.TransferGraph;
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/fraud/graph")
+@RequiredArgsConstructor
+class FraudGraphController {
+
+    private final TransferGraph transferGraph;
+    private final FlaggedAccountService flaggedAccountService;
+
+    @GetMapping("/accounts/{id}")
+    public ResponseEntity<TransferGraph.Summary> summary(@PathVariable UUID id) {
+        return ResponseEntity.ok(transferGraph.summary(id));
+    }
+
+    // Marks an account as confirmed fraud / mule; payments to it and its neighbours are scored higher.
+    // The flag is persisted and survives restarts
+    @PutMapping("/flagged/{id}")
+    public ResponseEntity<Void> flag(@PathVariable UUID id) {
+        flaggedAccountService.flag(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/flagged/{id}")
+    public ResponseEntity<Void> unflag(@PathVariable UUID id) {
+        flaggedAccountService.unflag(id);
+        return ResponseEntity.noContent().build();
+    }
+}
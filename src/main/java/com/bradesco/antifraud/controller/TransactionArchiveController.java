@@ -0,0 +1,58 @@
+package com.bradesco.antifraud.controller;
+
+import com.bradesco.antifraud.dto.TransactionArchiveSummary;
+import com.bradesco.antifraud.model.Transaction.TransactionType;
+import com.bradesco.antifraud.service.archive.ArchiveQuery;
+import com.bradesco.antifraud.service.archive.TransactionArchiveService;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/transactions/archive")
+@RequiredArgsConstructor
+public class TransactionArchiveController {
+
+    private final TransactionArchiveService archiveService;
+
+    // Agregações sobre o histórico arquivado (arquivos colunares locais); não consulta o banco
+    @GetMapping("/summary")
+    public ResponseEntity<TransactionArchiveSummary> summary(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                                             @RequestParam(required = false) Set<TransactionType> tipo,
+                                                             @RequestParam(required = false) UUID accountId,
+                                                             @RequestParam(required = false) String agency,
+                                                             @RequestParam(required = false) BigDecimal minValor,
+                                                             @RequestParam(required = false) BigDecimal maxValor,
+                                                             @RequestParam(defaultValue = "NONE") ArchiveQuery.GroupBy groupBy) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must be before to");
+        }
+        ArchiveQuery query = new ArchiveQuery(from, to, tipo, accountId, agency, minValor, maxValor, groupBy);
+        return ResponseEntity.ok(archiveService.summarize(query));
+    }
+
+    // Exporta (ou reexporta) um mês fechado, ex.: ?month=2025-01; sem mês, todos os meses fechados ainda não arquivados
+    @PostMapping("/export")
+    public ResponseEntity<List<TransactionArchiveService.Export>> export(@RequestParam(required = false) YearMonth month) {
+        if (month == null) {
+            return ResponseEntity.ok(archiveService.exportClosedMonths(LocalDateTime.now()));
+        }
+        if (!month.isBefore(YearMonth.now())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "only closed months can be archived");
+        }
+        return ResponseEntity.ok(List.of(archiveService.export(month)));
+    }
+}
@@ -1,15 +1,24 @@
 package com.bradesco.antifraud.controller;
 
+import java.io.IOException;
 import java.net.URI;
-import java.util.ArrayList;
 import java.util.Optional;
 import java.util.UUID;
 
 
 
+import com.bradesco.antifraud.dto.BatchIngestionResult;
+import com.bradesco.antifraud.dto.PaymentStatus;
+import com.bradesco.antifraud.dto.TransactionPage;
 import com.bradesco.antifraud.service.AccessLogService;
 import com.bradesco.antifraud.service.AccountService;
+import com.bradesco.antifraud.service.TransactionBatchService;
+import com.bradesco.antifraud.service.fraud.FraudDecision;
+import com.bradesco.antifraud.service.fraud.FraudScoringService;
+import com.bradesco.antifraud.service.idempotency.IdempotencyService;
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -17,9 +26,14 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.bradesco.antifraud.model.Account;
 import com.bradesco.antifraud.model.Transaction;
 import com.bradesco.antifraud.service.TransactionService;
 
@@ -29,24 +43,42 @@ import jakarta.validation.Valid;
 @RequestMapping("/transactions")
 public class TransactionController {
 
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final TransactionService service;
     private final AccountService accountService;
     private final AccessLogService accessLogService;
+    private final TransactionBatchService batchService;
+    private final IdempotencyService idempotencyService;
 
 
-    public TransactionController(TransactionService service, AccountService accountService, AccessLogService accessLogService) {
+    public TransactionController(TransactionService service, AccountService accountService, AccessLogService accessLogService,
+                                 TransactionBatchService batchService, IdempotencyService idempotencyService) {
         this.service = service;
 
         this.accountService = accountService;
         this.accessLogService = accessLogService;
+        this.batchService = batchService;
+        this.idempotencyService = idempotencyService;
     }
 
+    // Com Idempotency-Key, repetições da mesma requisição devolvem a resposta guardada sem criar outra transação
     @PostMapping
-    public ResponseEntity<Transaction> create(@Valid @RequestBody Transaction transaction) {
-        Transaction created = service.create(transaction);
-        URI location = URI.create("/transactions/" + created.getId());
+    public ResponseEntity<Transaction> create(@Valid @RequestBody Transaction transaction,
+                                              @RequestHeader(value = IdempotencyService.KEY_HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("transaction", owner(transaction, idempotencyKey), idempotencyKey, fingerprint(transaction),
+                Transaction.class, () -> {
+            Transaction created = service.create(transaction);
+            URI location = URI.create("/transactions/" + created.getId());
+
+            return ResponseEntity.created(location).body(created);
+        });
+    }
 
-        return ResponseEntity.created(location).body(created);
+    // Ingestão em lote: NDJSON (um objeto por linha) ou um array JSON
+    @PostMapping(value = "/batch", consumes = {"application/x-ndjson", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<BatchIngestionResult> batch(HttpServletRequest httpRequest) throws IOException {
+        return ResponseEntity.ok(batchService.ingest(httpRequest.getInputStream()));
     }
 
     @GetMapping("/{id}")
@@ -59,6 +91,12 @@ public class TransactionController {
         }
     }
 
+    // Situação de um pagamento: POSTED ou REJECTED; 404 enquanto ainda está no journal (ou se não existe)
+    @GetMapping("/{id}/status")
+    public ResponseEntity<PaymentStatus> status(@PathVariable UUID id) {
+        return ResponseEntity.of(service.findPaymentStatus(id));
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<Transaction> update(@PathVariable UUID id, @Valid @RequestBody Transaction transaction) {
         Transaction updated = service.update(id, transaction);
@@ -71,33 +109,58 @@ public class TransactionController {
         return ResponseEntity.noContent().build();
     }
 
+    // Paginação por cursor (keyset) em (dataHora, id); use o nextCursor da resposta para a próxima página
     @GetMapping
-    public ResponseEntity<ArrayList<Transaction>> findAll() {
-        return ResponseEntity.ok(service.findAll());
+    public ResponseEntity<TransactionPage> findAll(@RequestParam(required = false) String cursor,
+                                                   @RequestParam(defaultValue = "50") int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return ResponseEntity.ok(service.findPage(cursor, limit));
+    }
+
+    // Exporta todas as transações (a partir do cursor, se informado) como NDJSON, sem carregar a tabela em memória
+    @GetMapping(value = "/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> stream(@RequestParam(required = false) String cursor) {
+        StreamingResponseBody body = out -> service.streamAll(cursor, out);
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
     }
 
     @SuppressWarnings("null")
 	@PostMapping("/payment")
-    public ResponseEntity<Transaction> payment(@Valid @RequestBody Transaction transaction, HttpServletRequest httpRequest) {
+    public ResponseEntity<Transaction> payment(@Valid @RequestBody Transaction transaction, HttpServletRequest httpRequest,
+                                               @RequestHeader(value = IdempotencyService.KEY_HEADER, required = false) String idempotencyKey) {
         //Montar um Body
-        Transaction paymentProcessor = service.processTransaction(transaction).getBody();
+        ResponseEntity<Transaction> processed = idempotencyService.execute("payment", owner(transaction, idempotencyKey),
+                idempotencyKey, fingerprint(transaction), Transaction.class, () -> service.processTransaction(transaction));
+        Transaction paymentProcessor = processed.getBody();
+        String fraudDecision = processed.getHeaders().getFirst(FraudScoringService.DECISION_HEADER);
+        UUID customerId = transaction.getContaDeOrigem().getCustomer().getId();
+        // Repetição respondida pelo Idempotency-Key: o acesso já foi registrado na primeira vez
+        boolean replayed = processed.getHeaders().containsKey(IdempotencyService.REPLAYED_HEADER);
+
+        if (!processed.getStatusCode().is2xxSuccessful()) {
+            if (!replayed) {
+                String status = FraudDecision.BLOCK.name().equals(fraudDecision) ? "FAILURE-FRAUD_BLOCKED" : "FAILURE";
+                accessLogService.createLog(customerId, httpRequest, transaction.getTipo().toString(), status);
+            }
+            return ResponseEntity.status(processed.getStatusCode()).headers(processed.getHeaders()).build();
+        }
+
         //Fazer a inserção no log de acesso
         URI location = URI.create("/transactions/" + "payment-Successful" + paymentProcessor);
 
-
-
-        System.out.println("\n\n\n\n\n\n\n\n");
-        System.out.println("Payment successful for transaction ID: " + transaction.getContaDeOrigem().getCustomer().getId());
-        System.out.println("\n\n\n\n\n\n\n\n");
         try {
 
             assert paymentProcessor != null;
-            accessLogService.createLog(
-                    transaction.getContaDeOrigem().getCustomer().getId(),
-                    httpRequest,
-                    paymentProcessor.getTipo().toString(), // Assegure que getTipo() retorne uma String adequada
-                    "SUCCESS"
-            );
+            if (!replayed) {
+                accessLogService.createLog(
+                        customerId,
+                        httpRequest,
+                        paymentProcessor.getTipo().toString(), // Assegure que getTipo() retorne uma String adequada
+                        accessStatus(processed.getStatusCode() == HttpStatus.ACCEPTED ? "ACCEPTED" : "SUCCESS", fraudDecision)
+                );
+            }
         } catch (Exception e) {
   
             System.err.println("Error creating access log: " + e.getMessage());
@@ -105,6 +168,34 @@ public class TransactionController {
 
             return ResponseEntity.status(500).build();
         }
-        return ResponseEntity.created(location).body(paymentProcessor);
+        // Com o journal ligado o pagamento só foi gravado no journal: os saldos mudam em segundo plano
+        HttpStatus status = processed.getStatusCode() == HttpStatus.ACCEPTED ? HttpStatus.ACCEPTED : HttpStatus.CREATED;
+        return ResponseEntity.status(status).location(location).headers(processed.getHeaders()).body(paymentProcessor);
+    }
+
+    // Com o journal o pagamento ainda pode ser rejeitado ao ser aplicado: consulte /transactions/{id}/status
+    private static String accessStatus(String outcome, String fraudDecision) {
+        return FraudDecision.REVIEW.name().equals(fraudDecision) ? outcome + "-FRAUD_REVIEW" : outcome;
+    }
+
+    private static String fingerprint(Transaction transaction) {
+        return IdempotencyService.fingerprint(transaction.getTipo(), transaction.getValor(), transaction.getDataHora(),
+                transaction.getDescricao(), accountId(transaction.getContaDeOrigem()), accountId(transaction.getContaDeDestino()));
+    }
+
+    // Dono da chave de idempotência: o cliente da conta de origem (ou de destino, em depósitos), lido do banco
+    private UUID owner(Transaction transaction, String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return null;
+        }
+        UUID accountId = accountId(transaction.getContaDeOrigem());
+        if (accountId == null) {
+            accountId = accountId(transaction.getContaDeDestino());
+        }
+        return accountId == null ? null : accountService.findCustomerId(accountId).orElse(null);
+    }
+
+    private static UUID accountId(Account account) {
+        return account == null ? null : account.getId();
     }
 }
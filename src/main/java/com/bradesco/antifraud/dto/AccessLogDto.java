@@ -0,0 +1,11 @@
+package com.bradesco.antifraud.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Access log row as returned by the search, with the customer reduced to its id.
+ */
+public record AccessLogDto(UUID id, UUID customerId, LocalDateTime timestamp, String action, String status,
+                           String ipAddress, String sessionId, String httpMethod, String path, String userAgent) {
+}
@@ -0,0 +1,12 @@
+package com.bradesco.antifraud.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Criteria of an access log search; {@code null} fields do not filter. {@code from} is
+ * inclusive and {@code to} exclusive.
+ */
+public record AccessLogFilter(UUID customerId, LocalDateTime from, LocalDateTime to,
+                              String action, String status, String ipAddress, String sessionId) {
+}
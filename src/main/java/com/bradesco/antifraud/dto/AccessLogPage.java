@@ -0,0 +1,14 @@
+package com.bradesco.antifraud.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * One page of an access log search, newest first. {@code nextCursor} is {@code null} on
+ * the last page. The total comes with the first page only: exact when {@code totalExact}
+ * is set, otherwise the planner's estimate, or a lower bound where the database gives none.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record AccessLogPage(List<AccessLogDto> items, String nextCursor, Long total, Boolean totalExact) {
+}
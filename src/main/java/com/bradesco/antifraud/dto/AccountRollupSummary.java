@@ -0,0 +1,23 @@
+package com.bradesco.antifraud.dto;
+
+import com.bradesco.antifraud.model.Transaction.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * What an account moved in {@code [from, to)}, per transaction type: one entry per bucket
+ * that saw a transaction, oldest first, plus the totals over the whole period.
+ */
+public record AccountRollupSummary(UUID accountId, String granularity, LocalDateTime from, LocalDateTime to,
+                                   List<Bucket> buckets, Map<TransactionType, Totals> totals) {
+
+    public record Bucket(LocalDateTime start, Map<TransactionType, Totals> byType) {
+    }
+
+    public record Totals(long credits, BigDecimal credited, long debits, BigDecimal debited) {
+    }
+}
@@ -0,0 +1,29 @@
+package com.bradesco.antifraud.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Outcome of a batch ingestion: totals plus one entry per input row, in input order.
+ */
+public record BatchIngestionResult(int received, int inserted, int rejected, List<RowResult> rows) {
+
+    public enum RowStatus {
+        INSERTED,
+        REJECTED
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record RowResult(int row, RowStatus status, UUID id, String error) {
+
+        public static RowResult inserted(int row, UUID id) {
+            return new RowResult(row, RowStatus.INSERTED, id, null);
+        }
+
+        public static RowResult rejected(int row, String error) {
+            return new RowResult(row, RowStatus.REJECTED, null, error);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.bradesco.antifraud.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * What became of a payment: posted to its accounts, or rejected when the journal applied it.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record PaymentStatus(UUID id, Outcome outcome, String reason, LocalDateTime rejectedAt) {
+
+    public enum Outcome {
+        POSTED,
+        REJECTED
+    }
+
+    public static PaymentStatus posted(UUID id) {
+        return new PaymentStatus(id, Outcome.POSTED, null, null);
+    }
+
+    public static PaymentStatus rejected(UUID id, String reason, LocalDateTime rejectedAt) {
+        return new PaymentStatus(id, Outcome.REJECTED, reason, rejectedAt);
+    }
+}
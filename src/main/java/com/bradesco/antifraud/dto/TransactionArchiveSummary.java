@@ -0,0 +1,18 @@
+package com.bradesco.antifraud.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Result of an aggregation over the transaction archive: one entry per group, in key order,
+ * plus what the scan read and what the zone maps let it skip.
+ */
+public record TransactionArchiveSummary(String groupBy, List<Group> groups, Scan scan) {
+
+    public record Group(String key, long count, BigDecimal total, BigDecimal min, BigDecimal max, BigDecimal average) {
+    }
+
+    public record Scan(int files, int segmentsScanned, int segmentsSkipped, long rowsScanned, long rowsMatched,
+                       long elapsedMillis) {
+    }
+}
@@ -0,0 +1,10 @@
+package com.bradesco.antifraud.dto;
+
+import java.util.List;
+
+/**
+ * One page of the keyset-paginated transaction listing. {@code nextCursor} is
+ * {@code null} on the last page.
+ */
+public record TransactionPage(List<TransactionDto> items, String nextCursor) {
+}
@@ -1,7 +1,10 @@
 package com.bradesco.antifraud.exception;
 
 import com.bradesco.antifraud.exception.accountExceptions.AccountAlreadyExistsException;
+import com.bradesco.antifraud.exception.authExceptions.PasswordHashingSaturatedException;
+import com.bradesco.antifraud.exception.emailExceptions.EmailQueueFullException;
 import jakarta.persistence.EntityNotFoundException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -36,6 +39,30 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(body, HttpStatus.CONFLICT);
     }
 
+    // The hashing queue drains in well under a second, so clients can retry right away
+    @ExceptionHandler(PasswordHashingSaturatedException.class)
+    public ResponseEntity<Object> handlePasswordHashingSaturated(PasswordHashingSaturatedException ex) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("status", HttpStatus.SERVICE_UNAVAILABLE.value());
+        body.put("error", "Service Unavailable");
+        body.put("message", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(body);
+    }
+
+    // Pending sends only drain as fast as the provider accepts them (or not at all during an outage)
+    @ExceptionHandler(EmailQueueFullException.class)
+    public ResponseEntity<Object> handleEmailQueueFull(EmailQueueFullException ex) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("status", HttpStatus.SERVICE_UNAVAILABLE.value());
+        body.put("error", "Service Unavailable");
+        body.put("message", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5").body(body);
+    }
+
 
    
     
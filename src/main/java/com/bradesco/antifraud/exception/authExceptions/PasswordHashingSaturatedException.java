@@ -0,0 +1,14 @@
+package com.bradesco.antifraud.exception.authExceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE) // 503 Service Unavailable
+public class PasswordHashingSaturatedException extends RuntimeException {
+
+    public PasswordHashingSaturatedException(String message) {
+        super(message);
+    }
+
+
+}
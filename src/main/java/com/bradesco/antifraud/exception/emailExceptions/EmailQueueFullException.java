@@ -0,0 +1,12 @@
+package com.bradesco.antifraud.exception.emailExceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE) // 503 Service Unavailable
+public class EmailQueueFullException extends RuntimeException {
+
+    public EmailQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -8,7 +8,15 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "access_log")
+// Search indexes: one per investigator entry point, each ending in (timestamp, id) for keyset pages
+@Table(name = "access_log", indexes = {
+        @Index(name = "idx_access_log_timestamp_id", columnList = "timestamp, id"),
+        @Index(name = "idx_access_log_customer_timestamp_id", columnList = "customer_id, timestamp, id"),
+        @Index(name = "idx_access_log_ip_timestamp_id", columnList = "ip_address, timestamp, id"),
+        @Index(name = "idx_access_log_session_timestamp_id", columnList = "session_id, timestamp, id"),
+        @Index(name = "idx_access_log_action_status_timestamp_id", columnList = "action, status, timestamp, id"),
+        @Index(name = "idx_access_log_status_timestamp_id", columnList = "status, timestamp, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
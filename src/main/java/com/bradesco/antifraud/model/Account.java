@@ -32,7 +32,9 @@ public class Account {
     @NotNull
     private String agency;
 
+    // Projection of the ledger: only inserted here, then moved by AccountLedger
     @NotNull
+    @Column(updatable = false)
     private BigDecimal balance;
 
     @Enumerated(EnumType.STRING)
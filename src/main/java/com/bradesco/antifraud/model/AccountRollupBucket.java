@@ -0,0 +1,58 @@
+package com.bradesco.antifraud.model;
+
+import com.bradesco.antifraud.model.Transaction.TransactionType;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * What one account moved, for one transaction type, in one hourly, daily or monthly bucket:
+ * how many transactions credited and debited it and by how many cents. Only written through
+ * {@code AccountRollupJdbcRepository}, by folding {@link AccountRollupDelta}s into it or by a
+ * rebuild from the transaction table.
+ */
+@Entity
+@Immutable
+@Table(name = "account_rollups",
+        indexes = @Index(name = "idx_account_rollups_bucket", columnList = "account_id, granularity, bucket_start, tipo",
+                unique = true))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class AccountRollupBucket {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private UUID accountId;
+
+    // HOUR, DAY or MONTH
+    @Column(nullable = false, length = 8)
+    private String granularity;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private TransactionType tipo;
+
+    @Column(nullable = false)
+    private long credits;
+
+    @Column(nullable = false)
+    private long creditedCents;
+
+    @Column(nullable = false)
+    private long debits;
+
+    @Column(nullable = false)
+    private long debitedCents;
+}
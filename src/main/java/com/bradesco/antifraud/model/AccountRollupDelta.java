@@ -0,0 +1,55 @@
+package com.bradesco.antifraud.model;
+
+import com.bradesco.antifraud.model.Transaction.TransactionType;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A change to an account's rollups not yet folded into its {@link AccountRollupBucket}s,
+ * appended in the same database transaction as the write to the transaction table it comes
+ * from: one row per account a transaction moved, negative when an update or deletion takes
+ * the transaction back out. Folding sums the deltas into the buckets and deletes them.
+ */
+@Entity
+@Immutable
+@Table(name = "account_rollup_deltas",
+        indexes = @Index(name = "idx_account_rollup_deltas_account", columnList = "account_id"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class AccountRollupDelta {
+
+    // Assigned by the database in append order
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long sequence;
+
+    @Column(name = "account_id", nullable = false)
+    private UUID accountId;
+
+    // Start of the hour of the transaction; the day and month buckets are derived from it
+    @Column(name = "hour_start", nullable = false)
+    private LocalDateTime hourStart;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private TransactionType tipo;
+
+    @Column(nullable = false)
+    private long credits;
+
+    @Column(nullable = false)
+    private long creditedCents;
+
+    @Column(nullable = false)
+    private long debits;
+
+    @Column(nullable = false)
+    private long debitedCents;
+}
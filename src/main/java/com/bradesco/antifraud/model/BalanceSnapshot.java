@@ -0,0 +1,40 @@
+package com.bradesco.antifraud.model;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * An account's balance after applying every ledger entry up to {@code sequence}. Replaying
+ * an account starts from its latest snapshot, so only the entries appended since are read.
+ */
+@Entity
+@Immutable
+@Table(name = "balance_snapshots",
+        indexes = @Index(name = "idx_balance_snapshots_account_sequence", columnList = "account_id, sequence", unique = true))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class BalanceSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private UUID accountId;
+
+    @Column(nullable = false)
+    private long sequence;
+
+    @Column(nullable = false)
+    private BigDecimal balance;
+
+    @Column(nullable = false)
+    private LocalDateTime takenAt;
+}
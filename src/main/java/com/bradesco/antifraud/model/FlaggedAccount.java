@@ -0,0 +1,30 @@
+package com.bradesco.antifraud.model;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * An account confirmed as fraud or a mule, flagged in the transfer graph. Not a foreign key
+ * to {@code accounts}: an analyst may flag an account of another institution seen as a
+ * payment destination.
+ */
+@Entity
+@Table(name = "flagged_accounts")
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@AllArgsConstructor
+public class FlaggedAccount {
+
+    @Id
+    @Column(name = "account_id")
+    private UUID accountId;
+
+    @Column(name = "flagged_at", nullable = false)
+    private LocalDateTime flaggedAt;
+}
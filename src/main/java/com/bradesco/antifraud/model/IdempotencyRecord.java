@@ -0,0 +1,82 @@
+package com.bradesco.antifraud.model;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * The response stored for an {@code Idempotency-Key}, replayed to retries of the same
+ * request until {@code expiresAt}. The row is inserted {@link #PENDING} before the request
+ * runs and completed with its response afterwards; it is never saved again, so
+ * {@link #isNew()} is true until a row is loaded and saving never reads it back first.
+ */
+@Entity
+@Table(name = "idempotency_keys",
+        indexes = @Index(name = "idx_idempotency_keys_expires_at", columnList = "expires_at"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@AllArgsConstructor
+@Builder
+public class IdempotencyRecord implements Persistable<String> {
+
+    /**
+     * {@code status} of a key whose request has not stored its response yet.
+     */
+    public static final int PENDING = 0;
+
+    // Endpoint scope, owning customer and client key, e.g. "payment:<customer id>:3f1c..."
+    @Id
+    @Column(name = "idempotency_key", length = 320)
+    private String key;
+
+    // Identifies the request the key was first used with
+    @Column(nullable = false, length = 64)
+    private String fingerprint;
+
+    // HTTP status of the stored response, or PENDING
+    @Column(nullable = false)
+    private int status;
+
+    // One "name: value" per line
+    @Column(columnDefinition = "text")
+    private String headers;
+
+    // JSON, or null for an empty body
+    @Column(columnDefinition = "text")
+    private String body;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Transient
+    @Builder.Default
+    private boolean loaded = false;
+
+    @Override
+    public String getId() {
+        return key;
+    }
+
+    public boolean isPending() {
+        return status == PENDING;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !loaded;
+    }
+
+    @PostLoad
+    void markLoaded() {
+        loaded = true;
+    }
+}
@@ -0,0 +1,56 @@
+package com.bradesco.antifraud.model;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One immutable balance movement. Entries are only ever appended: an account's balance is
+ * the sum of its entries, and {@code accounts.balance} is a projection of that sum kept
+ * up to date in the same database transaction as the append.
+ */
+@Entity
+@Immutable
+@Table(name = "ledger_entries",
+        indexes = @Index(name = "idx_ledger_entries_account_sequence", columnList = "account_id, sequence"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@AllArgsConstructor
+@Builder
+public class LedgerEntry {
+
+    // Assigned by the database in append order
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long sequence;
+
+    @Column(name = "account_id", nullable = false)
+    private UUID accountId;
+
+    // Null for openings and manual adjustments
+    @Column(name = "transaction_id")
+    private UUID transactionId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Kind kind;
+
+    // Signed: negative for debits
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    public enum Kind {
+        OPENING, DEBIT, CREDIT, ADJUSTMENT
+    }
+}
@@ -0,0 +1,53 @@
+package com.bradesco.antifraud.model;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A journaled payment the database refused when it was applied (insufficient funds, unknown
+ * account). Its id is the payment's, which was already returned to the client with the
+ * {@code 202 Accepted}, so the outcome can be looked up by it; replays of the journal skip
+ * it. Rows are only inserted, so {@link #isNew()} is true until a row is loaded.
+ */
+@Entity
+@Immutable
+@Table(name = "rejected_payments")
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class RejectedPayment implements Persistable<UUID> {
+
+    @Id
+    private UUID id;
+
+    @Column(nullable = false, length = 500)
+    private String reason;
+
+    @Column(name = "rejected_at", nullable = false)
+    private LocalDateTime rejectedAt;
+
+    @Transient
+    private boolean loaded;
+
+    public RejectedPayment(UUID id, String reason, LocalDateTime rejectedAt) {
+        this.id = id;
+        this.reason = reason == null || reason.length() <= 500 ? reason : reason.substring(0, 500);
+        this.rejectedAt = rejectedAt;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !loaded;
+    }
+
+    @PostLoad
+    void markLoaded() {
+        loaded = true;
+    }
+}
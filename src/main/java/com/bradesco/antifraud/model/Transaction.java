@@ -10,7 +10,9 @@ import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -19,6 +21,7 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+@Table(indexes = @Index(name = "idx_transaction_data_hora_id", columnList = "data_hora, id"))
 @Builder
 public class Transaction {
     
@@ -97,6 +100,10 @@ public class Transaction {
     }
 
     public AccountDto getContaDeOrigemDto() {
+        // Responses built from ids only (payments, replayed idempotent responses) carry no account graph
+        if (contaDeOrigem == null || contaDeOrigem.getCustomer() == null) {
+            return null;
+        }
         AccountDto accountDto = AccountDto.builder()
                 .accountNumber(contaDeOrigem.getAccountNumber())
                 .accountStatus(contaDeOrigem.getAccountStatus())
@@ -0,0 +1,253 @@
+package com.bradesco.antifraud.repository;
+
+import com.bradesco.antifraud.dto.AccessLogCursor;
+import com.bradesco.antifraud.dto.AccessLogDto;
+import com.bradesco.antifraud.dto.AccessLogFilter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Plain JDBC search over {@code access_log}. Each filter on its own, and {@code action}
+ * together with {@code status}, is an equality or a range on the leading columns of one of
+ * the composite indexes declared on {@code AccessLog}, each ending in {@code (timestamp, id)},
+ * so a page is an index range read backwards from the cursor and costs the same on the
+ * first page as on the millionth. Other combinations read the most selective of those
+ * ranges and check the remaining filters on each row.
+ * <p>
+ * On PostgreSQL the table is also range-partitioned on {@code timestamp} (see
+ * {@code AccessLogPartitionManager}): a search bounded in time only reads the partitions it
+ * overlaps, and each partition's indexes stay the size of one period.
+ */
+@Repository
+public class AccessLogJdbcRepository {
+
+    private static final String SELECT_SQL = "select id, customer_id, timestamp, action, status, ip_address, session_id, "
+            + "http_method, path, user_agent from access_log";
+
+    // Row-value comparison lets the (..., timestamp, id) indexes serve the seek directly
+    private static final String BEFORE_CURSOR = "(timestamp, id) < (?, ?)";
+
+    private static final String ORDER_BY = " order by timestamp desc, id desc";
+
+    private static final DateTimeFormatter BOUND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // pg_get_expr of a range partition bound, e.g. FOR VALUES FROM ('2025-06-01 00:00:00') TO ('2025-07-01 00:00:00')
+    private static final Pattern PARTITION_BOUND = Pattern.compile("FROM \\((.+?)\\) TO \\((.+?)\\)");
+
+    private static final Pattern PLAN_ROWS = Pattern.compile("\"Plan Rows\"\\s*:\\s*(\\d+)");
+
+    private static final RowMapper<AccessLogDto> DTO_MAPPER = (rs, rowNum) -> new AccessLogDto(
+            rs.getObject("id", UUID.class),
+            rs.getObject("customer_id", UUID.class),
+            rs.getObject("timestamp", LocalDateTime.class),
+            rs.getString("action"),
+            rs.getString("status"),
+            rs.getString("ip_address"),
+            rs.getString("session_id"),
+            rs.getString("http_method"),
+            rs.getString("path"),
+            rs.getString("user_agent"));
+
+    public record CountEstimate(long count, boolean exact) {
+    }
+
+    /**
+     * A range partition of {@code access_log} holding {@code [from, to)}; a {@code null}
+     * bound is unbounded (MINVALUE/MAXVALUE).
+     */
+    public record Partition(String name, LocalDateTime from, LocalDateTime to) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private volatile Boolean postgres;
+
+    public AccessLogJdbcRepository(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * The first {@code limit} logs matching {@code filter} strictly before {@code after} (or
+     * from the newest when it is {@code null}), newest first.
+     */
+    public List<AccessLogDto> search(AccessLogFilter filter, AccessLogCursor after, int limit) {
+        List<Object> args = new ArrayList<>();
+        List<String> conditions = conditions(filter, args);
+        if (after != null) {
+            conditions.add(BEFORE_CURSOR);
+            args.add(after.timestamp());
+            args.add(after.id());
+        }
+        args.add(limit);
+        String sql = SELECT_SQL + where(conditions) + ORDER_BY + " limit ?";
+        return timed("search", () -> jdbcTemplate.query(sql, DTO_MAPPER, args.toArray()));
+    }
+
+    /**
+     * Counts the matches exactly while there are at most {@code exactUpTo}, reading no more
+     * index entries than that. Past it, PostgreSQL's planner estimate is returned instead of
+     * scanning every match; other databases report {@code exactUpTo + 1} as a lower bound.
+     */
+    public CountEstimate estimateCount(AccessLogFilter filter, int exactUpTo) {
+        List<Object> args = new ArrayList<>();
+        String matches = "select 1 from access_log" + where(conditions(filter, args));
+        List<Object> cappedArgs = new ArrayList<>(args);
+        cappedArgs.add(exactUpTo + 1);
+        Long capped = timed("countCapped", () -> jdbcTemplate.queryForObject(
+                "select count(*) from (" + matches + " limit ?) capped", Long.class, cappedArgs.toArray()));
+        if (capped <= exactUpTo) {
+            return new CountEstimate(capped, true);
+        }
+        if (isPostgres()) {
+            String plan = timed("countEstimate", () -> String.join("\n", jdbcTemplate.queryForList(
+                    "explain (format json) " + matches, String.class, args.toArray())));
+            Matcher rows = PLAN_ROWS.matcher(plan);
+            if (rows.find()) {
+                return new CountEstimate(Math.max(capped, Long.parseLong(rows.group(1))), false);
+            }
+        }
+        return new CountEstimate(capped, false);
+    }
+
+    /**
+     * Walks every row of one partition in {@code (timestamp, id)} order through a forward-only
+     * cursor; as with the transaction stream, PostgreSQL only honours {@code fetchSize} inside
+     * a transaction.
+     */
+    public void streamPartition(String partition, int fetchSize, Consumer<AccessLogDto> sink) {
+        String sql = SELECT_SQL.replace(" from access_log", " from " + partition) + " order by timestamp, id";
+        timedRun("streamPartition", () -> {
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                return ps;
+            }, (RowCallbackHandler) rs -> sink.accept(DTO_MAPPER.mapRow(rs, rs.getRow())));
+        });
+    }
+
+    // Partition maintenance below is PostgreSQL only: callers check isPostgres() first
+
+    public boolean isPartitioned() {
+        return timed("isPartitioned", () -> jdbcTemplate.queryForObject(
+                "select exists (select 1 from pg_partitioned_table where partrelid = to_regclass('access_log'))",
+                Boolean.class));
+    }
+
+    public List<Partition> partitions() {
+        return timed("partitions", () -> jdbcTemplate.query(
+                "select c.relname, pg_get_expr(c.relpartbound, c.oid) as bound from pg_inherits i "
+                        + "join pg_class c on c.oid = i.inhrelid where i.inhparent = to_regclass('access_log') "
+                        + "order by c.relname",
+                (rs, rowNum) -> {
+                    Matcher bound = PARTITION_BOUND.matcher(rs.getString("bound"));
+                    if (!bound.find()) {
+                        throw new IllegalStateException("Unexpected bound on access_log partition "
+                                + rs.getString("relname") + ": " + rs.getString("bound"));
+                    }
+                    return new Partition(rs.getString("relname"), parseBound(bound.group(1)), parseBound(bound.group(2)));
+                }));
+    }
+
+    /**
+     * Creates the partition for {@code [from, to)} unless one of that name exists. It is
+     * empty, so only the parent's lock is briefly taken.
+     */
+    public void createPartition(String name, LocalDateTime from, LocalDateTime to) {
+        timedRun("createPartition", () -> {
+            jdbcTemplate.execute("create table if not exists " + name + " partition of access_log for values from ('"
+                    + BOUND_FORMAT.format(from) + "') to ('" + BOUND_FORMAT.format(to) + "')");
+        });
+    }
+
+    /**
+     * Detaches and drops a partition: a catalog change, whatever the partition holds, so no
+     * rows are deleted one by one and nothing is left for vacuum.
+     */
+    public void dropPartition(String name) {
+        timedRun("dropPartition", () -> {
+            jdbcTemplate.execute("alter table access_log detach partition " + name);
+            jdbcTemplate.execute("drop table " + name);
+        });
+    }
+
+    private static LocalDateTime parseBound(String bound) {
+        if (bound.equalsIgnoreCase("MINVALUE") || bound.equalsIgnoreCase("MAXVALUE")) {
+            return null;
+        }
+        return LocalDateTime.parse(bound.replace("'", ""), BOUND_FORMAT);
+    }
+
+    private static List<String> conditions(AccessLogFilter filter, List<Object> args) {
+        List<String> conditions = new ArrayList<>();
+        equal(conditions, args, "customer_id", filter.customerId());
+        equal(conditions, args, "ip_address", filter.ipAddress());
+        equal(conditions, args, "session_id", filter.sessionId());
+        equal(conditions, args, "action", filter.action());
+        equal(conditions, args, "status", filter.status());
+        if (filter.from() != null) {
+            conditions.add("timestamp >= ?");
+            args.add(filter.from());
+        }
+        if (filter.to() != null) {
+            conditions.add("timestamp < ?");
+            args.add(filter.to());
+        }
+        return conditions;
+    }
+
+    private static void equal(List<String> conditions, List<Object> args, String column, Object value) {
+        if (value != null) {
+            conditions.add(column + " = ?");
+            args.add(value);
+        }
+    }
+
+    private static String where(List<String> conditions) {
+        return conditions.isEmpty() ? "" : " where " + String.join(" and ", conditions);
+    }
+
+    public boolean isPostgres() {
+        Boolean result = postgres;
+        if (result == null) {
+            result = jdbcTemplate.execute((ConnectionCallback<Boolean>) con ->
+                    "PostgreSQL".equals(con.getMetaData().getDatabaseProductName()));
+            postgres = result;
+        }
+        return result;
+    }
+
+    private <T> T timed(String method, Supplier<T> call) {
+        return Timer.builder("antifraud.jdbc.access-log")
+                .description("Plain JDBC calls on the access_log table")
+                .tag("method", method)
+                .register(meterRegistry)
+                .record(call);
+    }
+
+    private void timedRun(String method, Runnable call) {
+        timed(method, () -> {
+            call.run();
+            return null;
+        });
+    }
+}
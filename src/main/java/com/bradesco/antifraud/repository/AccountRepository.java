@@ -2,8 +2,12 @@ package com.bradesco.antifraud.repository;
 
 import com.bradesco.antifraud.model.Account;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -12,4 +16,18 @@ public interface AccountRepository extends JpaRepository<Account, UUID> {
     Optional<Account> findByAccountNumber(String accountNumber);
 
     boolean existsByAccountNumber(String accountNumber);
+
+    @Query("select a.balance from Account a where a.id = :id")
+    Optional<BigDecimal> findBalanceById(@Param("id") UUID id);
+
+    /**
+     * Subtracts {@code amount} only if the balance covers it; returns the number of rows changed.
+     */
+    @Modifying
+    @Query("update Account a set a.balance = a.balance - :amount where a.id = :id and a.balance >= :amount")
+    int debit(@Param("id") UUID id, @Param("amount") BigDecimal amount);
+
+    @Modifying
+    @Query("update Account a set a.balance = a.balance + :amount where a.id = :id")
+    int credit(@Param("id") UUID id, @Param("amount") BigDecimal amount);
 }
@@ -0,0 +1,179 @@
+package com.bradesco.antifraud.repository;
+
+import com.bradesco.antifraud.model.Transaction.TransactionType;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Plain JDBC access to the persisted account rollups: the {@code account_rollups} buckets and
+ * the {@code account_rollup_deltas} appended by the writers of the transaction table until
+ * they are folded into them.
+ */
+@Repository
+public class AccountRollupJdbcRepository {
+
+    /**
+     * One bucket, or one delta (whose granularity is always {@code HOUR}).
+     */
+    public record Row(UUID accountId, String granularity, LocalDateTime start, TransactionType tipo,
+                      long credits, long creditedCents, long debits, long debitedCents) {
+    }
+
+    private static final String DELTA_COLUMNS = "account_id, hour_start, tipo, credits, credited_cents, debits, debited_cents";
+
+    private static final RowMapper<Row> DELTA_MAPPER = (rs, rowNum) -> new Row(
+            rs.getObject("account_id", UUID.class),
+            "HOUR",
+            rs.getObject("hour_start", LocalDateTime.class),
+            TransactionType.valueOf(rs.getString("tipo")),
+            rs.getLong("credits"),
+            rs.getLong("credited_cents"),
+            rs.getLong("debits"),
+            rs.getLong("debited_cents"));
+
+    private static final RowMapper<Row> BUCKET_MAPPER = (rs, rowNum) -> new Row(
+            rs.getObject("account_id", UUID.class),
+            rs.getString("granularity"),
+            rs.getObject("bucket_start", LocalDateTime.class),
+            TransactionType.valueOf(rs.getString("tipo")),
+            rs.getLong("credits"),
+            rs.getLong("credited_cents"),
+            rs.getLong("debits"),
+            rs.getLong("debited_cents"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AccountRollupJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void appendDeltas(List<Row> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("insert into account_rollup_deltas (" + DELTA_COLUMNS + ") values (?, ?, ?, ?, ?, ?, ?)",
+                deltas, deltas.size(), (ps, delta) -> {
+                    ps.setObject(1, delta.accountId());
+                    ps.setObject(2, delta.start());
+                    bindValues(ps, 3, delta);
+                });
+    }
+
+    public long lastDeltaSequence() {
+        Long sequence = jdbcTemplate.queryForObject("select max(sequence) from account_rollup_deltas", Long.class);
+        return sequence == null ? 0 : sequence;
+    }
+
+    /**
+     * End of the range holding the first {@code limit} deltas after {@code after}, up to
+     * {@code upTo}; {@code after} when there are none.
+     */
+    public long deltaRangeEnd(long after, long upTo, int limit) {
+        Long end = jdbcTemplate.queryForObject("select max(sequence) from (select sequence from account_rollup_deltas "
+                + "where sequence > ? and sequence <= ? order by sequence limit ?) d", Long.class, after, upTo, limit);
+        return end == null ? after : end;
+    }
+
+    public List<Row> findDeltas(long after, long upTo) {
+        return jdbcTemplate.query("select " + DELTA_COLUMNS + " from account_rollup_deltas where sequence > ? and sequence <= ?",
+                DELTA_MAPPER, after, upTo);
+    }
+
+    public List<Row> findDeltas(UUID accountId) {
+        return jdbcTemplate.query("select " + DELTA_COLUMNS + " from account_rollup_deltas where account_id = ?",
+                DELTA_MAPPER, accountId);
+    }
+
+    public int deleteDeltas(long after, long upTo) {
+        return jdbcTemplate.update("delete from account_rollup_deltas where sequence > ? and sequence <= ?", after, upTo);
+    }
+
+    /**
+     * Adds the values of each row to its bucket, creating the buckets that do not exist yet.
+     */
+    public void add(List<Row> buckets) {
+        if (buckets.isEmpty()) {
+            return;
+        }
+        int[] updated = jdbcTemplate.batchUpdate("update account_rollups set credits = credits + ?, "
+                        + "credited_cents = credited_cents + ?, debits = debits + ?, debited_cents = debited_cents + ? "
+                        + "where account_id = ? and granularity = ? and bucket_start = ? and tipo = ?",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Row bucket = buckets.get(i);
+                        ps.setLong(1, bucket.credits());
+                        ps.setLong(2, bucket.creditedCents());
+                        ps.setLong(3, bucket.debits());
+                        ps.setLong(4, bucket.debitedCents());
+                        ps.setObject(5, bucket.accountId());
+                        ps.setString(6, bucket.granularity());
+                        ps.setObject(7, bucket.start());
+                        ps.setString(8, bucket.tipo().name());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return buckets.size();
+                    }
+                });
+        List<Row> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                missing.add(buckets.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate("insert into account_rollups (account_id, granularity, bucket_start, tipo, credits, "
+                            + "credited_cents, debits, debited_cents) values (?, ?, ?, ?, ?, ?, ?, ?)",
+                    missing, missing.size(), (ps, bucket) -> {
+                        ps.setObject(1, bucket.accountId());
+                        ps.setString(2, bucket.granularity());
+                        ps.setObject(3, bucket.start());
+                        bindValues(ps, 4, bucket);
+                    });
+        }
+    }
+
+    /**
+     * Buckets of one account and granularity starting in {@code [from, to)}, in start order.
+     */
+    public List<Row> findBuckets(UUID accountId, String granularity, LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.query("select account_id, granularity, bucket_start, tipo, credits, credited_cents, debits, "
+                        + "debited_cents from account_rollups where account_id = ? and granularity = ? "
+                        + "and bucket_start >= ? and bucket_start < ? order by bucket_start",
+                BUCKET_MAPPER, accountId, granularity, from, to);
+    }
+
+    public boolean hasBuckets() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "select exists (select 1 from account_rollups)", Boolean.class));
+    }
+
+    public int deleteBuckets() {
+        return jdbcTemplate.update("delete from account_rollups");
+    }
+
+    public int deleteBucketsBefore(String granularity, LocalDateTime since) {
+        return jdbcTemplate.update("delete from account_rollups where granularity = ? and bucket_start < ?",
+                granularity, since);
+    }
+
+    private static void bindValues(PreparedStatement ps, int first, Row row) throws SQLException {
+        ps.setString(first, row.tipo().name());
+        ps.setLong(first + 1, row.credits());
+        ps.setLong(first + 2, row.creditedCents());
+        ps.setLong(first + 3, row.debits());
+        ps.setLong(first + 4, row.debitedCents());
+    }
+}
@@ -0,0 +1,98 @@
+package com.bradesco.antifraud.repository;
+
+import com.bradesco.antifraud.model.Address;
+import com.bradesco.antifraud.model.Customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Plain JDBC access to the {@code customers} table for bulk imports: uniqueness checks for
+ * a whole chunk in one query per column and batched inserts, instead of two lookups and
+ * one insert per customer through the persistence context.
+ */
+@Repository
+public class CustomerJdbcRepository {
+
+    private static final String INSERT_SQL = "insert into customers "
+            + "(id, name, cpf, date_of_birth, email, phone, password, street, number, neighborhood, city, state, zip_code) "
+            + "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    public CustomerJdbcRepository(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Inserts all rows as JDBC batches. Every customer must already carry its id and
+     * hashed password.
+     */
+    public void insertBatch(List<Customer> customers, int batchSize) {
+        timed("insertBatch", () -> jdbcTemplate.batchUpdate(INSERT_SQL, customers, batchSize, CustomerJdbcRepository::bind));
+    }
+
+    public void insert(Customer customer) {
+        timed("insert", () -> jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, customer)));
+    }
+
+    public Set<String> findExistingCpfs(Collection<String> cpfs) {
+        return findExisting("findExistingCpfs", "cpf", cpfs);
+    }
+
+    public Set<String> findExistingEmails(Collection<String> emails) {
+        return findExisting("findExistingEmails", "email", emails);
+    }
+
+    private Set<String> findExisting(String method, String column, Collection<String> values) {
+        if (values.isEmpty()) {
+            return Set.of();
+        }
+        return timed(method, () -> new HashSet<>(namedJdbcTemplate.queryForList(
+                "select " + column + " from customers where " + column + " in (:values)",
+                new MapSqlParameterSource("values", values),
+                String.class)));
+    }
+
+    private static void bind(PreparedStatement ps, Customer customer) throws SQLException {
+        Address address = customer.getAddress() == null ? new Address() : customer.getAddress();
+        ps.setObject(1, customer.getId());
+        ps.setString(2, customer.getName());
+        ps.setString(3, customer.getCpf());
+        ps.setObject(4, customer.getDateOfBirth());
+        ps.setString(5, customer.getEmail());
+        ps.setString(6, customer.getPhone());
+        ps.setString(7, customer.getPassword());
+        ps.setString(8, address.getStreet());
+        ps.setString(9, address.getNumber());
+        ps.setString(10, address.getNeighborhood());
+        ps.setString(11, address.getCity());
+        ps.setString(12, address.getState());
+        ps.setString(13, address.getZipCode());
+    }
+
+    private <T> T timed(String method, Supplier<T> call) {
+        return Timer.builder("antifraud.jdbc.customers")
+                .description("Plain JDBC calls on the customers table")
+                .tag("method", method)
+                .register(meterRegistry)
+                .record(call);
+    }
+}
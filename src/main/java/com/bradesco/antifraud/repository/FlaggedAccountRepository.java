@@ -0,0 +1,11 @@
+package com.bradesco.antifraud.repository;
+
+import com.bradesco.antifraud.model.FlaggedAccount;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+@Repository
+public interface FlaggedAccountRepository extends JpaRepository<FlaggedAccount, UUID> {
+}
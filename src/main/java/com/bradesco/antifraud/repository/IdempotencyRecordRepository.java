@@ -0,0 +1,36 @@
+package com.bradesco.antifraud.repository;
+
+import com.bradesco.antifraud.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    @Query("select r from IdempotencyRecord r where r.key = :key and r.expiresAt > :now")
+    Optional<IdempotencyRecord> findLive(@Param("key") String key, @Param("now") LocalDateTime now);
+
+    /**
+     * Stores the response of the request that reserved {@code key}; returns 0 if the key is gone.
+     */
+    @Modifying
+    @Transactional
+    @Query("update IdempotencyRecord r set r.status = :status, r.headers = :headers, r.body = :body where r.key = :key")
+    int complete(@Param("key") String key, @Param("status") int status, @Param("headers") String headers,
+                 @Param("body") String body);
+
+    /**
+     * Deletes every record that expired before {@code now}; returns how many were removed.
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from IdempotencyRecord r where r.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,155 @@
+package com.bradesco.antifraud.repository;
+
+import com.bradesco.antifraud.model.LedgerEntry;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Plain JDBC access to the append-only {@code ledger_entries} table and its
+ * {@code balance_snapshots}. Entries are inserted in batches on the payment path; the
+ * replay queries read an account's latest snapshot plus the entries appended after it.
+ */
+@Repository
+public class LedgerJdbcRepository {
+
+    private static final String INSERT_SQL = "insert into ledger_entries "
+            + "(account_id, transaction_id, kind, amount, created_at) values (?, ?, ?, ?, ?)";
+
+    // Latest snapshot of the account aliased as "a", and the entries after it
+    private static final String LAST_SNAPSHOT_SEQUENCE =
+            "coalesce((select max(s.sequence) from balance_snapshots s where s.account_id = a.id), 0)";
+    private static final String REPLAYED_BALANCE =
+            "coalesce((select s.balance from balance_snapshots s where s.account_id = a.id and s.sequence = "
+                    + LAST_SNAPSHOT_SEQUENCE + "), 0) "
+                    + "+ coalesce((select sum(e.amount) from ledger_entries e where e.account_id = a.id and e.sequence > "
+                    + LAST_SNAPSHOT_SEQUENCE + "), 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public LedgerJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void append(List<LedgerEntry> entries) {
+        if (entries.size() == 1) {
+            jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, entries.get(0)));
+        } else if (!entries.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, entries, entries.size(), LedgerJdbcRepository::bind);
+        }
+    }
+
+    /**
+     * Keyset page of an account's entries: the first {@code limit} after {@code afterSequence}.
+     */
+    public List<LedgerEntry> findEntries(UUID accountId, long afterSequence, int limit) {
+        return jdbcTemplate.query("select sequence, account_id, transaction_id, kind, amount, created_at "
+                        + "from ledger_entries where account_id = ? and sequence > ? order by sequence limit ?",
+                (rs, rowNum) -> new LedgerEntry(
+                        rs.getLong("sequence"),
+                        rs.getObject("account_id", UUID.class),
+                        rs.getObject("transaction_id", UUID.class),
+                        LedgerEntry.Kind.valueOf(rs.getString("kind")),
+                        rs.getBigDecimal("amount"),
+                        rs.getObject("created_at", LocalDateTime.class)),
+                accountId, afterSequence, limit);
+    }
+
+    /**
+     * Balance of one account rebuilt from the ledger: latest snapshot plus later entries.
+     */
+    public BigDecimal replayedBalance(UUID accountId) {
+        return jdbcTemplate.queryForObject("select " + REPLAYED_BALANCE + " from accounts a where a.id = ?",
+                BigDecimal.class, accountId);
+    }
+
+    /**
+     * Overwrites {@code accounts.balance} with the replayed balance of every account that
+     * has ledger history; returns how many balances actually changed.
+     */
+    public int rebuildBalances() {
+        return jdbcTemplate.update("update accounts a set balance = " + REPLAYED_BALANCE
+                + " where exists (select 1 from ledger_entries e where e.account_id = a.id)"
+                + " and balance <> " + REPLAYED_BALANCE);
+    }
+
+    /**
+     * Sets {@code accounts.balance} of each account to the given value, in one batch.
+     */
+    public void updateBalances(List<Map.Entry<UUID, BigDecimal>> balances) {
+        jdbcTemplate.batchUpdate("update accounts set balance = ? where id = ?", balances, balances.size(),
+                (ps, balance) -> {
+                    ps.setBigDecimal(1, balance.getValue());
+                    ps.setObject(2, balance.getKey());
+                });
+    }
+
+    /**
+     * Records the current balance as an opening entry for accounts that have none yet
+     * (accounts created before the ledger existed); returns how many were opened.
+     */
+    public int openUnrecordedAccounts(LocalDateTime now) {
+        return jdbcTemplate.update("insert into ledger_entries (account_id, transaction_id, kind, amount, created_at) "
+                + "select a.id, null, ?, a.balance, ? from accounts a "
+                + "where a.balance is not null "
+                + "and not exists (select 1 from ledger_entries e where e.account_id = a.id)",
+                LedgerEntry.Kind.OPENING.name(), now);
+    }
+
+    public long lastSnapshotSequence() {
+        Long sequence = jdbcTemplate.queryForObject("select max(sequence) from balance_snapshots", Long.class);
+        return sequence == null ? 0 : sequence;
+    }
+
+    /**
+     * Highest sequence among entries appended before {@code cutoff}, or 0.
+     */
+    public long lastSequenceBefore(LocalDateTime cutoff) {
+        Long sequence = jdbcTemplate.queryForObject("select max(sequence) from ledger_entries where created_at < ?",
+                Long.class, cutoff);
+        return sequence == null ? 0 : sequence;
+    }
+
+    /**
+     * Snapshots, at {@code upTo}, every account with entries in {@code (after, upTo]}, starting
+     * from its previous snapshot; returns how many accounts were snapshotted.
+     */
+    public int snapshot(long after, long upTo, LocalDateTime now) {
+        return jdbcTemplate.update("insert into balance_snapshots (account_id, sequence, balance, taken_at) "
+                + "select t.account_id, ?, coalesce((select s.balance from balance_snapshots s "
+                + "where s.account_id = t.account_id and s.sequence = "
+                + "(select max(p.sequence) from balance_snapshots p where p.account_id = t.account_id)), 0) + t.delta, ? "
+                + "from (select account_id, sum(amount) as delta from ledger_entries "
+                + "where sequence > ? and sequence <= ? group by account_id) t",
+                upTo, now, after, upTo);
+    }
+
+    /**
+     * Deletes snapshots superseded by a newer one of the same account.
+     */
+    public int deleteSupersededSnapshots() {
+        return jdbcTemplate.update("delete from balance_snapshots s where exists "
+                + "(select 1 from balance_snapshots n where n.account_id = s.account_id and n.sequence > s.sequence)");
+    }
+
+    private static void bind(PreparedStatement ps, LedgerEntry entry) throws SQLException {
+        ps.setObject(1, entry.getAccountId());
+        if (entry.getTransactionId() == null) {
+            ps.setNull(2, Types.OTHER);
+        } else {
+            ps.setObject(2, entry.getTransactionId());
+        }
+        ps.setString(3, entry.getKind().name());
+        ps.setBigDecimal(4, entry.getAmount());
+        ps.setObject(5, entry.getCreatedAt());
+    }
+}
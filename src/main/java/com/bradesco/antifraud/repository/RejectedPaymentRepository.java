@@ -0,0 +1,11 @@
+package com.bradesco.antifraud.repository;
+
+import com.bradesco.antifraud.model.RejectedPayment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+@Repository
+public interface RejectedPaymentRepository extends JpaRepository<RejectedPayment, UUID> {
+}
@@ -0,0 +1,201 @@
+package com.bradesco.antifraud.repository;
+
+import com.bradesco.antifraud.dto.TransactionCursor;
+import com.bradesco.antifraud.dto.TransactionDto;
+import com.bradesco.antifraud.model.Account;
+import com.bradesco.antifraud.model.Transaction;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Plain JDBC access to the {@code transaction} table for bulk and listing paths, where
+ * going through the persistence context would cost a statement (or more) per row or
+ * pull the eager {@code Account}/{@code Customer} graphs into memory.
+ */
+@Repository
+public class TransactionJdbcRepository {
+
+    private static final String INSERT_SQL = "insert into transaction "
+            + "(id, tipo, valor, data_hora, descricao, conta_de_origem_id, conta_de_destino_id) "
+            + "values (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SELECT_SQL = "select id, tipo, valor, data_hora, descricao, conta_de_origem_id, conta_de_destino_id "
+            + "from transaction ";
+
+    // Row-value comparison lets the (data_hora, id) index serve the seek directly
+    private static final String AFTER_CURSOR = "where (data_hora, id) > (?, ?) ";
+
+    private static final String ORDER_BY = "order by data_hora, id";
+
+    private static final RowMapper<TransactionDto> DTO_MAPPER = TransactionJdbcRepository::mapDto;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    public TransactionJdbcRepository(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Inserts all rows as JDBC batches. Every transaction must already carry its id.
+     */
+    public void insertBatch(List<Transaction> transactions, int batchSize) {
+        timedRun("insertBatch", () -> jdbcTemplate.batchUpdate(INSERT_SQL, transactions, batchSize, TransactionJdbcRepository::bind));
+    }
+
+    public void insert(Transaction transaction) {
+        timedRun("insert", () -> jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, transaction)));
+    }
+
+    /**
+     * Keyset page: the first {@code limit} transactions strictly after {@code after}
+     * (or from the beginning when it is {@code null}) in {@code (dataHora, id)} order.
+     */
+    public List<TransactionDto> findPage(TransactionCursor after, int limit) {
+        if (after == null) {
+            return timed("findPage", () -> jdbcTemplate.query(SELECT_SQL + ORDER_BY + " limit ?", DTO_MAPPER, limit));
+        }
+        return timed("findPage", () -> jdbcTemplate.query(SELECT_SQL + AFTER_CURSOR + ORDER_BY + " limit ?", DTO_MAPPER,
+                after.dataHora(), after.id(), limit));
+    }
+
+    /**
+     * Walks every transaction after {@code after} through a forward-only, read-only cursor,
+     * handing rows to {@code sink} one at a time. The driver only buffers {@code fetchSize}
+     * rows; on PostgreSQL that requires running inside a transaction (auto-commit off).
+     */
+    public void stream(TransactionCursor after, int fetchSize, Consumer<TransactionDto> sink) {
+        String sql = SELECT_SQL + (after == null ? "" : AFTER_CURSOR) + ORDER_BY;
+        timedRun("stream", () -> jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            if (after != null) {
+                ps.setObject(1, after.dataHora());
+                ps.setObject(2, after.id());
+            }
+            return ps;
+        }, (RowCallbackHandler) rs -> sink.accept(mapDto(rs, rs.getRow()))));
+    }
+
+    /**
+     * Like {@link #stream}, over the transactions with {@code from <= dataHora < to}.
+     */
+    public void streamBetween(LocalDateTime from, LocalDateTime to, int fetchSize, Consumer<TransactionDto> sink) {
+        String sql = SELECT_SQL + "where data_hora >= ? and data_hora < ? " + ORDER_BY;
+        timedRun("streamBetween", () -> jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setObject(1, from);
+            ps.setObject(2, to);
+            return ps;
+        }, (RowCallbackHandler) rs -> sink.accept(mapDto(rs, rs.getRow()))));
+    }
+
+    /**
+     * {@code dataHora} of the oldest transaction, or {@code null} when there is none.
+     */
+    public LocalDateTime findEarliestDataHora() {
+        return timed("findEarliestDataHora", () -> jdbcTemplate.queryForObject(
+                "select min(data_hora) from transaction", LocalDateTime.class));
+    }
+
+    /**
+     * Agency of each of the given accounts that exists, querying a thousand ids at a time.
+     */
+    public Map<UUID, String> findAgencies(List<UUID> accountIds) {
+        Map<UUID, String> agencies = new HashMap<>();
+        for (int i = 0; i < accountIds.size(); i += 1000) {
+            List<UUID> chunk = accountIds.subList(i, Math.min(i + 1000, accountIds.size()));
+            timedRun("findAgencies", () -> namedJdbcTemplate.query(
+                    "select id, agency from accounts where id in (:ids)",
+                    new MapSqlParameterSource("ids", chunk),
+                    (RowCallbackHandler) rs -> agencies.put(rs.getObject("id", UUID.class), rs.getString("agency"))));
+        }
+        return agencies;
+    }
+
+    /**
+     * Returns which of the given account ids exist, in a single query.
+     */
+    public Set<UUID> findExistingAccountIds(Collection<UUID> accountIds) {
+        if (accountIds.isEmpty()) {
+            return Set.of();
+        }
+        return timed("findExistingAccountIds", () -> new HashSet<>(namedJdbcTemplate.queryForList(
+                "select id from accounts where id in (:ids)",
+                new MapSqlParameterSource("ids", accountIds),
+                UUID.class)));
+    }
+
+    private <T> T timed(String method, Supplier<T> call) {
+        return Timer.builder("antifraud.jdbc.transactions")
+                .description("Plain JDBC calls on the transaction table")
+                .tag("method", method)
+                .register(meterRegistry)
+                .record(call);
+    }
+
+    private void timedRun(String method, Runnable call) {
+        timed(method, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    private static TransactionDto mapDto(ResultSet rs, int rowNum) throws SQLException {
+        String tipo = rs.getString("tipo");
+        return TransactionDto.builder()
+                .id(rs.getObject("id", UUID.class))
+                .tipo(tipo == null ? null : Transaction.TransactionType.valueOf(tipo))
+                .valor(rs.getBigDecimal("valor"))
+                .dataHora(rs.getObject("data_hora", LocalDateTime.class))
+                .descricao(rs.getString("descricao"))
+                .contaDeOrigemId(rs.getObject("conta_de_origem_id", UUID.class))
+                .contaDeDestinoId(rs.getObject("conta_de_destino_id", UUID.class))
+                .build();
+    }
+
+    private static void bind(PreparedStatement ps, Transaction transaction) throws SQLException {
+        ps.setObject(1, transaction.getId());
+        ps.setString(2, transaction.getTipo() == null ? null : transaction.getTipo().name());
+        ps.setBigDecimal(3, transaction.getValor());
+        ps.setObject(4, transaction.getDataHora());
+        ps.setString(5, transaction.getDescricao());
+        setAccountId(ps, 6, transaction.getContaDeOrigem());
+        setAccountId(ps, 7, transaction.getContaDeDestino());
+    }
+
+    private static void setAccountId(PreparedStatement ps, int index, Account account) throws SQLException {
+        if (account == null || account.getId() == null) {
+            ps.setNull(index, Types.OTHER);
+        } else {
+            ps.setObject(index, account.getId());
+        }
+    }
+}
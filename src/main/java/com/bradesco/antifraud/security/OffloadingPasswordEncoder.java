@@ -0,0 +1,166 @@
+package com.bradesco.antifraud.security;
+
+import com.bradesco.antifraud.exception.authExceptions.PasswordHashingSaturatedException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs the delegate's hashing on a dedicated, bounded pool of platform threads.
+ * <p>
+ * bcrypt is pure CPU: run on request threads, a burst of logins takes every Tomcat thread
+ * (or, on virtual threads, every carrier, which are not time-sliced) and payments stop
+ * being served. Here at most {@code threads} hashes run at once and at most
+ * {@code queueCapacity} more wait; a call beyond that fails at once with
+ * {@link PasswordHashingSaturatedException} instead of queueing behind work that would
+ * outlive its client's timeout. Callers block until their hash is done, which on virtual
+ * threads unmounts them.
+ * <p>
+ * Bulk callers use {@link #encodeAsync}, which waits for room instead of failing, and may
+ * hold at most {@code threads} places in the queue at a time, so an import never takes
+ * the room left for logins. Calls made from a hasher thread run in place.
+ */
+public class OffloadingPasswordEncoder implements PasswordEncoder {
+
+    private static final String THREAD_PREFIX = "password-hasher-";
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor hashers;
+    private final Semaphore places;
+    private final Semaphore bulkPlaces;
+    private final Timer waitTimer;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejected;
+
+    public OffloadingPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        // The queue itself is unbounded: admission is bounded by the semaphore, so bulk callers can wait on it
+        this.hashers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                Thread.ofPlatform().name(THREAD_PREFIX, 0).daemon().factory());
+        this.places = new Semaphore(threads + queueCapacity);
+        this.bulkPlaces = new Semaphore(threads);
+        this.waitTimer = Timer.builder("antifraud.auth.hashing.wait")
+                .description("Time a password hash waited in the hashing queue")
+                .register(meterRegistry);
+        this.encodeTimer = hashTimer(meterRegistry, "encode");
+        this.matchesTimer = hashTimer(meterRegistry, "matches");
+        this.rejected = Counter.builder("antifraud.auth.hashing.rejected")
+                .description("Password hashes refused because the hashing queue was full")
+                .register(meterRegistry);
+        Gauge.builder("antifraud.auth.hashing.queue", hashers, executor -> executor.getQueue().size())
+                .description("Password hashes waiting for a hasher thread")
+                .register(meterRegistry);
+        Gauge.builder("antifraud.auth.hashing.active", hashers, ThreadPoolExecutor::getActiveCount)
+                .description("Password hashes running")
+                .register(meterRegistry);
+    }
+
+    private static Timer hashTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("antifraud.auth.hashing")
+                .description("Time spent hashing on the hasher threads")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @throws PasswordHashingSaturatedException if the hashing queue is full
+     */
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return offload(encodeTimer, () -> delegate.encode(rawPassword));
+    }
+
+    /**
+     * @throws PasswordHashingSaturatedException if the hashing queue is full
+     */
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return offload(matchesTimer, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * Encodes on the pool for bulk callers, blocking while this caller class holds all the
+     * places it is allowed or the queue is full, rather than failing.
+     */
+    public CompletableFuture<String> encodeAsync(CharSequence rawPassword) {
+        try {
+            bulkPlaces.acquire();
+            try {
+                places.acquire();
+            } catch (InterruptedException e) {
+                bulkPlaces.release();
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingSaturatedException("Interrupted while waiting for a password hasher");
+        }
+        return submit(encodeTimer, () -> delegate.encode(rawPassword), bulkPlaces);
+    }
+
+    public void shutdown() {
+        hashers.shutdown();
+    }
+
+    private <T> T offload(Timer timer, Supplier<T> hash) {
+        if (Thread.currentThread().getName().startsWith(THREAD_PREFIX)) {
+            return timer.record(hash);
+        }
+        if (!places.tryAcquire()) {
+            rejected.increment();
+            throw new PasswordHashingSaturatedException("Password hashing is saturated, try again shortly");
+        }
+        try {
+            return submit(timer, hash, null).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // The caller already holds a place (and a bulk place, if given); both are released when the hash ends
+    private <T> CompletableFuture<T> submit(Timer timer, Supplier<T> hash, Semaphore bulk) {
+        long queuedAt = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                waitTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                try {
+                    return timer.record(hash);
+                } finally {
+                    places.release();
+                    if (bulk != null) {
+                        bulk.release();
+                    }
+                }
+            }, hashers);
+        } catch (RejectedExecutionException e) {
+            // Only after shutdown: the queue is unbounded
+            places.release();
+            if (bulk != null) {
+                bulk.release();
+            }
+            throw new PasswordHashingSaturatedException("Password hashing has shut down");
+        }
+    }
+}
@@ -1,18 +1,24 @@
 package com.bradesco.antifraud.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 
 @Configuration
 public class SecurityConfig {
 
+    // bcrypt runs on its own bounded pool, off the request threads; see OffloadingPasswordEncoder
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public OffloadingPasswordEncoder passwordEncoder(@Value("${antifraud.auth.hashing.threads:0}") int threads,
+                                                    @Value("${antifraud.auth.hashing.queue-capacity:64}") int queueCapacity,
+                                                    MeterRegistry meterRegistry) {
+        int hashers = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new OffloadingPasswordEncoder(new BCryptPasswordEncoder(), hashers, queueCapacity, meterRegistry);
     }
 
     @Bean
@@ -1,25 +1,55 @@
 package com.bradesco.antifraud.service;
 
+import com.bradesco.antifraud.dto.AccessLogCursor;
+import com.bradesco.antifraud.dto.AccessLogDto;
+import com.bradesco.antifraud.dto.AccessLogFilter;
+import com.bradesco.antifraud.dto.AccessLogPage;
 import com.bradesco.antifraud.model.AccessLog;
 import com.bradesco.antifraud.model.Customer;
+import com.bradesco.antifraud.repository.AccessLogJdbcRepository;
 import com.bradesco.antifraud.repository.AccessLogRepository;
+import com.bradesco.antifraud.service.accesslog.AccessLogArchive;
+import com.bradesco.antifraud.service.accesslog.AccessLogEntry;
+import com.bradesco.antifraud.service.accesslog.AccessLogWriter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.servlet.http.HttpServletRequest;
 
-import lombok.RequiredArgsConstructor;
-
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 
 @Service
-@RequiredArgsConstructor
 public class AccessLogService {
 
     private final AccessLogRepository repository;
+    private final AccessLogJdbcRepository jdbcRepository;
     private final CustomerService customerService;
+    private final AccessLogWriter writer;
+    private final AccessLogArchive archive;
+    private final Timer enqueueTimer;
+    private final int exactCountUpTo;
+
+    public AccessLogService(AccessLogRepository repository, AccessLogJdbcRepository jdbcRepository,
+                            CustomerService customerService, AccessLogWriter writer, AccessLogArchive archive,
+                            MeterRegistry meterRegistry,
+                            @Value("${antifraud.access-log.search.exact-count-up-to:1000}") int exactCountUpTo) {
+        this.repository = repository;
+        this.jdbcRepository = jdbcRepository;
+        this.exactCountUpTo = exactCountUpTo;
+        this.customerService = customerService;
+        this.writer = writer;
+        this.archive = archive;
+        this.enqueueTimer = Timer.builder("antifraud.access-log.enqueue")
+                .description("Time taken by createLog to hand an access off to the writer")
+                .register(meterRegistry);
+    }
 
     public AccessLog create(AccessLog log) {
         return repository.save(log);
@@ -30,6 +60,36 @@ public class AccessLogService {
                 .orElseThrow(() -> new EntityNotFoundException("Access log not found"));
     }
 
+    /**
+     * One page of the logs matching {@code filter}, newest first, with the total counted
+     * exactly only while it is small (see {@link AccessLogJdbcRepository#estimateCount}).
+     * The total is only computed for the first page.
+     */
+    public AccessLogPage search(AccessLogFilter filter, String cursor, int limit) {
+        AccessLogCursor after = cursor == null || cursor.isBlank() ? null : AccessLogCursor.decode(cursor);
+        List<AccessLogDto> items = jdbcRepository.search(filter, after, limit);
+        String nextCursor = null;
+        if (items.size() == limit) {
+            AccessLogDto last = items.get(items.size() - 1);
+            nextCursor = new AccessLogCursor(last.timestamp(), last.id()).encode();
+        }
+        if (after != null) {
+            return new AccessLogPage(items, nextCursor, null, null);
+        }
+        AccessLogJdbcRepository.CountEstimate total = nextCursor == null
+                ? new AccessLogJdbcRepository.CountEstimate(items.size(), true)
+                : jdbcRepository.estimateCount(filter, exactCountUpTo);
+        return new AccessLogPage(items, nextCursor, total.count(), total.exact());
+    }
+
+    /**
+     * Up to {@code limit} logs matching {@code filter} from the partitions already archived
+     * and dropped, newest first. Scans the archive files, so it is slow by design.
+     */
+    public List<AccessLogDto> searchArchive(AccessLogFilter filter, int limit) {
+        return archive.search(filter, limit);
+    }
+
     public AccessLog createLog(UUID customerId, HttpServletRequest request) {
         Customer customer = customerService.findById(customerId);
 
@@ -47,33 +107,12 @@ public class AccessLogService {
         return repository.save(log);
     }
 
-    public AccessLog createLog(UUID customerId, HttpServletRequest request, String action, String status) {
-        Customer customer = customerService.findById(customerId);
-
-        String userAgent = request.getHeader("User-Agent");
-        String path = request.getRequestURI();
-        String httpMethod = request.getMethod();
-        String sessionId = request.getSession(false) != null ? request.getSession(false).getId() : null;
-        String ipAddress = request.getHeader("X-Forwarded-For");
-        if (ipAddress == null) {
-            ipAddress = request.getRemoteAddr();
-        }
-        LocalDateTime now = LocalDateTime.now();
-
-        AccessLog log = AccessLog.builder()
-                .customer(customer)
-                .userAgent(userAgent)
-                .path(path)
-                .accessTime(now)
-                .action(action)
-                .timestamp(now)
-                .ipAddress(ipAddress)
-                .sessionId(sessionId)
-                .status(status)
-                .httpMethod(httpMethod)
-                .build();
-
-        return repository.save(log);
+    /**
+     * Records an access asynchronously: the request details are captured here and the
+     * insert happens in batches on the {@link AccessLogWriter} thread.
+     */
+    public void createLog(UUID customerId, HttpServletRequest request, String action, String status) {
+        enqueueTimer.record(() -> writer.enqueue(AccessLogEntry.of(customerId, request, action, status)));
     }
 
     public void deleteById(UUID id) {
@@ -5,40 +5,53 @@ import com.bradesco.antifraud.exception.accountExceptions.AccountAlreadyExistsEx
 import com.bradesco.antifraud.mapper.AccountMapper;
 import com.bradesco.antifraud.model.Account;
 import com.bradesco.antifraud.model.Customer;
+import com.bradesco.antifraud.model.LedgerEntry;
 import com.bradesco.antifraud.repository.AccountRepository;
 import com.bradesco.antifraud.repository.CustomerRepository;
+import com.bradesco.antifraud.service.ledger.AccountLedger;
 
 import jakarta.persistence.EntityNotFoundException;
 
 
 import jakarta.validation.constraints.NotNull;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Service
 public class AccountService {
 
+    static final int MAX_LEDGER_PAGE = 1000;
+
     private final AccountRepository accountRepository;
     private final AccountMapper accountMapper;
     private final CustomerRepository customerRepository;
+    private final AccountLedger accountLedger;
 
 
-    public AccountService(AccountRepository accountRepository, AccountMapper accountMapper, CustomerRepository customerRepository) {
+    public AccountService(AccountRepository accountRepository, AccountMapper accountMapper, CustomerRepository customerRepository,
+                          AccountLedger accountLedger) {
         this.accountRepository = accountRepository;
         this.accountMapper = accountMapper;
         this.customerRepository = customerRepository;
+        this.accountLedger = accountLedger;
     }
 
     public Optional<Account> getAccountById(UUID id) {
        if(!accountRepository.existsById(id)) {
             throw new EntityNotFoundException("Account with ID " + id + " does not exist.");
         }
-        return accountRepository.findById(id);
+        Optional<Account> account = accountRepository.findById(id);
+        account.ifPresent(accountLedger::loadCurrentBalance);
+        return account;
     }
 
 
+    @Transactional
     public Account createAccount(@NotNull AccountDto newAccount) {
 
         if (accountRepository.existsByAccountNumber((newAccount.getAccountNumber()))) {
@@ -52,7 +65,9 @@ public class AccountService {
                   .orElseThrow(() -> new EntityNotFoundException("Customer with ID " + newAccount.getCustomerId() + " not found."));
         account.setCustomer(customer);
 
-        return accountRepository.save(account);
+        Account saved = accountRepository.save(account);
+        accountLedger.open(saved);
+        return saved;
     }
 
     public void deleteAccount(UUID id) {
@@ -60,6 +75,7 @@ public class AccountService {
             throw new EntityNotFoundException("Account with ID " + id + " does not exist.");
         }
         accountRepository.deleteById(id);
+        accountLedger.forget(id);
     }
 
 
@@ -76,9 +92,6 @@ public class AccountService {
 
         if (updatedAccountData.getAgency() != null) {
         existingAccount.setAgency(updatedAccountData.getAgency());
-    }
-        if (updatedAccountData.getBalance() != null) {
-        existingAccount.setBalance(updatedAccountData.getBalance());
     }
         if (updatedAccountData.getAccountType() != null) {
         existingAccount.setAccountType(updatedAccountData.getAccountType());
@@ -88,7 +101,9 @@ public class AccountService {
     }
 
 
-        return accountRepository.save(existingAccount);
+        Account saved = accountRepository.save(existingAccount);
+        accountLedger.loadCurrentBalance(saved);
+        return adjustBalance(saved, updatedAccountData.getBalance());
     }
 
     public Account updateAccount(UUID id, Account updatedAccountData) {
@@ -107,9 +122,6 @@ public class AccountService {
         if (updatedAccountData.getAgency() != null) {
             existingAccount.setAgency(updatedAccountData.getAgency());
         }
-        if (updatedAccountData.getBalance() != null) {
-            existingAccount.setBalance(updatedAccountData.getBalance());
-        }
         if (updatedAccountData.getAccountType() != null) {
             existingAccount.setAccountType(updatedAccountData.getAccountType());
         }
@@ -118,13 +130,38 @@ public class AccountService {
         }
 
 
-        return accountRepository.save(existingAccount);
+        Account saved = accountRepository.save(existingAccount);
+        accountLedger.loadCurrentBalance(saved);
+        return adjustBalance(saved, updatedAccountData.getBalance());
+    }
+
+    // Balances are never overwritten in place: a new balance is posted to the ledger as an adjustment
+    private Account adjustBalance(Account account, BigDecimal balance) {
+        if (balance != null && (account.getBalance() == null || balance.compareTo(account.getBalance()) != 0)) {
+            accountLedger.adjust(account.getId(), balance);
+            account.setBalance(balance);
+        }
+        return account;
     }
 
 
+    /**
+     * Ledger entries of the account in append order, starting after {@code afterSequence}.
+     */
+    public List<LedgerEntry> getLedger(UUID id, long afterSequence, int limit) {
+        if (!accountRepository.existsById(id)) {
+            throw new EntityNotFoundException("Account with ID " + id + " does not exist.");
+        }
+        return accountLedger.history(id, afterSequence, Math.min(Math.max(limit, 1), MAX_LEDGER_PAGE));
+    }
+
     public boolean accountExists(UUID id) {
         return accountRepository.existsById(id);
     }
 
+    public Optional<UUID> findCustomerId(UUID accountId) {
+        return accountRepository.findById(accountId).map(account -> account.getCustomer().getId());
+    }
+
 
 }
@@ -0,0 +1,321 @@
+package com.bradesco.antifraud.service;
+
+import com.bradesco.antifraud.dto.BatchIngestionResult.RowResult;
+import com.bradesco.antifraud.dto.BatchIngestionResult.RowStatus;
+import com.bradesco.antifraud.model.Address;
+import com.bradesco.antifraud.model.Customer;
+import com.bradesco.antifraud.repository.CustomerJdbcRepository;
+import com.bradesco.antifraud.security.OffloadingPasswordEncoder;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk customer onboarding. The body is read as a stream of NDJSON, a JSON array or CSV
+ * with a header line, and handled in chunks: per chunk, CPF and email uniqueness is checked
+ * with one query per column, passwords are hashed in parallel on the password hashing pool
+ * (waiting for room there rather than failing, see {@link OffloadingPasswordEncoder#encodeAsync}),
+ * and the accepted rows are inserted as one JDBC batch. Each row's result is written
+ * to the response as soon as its chunk is done, so memory is bounded by the chunk size
+ * whatever the size of the file.
+ * <p>
+ * Rows follow the same rules as {@code POST /customers}: bean validation on the customer,
+ * and no CPF or email already registered, including earlier in the same file.
+ */
+@Service
+public class CustomerImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CustomerImportService.class);
+
+    public enum Format { JSON, CSV }
+
+    // Flat CSV layout: the address columns sit next to the customer's own
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record CsvRow(String name, String cpf, String dateOfBirth, String email, String phone, String password,
+                  String street, String number, String neighborhood, String city, String state, String zipCode) {
+
+        Customer toCustomer() {
+            return Customer.builder()
+                    .name(blankToNull(name))
+                    .cpf(blankToNull(cpf))
+                    .dateOfBirth(dateOfBirth == null || dateOfBirth.isBlank() ? null : LocalDate.parse(dateOfBirth.trim()))
+                    .email(blankToNull(email))
+                    .phone(blankToNull(phone))
+                    .password(blankToNull(password))
+                    .address(Address.builder()
+                            .street(blankToNull(street))
+                            .number(blankToNull(number))
+                            .neighborhood(blankToNull(neighborhood))
+                            .city(blankToNull(city))
+                            .state(blankToNull(state))
+                            .zipCode(blankToNull(zipCode))
+                            .build())
+                    .build();
+        }
+
+        private static String blankToNull(String value) {
+            return value == null || value.isBlank() ? null : value.trim();
+        }
+    }
+
+    private final CustomerJdbcRepository jdbcRepository;
+    private final OffloadingPasswordEncoder passwordEncoder;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader jsonReader;
+    private final ObjectReader csvReader;
+    private final int chunkSize;
+    private final Timer hashTimer;
+    private final MeterRegistry meterRegistry;
+
+    public CustomerImportService(CustomerJdbcRepository jdbcRepository,
+                                 OffloadingPasswordEncoder passwordEncoder,
+                                 Validator validator,
+                                 PlatformTransactionManager transactionManager,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${antifraud.customers.import.chunk-size:500}") int chunkSize) {
+        this.jdbcRepository = jdbcRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.validator = validator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.jsonReader = objectMapper.readerFor(Customer.class);
+        this.csvReader = new CsvMapper().readerFor(CsvRow.class).with(CsvSchema.emptySchema().withHeader());
+        this.chunkSize = chunkSize;
+        this.hashTimer = Timer.builder("antifraud.customers.import.hash")
+                .description("Time to hash the passwords of one import chunk")
+                .register(meterRegistry);
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Imports every row of {@code body} and writes {@code {"rows": [...], "received", "inserted",
+     * "rejected"}} to {@code out}, with one result per input row in input order.
+     */
+    public void importCustomers(InputStream body, Format format, OutputStream out) throws IOException {
+        Chunk chunk = new Chunk();
+        int received = 0;
+        int inserted = 0;
+
+        try (JsonGenerator generator = objectMapper.createGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+             MappingIterator<?> rows = (format == Format.CSV ? csvReader : jsonReader).readValues(body)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("rows");
+            while (true) {
+                int row = received;
+                Customer customer;
+                try {
+                    if (!rows.hasNextValue()) {
+                        break;
+                    }
+                    Object value = rows.nextValue();
+                    customer = value instanceof CsvRow csv ? csv.toCustomer() : (Customer) value;
+                } catch (JsonParseException e) {
+                    // Malformed input: the rest of the stream cannot be read reliably
+                    chunk.reject(row, "Malformed input: " + e.getOriginalMessage());
+                    received++;
+                    break;
+                } catch (JsonMappingException e) {
+                    chunk.reject(row, "Invalid row: " + e.getOriginalMessage());
+                    received++;
+                    continue;
+                } catch (DateTimeParseException e) {
+                    chunk.reject(row, "Invalid row: dateOfBirth " + e.getParsedString());
+                    received++;
+                    continue;
+                }
+                received++;
+
+                String violations = violations(customer);
+                if (violations != null) {
+                    chunk.reject(row, violations);
+                } else {
+                    customer.setId(UUID.randomUUID());
+                    chunk.accept(row, customer);
+                }
+                if (chunk.size() == chunkSize) {
+                    inserted += flush(chunk, generator);
+                }
+            }
+            inserted += flush(chunk, generator);
+            generator.writeEndArray();
+            generator.writeNumberField("received", received);
+            generator.writeNumberField("inserted", inserted);
+            generator.writeNumberField("rejected", received - inserted);
+            generator.writeEndObject();
+        }
+        logger.info("Customer import: {} rows received, {} inserted", received, inserted);
+    }
+
+    private int flush(Chunk chunk, JsonGenerator generator) throws IOException {
+        if (chunk.size() == 0) {
+            return 0;
+        }
+
+        // One query per column for the whole chunk; duplicates inside the chunk are caught by the seen sets
+        Set<String> cpfs = chunk.customers.stream().map(Customer::getCpf).collect(Collectors.toSet());
+        Set<String> emails = chunk.customers.stream().map(Customer::getEmail).collect(Collectors.toSet());
+        Set<String> takenCpfs = new HashSet<>(jdbcRepository.findExistingCpfs(cpfs));
+        Set<String> takenEmails = new HashSet<>(jdbcRepository.findExistingEmails(emails));
+
+        List<Customer> unique = new ArrayList<>(chunk.customers.size());
+        List<Integer> uniqueRows = new ArrayList<>(chunk.customers.size());
+        for (int i = 0; i < chunk.customers.size(); i++) {
+            Customer customer = chunk.customers.get(i);
+            int row = chunk.customerRows.get(i);
+            if (!takenCpfs.add(customer.getCpf())) {
+                chunk.set(row, RowResult.rejected(row, "CPF já cadastrado: " + customer.getCpf()));
+            } else if (!takenEmails.add(customer.getEmail())) {
+                chunk.set(row, RowResult.rejected(row, "Email já cadastrado: " + customer.getEmail()));
+            } else {
+                unique.add(customer);
+                uniqueRows.add(row);
+            }
+        }
+
+        List<Customer> insertable = new ArrayList<>(unique.size());
+        List<Integer> insertableRows = new ArrayList<>(unique.size());
+        hash(unique, uniqueRows, chunk, insertable, insertableRows);
+
+        int inserted = 0;
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcRepository.insertBatch(insertable, chunkSize));
+            for (int i = 0; i < insertable.size(); i++) {
+                chunk.set(insertableRows.get(i), RowResult.inserted(insertableRows.get(i), insertable.get(i).getId()));
+            }
+            inserted = insertable.size();
+        } catch (DataAccessException e) {
+            // Typically a customer created concurrently with the same CPF or email
+            logger.warn("Batch insert of {} customers failed, retrying row by row: {}", insertable.size(), e.getMessage());
+            for (int i = 0; i < insertable.size(); i++) {
+                int row = insertableRows.get(i);
+                try {
+                    jdbcRepository.insert(insertable.get(i));
+                    chunk.set(row, RowResult.inserted(row, insertable.get(i).getId()));
+                    inserted++;
+                } catch (DataAccessException rowError) {
+                    chunk.set(row, RowResult.rejected(row, rowError.getMostSpecificCause().getMessage()));
+                }
+            }
+        }
+
+        for (RowResult result : chunk.results) {
+            generator.writeObject(result);
+            count(result.status());
+        }
+        generator.flush();
+        chunk.clear();
+        return inserted;
+    }
+
+    // Hashes the passwords on the pool; the customers hashed go to hashed/hashedRows, in order
+    private void hash(List<Customer> customers, List<Integer> rows, Chunk chunk,
+                      List<Customer> hashed, List<Integer> hashedRows) {
+        long start = System.nanoTime();
+        List<CompletableFuture<String>> hashes = new ArrayList<>(customers.size());
+        for (Customer customer : customers) {
+            hashes.add(passwordEncoder.encodeAsync(customer.getPassword()));
+        }
+        for (int i = 0; i < customers.size(); i++) {
+            try {
+                customers.get(i).setPassword(hashes.get(i).join());
+                hashed.add(customers.get(i));
+                hashedRows.add(rows.get(i));
+            } catch (CompletionException e) {
+                chunk.set(rows.get(i), RowResult.rejected(rows.get(i), "Could not hash password: " + e.getCause().getMessage()));
+            }
+        }
+        hashTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private String violations(Customer customer) {
+        Set<ConstraintViolation<Customer>> violations = validator.validate(customer);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    private void count(RowStatus status) {
+        Counter.builder("antifraud.customers.import.rows")
+                .description("Rows of customer imports, by outcome")
+                .tag("status", status.name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    // Results of the rows read since the last flush, by position, and the customers still to insert
+    private static final class Chunk {
+        private final List<RowResult> results = new ArrayList<>();
+        private final List<Customer> customers = new ArrayList<>();
+        private final List<Integer> customerRows = new ArrayList<>();
+        private int firstRow;
+
+        int size() {
+            return results.size();
+        }
+
+        void reject(int row, String error) {
+            results.add(RowResult.rejected(row, error));
+        }
+
+        void accept(int row, Customer customer) {
+            results.add(null);
+            customers.add(customer);
+            customerRows.add(row);
+        }
+
+        void set(int row, RowResult result) {
+            results.set(row - firstRow, result);
+        }
+
+        void clear() {
+            firstRow += results.size();
+            results.clear();
+            customers.clear();
+            customerRows.clear();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.bradesco.antifraud.service;
 
+import com.bradesco.antifraud.cache.CustomerCache;
 import com.bradesco.antifraud.exception.accountExceptions.AccountAlreadyExistsException;
 import com.bradesco.antifraud.model.Customer;
 import com.bradesco.antifraud.repository.CustomerRepository;
@@ -18,9 +19,10 @@ public class CustomerService {
 
     private final CustomerRepository repository;
     private final PasswordEncoder passwordEncoder;
+    private final CustomerCache customerCache;
 
     public Customer findById(UUID id) {
-        return repository.findById(id)
+        return customerCache.findById(id, repository::findById)
                 .orElseThrow(() -> new EntityNotFoundException("Customer not found"));
     }
 
@@ -40,6 +42,7 @@ public class CustomerService {
     public Customer update(UUID id, Customer newData) {
         Customer existing = repository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Cliente não encontrado"));
+        String previousEmail = existing.getEmail();
 
         if (!existing.getCpf().equals(newData.getCpf()) && repository.existsByCpf(newData.getCpf())) {
             throw new AccountAlreadyExistsException("CPF já cadastrado");
@@ -56,11 +59,21 @@ public class CustomerService {
         existing.setPhone(newData.getPhone());
         existing.setAddress(newData.getAddress());
 
-        if (!newData.getPassword().equals(existing.getPassword())) {
+        if (passwordChanged(newData.getPassword(), existing.getPassword())) {
             existing.setPassword(passwordEncoder.encode(newData.getPassword()));
         }
 
-        return repository.save(existing);
+        Customer saved = repository.save(existing);
+        customerCache.invalidate(id, previousEmail, saved.getEmail());
+        return saved;
+    }
+
+    // The stored hash sent back as is, or the current password in clear, is not a change
+    private boolean passwordChanged(String password, String storedHash) {
+        if (password == null || password.equals(storedHash)) {
+            return false;
+        }
+        return storedHash == null || !passwordEncoder.matches(password, storedHash);
     }
 
     public void delete(UUID id) {
@@ -68,6 +81,7 @@ public class CustomerService {
                 .orElseThrow(() -> new EntityNotFoundException("Cliente não encontrado"));
 
         repository.deleteById(customer.getId());
+        customerCache.invalidate(customer.getId(), customer.getEmail());
     }
 
     public List<Customer> getAllCustomers() {
@@ -75,6 +89,6 @@ public class CustomerService {
     }
 
     public Customer findByEmail(String email) {
-        return repository.findByEmail(email).orElse(null);
+        return customerCache.findByEmail(email, repository::findByEmail).orElse(null);
     }
 }
@@ -1,44 +1,224 @@
 package com.bradesco.antifraud.service;
 
-import com.azure.communication.email.models.*;
+import com.bradesco.antifraud.cache.ExpiringStore;
+import com.bradesco.antifraud.exception.emailExceptions.EmailQueueFullException;
+import com.bradesco.antifraud.model.EmailRequest;
+import com.bradesco.antifraud.service.email.EmailDispatch;
+import com.bradesco.antifraud.service.email.EmailStatus;
+import com.bradesco.antifraud.service.email.EmailTransport;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import com.bradesco.antifraud.model.EmailRequest;
+/**
+ * Sends emails without holding the caller. Each message gets its own virtual thread,
+ * at most {@code max-in-flight} of them talk to the {@link EmailTransport} at once and
+ * failed sends are retried with exponential backoff. At most {@code max-pending} messages
+ * wait for a final status; beyond that new ones are rejected with
+ * {@link EmailQueueFullException}, so a provider outage cannot pile up threads and records.
+ * The state of each message can be queried by id for {@code status-ttl} after its last
+ * change, within the bounded status table.
+ */
+@Service
+public class EmailService {
 
-import jakarta.validation.constraints.Email;
+    private static final Logger logger = LoggerFactory.getLogger(EmailService.class);
 
-import org.springframework.stereotype.Service;
-import com.azure.communication.email.*;
-import com.azure.core.util.polling.*;
+    private final EmailTransport transport;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore inFlight;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final int maxInFlight;
+    private final int maxPending;
+    private final Duration statusTtl;
 
-@Service
-public class EmailService {
-    String connectionString = "endpoint=" + System.getenv("AZURE_COMMUNICATION_SERVICE_ENDPOINT") +
-            ";accesskey=" + System.getenv("AZURE_COMMUNICATION_SERVICE_ACCESS_KEY");
+    private final ExpiringStore<UUID, EmailDispatch> dispatches;
+    private final AtomicInteger pending = new AtomicInteger();
 
-    EmailAsyncClient asyncEmailClient = new EmailClientBuilder()
-            .connectionString(connectionString)
-            .buildAsyncClient();
+    private final MeterRegistry meterRegistry;
+    private final Timer enqueueTimer;
+    private final Timer attemptTimer;
 
+    public EmailService(EmailTransport transport,
+                        MeterRegistry meterRegistry,
+                        @Value("${antifraud.email.max-in-flight:32}") int maxInFlight,
+                        @Value("${antifraud.email.max-attempts:4}") int maxAttempts,
+                        @Value("${antifraud.email.initial-backoff-ms:500}") long initialBackoffMillis,
+                        @Value("${antifraud.email.max-backoff-ms:10000}") long maxBackoffMillis,
+                        @Value("${antifraud.email.tracked-messages:10000}") int maxTracked,
+                        @Value("${antifraud.email.max-pending:1000}") int maxPending,
+                        @Value("${antifraud.email.status-ttl:PT1H}") Duration statusTtl) {
+        this.transport = transport;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.maxInFlight = maxInFlight;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.maxPending = maxPending;
+        this.statusTtl = statusTtl;
+        this.dispatches = new ExpiringStore<>("emails", maxTracked);
+        this.meterRegistry = meterRegistry;
+        this.enqueueTimer = Timer.builder("antifraud.email.send")
+                .description("Time taken by sendEmail to hand the message off")
+                .register(meterRegistry);
+        this.attemptTimer = Timer.builder("antifraud.email.transport")
+                .description("Time spent in a single transport send")
+                .register(meterRegistry);
+    }
 
-    public void sendEmail(EmailRequest emailRequest) {
+    /**
+     * Queues the message and returns its id immediately.
+     *
+     * @throws EmailQueueFullException if {@code max-pending} messages are already waiting
+     */
+    public UUID sendEmail(EmailRequest emailRequest) {
+        long start = System.nanoTime();
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            Counter.builder("antifraud.email.rejected")
+                    .description("Emails refused because too many were pending")
+                    .register(meterRegistry)
+                    .increment();
+            throw new EmailQueueFullException("Too many emails pending delivery, try again later");
+        }
+        UUID id = UUID.randomUUID();
+        dispatches.put(id, new EmailDispatch(id, emailRequest.getSenderAddress(), EmailStatus.QUEUED, 0, null, Instant.now()),
+                statusTtl);
+        try {
+            executor.execute(() -> deliver(id, emailRequest));
+        } catch (RejectedExecutionException e) {
+            finish(id, EmailStatus.FAILED, 0, "Email service is shutting down");
+        }
+        enqueueTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return id;
+    }
 
-        EmailClient emailClient = new EmailClientBuilder().connectionString(connectionString).buildClient();
+    public Optional<EmailDispatch> status(UUID id) {
+        return Optional.ofNullable(dispatches.get(id));
+    }
 
-        EmailAddress toAddress = new EmailAddress(emailRequest.getSenderAddress());
+    public int tracked() {
+        return dispatches.size();
+    }
 
-        EmailMessage emailMessage = new EmailMessage()
-                .setSenderAddress("DoNotReply@antifraudsystem.com.br")
-                .setToRecipients(toAddress)
-                .setSubject(emailRequest.getSubject())
-                .setBodyPlainText(emailRequest.getSubject());
+    public int pending() {
+        return pending.get();
+    }
+
+    @Scheduled(fixedDelayString = "${antifraud.email.expiry-sweep-ms:1000}")
+    public void expireStatuses() {
+        dispatches.expire();
+    }
+
+    public int inFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.warn("Email dispatch did not finish in time, {} messages abandoned", executor.shutdownNow().size());
+        }
+    }
 
-        SyncPoller<EmailSendResult, EmailSendResult> poller = emailClient.beginSend(emailMessage, null);
-        PollResponse<EmailSendResult> result = poller.waitForCompletion();
+    private void deliver(UUID id, EmailRequest request) {
+        long start = System.nanoTime();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                inFlight.acquire();
+                try {
+                    update(id, EmailStatus.SENDING, attempt, null);
+                    Timer.Sample sample = Timer.start(meterRegistry);
+                    try {
+                        transport.send(request);
+                    } finally {
+                        sample.stop(attemptTimer);
+                    }
+                } finally {
+                    inFlight.release();
+                }
+                finish(id, EmailStatus.SENT, attempt, null);
+                recordDelivery(EmailStatus.SENT, start);
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                finish(id, EmailStatus.FAILED, attempt, "Interrupted");
+                return;
+            } catch (Exception e) {
+                if (attempt >= maxAttempts) {
+                    logger.warn("Giving up on email {} after {} attempts: {}", id, attempt, e.getMessage());
+                    finish(id, EmailStatus.FAILED, attempt, e.getMessage());
+                    recordDelivery(EmailStatus.FAILED, start);
+                    return;
+                }
+                update(id, EmailStatus.RETRYING, attempt, e.getMessage());
+            }
 
+            try {
+                Thread.sleep(backoff(attempt));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                finish(id, EmailStatus.FAILED, attempt, "Interrupted");
+                return;
+            }
+        }
     }
 
+    // From hand-off to final status, retries and backoff included
+    private void recordDelivery(EmailStatus status, long start) {
+        String outcome = status.name().toLowerCase();
+        Timer.builder("antifraud.email.delivery")
+                .description("Time from hand-off to final delivery status")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        Counter.builder("antifraud.emails")
+                .description("Emails by final delivery status")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    // Exponential backoff with jitter, so retries after a provider outage do not arrive together
+    private long backoff(int attempt) {
+        long base = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(base / 2, base + 1);
+    }
+
+    // Only the thread delivering a message updates it, so read-then-put does not race
+    private void update(UUID id, EmailStatus status, int attempts, String error) {
+        EmailDispatch dispatch = dispatches.get(id);
+        if (dispatch != null) {
+            dispatches.put(id, dispatch.next(status, attempts, error), statusTtl);
+        }
+    }
+
+    private void finish(UUID id, EmailStatus status, int attempts, String error) {
+        update(id, status, attempts, error);
+        pending.decrementAndGet();
+    }
 }
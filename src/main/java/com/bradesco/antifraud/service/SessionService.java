@@ -1,40 +1,43 @@
 package com.bradesco.antifraud.service;
 
-import java.time.LocalDateTime;
-import java.util.Map;
+import java.time.Duration;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
+import com.bradesco.antifraud.cache.ExpiringStore;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 @Service
 public class SessionService {
-    private final Map<String, SessionData> sessionStore = new ConcurrentHashMap<>();
+    private final ExpiringStore<String, UUID> sessionStore;
+    private final Duration sessionTtl;
+
+    public SessionService(@Value("${antifraud.auth.session-capacity:100000}") int capacity,
+                          @Value("${antifraud.auth.session-ttl:PT1H}") Duration sessionTtl) {
+        this.sessionStore = new ExpiringStore<>("sessions", capacity);
+        this.sessionTtl = sessionTtl;
+    }
 
     public void storeSession(String sessionId, UUID userId) {
-        sessionStore.put(sessionId, new SessionData(userId, LocalDateTime.now().plusHours(1)));
+        sessionStore.put(sessionId, userId, sessionTtl);
     }
 
     public boolean isSessionValid(String sessionId) {
-        SessionData data = sessionStore.get(sessionId);
-        return data != null && data.expiry.isAfter(LocalDateTime.now());
+        return sessionStore.get(sessionId) != null;
     }
 
     public UUID getUserIdBySession(String sessionId) {
-        SessionData data = sessionStore.get(sessionId);
-        if (data == null || data.expiry.isBefore(LocalDateTime.now())) {
-            return null;
-        }
-        return data.userId;
+        return sessionStore.get(sessionId);
     }
 
-    private static class SessionData {
-        UUID userId;
-        LocalDateTime expiry;
+    public ExpiringStore.Stats stats() {
+        return sessionStore.stats();
+    }
 
-        SessionData(UUID userId, LocalDateTime expiry) {
-            this.userId = userId;
-            this.expiry = expiry;
-        }
+    @Scheduled(fixedDelayString = "${antifraud.auth.expiry-sweep-ms:1000}")
+    public void evictExpired() {
+        sessionStore.expire();
     }
-}
\ No newline at end of file
+}
@@ -1,39 +1,38 @@
 package com.bradesco.antifraud.service;
 
 import java.time.Duration;
-import java.time.LocalDateTime;
-import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
+import com.bradesco.antifraud.cache.ExpiringStore;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 @Service
 public class TokenService {
 
-    private final Map<String, TokenData> tokenStore = new ConcurrentHashMap<>();
+    private final ExpiringStore<String, UUID> tokenStore;
+
+    public TokenService(@Value("${antifraud.auth.token-capacity:100000}") int capacity) {
+        this.tokenStore = new ExpiringStore<>("login-tokens", capacity);
+    }
 
     public void storeToken(String token, UUID userId, Duration ttl) {
-        tokenStore.put(token, new TokenData(userId, LocalDateTime.now().plus(ttl)));
+        tokenStore.put(token, userId, ttl);
     }
 
     public UUID validateAndConsumeToken(UUID token) {
-        TokenData data = tokenStore.get(token.toString());
-        if (data == null || data.expiry.isBefore(LocalDateTime.now())) {
-            return null;
-        }
-        tokenStore.remove(token.toString());
-        return data.userId;
+        // remove() hands the token to a single caller, so it cannot be redeemed twice
+        return token == null ? null : tokenStore.remove(token.toString());
     }
 
-    private static class TokenData {
-        UUID userId;
-        LocalDateTime expiry;
+    public ExpiringStore.Stats stats() {
+        return tokenStore.stats();
+    }
 
-        TokenData(UUID userId, LocalDateTime expiry) {
-            this.userId = userId;
-            this.expiry = expiry;
-        }
+    @Scheduled(fixedDelayString = "${antifraud.auth.expiry-sweep-ms:1000}")
+    public void evictExpired() {
+        tokenStore.expire();
     }
 }
-
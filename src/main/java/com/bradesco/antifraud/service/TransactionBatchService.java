@@ -0,0 +1,210 @@
+package com.bradesco.antifraud.service;
+
+import com.bradesco.antifraud.dto.BatchIngestionResult;
+import com.bradesco.antifraud.dto.BatchIngestionResult.RowResult;
+import com.bradesco.antifraud.model.Account;
+import com.bradesco.antifraud.model.Transaction;
+import com.bradesco.antifraud.repository.TransactionJdbcRepository;
+import com.bradesco.antifraud.service.archive.TransactionArchiveService;
+import com.bradesco.antifraud.service.ledger.AccountRollups;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Ingests settlement files of transactions. The body is read as a stream, either
+ * NDJSON (one object per line) or a single JSON array, so the file is never
+ * materialized as a whole. Rows are validated one by one, against the bean constraints
+ * of {@link Transaction} and then the rules of {@link TransactionService#validate}, and the
+ * valid ones are written with batched JDBC inserts, one database transaction per chunk, using ids
+ * generated on the client side.
+ */
+@Service
+public class TransactionBatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionBatchService.class);
+
+    private final TransactionService transactionService;
+    private final TransactionJdbcRepository jdbcRepository;
+    private final AccountRollups rollups;
+    private final TransactionArchiveService archive;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectReader reader;
+    private final int chunkSize;
+
+    public TransactionBatchService(TransactionService transactionService,
+                                   TransactionJdbcRepository jdbcRepository,
+                                   AccountRollups rollups,
+                                   TransactionArchiveService archive,
+                                   Validator validator,
+                                   PlatformTransactionManager transactionManager,
+                                   ObjectMapper objectMapper,
+                                   @Value("${antifraud.batch.chunk-size:1000}") int chunkSize) {
+        this.transactionService = transactionService;
+        this.jdbcRepository = jdbcRepository;
+        this.rollups = rollups;
+        this.archive = archive;
+        this.validator = validator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.reader = objectMapper.readerFor(Transaction.class);
+        this.chunkSize = chunkSize;
+    }
+
+    public BatchIngestionResult ingest(InputStream body) throws IOException {
+        List<RowResult> results = new ArrayList<>();
+        List<Transaction> chunk = new ArrayList<>(chunkSize);
+        List<Integer> chunkRows = new ArrayList<>(chunkSize);
+
+        try (MappingIterator<Transaction> rows = reader.readValues(body)) {
+            while (true) {
+                int row = results.size();
+                Transaction transaction;
+                try {
+                    if (!rows.hasNextValue()) {
+                        break;
+                    }
+                    transaction = rows.nextValue();
+                } catch (JsonParseException e) {
+                    // Malformed JSON: the rest of the stream cannot be read reliably
+                    results.add(RowResult.rejected(row, "Malformed input: " + e.getOriginalMessage()));
+                    break;
+                } catch (JsonMappingException e) {
+                    results.add(RowResult.rejected(row, "Invalid row: " + e.getOriginalMessage()));
+                    continue;
+                }
+
+                // A null column would otherwise only fail at the database, taking the whole chunk with it
+                String violations = violations(transaction);
+                if (violations != null) {
+                    results.add(RowResult.rejected(row, violations));
+                    continue;
+                }
+                try {
+                    transactionService.validate(transaction);
+                } catch (ResponseStatusException e) {
+                    results.add(RowResult.rejected(row, e.getReason()));
+                    continue;
+                }
+
+                transaction.setId(UUID.randomUUID());
+                results.add(null); // filled in when the chunk is flushed
+                chunk.add(transaction);
+                chunkRows.add(row);
+                if (chunk.size() == chunkSize) {
+                    flush(chunk, chunkRows, results);
+                }
+            }
+        }
+        flush(chunk, chunkRows, results);
+
+        int inserted = (int) results.stream().filter(r -> r.status() == BatchIngestionResult.RowStatus.INSERTED).count();
+        return new BatchIngestionResult(results.size(), inserted, results.size() - inserted, results);
+    }
+
+    private void flush(List<Transaction> chunk, List<Integer> chunkRows, List<RowResult> results) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        // Unknown accounts would fail the whole JDBC batch on the foreign key, so reject them up front
+        Set<UUID> referenced = new HashSet<>();
+        for (Transaction transaction : chunk) {
+            addId(referenced, transaction.getContaDeOrigem());
+            addId(referenced, transaction.getContaDeDestino());
+        }
+        Set<UUID> existing = jdbcRepository.findExistingAccountIds(referenced);
+
+        List<Transaction> insertable = new ArrayList<>(chunk.size());
+        List<Integer> insertableRows = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            Transaction transaction = chunk.get(i);
+            UUID missing = firstMissing(existing, transaction.getContaDeOrigem(), transaction.getContaDeDestino());
+            if (missing != null) {
+                results.set(chunkRows.get(i), RowResult.rejected(chunkRows.get(i), "Account with ID " + missing + " does not exist."));
+            } else {
+                insertable.add(transaction);
+                insertableRows.add(chunkRows.get(i));
+            }
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcRepository.insertBatch(insertable, chunkSize);
+                rollups.record(insertable);
+            });
+            for (int i = 0; i < insertable.size(); i++) {
+                results.set(insertableRows.get(i), RowResult.inserted(insertableRows.get(i), insertable.get(i).getId()));
+                archive.invalidate(insertable.get(i).getDataHora());
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Batch insert of {} rows failed, retrying row by row: {}", insertable.size(), e.getMessage());
+            for (int i = 0; i < insertable.size(); i++) {
+                int row = insertableRows.get(i);
+                Transaction transaction = insertable.get(i);
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        jdbcRepository.insert(transaction);
+                        rollups.record(transaction);
+                    });
+                    results.set(row, RowResult.inserted(row, transaction.getId()));
+                    archive.invalidate(transaction.getDataHora());
+                } catch (DataAccessException rowError) {
+                    results.set(row, RowResult.rejected(row, rowError.getMostSpecificCause().getMessage()));
+                }
+            }
+        }
+
+        chunk.clear();
+        chunkRows.clear();
+    }
+
+    private String violations(Transaction transaction) {
+        Set<ConstraintViolation<Transaction>> violations = validator.validate(transaction);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    private static void addId(Set<UUID> ids, Account account) {
+        if (account != null && account.getId() != null) {
+            ids.add(account.getId());
+        }
+    }
+
+    private static UUID firstMissing(Set<UUID> existing, Account... accounts) {
+        for (Account account : accounts) {
+            if (account != null && account.getId() != null && !existing.contains(account.getId())) {
+                return account.getId();
+            }
+        }
+        return null;
+    }
+}
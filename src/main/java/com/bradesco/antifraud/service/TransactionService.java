@@ -1,16 +1,41 @@
 package com.bradesco.antifraud.service;
 
-import java.math.BigDecimal;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
-import com.bradesco.antifraud.dto.AccountDto;
-import com.bradesco.antifraud.model.Account;
-import jakarta.servlet.http.HttpServletRequest;
+import com.bradesco.antifraud.config.TransactionStageTimers;
+import com.bradesco.antifraud.dto.PaymentStatus;
+import com.bradesco.antifraud.dto.TransactionCursor;
+import com.bradesco.antifraud.dto.TransactionDto;
+import com.bradesco.antifraud.dto.TransactionPage;
+import com.bradesco.antifraud.exception.transactionExceptions.InsufficientFundsException;
+import com.bradesco.antifraud.repository.TransactionJdbcRepository;
+import com.bradesco.antifraud.service.archive.TransactionArchiveService;
+import com.bradesco.antifraud.service.fraud.FraudDecision;
+import com.bradesco.antifraud.service.fraud.FraudScore;
+import com.bradesco.antifraud.service.fraud.FraudScoringService;
+import com.bradesco.antifraud.service.journal.PaymentJournalService;
+import com.bradesco.antifraud.service.ledger.AccountLedger;
+import com.bradesco.antifraud.service.ledger.AccountRollups;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
 import com.bradesco.antifraud.model.Transaction;
@@ -20,49 +45,141 @@ import jakarta.persistence.EntityNotFoundException;
 
 @Service
 public class TransactionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionService.class);
     
     private final TransactionRepository repository;
-    private final AccountService accountService;
+    private final AccountLedger accountLedger;
+    private final AccountRollups rollups;
+    private final TransactionArchiveService archive;
+    private final FraudScoringService fraudScoringService;
+    private final Optional<PaymentJournalService> paymentJournal;
+    private final TransactionJdbcRepository jdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+    private final int streamFetchSize;
+    private final MeterRegistry meterRegistry;
+    private final Timer validateTimer;
+    private final Timer fraudScoreTimer;
+    private final Timer fraudRecordTimer;
+    private final Timer journalAppendTimer;
 
 
-    public TransactionService(TransactionRepository repository, AccountService accountService){
+    public TransactionService(TransactionRepository repository, AccountLedger accountLedger, AccountRollups rollups,
+                              TransactionArchiveService archive, FraudScoringService fraudScoringService,
+                              Optional<PaymentJournalService> paymentJournal, TransactionJdbcRepository jdbcRepository, PlatformTransactionManager transactionManager,
+                              ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                              @Value("${antifraud.transactions.stream-fetch-size:500}") int streamFetchSize){
         this.repository = repository;
-        this.accountService = accountService;
+        this.accountLedger = accountLedger;
+        this.rollups = rollups;
+        this.archive = archive;
+        this.fraudScoringService = fraudScoringService;
+        this.paymentJournal = paymentJournal;
+        this.jdbcRepository = jdbcRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.streamFetchSize = streamFetchSize;
+        this.meterRegistry = meterRegistry;
+        this.validateTimer = TransactionStageTimers.stageTimer(meterRegistry, "validate");
+        this.fraudScoreTimer = TransactionStageTimers.stageTimer(meterRegistry, "fraud-score");
+        this.fraudRecordTimer = TransactionStageTimers.stageTimer(meterRegistry, "fraud-record");
+        this.journalAppendTimer = TransactionStageTimers.stageTimer(meterRegistry, "journal-append");
     }
 
+    // The rollup deltas commit with the row they come from
     public Transaction create(Transaction transaction){
         validate(transaction);
-        return repository.save(transaction);
+        Transaction created = transactionTemplate.execute(status -> {
+            Transaction saved = repository.save(transaction);
+            rollups.record(saved);
+            return saved;
+        });
+        archive.invalidate(created.getDataHora());
+        return created;
     }
     
     public Optional<Transaction> findById(UUID id){
         return repository.findById(id);
     }
 
+    /**
+     * Whether a payment was posted or rejected; empty while a journaled payment is still
+     * waiting to be applied.
+     */
+    public Optional<PaymentStatus> findPaymentStatus(UUID id) {
+        return accountLedger.status(id);
+    }
+
     public Transaction update(UUID id, Transaction updated){
-        if(!repository.existsById(id)){
-            throw new EntityNotFoundException("Transaction not found");
-        }
-        validate(updated);
-        updated.setId(id);
-        return repository.save(updated);
+        AccountRollups.Posting[] previous = new AccountRollups.Posting[1];
+        Transaction saved = transactionTemplate.execute(status -> {
+            // Captured before the save, which may merge the new values into the same managed entity
+            previous[0] = repository.findById(id).map(AccountRollups.Posting::of)
+                    .orElseThrow(() -> new EntityNotFoundException("Transaction not found"));
+            validate(updated);
+            updated.setId(id);
+            Transaction merged = repository.save(updated);
+            rollups.forget(previous[0]);
+            rollups.record(merged);
+            return merged;
+        });
+        archive.invalidate(previous[0].at());
+        archive.invalidate(saved.getDataHora());
+        return saved;
     }
 
     public void delete(UUID id){
-        if (!repository.existsById(id)) {
-            throw new EntityNotFoundException("Requested transaction not found");
+        AccountRollups.Posting previous = transactionTemplate.execute(status -> {
+            AccountRollups.Posting deleted = repository.findById(id).map(AccountRollups.Posting::of)
+                    .orElseThrow(() -> new EntityNotFoundException("Requested transaction not found"));
+            repository.deleteById(id);
+            rollups.forget(deleted);
+            return deleted;
+        });
+        archive.invalidate(previous.at());
+    }
+
+    public TransactionPage findPage(String cursor, int limit){
+        TransactionCursor after = cursor == null || cursor.isBlank() ? null : TransactionCursor.decode(cursor);
+        List<TransactionDto> items = jdbcRepository.findPage(after, limit);
+        String nextCursor = null;
+        if (items.size() == limit) {
+            TransactionDto last = items.get(items.size() - 1);
+            nextCursor = new TransactionCursor(last.getDataHora(), last.getId()).encode();
         }
-        repository.deleteById(id);
+        return new TransactionPage(items, nextCursor);
     }
 
-    public ArrayList<Transaction> findAll(){
-        return (ArrayList<Transaction>) repository.findAll();
+    /**
+     * Writes every transaction after {@code cursor} to {@code out} as NDJSON, straight from
+     * a database cursor, so memory use does not depend on the size of the table.
+     */
+    public void streamAll(String cursor, OutputStream out) throws IOException {
+        TransactionCursor after = cursor == null || cursor.isBlank() ? null : TransactionCursor.decode(cursor);
+        try (JsonGenerator generator = objectMapper.createGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            readOnlyTransaction.executeWithoutResult(status -> jdbcRepository.stream(after, streamFetchSize, dto -> {
+                try {
+                    generator.writeObject(dto);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
     }
 
-    private void validate(Transaction transaction){
+    public void validate(Transaction transaction){
         boolean hasSourceAccount = transaction.getContaDeOrigem() != null;
         boolean hasDestinationAccount = transaction.getContaDeDestino() != null;
         Transaction.TransactionType type = transaction.getTipo();
+
+        if (transaction.getValor() == null || transaction.getValor().signum() <= 0) {
+            throw conflict("Transaction amount must be positive.");
+        }
     
         if (type == Transaction.TransactionType.DEPOSITO) {
             if (!hasSourceAccount) {
@@ -95,67 +212,91 @@ public class TransactionService {
 
     public ResponseEntity<Transaction> processTransaction(Transaction transaction) {
 
-        System.out.println("\n\n\n\n\n\n\n\n");
-        System.out.println("Payment : " + transaction.getContaDeOrigem()+ transaction.getTipo());
-        System.out.println("\n\n\n\n\n\n\n\n");
-
-        Transaction created = create(transaction);
-        BigDecimal value = created.getValor();
-        UUID accountDeDestinoId = created.getContaDeDestino().getId();
-        UUID accountDeOrigemId = created.getContaDeOrigem().getId();
-        BigDecimal balanceDeDestino = created.getContaDeOrigem().getBalance();
-        BigDecimal balanceDeOrigem = created.getContaDeDestino().getBalance();
-
-        //Ajustar o saldo das contas envolvidas
-        //o balance de quem envia não está sendo subtraido corretamente
+        logger.debug("Processing {} from account {}", transaction.getTipo(), transaction.getContaDeOrigem());
 
-        if (created.getTipo() == Transaction.TransactionType.PAGAMENTO) {
-            if (balanceDeDestino.compareTo(value) < 0) {
-                return ResponseEntity.badRequest().build();
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            try {
+                validate(transaction);
+            } catch (ResponseStatusException e) {
+                outcome = "rejected";
+                throw e;
             }
-            balanceDeDestino = balanceDeDestino.subtract(value);
-            balanceDeOrigem = balanceDeOrigem.add(value);
-        } else if (created.getTipo() == Transaction.TransactionType.TRANSFERENCIA) {
-            if (balanceDeOrigem.compareTo(value) < 0) {
-                return ResponseEntity.badRequest().build();
+            long stageStart = System.nanoTime();
+            validateTimer.record(stageStart - start, TimeUnit.NANOSECONDS);
+
+            FraudScore fraudScore = fraudScoringService.score(transaction);
+            fraudScoreTimer.record(System.nanoTime() - stageStart, TimeUnit.NANOSECONDS);
+            if (fraudScore.isBlocked()) {
+                outcome = "blocked";
+                logger.info("Transaction blocked by fraud scoring: score={} reasons={}", fraudScore.score(), fraudScore.reasons());
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .header(FraudScoringService.SCORE_HEADER, String.valueOf(fraudScore.score()))
+                        .header(FraudScoringService.DECISION_HEADER, fraudScore.decision().name())
+                        .build();
             }
-            balanceDeOrigem = balanceDeOrigem.subtract(value);
-            balanceDeDestino = balanceDeDestino.add(value);
-        } else if (created.getTipo() == Transaction.TransactionType.DEPOSITO) {
-            if (balanceDeDestino.compareTo(value) < 0) {
-                return ResponseEntity.badRequest().build();
+
+            if (paymentJournal.isPresent()) {
+                // Confirma assim que o registro está no journal; os saldos são ajustados em segundo plano
+                stageStart = System.nanoTime();
+                Transaction accepted = paymentJournal.get().accept(transaction);
+                journalAppendTimer.record(System.nanoTime() - stageStart, TimeUnit.NANOSECONDS);
+                outcome = "accepted";
+                return ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .header(FraudScoringService.SCORE_HEADER, String.valueOf(fraudScore.score()))
+                        .header(FraudScoringService.DECISION_HEADER, fraudScore.decision().name())
+                        .body(responseOf(accepted));
             }
-            balanceDeDestino = balanceDeDestino  .add(value);
-            balanceDeOrigem = balanceDeOrigem.subtract(value);
-        } else {
-            return ResponseEntity.badRequest().build();
-        }
-        // Atualizar o saldo das contas envolvidas
-        Account accountDestinoDto = Account.builder()
-                .id(accountDeDestinoId)
-                .balance(balanceDeDestino)
-                .build();
 
-        Account accountOrigemDto = Account.builder()
-                .id(accountDeOrigemId)
-                .balance(balanceDeOrigem)
-                .build();
+            // Persiste a transação e ajusta os saldos das contas envolvidas numa única transação
+            Transaction created;
+            try {
+                created = accountLedger.post(transaction);
+            } catch (InsufficientFundsException e) {
+                outcome = "insufficient_funds";
+                return ResponseEntity.badRequest()
+                        .header(FraudScoringService.SCORE_HEADER, String.valueOf(fraudScore.score()))
+                        .header(FraudScoringService.DECISION_HEADER, fraudScore.decision().name())
+                        .build();
+            }
+            stageStart = System.nanoTime();
+            fraudScoringService.record(created);
+            fraudRecordTimer.record(System.nanoTime() - stageStart, TimeUnit.NANOSECONDS);
+            outcome = fraudScore.decision() == FraudDecision.REVIEW ? "review" : "success";
 
-        accountService.updateAccount(accountDeDestinoId, accountDestinoDto);
-        accountService.updateAccount(accountDeOrigemId, accountOrigemDto);
+            return ResponseEntity.ok()
+                    .header(FraudScoringService.SCORE_HEADER, String.valueOf(fraudScore.score()))
+                    .header(FraudScoringService.DECISION_HEADER, fraudScore.decision().name())
+                    .body(responseOf(created));
+        } finally {
+            recordOutcome(transaction.getTipo(), outcome, System.nanoTime() - start);
+        }
+    }
 
-        Transaction transactionResponse = Transaction.builder()
-                .id(created.getId())
-                .tipo(created.getTipo())
-                .valor(created.getValor())
-                .dataHora(created.getDataHora())
-                .descricao(created.getDescricao())
+    private static Transaction responseOf(Transaction transaction) {
+        return Transaction.builder()
+                .id(transaction.getId())
+                .tipo(transaction.getTipo())
+                .valor(transaction.getValor())
+                .dataHora(transaction.getDataHora())
+                .descricao(transaction.getDescricao())
                 .build();
-
-        return ResponseEntity.ok(transactionResponse);
     }
 
-        
+    private void recordOutcome(Transaction.TransactionType type, String outcome, long nanos) {
+        Tags tags = Tags.of("type", type == null ? "UNKNOWN" : type.name(), "outcome", outcome);
+        Timer.builder("antifraud.transaction.process")
+                .description("End-to-end payment processing time")
+                .tags(tags)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        Counter.builder("antifraud.transactions")
+                .description("Processed payments by type and outcome")
+                .tags(tags)
+                .register(meterRegistry)
+                .increment();
+    }
 
     private ResponseStatusException conflict(String msg){
         return new ResponseStatusException(HttpStatus.CONFLICT, msg);
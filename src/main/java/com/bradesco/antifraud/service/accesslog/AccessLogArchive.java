@@ -0,0 +1,177 @@
+package com.bradesco.antifraud.service.accesslog;
+
+import com.bradesco.antifraud.dto.AccessLogDto;
+import com.bradesco.antifraud.dto.AccessLogFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzipped NDJSON files holding the access logs of expired partitions, one file per
+ * partition, named after the range it held: {@code access_log_20250601_20250701.ndjson.gz}
+ * ({@code min} for an unbounded start). Rows are written in {@code (timestamp, id)} order.
+ * <p>
+ * Searching reads the files overlapping the requested range, newest first, and stops once
+ * it has enough matches; it is a linear scan meant for investigations, not for traffic.
+ */
+@Component
+public class AccessLogArchive {
+
+    private static final DateTimeFormatter DAY = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final String UNBOUNDED = "min";
+    private static final Pattern FILE_NAME = Pattern.compile("access_log_(\\w+?)_(\\d{8})\\.ndjson\\.gz");
+
+    private record ArchiveFile(Path path, LocalDateTime from, LocalDateTime to) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+
+    public AccessLogArchive(ObjectMapper objectMapper,
+                            @Value("${antifraud.access-log.partitions.archive-dir:data/access-log-archive}") Path directory) {
+        this.objectMapper = objectMapper;
+        this.directory = directory;
+    }
+
+    /**
+     * Writes the rows handed to the consumer given to {@code rows} as the archive of
+     * {@code [from, to)}, replacing any previous one. The file only appears, synced, once
+     * complete, so a crash mid-way leaves no partial archive. Returns the number of rows.
+     */
+    public long write(LocalDateTime from, LocalDateTime to, Consumer<Consumer<AccessLogDto>> rows) throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(fileName(from, to));
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        long[] written = {0};
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            GZIPOutputStream gzip = new GZIPOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+            OutputStream out = new BufferedOutputStream(gzip, 64 * 1024);
+            rows.accept(row -> {
+                try {
+                    out.write(objectMapper.writeValueAsBytes(row));
+                    out.write('\n');
+                    written[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.flush();
+            gzip.finish();
+            channel.force(true);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return written[0];
+    }
+
+    /**
+     * Up to {@code limit} archived logs matching {@code filter}, newest first.
+     */
+    public List<AccessLogDto> search(AccessLogFilter filter, int limit) {
+        List<AccessLogDto> found = new ArrayList<>(limit);
+        for (ArchiveFile file : files(filter)) {
+            // Files are ordered oldest first: keeping the last matches keeps the newest
+            Deque<AccessLogDto> newest = new ArrayDeque<>();
+            int room = limit - found.size();
+            read(file.path(), row -> {
+                if (matches(filter, row)) {
+                    newest.addLast(row);
+                    if (newest.size() > room) {
+                        newest.removeFirst();
+                    }
+                }
+            });
+            newest.descendingIterator().forEachRemaining(found::add);
+            if (found.size() == limit) {
+                break;
+            }
+        }
+        return found;
+    }
+
+    // Archives overlapping the filter's range, newest first; archived ranges never overlap
+    private List<ArchiveFile> files(AccessLogFilter filter) {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.map(AccessLogArchive::parse)
+                    .filter(Objects::nonNull)
+                    .filter(file -> filter.from() == null || file.to().isAfter(filter.from()))
+                    .filter(file -> filter.to() == null || file.from() == null || file.from().isBefore(filter.to()))
+                    .sorted(Comparator.comparing(ArchiveFile::to).reversed())
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list access log archives in " + directory, e);
+        }
+    }
+
+    private void read(Path path, Consumer<AccessLogDto> sink) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(path), 64 * 1024), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    sink.accept(objectMapper.readValue(line, AccessLogDto.class));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read access log archive " + path, e);
+        }
+    }
+
+    private static boolean matches(AccessLogFilter filter, AccessLogDto row) {
+        return (filter.customerId() == null || filter.customerId().equals(row.customerId()))
+                && (filter.from() == null || !row.timestamp().isBefore(filter.from()))
+                && (filter.to() == null || row.timestamp().isBefore(filter.to()))
+                && (filter.action() == null || filter.action().equals(row.action()))
+                && (filter.status() == null || filter.status().equals(row.status()))
+                && (filter.ipAddress() == null || filter.ipAddress().equals(row.ipAddress()))
+                && (filter.sessionId() == null || filter.sessionId().equals(row.sessionId()));
+    }
+
+    static String fileName(LocalDateTime from, LocalDateTime to) {
+        return "access_log_" + (from == null ? UNBOUNDED : DAY.format(from)) + "_" + DAY.format(to) + ".ndjson.gz";
+    }
+
+    private static ArchiveFile parse(Path path) {
+        Matcher name = FILE_NAME.matcher(path.getFileName().toString());
+        if (!name.matches()) {
+            return null;
+        }
+        LocalDateTime from = name.group(1).equals(UNBOUNDED) ? null : LocalDate.parse(name.group(1), DAY).atStartOfDay();
+        return new ArchiveFile(path, from, LocalDate.parse(name.group(2), DAY).atStartOfDay());
+    }
+}
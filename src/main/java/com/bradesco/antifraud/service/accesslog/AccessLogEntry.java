@@ -0,0 +1,60 @@
+package com.bradesco.antifraud.service.accesslog;
+
+import com.bradesco.antifraud.model.AccessLog;
+import com.bradesco.antifraud.model.Customer;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Snapshot of an access, taken on the request thread so nothing from the
+ * {@link HttpServletRequest} is touched once the entry is handed to the writer.
+ * It is also the line format of the spill file.
+ */
+public record AccessLogEntry(
+        UUID customerId,
+        String action,
+        String status,
+        LocalDateTime timestamp,
+        String userAgent,
+        String path,
+        String ipAddress,
+        String sessionId,
+        String httpMethod) {
+
+    public static AccessLogEntry of(UUID customerId, HttpServletRequest request, String action, String status) {
+        HttpSession session = request.getSession(false);
+        String ipAddress = request.getHeader("X-Forwarded-For");
+        if (ipAddress == null) {
+            ipAddress = request.getRemoteAddr();
+        }
+        return new AccessLogEntry(
+                customerId,
+                action,
+                status,
+                LocalDateTime.now(),
+                request.getHeader("User-Agent"),
+                request.getRequestURI(),
+                ipAddress,
+                session != null ? session.getId() : null,
+                request.getMethod());
+    }
+
+    AccessLog toEntity(Customer customer) {
+        return AccessLog.builder()
+                .customer(customer)
+                .userAgent(userAgent)
+                .path(path)
+                .accessTime(timestamp)
+                .action(action)
+                .timestamp(timestamp)
+                .ipAddress(ipAddress)
+                .sessionId(sessionId)
+                .status(status)
+                .httpMethod(httpMethod)
+                .build();
+    }
+}
@@ -0,0 +1,231 @@
+package com.bradesco.antifraud.service.accesslog;
+
+import com.bradesco.antifraud.repository.AccessLogJdbcRepository;
+import com.bradesco.antifraud.repository.AccessLogJdbcRepository.Partition;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps {@code access_log} range-partitioned on {@code timestamp} (PostgreSQL only; a no-op
+ * elsewhere). Partitions for the current period and the next {@code premake} ones are
+ * created ahead of the writes that need them. Once a partition holds nothing younger than
+ * {@code retention}, its rows are written to the {@link AccessLogArchive} and it is detached
+ * and dropped, instead of deleting the rows and leaving the table bloated.
+ * <p>
+ * The conversion of the plain table Hibernate created is not done here but by
+ * {@code db/migration/access_log_partitioning.sql}, run once before enabling this; until
+ * then maintenance only logs that the table is not partitioned.
+ */
+@Component
+public class AccessLogPartitionManager {
+
+    public enum Granularity {
+        DAY(DateTimeFormatter.ofPattern("yyyyMMdd")) {
+            @Override
+            LocalDateTime start(LocalDateTime time) {
+                return time.toLocalDate().atStartOfDay();
+            }
+
+            @Override
+            LocalDateTime next(LocalDateTime start) {
+                return start.plusDays(1);
+            }
+        },
+        MONTH(DateTimeFormatter.ofPattern("yyyyMM")) {
+            @Override
+            LocalDateTime start(LocalDateTime time) {
+                return time.toLocalDate().withDayOfMonth(1).atStartOfDay();
+            }
+
+            @Override
+            LocalDateTime next(LocalDateTime start) {
+                return start.plusMonths(1);
+            }
+        };
+
+        private final DateTimeFormatter suffix;
+
+        Granularity(DateTimeFormatter suffix) {
+            this.suffix = suffix;
+        }
+
+        /** Start of the period containing {@code time}. */
+        abstract LocalDateTime start(LocalDateTime time);
+
+        /** Start of the period after the one starting at {@code start}. */
+        abstract LocalDateTime next(LocalDateTime start);
+
+        String partitionName(LocalDateTime start) {
+            return "access_log_p" + suffix.format(start);
+        }
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(AccessLogPartitionManager.class);
+
+    private final AccessLogJdbcRepository repository;
+    private final AccessLogArchive archive;
+    private final TransactionOperations transactionOperations;
+    private final boolean enabled;
+    private final Granularity granularity;
+    private final int premake;
+    private final Duration retention;
+    private final int fetchSize;
+    private final Counter archivedRows;
+    private final Counter droppedPartitions;
+
+    @Autowired
+    public AccessLogPartitionManager(AccessLogJdbcRepository repository,
+                                     AccessLogArchive archive,
+                                     PlatformTransactionManager transactionManager,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${antifraud.access-log.partitions.enabled:false}") boolean enabled,
+                                     @Value("${antifraud.access-log.partitions.granularity:MONTH}") Granularity granularity,
+                                     @Value("${antifraud.access-log.partitions.premake:3}") int premake,
+                                     @Value("${antifraud.access-log.partitions.retention:P365D}") Duration retention,
+                                     @Value("${antifraud.access-log.partitions.archive-fetch-size:1000}") int fetchSize) {
+        this(repository, archive, new TransactionTemplate(transactionManager), meterRegistry, enabled, granularity,
+                premake, retention, fetchSize);
+    }
+
+    AccessLogPartitionManager(AccessLogJdbcRepository repository,
+                              AccessLogArchive archive,
+                              TransactionOperations transactionOperations,
+                              MeterRegistry meterRegistry,
+                              boolean enabled,
+                              Granularity granularity,
+                              int premake,
+                              Duration retention,
+                              int fetchSize) {
+        this.repository = repository;
+        this.archive = archive;
+        this.transactionOperations = transactionOperations;
+        this.enabled = enabled;
+        this.granularity = granularity;
+        this.premake = premake;
+        this.retention = retention;
+        this.fetchSize = fetchSize;
+        this.archivedRows = Counter.builder("antifraud.access-log.partitions.archived-rows")
+                .description("Access logs written to the archive before their partition was dropped")
+                .register(meterRegistry);
+        this.droppedPartitions = Counter.builder("antifraud.access-log.partitions.dropped")
+                .description("Expired access log partitions detached and dropped")
+                .register(meterRegistry);
+    }
+
+    // Runs before the web server accepts requests, so the current period's partition exists
+    @PostConstruct
+    void start() {
+        if (enabled && !repository.isPostgres()) {
+            logger.info("Access log partitioning needs PostgreSQL; access_log stays a plain table");
+            return;
+        }
+        maintain();
+    }
+
+    @Scheduled(fixedDelayString = "${antifraud.access-log.partitions.maintenance-interval-ms:3600000}",
+            initialDelayString = "${antifraud.access-log.partitions.maintenance-interval-ms:3600000}")
+    public void maintain() {
+        maintain(LocalDateTime.now());
+    }
+
+    void maintain(LocalDateTime now) {
+        if (!enabled || !repository.isPostgres()) {
+            return;
+        }
+        if (!repository.isPartitioned()) {
+            logger.error("access_log is not partitioned: run db/migration/access_log_partitioning.sql before enabling "
+                    + "antifraud.access-log.partitions; no partitions created or dropped");
+            return;
+        }
+        List<Partition> partitions = repository.partitions();
+        createAhead(now, partitions);
+        dropExpired(now, partitions);
+    }
+
+    private void createAhead(LocalDateTime now, List<Partition> partitions) {
+        LocalDateTime start = granularity.start(now);
+        for (int i = 0; i <= premake; i++) {
+            LocalDateTime end = granularity.next(start);
+            createGaps(partitions, start, end);
+            start = end;
+        }
+    }
+
+    // Existing partitions (the legacy one, or ones of another granularity) may already hold part of the period
+    private void createGaps(List<Partition> partitions, LocalDateTime start, LocalDateTime end) {
+        List<Partition> overlapping = partitions.stream()
+                .filter(partition -> (partition.from() == null || partition.from().isBefore(end))
+                        && (partition.to() == null || partition.to().isAfter(start)))
+                .sorted(Comparator.comparing(Partition::from, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .toList();
+        LocalDateTime cursor = start;
+        for (Partition partition : overlapping) {
+            if (partition.from() != null && partition.from().isAfter(cursor)) {
+                create(start, cursor, partition.from());
+            }
+            if (partition.to() == null || !partition.to().isBefore(end)) {
+                return;
+            }
+            if (partition.to().isAfter(cursor)) {
+                cursor = partition.to();
+            }
+        }
+        create(start, cursor, end);
+    }
+
+    private void create(LocalDateTime periodStart, LocalDateTime from, LocalDateTime to) {
+        // A gap that does not start the period is named after its first day
+        String name = from.equals(periodStart) ? granularity.partitionName(from) : Granularity.DAY.partitionName(from);
+        repository.createPartition(name, from, to);
+        logger.info("Created access log partition {} [{}, {})", name, from, to);
+    }
+
+    // Oldest first, so a failure leaves the archived history without gaps
+    private void dropExpired(LocalDateTime now, List<Partition> partitions) {
+        LocalDateTime cutoff = now.minus(retention);
+        List<Partition> expired = partitions.stream()
+                .filter(partition -> partition.to() != null && !partition.to().isAfter(cutoff))
+                .sorted(Comparator.comparing(Partition::to))
+                .toList();
+        for (Partition partition : expired) {
+            long rows;
+            try {
+                rows = transactionOperations.execute(status -> {
+                    try {
+                        return archive.write(partition.from(), partition.to(),
+                                sink -> repository.streamPartition(partition.name(), fetchSize, sink));
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+            } catch (RuntimeException e) {
+                logger.warn("Could not archive access log partition {}, keeping it: {}", partition.name(), e.getMessage());
+                return;
+            }
+            transactionOperations.executeWithoutResult(status -> repository.dropPartition(partition.name()));
+            archivedRows.increment(rows);
+            droppedPartitions.increment();
+            logger.info("Archived {} access logs from partition {} and dropped it", rows, partition.name());
+        }
+    }
+}
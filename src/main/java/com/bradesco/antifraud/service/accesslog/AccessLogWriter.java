@@ -0,0 +1,421 @@
+package com.bradesco.antifraud.service.accesslog;
+
+import com.bradesco.antifraud.model.AccessLog;
+import com.bradesco.antifraud.repository.AccessLogRepository;
+import com.bradesco.antifraud.repository.CustomerRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Writes access logs off the request path. Entries go into a bounded queue and a single
+ * background thread persists them in batches, flushing when a batch is full or the flush
+ * interval elapses. Customers are attached as reference proxies, so no customer row is read.
+ * <p>
+ * When the queue is full the {@link OverflowPolicy} decides what happens to the entry.
+ * Spilled entries are appended to a local NDJSON file and replayed by the writer once the
+ * queue has room again (or on the next start). A replay stops at the first entry the
+ * database fails to take, keeps that entry and the rest in the replay file and is retried
+ * after a backoff that doubles on every failure, or as soon as a live batch is written. On
+ * shutdown the queue is drained before the data source goes away.
+ */
+@Component
+public class AccessLogWriter {
+
+    public enum OverflowPolicy {
+        /** Wait up to the block timeout for room in the queue, then drop. */
+        BLOCK,
+        /** Drop the entry and count it. */
+        DROP,
+        /** Append the entry to the spill file. */
+        SPILL
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(AccessLogWriter.class);
+
+    private final AccessLogRepository repository;
+    private final CustomerRepository customerRepository;
+    private final TransactionOperations transactionOperations;
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<AccessLogEntry> queue;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long blockTimeoutMillis;
+    private final long shutdownTimeoutMillis;
+    private final long replayBackoffMillis;
+    private final long replayBackoffMaxMillis;
+    private final boolean virtualThreads;
+    private final OverflowPolicy overflowPolicy;
+    private final Path spillFile;
+    private final Path replayFile;
+    private final ReentrantLock spillLock = new ReentrantLock();
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread worker;
+    // Only touched by the writer thread
+    private long replayDelayMillis;
+    private long replayNotBefore = System.nanoTime();
+
+    @Autowired
+    public AccessLogWriter(AccessLogRepository repository,
+                           CustomerRepository customerRepository,
+                           PlatformTransactionManager transactionManager,
+                           ObjectMapper objectMapper,
+                           @Value("${antifraud.access-log.queue-capacity:10000}") int capacity,
+                           @Value("${antifraud.access-log.batch-size:200}") int batchSize,
+                           @Value("${antifraud.access-log.flush-interval-ms:200}") long flushIntervalMillis,
+                           @Value("${antifraud.access-log.overflow-policy:SPILL}") OverflowPolicy overflowPolicy,
+                           @Value("${antifraud.access-log.spill-file:data/access-log-spill.ndjson}") Path spillFile,
+                           @Value("${antifraud.access-log.block-timeout-ms:1000}") long blockTimeoutMillis,
+                           @Value("${antifraud.access-log.shutdown-timeout-ms:10000}") long shutdownTimeoutMillis,
+                           @Value("${antifraud.access-log.replay-backoff-ms:1000}") long replayBackoffMillis,
+                           @Value("${antifraud.access-log.replay-backoff-max-ms:60000}") long replayBackoffMaxMillis,
+                           @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this(repository, customerRepository, new TransactionTemplate(transactionManager), objectMapper, capacity,
+                batchSize, flushIntervalMillis, overflowPolicy, spillFile, blockTimeoutMillis, shutdownTimeoutMillis,
+                replayBackoffMillis, replayBackoffMaxMillis, virtualThreads);
+    }
+
+    AccessLogWriter(AccessLogRepository repository,
+                    CustomerRepository customerRepository,
+                    TransactionOperations transactionOperations,
+                    ObjectMapper objectMapper,
+                    int capacity,
+                    int batchSize,
+                    long flushIntervalMillis,
+                    OverflowPolicy overflowPolicy,
+                    Path spillFile,
+                    long blockTimeoutMillis,
+                    long shutdownTimeoutMillis,
+                    long replayBackoffMillis,
+                    long replayBackoffMaxMillis,
+                    boolean virtualThreads) {
+        this.repository = repository;
+        this.customerRepository = customerRepository;
+        this.transactionOperations = transactionOperations;
+        this.objectMapper = objectMapper;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.overflowPolicy = overflowPolicy;
+        this.spillFile = spillFile;
+        this.replayFile = spillFile.resolveSibling(spillFile.getFileName() + ".replay");
+        this.blockTimeoutMillis = blockTimeoutMillis;
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+        this.replayBackoffMillis = replayBackoffMillis;
+        this.replayBackoffMaxMillis = replayBackoffMaxMillis;
+        this.virtualThreads = virtualThreads;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        // Follows the application's execution mode; both kinds are daemon threads
+        Thread.Builder builder = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform().daemon();
+        worker = builder.name("access-log-writer").start(this::run);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (worker == null) {
+            return;
+        }
+        worker.join(shutdownTimeoutMillis);
+        if (worker.isAlive()) {
+            logger.warn("Access log writer did not drain within {} ms, {} entries pending", shutdownTimeoutMillis, queue.size());
+        }
+    }
+
+    /**
+     * Hands an entry to the writer without touching the database. Entries without a
+     * customer cannot be stored (the column is mandatory) and are skipped.
+     */
+    public void enqueue(AccessLogEntry entry) {
+        if (entry.customerId() == null) {
+            logger.debug("Skipping access log without customer: {} {}", entry.action(), entry.status());
+            return;
+        }
+        if (running && queue.offer(entry)) {
+            return;
+        }
+        switch (overflowPolicy) {
+            case BLOCK -> block(entry);
+            case DROP -> drop(entry);
+            case SPILL -> spill(entry);
+        }
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    public long written() {
+        return written.get();
+    }
+
+    public long dropped() {
+        return dropped.get();
+    }
+
+    public long spilled() {
+        return spilled.get();
+    }
+
+    private void run() {
+        List<AccessLogEntry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+            if (running && overflowPolicy == OverflowPolicy.SPILL && queue.size() < capacity / 2
+                    && System.nanoTime() - replayNotBefore >= 0) {
+                replaySpill();
+            }
+        }
+    }
+
+    // Fills the batch until it is full or the flush interval since the call has elapsed
+    private void collect(List<AccessLogEntry> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize) {
+            AccessLogEntry entry = queue.poll(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+            if (entry == null) {
+                return;
+            }
+            batch.add(entry);
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+    }
+
+    private void write(List<AccessLogEntry> batch) {
+        try {
+            writeBatch(batch);
+            // The database takes writes again: no reason to keep a replay waiting
+            replayNotBefore = System.nanoTime();
+        } catch (RuntimeException e) {
+            logger.warn("Access log batch of {} entries failed, retrying one by one: {}", batch.size(), e.getMessage());
+            for (AccessLogEntry entry : batch) {
+                if (!writeOne(entry)) {
+                    if (overflowPolicy == OverflowPolicy.SPILL) {
+                        spill(entry);
+                    } else {
+                        drop(entry);
+                    }
+                }
+            }
+        }
+    }
+
+    private void writeBatch(List<AccessLogEntry> batch) {
+        transactionOperations.executeWithoutResult(status -> repository.saveAll(batch.stream().map(this::toEntity).toList()));
+        written.addAndGet(batch.size());
+    }
+
+    // False when the entry could not be written and may be retried
+    private boolean writeOne(AccessLogEntry entry) {
+        try {
+            transactionOperations.executeWithoutResult(status -> repository.save(toEntity(entry)));
+            written.incrementAndGet();
+        } catch (DataIntegrityViolationException e) {
+            // Unknown customer: retrying can never succeed
+            dropped.incrementAndGet();
+            logger.warn("Discarding access log {} for customer {}: {}", entry.action(), entry.customerId(), e.getMostSpecificCause().getMessage());
+        } catch (RuntimeException e) {
+            return false;
+        }
+        return true;
+    }
+
+    private AccessLog toEntity(AccessLogEntry entry) {
+        return entry.toEntity(customerRepository.getReferenceById(entry.customerId()));
+    }
+
+    private void block(AccessLogEntry entry) {
+        try {
+            if (running && queue.offer(entry, blockTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drop(entry);
+    }
+
+    private void drop(AccessLogEntry entry) {
+        long count = dropped.incrementAndGet();
+        if (count == 1 || count % 1000 == 0) {
+            logger.warn("Access log queue full, {} entries dropped so far (last: {} {})", count, entry.action(), entry.status());
+        }
+    }
+
+    private void spill(AccessLogEntry entry) {
+        spillLock.lock();
+        try {
+            Path parent = spillFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.writeString(spillFile, objectMapper.writeValueAsString(entry) + "\n",
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            spilled.incrementAndGet();
+        } catch (IOException e) {
+            logger.warn("Could not spill access log to {}: {}", spillFile, e.getMessage());
+            drop(entry);
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    // The spill file is renamed before replay so producers can keep appending to a fresh one
+    private void replaySpill() {
+        if (!Files.exists(replayFile)) {
+            spillLock.lock();
+            try {
+                if (!Files.exists(spillFile)) {
+                    return;
+                }
+                Files.move(spillFile, replayFile, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                logger.warn("Could not rotate access log spill file {}: {}", spillFile, e.getMessage());
+                return;
+            } finally {
+                spillLock.unlock();
+            }
+        }
+
+        int replayed = 0;
+        List<AccessLogEntry> batch = new ArrayList<>(batchSize);
+        List<String> lines = new ArrayList<>(batchSize);
+        Path remaining = replayFile.resolveSibling(replayFile.getFileName() + ".tmp");
+        boolean failed = false;
+        try (BufferedReader reader = Files.newBufferedReader(replayFile)) {
+            boolean end = false;
+            while (!end && !failed) {
+                String line = reader.readLine();
+                end = line == null;
+                if (!end) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        batch.add(objectMapper.readValue(line, AccessLogEntry.class));
+                        lines.add(line);
+                    } catch (JsonProcessingException e) {
+                        logger.warn("Skipping unreadable spilled access log: {}", e.getOriginalMessage());
+                        continue;
+                    }
+                    if (batch.size() < batchSize) {
+                        continue;
+                    }
+                }
+                int stored = replay(batch);
+                replayed += stored;
+                if (stored < batch.size()) {
+                    keep(lines.subList(stored, lines.size()), reader, remaining);
+                    failed = true;
+                }
+                batch.clear();
+                lines.clear();
+            }
+        } catch (IOException e) {
+            logger.warn("Could not replay access log spill file {}: {}", replayFile, e.getMessage());
+            backOffReplay();
+            return;
+        }
+
+        try {
+            if (failed) {
+                Files.move(remaining, replayFile, StandardCopyOption.REPLACE_EXISTING);
+                backOffReplay();
+                logger.warn("Replayed {} spilled access logs before the database failed, retrying the rest in {} ms",
+                        replayed, replayDelayMillis);
+            } else {
+                Files.delete(replayFile);
+                replayDelayMillis = 0;
+                logger.info("Replayed {} spilled access logs", replayed);
+            }
+        } catch (IOException e) {
+            // The whole file is replayed again, entries already written included
+            logger.warn("Could not update access log replay file {}: {}", replayFile, e.getMessage());
+            backOffReplay();
+        }
+    }
+
+    // Writes replayed entries; returns how many from the start of the batch are done with,
+    // stopping at the first one the database failed to take for another reason than an
+    // unknown customer, so nothing is spilled again while the database is down
+    private int replay(List<AccessLogEntry> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        try {
+            writeBatch(batch);
+            return batch.size();
+        } catch (RuntimeException e) {
+            for (int i = 0; i < batch.size(); i++) {
+                if (!writeOne(batch.get(i))) {
+                    return i;
+                }
+            }
+            return batch.size();
+        }
+    }
+
+    // Writes the lines not replayed yet, and the rest of the reader, to the file that replaces the replay file
+    private static void keep(List<String> unreplayed, BufferedReader rest, Path remaining) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(remaining)) {
+            for (String line : unreplayed) {
+                writer.write(line);
+                writer.newLine();
+            }
+            rest.transferTo(writer);
+        }
+    }
+
+    private void backOffReplay() {
+        replayDelayMillis = replayDelayMillis == 0 ? replayBackoffMillis
+                : Math.min(replayDelayMillis * 2, replayBackoffMaxMillis);
+        replayNotBefore = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(replayDelayMillis);
+    }
+}
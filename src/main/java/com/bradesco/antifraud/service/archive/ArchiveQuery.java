@@ -0,0 +1,34 @@
+package com.bradesco.antifraud.service.archive;
+
+import com.bradesco.antifraud.model.Transaction.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * An aggregation over archived transactions. {@code null} (or empty) criteria do not filter;
+ * {@code from} is inclusive, {@code to} exclusive, and both amount bounds inclusive.
+ * <p>
+ * A transaction's account is its origin account, or its destination when it has no
+ * origin (deposits); {@code agency} and {@link GroupBy#AGENCY} use that account's agency,
+ * while {@code accountId} matches either side.
+ */
+public record ArchiveQuery(LocalDateTime from, LocalDateTime to, Set<TransactionType> tipos, UUID accountId,
+                           String agency, BigDecimal minValor, BigDecimal maxValor, GroupBy groupBy) {
+
+    public enum GroupBy {
+        NONE,
+        TIPO,
+        AGENCY,
+        DAY,
+        MONTH,
+        /** Decades of the amount: [0.01, 0.10), [0.10, 1.00), [1.00, 10.00)... */
+        AMOUNT_RANGE
+    }
+
+    public static ArchiveQuery all(GroupBy groupBy) {
+        return new ArchiveQuery(null, null, null, null, null, null, null, groupBy);
+    }
+}
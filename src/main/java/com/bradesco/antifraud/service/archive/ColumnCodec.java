@@ -0,0 +1,134 @@
+package com.bradesco.antifraud.service.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encodings shared by the archive writer and reader. Integers are zigzag varints, so small
+ * magnitudes (deltas, dictionary codes, cents) take one or two bytes; every column block is
+ * then deflated at the fastest level, which mostly squeezes out repeated varint patterns.
+ */
+final class ColumnCodec {
+
+    private ColumnCodec() {
+    }
+
+    /**
+     * Growable byte sink for one column block.
+     */
+    static final class Block {
+        private byte[] bytes = new byte[4096];
+        private int size;
+
+        void writeByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            bytes[size++] = (byte) zigzag;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        byte[] deflate() {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(bytes, 0, size);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, size / 2));
+                byte[] chunk = new byte[16 * 1024];
+                while (!deflater.finished()) {
+                    out.write(chunk, 0, deflater.deflate(chunk));
+                }
+                return out.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        private void ensure(int more) {
+            if (size + more > bytes.length) {
+                byte[] grown = new byte[Math.max(bytes.length * 2, size + more)];
+                System.arraycopy(bytes, 0, grown, 0, size);
+                bytes = grown;
+            }
+        }
+    }
+
+    /**
+     * Inflates a column block of {@code rawLength} bytes read from {@code source}.
+     */
+    static byte[] inflate(ByteBuffer source, int rawLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(source);
+            byte[] raw = new byte[rawLength];
+            int read = 0;
+            while (read < rawLength) {
+                int n = inflater.inflate(raw, read, rawLength - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IllegalStateException("Truncated archive column: " + read + " of " + rawLength + " bytes");
+                }
+                read += n;
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt archive column", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Decodes {@code count} zigzag varints from {@code bytes}; with {@code delta}, each value
+     * is added to the previous one (a running sum).
+     */
+    static void readVarLongs(byte[] bytes, long[] into, int count, boolean delta) {
+        int position = 0;
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            long value = (zigzag >>> 1) ^ -(zigzag & 1);
+            previous = delta ? previous + value : value;
+            into[i] = previous;
+        }
+    }
+
+    static void readVarInts(byte[] bytes, int[] into, int count) {
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            int zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                zigzag |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            into[i] = (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.bradesco.antifraud.service.archive;
+
+import com.bradesco.antifraud.model.Transaction.TransactionType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * One archived period of transactions, stored column by column.
+ * <p>
+ * Layout: {@code MAGIC | segment* | footer | footerOffset (8) | footerLength (4) | MAGIC}.
+ * A segment holds up to {@value TransactionArchiveWriter#SEGMENT_ROWS} consecutive rows as
+ * one deflated block per {@link Column}:
+ * <ul>
+ *   <li>{@code TIMESTAMP}: microseconds since the epoch, delta-encoded varints</li>
+ *   <li>{@code TIPO}: one dictionary code (byte) per row</li>
+ *   <li>{@code ORIGIN}, {@code DESTINATION}: varint codes into the file's account dictionary, 0 for none</li>
+ *   <li>{@code AMOUNT}: fixed-point cents as varints</li>
+ * </ul>
+ * The footer holds the tipo and agency dictionaries, the account dictionary with each
+ * account's agency, and per segment its offset, block sizes and zone map (time range,
+ * amount range, tipos present), which lets a scan skip whole segments without reading them.
+ * <p>
+ * Instances are immutable once opened and safe to read from several threads: blocks are
+ * read with positional reads.
+ */
+final class TransactionArchiveFile implements AutoCloseable {
+
+    enum Column {
+        TIMESTAMP, TIPO, ORIGIN, DESTINATION, AMOUNT
+    }
+
+    static final byte[] MAGIC = {'T', 'X', 'A', 'R', 'C', 'H', '0', '1'};
+    static final int VERSION = 1;
+    static final int SCALE = 2;
+    static final int TRAILER_SIZE = 8 + 4 + 8;
+
+    record Segment(int index, long offset, int rows, long minMicros, long maxMicros, long minCents, long maxCents,
+                   int tipoMask, long[] columnOffsets, int[] compressed, int[] raw) {
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long fromMicros;
+    private final long toMicros;
+    private final long rows;
+    // File tipo code -> current TransactionType ordinal, -1 if the type no longer exists
+    private final int[] tipoOrdinals;
+    private final String[] agencies;
+    // Indexed by account code (0 = none)
+    private final UUID[] accounts;
+    private final int[] accountAgencies;
+    private final List<Segment> segments;
+    private volatile Map<UUID, Integer> accountCodes;
+
+    private TransactionArchiveFile(Path path, FileChannel channel, ByteBuffer footer) {
+        this.path = path;
+        this.channel = channel;
+        int version = footer.getInt();
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported archive version " + version + " in " + path);
+        }
+        this.fromMicros = footer.getLong();
+        this.toMicros = footer.getLong();
+        this.rows = footer.getLong();
+        int scale = footer.getInt();
+        if (scale != SCALE) {
+            throw new IllegalStateException("Unsupported amount scale " + scale + " in " + path);
+        }
+
+        this.tipoOrdinals = new int[footer.getInt()];
+        for (int i = 0; i < tipoOrdinals.length; i++) {
+            String name = readUtf(footer);
+            tipoOrdinals[i] = Arrays.stream(TransactionType.values())
+                    .filter(type -> type.name().equals(name))
+                    .mapToInt(TransactionType::ordinal)
+                    .findFirst()
+                    .orElse(-1);
+        }
+
+        this.agencies = new String[footer.getInt()];
+        for (int i = 0; i < agencies.length; i++) {
+            agencies[i] = readUtf(footer);
+        }
+
+        int accountCount = footer.getInt();
+        this.accounts = new UUID[accountCount + 1];
+        this.accountAgencies = new int[accountCount + 1];
+        accountAgencies[0] = -1;
+        for (int code = 1; code <= accountCount; code++) {
+            accounts[code] = new UUID(footer.getLong(), footer.getLong());
+            accountAgencies[code] = footer.getInt();
+        }
+
+        int columns = Column.values().length;
+        Segment[] read = new Segment[footer.getInt()];
+        for (int s = 0; s < read.length; s++) {
+            long offset = footer.getLong();
+            int segmentRows = footer.getInt();
+            long minMicros = footer.getLong();
+            long maxMicros = footer.getLong();
+            long minCents = footer.getLong();
+            long maxCents = footer.getLong();
+            int tipoMask = footer.getInt();
+            long[] columnOffsets = new long[columns];
+            int[] compressed = new int[columns];
+            int[] raw = new int[columns];
+            long next = offset;
+            for (int c = 0; c < columns; c++) {
+                compressed[c] = footer.getInt();
+                raw[c] = footer.getInt();
+                columnOffsets[c] = next;
+                next += compressed[c];
+            }
+            read[s] = new Segment(s, offset, segmentRows, minMicros, maxMicros, minCents, maxCents,
+                    remapMask(tipoMask), columnOffsets, compressed, raw);
+        }
+        this.segments = List.of(read);
+    }
+
+    static TransactionArchiveFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < MAGIC.length + TRAILER_SIZE) {
+                throw new IllegalStateException("Not a transaction archive: " + path);
+            }
+            ByteBuffer trailer = readFully(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+            long footerOffset = trailer.getLong();
+            int footerLength = trailer.getInt();
+            byte[] magic = new byte[MAGIC.length];
+            trailer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IllegalStateException("Not a transaction archive (or not completely written): " + path);
+            }
+            return new TransactionArchiveFile(path, channel, readFully(channel, footerOffset, footerLength));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    static long toMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000), (int) Math.floorMod(micros, 1_000_000) * 1_000,
+                ZoneOffset.UTC);
+    }
+
+    Path path() {
+        return path;
+    }
+
+    long fromMicros() {
+        return fromMicros;
+    }
+
+    long toMicros() {
+        return toMicros;
+    }
+
+    long rows() {
+        return rows;
+    }
+
+    List<Segment> segments() {
+        return segments;
+    }
+
+    String[] agencies() {
+        return agencies;
+    }
+
+    /**
+     * Agency code of each account code, {@code -1} when unknown.
+     */
+    int[] accountAgencies() {
+        return accountAgencies;
+    }
+
+    /**
+     * Code of the account in this file's dictionary, or {@code -1} if it never appears.
+     */
+    int accountCode(UUID account) {
+        Map<UUID, Integer> codes = accountCodes;
+        if (codes == null) {
+            codes = new HashMap<>(accounts.length * 2);
+            for (int code = 1; code < accounts.length; code++) {
+                codes.put(accounts[code], code);
+            }
+            accountCodes = codes;
+        }
+        return codes.getOrDefault(account, -1);
+    }
+
+    int agencyCode(String agency) {
+        for (int i = 0; i < agencies.length; i++) {
+            if (agencies[i].equals(agency)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    long[] micros(Segment segment) {
+        long[] values = new long[segment.rows()];
+        ColumnCodec.readVarLongs(column(segment, Column.TIMESTAMP), values, segment.rows(), true);
+        return values;
+    }
+
+    long[] cents(Segment segment) {
+        long[] values = new long[segment.rows()];
+        ColumnCodec.readVarLongs(column(segment, Column.AMOUNT), values, segment.rows(), false);
+        return values;
+    }
+
+    /**
+     * Tipo of each row as a current {@link TransactionType} ordinal ({@code -1} if unknown).
+     */
+    int[] tipos(Segment segment) {
+        byte[] codes = column(segment, Column.TIPO);
+        int[] values = new int[segment.rows()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = tipoOrdinals[codes[i]];
+        }
+        return values;
+    }
+
+    int[] accountCodes(Segment segment, Column column) {
+        int[] values = new int[segment.rows()];
+        ColumnCodec.readVarInts(column(segment, column), values, segment.rows());
+        return values;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private byte[] column(Segment segment, Column column) {
+        int c = column.ordinal();
+        try {
+            return ColumnCodec.inflate(readFully(channel, segment.columnOffsets()[c], segment.compressed()[c]), segment.raw()[c]);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + column + " of segment " + segment.index() + " in " + path, e);
+        }
+    }
+
+    private int remapMask(int fileMask) {
+        int mask = 0;
+        for (int code = 0; code < tipoOrdinals.length; code++) {
+            if ((fileMask & (1 << code)) != 0 && tipoOrdinals[code] >= 0) {
+                mask |= 1 << tipoOrdinals[code];
+            }
+        }
+        return mask;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IllegalStateException("Unexpected end of archive at " + (position + buffer.position()));
+            }
+        }
+        return buffer.flip();
+    }
+
+    // DataOutputStream.writeUTF framing: unsigned short length, then modified UTF-8 (plain UTF-8 for these names)
+    private static String readUtf(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,408 @@
+package com.bradesco.antifraud.service.archive;
+
+import com.bradesco.antifraud.dto.TransactionArchiveSummary;
+import com.bradesco.antifraud.model.Transaction.TransactionType;
+import com.bradesco.antifraud.service.archive.ArchiveQuery.GroupBy;
+import com.bradesco.antifraud.service.archive.TransactionArchiveFile.Column;
+import com.bradesco.antifraud.service.archive.TransactionArchiveFile.Segment;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregates archived transactions without touching the database.
+ * <p>
+ * Each segment is a task on a pool of scan threads. Predicates are pushed down twice:
+ * files whose period, account dictionary or agencies cannot match are never read, and
+ * segments whose zone map excludes the query are skipped from the footer alone; a segment
+ * the zone map shows to match entirely is aggregated without evaluating that predicate.
+ * Inside a segment only the needed columns are inflated, each into a primitive array, and
+ * predicates narrow a selection vector one column at a time before a single aggregation
+ * loop over the survivors. Tasks return small per-group partials that are merged at the end.
+ */
+@Component
+public class TransactionArchiveScanner {
+
+    private static final long DAY_MICROS = TimeUnit.DAYS.toMicros(1);
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private record GroupKey(long order, String label) {
+    }
+
+    private static final class Totals {
+        long count;
+        long sum;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+
+        void merge(Totals other) {
+            count += other.count;
+            sum += other.sum;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+    }
+
+    private record Partial(Map<GroupKey, Totals> groups, long rowsScanned, long rowsMatched) {
+    }
+
+    // Query criteria resolved against one file's dictionaries
+    private record Bound(TransactionArchiveFile file, long fromMicros, long toMicros, int tipoMask,
+                         int accountCode, int agencyCode, long minCents, long maxCents) {
+    }
+
+    private final ThreadPoolExecutor scanners;
+
+    public TransactionArchiveScanner(@Value("${antifraud.archive.scan-threads:0}") int threads) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.scanners = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                Thread.ofPlatform().name("archive-scan-", 0).daemon().factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scanners.shutdownNow();
+    }
+
+    TransactionArchiveSummary scan(List<TransactionArchiveFile> files, ArchiveQuery query) {
+        long start = System.nanoTime();
+        GroupBy groupBy = query.groupBy() == null ? GroupBy.NONE : query.groupBy();
+        List<CompletableFuture<Partial>> tasks = new ArrayList<>();
+        int filesScanned = 0;
+        int skipped = 0;
+        for (TransactionArchiveFile file : files) {
+            Bound bound = bind(file, query);
+            if (bound == null) {
+                skipped += file.segments().size();
+                continue;
+            }
+            filesScanned++;
+            for (Segment segment : file.segments()) {
+                if (excluded(bound, segment)) {
+                    skipped++;
+                } else {
+                    tasks.add(CompletableFuture.supplyAsync(() -> scan(bound, segment, groupBy), scanners));
+                }
+            }
+        }
+
+        Map<GroupKey, Totals> groups = new HashMap<>();
+        long rowsScanned = 0;
+        long rowsMatched = 0;
+        for (CompletableFuture<Partial> task : tasks) {
+            Partial partial = task.join();
+            partial.groups().forEach((key, totals) -> groups.computeIfAbsent(key, k -> new Totals()).merge(totals));
+            rowsScanned += partial.rowsScanned();
+            rowsMatched += partial.rowsMatched();
+        }
+        List<TransactionArchiveSummary.Group> result = groups.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(Comparator.comparingLong(GroupKey::order).thenComparing(GroupKey::label)))
+                .map(entry -> group(entry.getKey().label(), entry.getValue()))
+                .toList();
+        return new TransactionArchiveSummary(groupBy.name(), result, new TransactionArchiveSummary.Scan(filesScanned,
+                tasks.size(), skipped, rowsScanned, rowsMatched, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
+
+    // null when nothing in the file can match
+    private static Bound bind(TransactionArchiveFile file, ArchiveQuery query) {
+        long from = query.from() == null ? Long.MIN_VALUE : TransactionArchiveFile.toMicros(query.from());
+        long to = query.to() == null ? Long.MAX_VALUE : TransactionArchiveFile.toMicros(query.to());
+        if (file.toMicros() <= from || file.fromMicros() >= to) {
+            return null;
+        }
+        int tipoMask = -1;
+        if (query.tipos() != null && !query.tipos().isEmpty()) {
+            tipoMask = 0;
+            for (TransactionType tipo : query.tipos()) {
+                tipoMask |= 1 << tipo.ordinal();
+            }
+        }
+        int accountCode = -1;
+        if (query.accountId() != null && (accountCode = file.accountCode(query.accountId())) < 0) {
+            return null;
+        }
+        int agencyCode = -1;
+        if (query.agency() != null && (agencyCode = file.agencyCode(query.agency())) < 0) {
+            return null;
+        }
+        long minCents = query.minValor() == null ? Long.MIN_VALUE : ceilCents(query.minValor());
+        long maxCents = query.maxValor() == null ? Long.MAX_VALUE : floorCents(query.maxValor());
+        return new Bound(file, from, to, tipoMask, accountCode, agencyCode, minCents, maxCents);
+    }
+
+    private static boolean excluded(Bound bound, Segment segment) {
+        return segment.maxMicros() < bound.fromMicros() || segment.minMicros() >= bound.toMicros()
+                || (segment.tipoMask() & bound.tipoMask()) == 0
+                || segment.maxCents() < bound.minCents() || segment.minCents() > bound.maxCents();
+    }
+
+    private static Partial scan(Bound bound, Segment segment, GroupBy groupBy) {
+        TransactionArchiveFile file = bound.file();
+        int n = segment.rows();
+        int[] selection = new int[n];
+        for (int i = 0; i < n; i++) {
+            selection[i] = i;
+        }
+
+        long[] micros = null;
+        if (segment.minMicros() < bound.fromMicros() || segment.maxMicros() >= bound.toMicros()) {
+            micros = file.micros(segment);
+            n = selectRange(micros, bound.fromMicros(), bound.toMicros() - 1, selection, n);
+        }
+        if ((segment.tipoMask() & ~bound.tipoMask()) != 0) {
+            n = selectMask(file.tipos(segment), bound.tipoMask(), selection, n);
+        }
+        long[] cents = file.cents(segment);
+        if (segment.minCents() < bound.minCents() || segment.maxCents() > bound.maxCents()) {
+            n = selectRange(cents, bound.minCents(), bound.maxCents(), selection, n);
+        }
+        int[] accounts = null;
+        if (bound.accountCode() > 0) {
+            int[] origins = file.accountCodes(segment, Column.ORIGIN);
+            int[] destinations = file.accountCodes(segment, Column.DESTINATION);
+            n = selectEither(origins, destinations, bound.accountCode(), selection, n);
+            accounts = owners(origins, destinations);
+        }
+        if (bound.agencyCode() >= 0 || groupBy == GroupBy.AGENCY) {
+            if (accounts == null) {
+                accounts = owners(file.accountCodes(segment, Column.ORIGIN), file.accountCodes(segment, Column.DESTINATION));
+            }
+            int[] agencyOf = file.accountAgencies();
+            for (int i = 0; i < accounts.length; i++) {
+                accounts[i] = agencyOf[accounts[i]];
+            }
+            if (bound.agencyCode() >= 0) {
+                n = selectEqual(accounts, bound.agencyCode(), selection, n);
+            }
+        }
+        if (n == 0) {
+            return new Partial(Map.of(), segment.rows(), 0);
+        }
+
+        // Group keys are dense ints local to this segment, labelled once at the end
+        int[] keys = null;
+        String[] labels;
+        long[] orders;
+        switch (groupBy) {
+            case NONE -> {
+                labels = new String[]{"all"};
+                orders = new long[]{0};
+            }
+            case TIPO -> {
+                keys = file.tipos(segment);
+                TransactionType[] types = TransactionType.values();
+                // A tipo the enum no longer has (-1) goes to the last slot
+                for (int k = 0; k < n; k++) {
+                    if (keys[selection[k]] < 0) {
+                        keys[selection[k]] = types.length;
+                    }
+                }
+                labels = new String[types.length + 1];
+                orders = new long[labels.length];
+                for (int t = 0; t < labels.length; t++) {
+                    labels[t] = t < types.length ? types[t].name() : "unknown";
+                    orders[t] = t;
+                }
+            }
+            case AGENCY -> {
+                String[] agencies = file.agencies();
+                keys = accounts;
+                // Unknown agency (-1) goes to the last slot
+                for (int k = 0; k < n; k++) {
+                    if (keys[selection[k]] < 0) {
+                        keys[selection[k]] = agencies.length;
+                    }
+                }
+                labels = new String[agencies.length + 1];
+                System.arraycopy(agencies, 0, labels, 0, agencies.length);
+                labels[agencies.length] = "unknown";
+                orders = new long[labels.length];
+            }
+            case DAY, MONTH -> {
+                if (micros == null) {
+                    micros = file.micros(segment);
+                }
+                long firstDay = Math.floorDiv(segment.minMicros(), DAY_MICROS);
+                int days = (int) (Math.floorDiv(segment.maxMicros(), DAY_MICROS) - firstDay + 1);
+                keys = new int[segment.rows()];
+                for (int k = 0; k < n; k++) {
+                    int i = selection[k];
+                    keys[i] = (int) (Math.floorDiv(micros[i], DAY_MICROS) - firstDay);
+                }
+                labels = new String[days];
+                orders = new long[days];
+                for (int d = 0; d < days; d++) {
+                    LocalDate day = LocalDate.ofEpochDay(firstDay + d);
+                    labels[d] = groupBy == GroupBy.DAY ? day.toString() : YearMonth.from(day).toString();
+                    orders[d] = groupBy == GroupBy.DAY ? day.toEpochDay() : YearMonth.from(day).atDay(1).toEpochDay();
+                }
+            }
+            case AMOUNT_RANGE -> {
+                keys = new int[segment.rows()];
+                for (int k = 0; k < n; k++) {
+                    int i = selection[k];
+                    keys[i] = digits(cents[i]);
+                }
+                labels = new String[POWERS_OF_TEN.length + 1];
+                orders = new long[labels.length];
+                for (int d = 0; d < labels.length; d++) {
+                    labels[d] = amountRange(d);
+                    orders[d] = d;
+                }
+            }
+            default -> throw new IllegalArgumentException("Unsupported grouping " + groupBy);
+        }
+
+        int groups = labels.length;
+        long[] count = new long[groups];
+        long[] sum = new long[groups];
+        long[] min = new long[groups];
+        long[] max = new long[groups];
+        Arrays.fill(min, Long.MAX_VALUE);
+        Arrays.fill(max, Long.MIN_VALUE);
+        for (int k = 0; k < n; k++) {
+            int i = selection[k];
+            int g = keys == null ? 0 : keys[i];
+            long value = cents[i];
+            count[g]++;
+            sum[g] += value;
+            if (value < min[g]) {
+                min[g] = value;
+            }
+            if (value > max[g]) {
+                max[g] = value;
+            }
+        }
+
+        Map<GroupKey, Totals> partial = new HashMap<>();
+        for (int g = 0; g < groups; g++) {
+            if (count[g] > 0) {
+                Totals totals = new Totals();
+                totals.count = count[g];
+                totals.sum = sum[g];
+                totals.min = min[g];
+                totals.max = max[g];
+                // Several days of a segment can share a month: merge them
+                partial.merge(new GroupKey(orders[g], labels[g]), totals, (a, b) -> {
+                    a.merge(b);
+                    return a;
+                });
+            }
+        }
+        return new Partial(partial, segment.rows(), n);
+    }
+
+    // Keeps the selected rows whose value lies in [min, max]; returns the new selection size
+    private static int selectRange(long[] values, long min, long max, int[] selection, int n) {
+        int kept = 0;
+        for (int k = 0; k < n; k++) {
+            int i = selection[k];
+            long value = values[i];
+            if (value >= min && value <= max) {
+                selection[kept++] = i;
+            }
+        }
+        return kept;
+    }
+
+    private static int selectMask(int[] values, int mask, int[] selection, int n) {
+        int kept = 0;
+        for (int k = 0; k < n; k++) {
+            int i = selection[k];
+            if (values[i] >= 0 && (mask & (1 << values[i])) != 0) {
+                selection[kept++] = i;
+            }
+        }
+        return kept;
+    }
+
+    private static int selectEqual(int[] values, int expected, int[] selection, int n) {
+        int kept = 0;
+        for (int k = 0; k < n; k++) {
+            int i = selection[k];
+            if (values[i] == expected) {
+                selection[kept++] = i;
+            }
+        }
+        return kept;
+    }
+
+    private static int selectEither(int[] first, int[] second, int expected, int[] selection, int n) {
+        int kept = 0;
+        for (int k = 0; k < n; k++) {
+            int i = selection[k];
+            if (first[i] == expected || second[i] == expected) {
+                selection[kept++] = i;
+            }
+        }
+        return kept;
+    }
+
+    // Origin account, or destination when there is no origin (deposits); reuses the origins array
+    private static int[] owners(int[] origins, int[] destinations) {
+        for (int i = 0; i < origins.length; i++) {
+            if (origins[i] == 0) {
+                origins[i] = destinations[i];
+            }
+        }
+        return origins;
+    }
+
+    private static int digits(long cents) {
+        int digits = 0;
+        while (digits < POWERS_OF_TEN.length && cents >= POWERS_OF_TEN[digits]) {
+            digits++;
+        }
+        return digits;
+    }
+
+    private static String amountRange(int digits) {
+        if (digits == 0) {
+            return "0.00";
+        }
+        BigDecimal lower = BigDecimal.valueOf(POWERS_OF_TEN[digits - 1], TransactionArchiveFile.SCALE);
+        return digits < POWERS_OF_TEN.length
+                ? "[" + lower + ", " + BigDecimal.valueOf(POWERS_OF_TEN[digits], TransactionArchiveFile.SCALE) + ")"
+                : "[" + lower + ", ...)";
+    }
+
+    private static TransactionArchiveSummary.Group group(String key, Totals totals) {
+        BigDecimal total = BigDecimal.valueOf(totals.sum, TransactionArchiveFile.SCALE);
+        return new TransactionArchiveSummary.Group(key, totals.count, total,
+                BigDecimal.valueOf(totals.min, TransactionArchiveFile.SCALE),
+                BigDecimal.valueOf(totals.max, TransactionArchiveFile.SCALE),
+                total.divide(BigDecimal.valueOf(totals.count), TransactionArchiveFile.SCALE, RoundingMode.HALF_EVEN));
+    }
+
+    private static long ceilCents(BigDecimal valor) {
+        return valor.setScale(TransactionArchiveFile.SCALE, RoundingMode.CEILING).unscaledValue().longValueExact();
+    }
+
+    private static long floorCents(BigDecimal valor) {
+        return valor.setScale(TransactionArchiveFile.SCALE, RoundingMode.FLOOR).unscaledValue().longValueExact();
+    }
+}
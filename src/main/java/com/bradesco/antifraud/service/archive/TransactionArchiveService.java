@@ -0,0 +1,259 @@
+package com.bradesco.antifraud.service.archive;
+
+import com.bradesco.antifraud.dto.TransactionArchiveSummary;
+import com.bradesco.antifraud.repository.TransactionJdbcRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Archives closed months of transactions into columnar files (see
+ * {@link TransactionArchiveFile}) and answers aggregations from them with the
+ * {@link TransactionArchiveScanner}, so analytics over the full history neither reads
+ * the OLTP table nor competes with payments for it.
+ * <p>
+ * A month is closed once {@code close-after} has passed since its end; it is exported once,
+ * by the daily job or on demand, and exporting it again replaces its file. Writes made through
+ * the application with a {@code dataHora} in an archived month (backdated inserts, batch rows,
+ * updates and deletes) call {@link #invalidate} once committed, which leaves a {@code .stale}
+ * marker next to the month's file; the month is exported again by the next stale export, and
+ * until then its totals lag the table. Corrections made directly in the database leave no
+ * marker and need an export on demand. Files are read from {@code dir}, one per month.
+ */
+@Service
+public class TransactionArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionArchiveService.class);
+
+    private static final String PREFIX = "transactions_";
+    private static final String SUFFIX = ".txarch";
+    private static final String STALE_SUFFIX = ".stale";
+
+    public record Export(YearMonth month, long rows, long bytes, long elapsedMillis) {
+    }
+
+    private record OpenFile(long modified, TransactionArchiveFile file) {
+    }
+
+    private final TransactionJdbcRepository repository;
+    private final TransactionTemplate readOnly;
+    private final TransactionArchiveScanner scanner;
+    private final Path directory;
+    private final Duration closeAfter;
+    private final int fetchSize;
+    private final boolean autoExport;
+    private final Map<Path, OpenFile> open = new ConcurrentHashMap<>();
+
+    public TransactionArchiveService(TransactionJdbcRepository repository,
+                                     PlatformTransactionManager transactionManager,
+                                     TransactionArchiveScanner scanner,
+                                     @Value("${antifraud.archive.transactions.dir:data/transaction-archive}") Path directory,
+                                     @Value("${antifraud.archive.transactions.close-after:P1D}") Duration closeAfter,
+                                     @Value("${antifraud.archive.transactions.fetch-size:5000}") int fetchSize,
+                                     @Value("${antifraud.archive.transactions.auto-export:true}") boolean autoExport) {
+        this.repository = repository;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.scanner = scanner;
+        this.directory = directory;
+        this.closeAfter = closeAfter;
+        this.fetchSize = fetchSize;
+        this.autoExport = autoExport;
+    }
+
+    @Scheduled(fixedDelayString = "${antifraud.archive.transactions.export-interval-ms:86400000}",
+            initialDelayString = "${antifraud.archive.transactions.export-interval-ms:86400000}")
+    public void exportClosedMonths() {
+        if (autoExport) {
+            exportClosedMonths(LocalDateTime.now());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${antifraud.archive.transactions.stale-export-interval-ms:600000}",
+            initialDelayString = "${antifraud.archive.transactions.stale-export-interval-ms:600000}")
+    public void exportStaleMonths() {
+        if (autoExport) {
+            reexportStaleMonths();
+        }
+    }
+
+    /**
+     * Marks the month of {@code dataHora} for a new export if it is already archived. Called
+     * after a write to the transaction table is committed, so an export running meanwhile
+     * either already read the row or leaves the marker for the next one.
+     */
+    public void invalidate(LocalDateTime dataHora) {
+        if (dataHora == null) {
+            return;
+        }
+        YearMonth month = YearMonth.from(dataHora);
+        // Only closed months are archived: writes to the current one never touch the disk
+        if (!month.isBefore(YearMonth.now()) || !Files.exists(file(month))) {
+            return;
+        }
+        try {
+            Files.createFile(staleMarker(month));
+            logger.info("Archive of {} is stale after a write to the transaction table, it will be exported again", month);
+        } catch (FileAlreadyExistsException e) {
+            // Already waiting for the next stale export
+        } catch (IOException e) {
+            logger.warn("Could not mark the archive of {} as stale: {}", month, e.getMessage());
+        }
+    }
+
+    /**
+     * Exports every closed month that has no archive yet, or whose archive is stale, oldest first.
+     */
+    public List<Export> exportClosedMonths(LocalDateTime now) {
+        LocalDateTime earliest = repository.findEarliestDataHora();
+        List<Export> exports = new ArrayList<>();
+        if (earliest == null) {
+            return exports;
+        }
+        LocalDateTime closedBefore = now.minus(closeAfter);
+        for (YearMonth month = YearMonth.from(earliest); !month.plusMonths(1).atDay(1).atStartOfDay().isAfter(closedBefore);
+             month = month.plusMonths(1)) {
+            if (!Files.exists(file(month)) || Files.exists(staleMarker(month))) {
+                exports.add(export(month));
+            }
+        }
+        return exports;
+    }
+
+    /**
+     * Exports again every archived month marked stale, oldest first.
+     */
+    public List<Export> reexportStaleMonths() {
+        List<Export> exports = new ArrayList<>();
+        for (YearMonth month : staleMonths()) {
+            exports.add(export(month));
+        }
+        return exports;
+    }
+
+    /**
+     * Archived months written to since their export, oldest first.
+     */
+    public List<YearMonth> staleMonths() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(STALE_SUFFIX))
+                    .map(name -> YearMonth.parse(name.substring(PREFIX.length(), name.length() - STALE_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list the transaction archive in " + directory, e);
+        }
+    }
+
+    /**
+     * Writes (or rewrites) the archive of one month from the transaction table.
+     */
+    public Export export(YearMonth month) {
+        long start = System.nanoTime();
+        LocalDateTime from = month.atDay(1).atStartOfDay();
+        LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+        Path target = file(month);
+        Path marker = staleMarker(month);
+        boolean stale = false;
+        try {
+            Files.createDirectories(directory);
+            // Cleared before reading, so a write committed during the export marks the month again
+            stale = Files.deleteIfExists(marker);
+            long rows;
+            try (TransactionArchiveWriter writer = new TransactionArchiveWriter(target, from, to)) {
+                // One read-only transaction so PostgreSQL streams the rows with a cursor
+                readOnly.executeWithoutResult(status -> repository.streamBetween(from, to, fetchSize, transaction -> {
+                    try {
+                        writer.add(transaction);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+                rows = writer.finish(repository::findAgencies);
+            }
+            Export export = new Export(month, rows, Files.size(target), Duration.ofNanos(System.nanoTime() - start).toMillis());
+            logger.info("Archived {} transactions of {} into {} ({} bytes, {} ms)", rows, month, target, export.bytes(),
+                    export.elapsedMillis());
+            return export;
+        } catch (IOException e) {
+            if (stale) {
+                restoreMarker(marker);
+            }
+            throw new UncheckedIOException("Could not archive transactions of " + month, e);
+        } catch (RuntimeException e) {
+            if (stale) {
+                restoreMarker(marker);
+            }
+            throw e;
+        }
+    }
+
+    public TransactionArchiveSummary summarize(ArchiveQuery query) {
+        return scanner.scan(files(), query);
+    }
+
+    private Path file(YearMonth month) {
+        return directory.resolve(PREFIX + month + SUFFIX);
+    }
+
+    private Path staleMarker(YearMonth month) {
+        return directory.resolve(PREFIX + month + STALE_SUFFIX);
+    }
+
+    private static void restoreMarker(Path marker) {
+        try {
+            Files.createFile(marker);
+        } catch (FileAlreadyExistsException e) {
+            // Marked again by a write during the failed export
+        } catch (IOException e) {
+            logger.warn("Could not restore the stale marker {}: {}", marker, e.getMessage());
+        }
+    }
+
+    // Opened files are kept; a rewritten one is reopened, the old channel left to the GC so running scans finish
+    private List<TransactionArchiveFile> files() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> paths = Files.list(directory)) {
+            List<TransactionArchiveFile> files = new ArrayList<>();
+            for (Path path : paths.filter(p -> p.getFileName().toString().startsWith(PREFIX)
+                    && p.getFileName().toString().endsWith(SUFFIX)).sorted().toList()) {
+                long modified = Files.getLastModifiedTime(path).toMillis();
+                OpenFile cached = open.get(path);
+                if (cached == null || cached.modified() != modified) {
+                    cached = new OpenFile(modified, TransactionArchiveFile.open(path));
+                    open.put(path, cached);
+                }
+                files.add(cached.file());
+            }
+            open.keySet().removeIf(path -> files.stream().noneMatch(file -> file.path().equals(path)));
+            return files;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the transaction archive in " + directory, e);
+        }
+    }
+}
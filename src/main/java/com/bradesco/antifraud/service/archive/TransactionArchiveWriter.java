@@ -0,0 +1,240 @@
+package com.bradesco.antifraud.service.archive;
+
+import com.bradesco.antifraud.dto.TransactionDto;
+import com.bradesco.antifraud.model.Transaction.TransactionType;
+import com.bradesco.antifraud.service.archive.TransactionArchiveFile.Column;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Writes one archive file (layout in {@link TransactionArchiveFile}). Rows are buffered
+ * column by column and written a segment at a time, so memory stays at one segment plus
+ * the account dictionary whatever the period holds. The file only appears under its name,
+ * synced, once {@link #finish} succeeds.
+ */
+final class TransactionArchiveWriter implements AutoCloseable {
+
+    static final int SEGMENT_ROWS = 65_536;
+
+    private record SegmentMeta(long offset, int rows, long minMicros, long maxMicros, long minCents, long maxCents,
+                               int tipoMask, int[] compressed, int[] raw) {
+    }
+
+    private final Path target;
+    private final Path partial;
+    private final FileChannel channel;
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private final int segmentRows;
+    private final Map<UUID, Integer> accounts = new LinkedHashMap<>();
+    private final List<SegmentMeta> segments = new ArrayList<>();
+
+    private final long[] micros;
+    private final byte[] tipos;
+    private final int[] origins;
+    private final int[] destinations;
+    private final long[] cents;
+    private final ColumnCodec.Block[] blocks = new ColumnCodec.Block[Column.values().length];
+    private int buffered;
+    private long rows;
+    private long position;
+    private boolean finished;
+
+    TransactionArchiveWriter(Path target, LocalDateTime from, LocalDateTime to) throws IOException {
+        this(target, from, to, SEGMENT_ROWS);
+    }
+
+    TransactionArchiveWriter(Path target, LocalDateTime from, LocalDateTime to, int segmentRows) throws IOException {
+        this.target = target;
+        this.partial = target.resolveSibling(target.getFileName() + ".part");
+        this.from = from;
+        this.to = to;
+        this.segmentRows = segmentRows;
+        this.micros = new long[segmentRows];
+        this.tipos = new byte[segmentRows];
+        this.origins = new int[segmentRows];
+        this.destinations = new int[segmentRows];
+        this.cents = new long[segmentRows];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = new ColumnCodec.Block();
+        }
+        this.channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        write(ByteBuffer.wrap(TransactionArchiveFile.MAGIC));
+    }
+
+    /**
+     * Appends a transaction. Rows are expected in {@code dataHora} order: the timestamp
+     * deltas stay small and each segment covers a narrow time range.
+     *
+     * @throws ArithmeticException if the amount has more than two decimal places
+     */
+    void add(TransactionDto transaction) throws IOException {
+        if (transaction.getTipo() == null || transaction.getValor() == null || transaction.getDataHora() == null) {
+            throw new IllegalArgumentException("Transaction " + transaction.getId() + " lacks tipo, valor or dataHora");
+        }
+        micros[buffered] = TransactionArchiveFile.toMicros(transaction.getDataHora());
+        tipos[buffered] = (byte) transaction.getTipo().ordinal();
+        origins[buffered] = code(transaction.getContaDeOrigemId());
+        destinations[buffered] = code(transaction.getContaDeDestinoId());
+        cents[buffered] = toCents(transaction.getValor());
+        if (++buffered == segmentRows) {
+            flushSegment();
+        }
+    }
+
+    /**
+     * Writes the last segment and the footer, then moves the file into place. Returns the
+     * number of rows archived.
+     *
+     * @param agencies looks up the agency of the given accounts (those absent have none)
+     */
+    long finish(Function<List<UUID>, Map<UUID, String>> agencies) throws IOException {
+        if (buffered > 0) {
+            flushSegment();
+        }
+        long footerOffset = position;
+        byte[] footer = footer(agencies.apply(new ArrayList<>(accounts.keySet())));
+        write(ByteBuffer.wrap(footer));
+        ByteBuffer trailer = ByteBuffer.allocate(TransactionArchiveFile.TRAILER_SIZE);
+        trailer.putLong(footerOffset).putInt(footer.length).put(TransactionArchiveFile.MAGIC).flip();
+        write(trailer);
+        channel.force(true);
+        channel.close();
+        Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        finished = true;
+        return rows;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!finished) {
+            channel.close();
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    // 0 stands for no account; dictionary codes start at 1
+    private int code(UUID account) {
+        return account == null ? 0 : accounts.computeIfAbsent(account, id -> accounts.size() + 1);
+    }
+
+    private static long toCents(BigDecimal valor) {
+        return valor.setScale(TransactionArchiveFile.SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    private void flushSegment() throws IOException {
+        long minMicros = Long.MAX_VALUE;
+        long maxMicros = Long.MIN_VALUE;
+        long minCents = Long.MAX_VALUE;
+        long maxCents = Long.MIN_VALUE;
+        int tipoMask = 0;
+        for (ColumnCodec.Block block : blocks) {
+            block.reset();
+        }
+        long previous = 0;
+        for (int i = 0; i < buffered; i++) {
+            minMicros = Math.min(minMicros, micros[i]);
+            maxMicros = Math.max(maxMicros, micros[i]);
+            minCents = Math.min(minCents, cents[i]);
+            maxCents = Math.max(maxCents, cents[i]);
+            tipoMask |= 1 << tipos[i];
+            blocks[Column.TIMESTAMP.ordinal()].writeVarLong(micros[i] - previous);
+            previous = micros[i];
+            blocks[Column.TIPO.ordinal()].writeByte(tipos[i]);
+            blocks[Column.ORIGIN.ordinal()].writeVarLong(origins[i]);
+            blocks[Column.DESTINATION.ordinal()].writeVarLong(destinations[i]);
+            blocks[Column.AMOUNT.ordinal()].writeVarLong(cents[i]);
+        }
+        long offset = position;
+        int[] compressed = new int[blocks.length];
+        int[] raw = new int[blocks.length];
+        for (int c = 0; c < blocks.length; c++) {
+            byte[] deflated = blocks[c].deflate();
+            compressed[c] = deflated.length;
+            raw[c] = blocks[c].size();
+            write(ByteBuffer.wrap(deflated));
+        }
+        segments.add(new SegmentMeta(offset, buffered, minMicros, maxMicros, minCents, maxCents, tipoMask, compressed, raw));
+        rows += buffered;
+        buffered = 0;
+    }
+
+    private byte[] footer(Map<UUID, String> agencyByAccount) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(TransactionArchiveFile.VERSION);
+        out.writeLong(TransactionArchiveFile.toMicros(from));
+        out.writeLong(TransactionArchiveFile.toMicros(to));
+        out.writeLong(rows);
+        out.writeInt(TransactionArchiveFile.SCALE);
+
+        // Tipo codes are ordinals at write time; names let a reader survive a reordered enum
+        out.writeInt(TransactionType.values().length);
+        for (TransactionType type : TransactionType.values()) {
+            out.writeUTF(type.name());
+        }
+
+        Map<String, Integer> agencyCodes = new HashMap<>();
+        List<String> agencyNames = new ArrayList<>();
+        for (String agency : agencyByAccount.values()) {
+            agencyCodes.computeIfAbsent(agency, name -> {
+                agencyNames.add(name);
+                return agencyNames.size() - 1;
+            });
+        }
+        out.writeInt(agencyNames.size());
+        for (String agency : agencyNames) {
+            out.writeUTF(agency);
+        }
+
+        out.writeInt(accounts.size());
+        for (UUID account : accounts.keySet()) {
+            out.writeLong(account.getMostSignificantBits());
+            out.writeLong(account.getLeastSignificantBits());
+            String agency = agencyByAccount.get(account);
+            out.writeInt(agency == null ? -1 : agencyCodes.get(agency));
+        }
+
+        out.writeInt(segments.size());
+        for (SegmentMeta segment : segments) {
+            out.writeLong(segment.offset());
+            out.writeInt(segment.rows());
+            out.writeLong(segment.minMicros());
+            out.writeLong(segment.maxMicros());
+            out.writeLong(segment.minCents());
+            out.writeLong(segment.maxCents());
+            out.writeInt(segment.tipoMask());
+            for (int c = 0; c < blocks.length; c++) {
+                out.writeInt(segment.compressed()[c]);
+                out.writeInt(segment.raw()[c]);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer);
+        }
+    }
+}
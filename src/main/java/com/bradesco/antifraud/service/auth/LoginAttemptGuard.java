@@ -0,0 +1,149 @@
+package com.bradesco.antifraud.service.auth;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Stops brute-force and credential-stuffing attempts on {@code /auth/login} before they
+ * reach the password check.
+ * <p>
+ * Failed logins are counted over a sliding window per client address, per /24 subnet (the
+ * first four groups for IPv6) and per account email, each in a {@link SlidingCountMinSketch}
+ * of fixed size, so a flood of distinct addresses costs no extra memory. Once any of the
+ * three reaches its limit, logins from that source are refused until enough failures have
+ * left the window. Counts can only be overestimated, so a busy sketch errs on the side of
+ * refusing; the per-account limit also means an attacker can lock an account's logins out
+ * for at most one window.
+ */
+@Service
+public class LoginAttemptGuard {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginAttemptGuard.class);
+
+    public enum Source { ADDRESS, SUBNET, ACCOUNT }
+
+    private final SlidingCountMinSketch byAddress;
+    private final SlidingCountMinSketch bySubnet;
+    private final SlidingCountMinSketch byAccount;
+    private final int maxPerAddress;
+    private final int maxPerSubnet;
+    private final int maxPerAccount;
+    private final Duration retryAfter;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public LoginAttemptGuard(@Value("${antifraud.auth.guard.window:PT15M}") Duration window,
+                             @Value("${antifraud.auth.guard.slices:15}") int slices,
+                             @Value("${antifraud.auth.guard.depth:4}") int depth,
+                             @Value("${antifraud.auth.guard.width:16384}") int width,
+                             @Value("${antifraud.auth.guard.max-failures-per-address:20}") int maxPerAddress,
+                             @Value("${antifraud.auth.guard.max-failures-per-subnet:200}") int maxPerSubnet,
+                             @Value("${antifraud.auth.guard.max-failures-per-account:10}") int maxPerAccount,
+                             MeterRegistry meterRegistry) {
+        this(window, slices, depth, width, maxPerAddress, maxPerSubnet, maxPerAccount, meterRegistry, Clock.systemUTC());
+    }
+
+    LoginAttemptGuard(Duration window, int slices, int depth, int width,
+                      int maxPerAddress, int maxPerSubnet, int maxPerAccount,
+                      MeterRegistry meterRegistry, Clock clock) {
+        long windowMillis = window.toMillis();
+        this.byAddress = new SlidingCountMinSketch(slices, depth, width, windowMillis, clock);
+        this.bySubnet = new SlidingCountMinSketch(slices, depth, width, windowMillis, clock);
+        this.byAccount = new SlidingCountMinSketch(slices, depth, width, windowMillis, clock);
+        this.maxPerAddress = maxPerAddress;
+        this.maxPerSubnet = maxPerSubnet;
+        this.maxPerAccount = maxPerAccount;
+        // A source is let back in as soon as its oldest slice of failures expires
+        this.retryAfter = Duration.ofMillis(Math.max(1000, windowMillis / slices));
+        this.meterRegistry = meterRegistry;
+        logger.info("Login guard: {} window, {} KB of counters", window,
+                (byAddress.sizeInBytes() + bySubnet.sizeInBytes() + byAccount.sizeInBytes()) / 1024);
+    }
+
+    /**
+     * The first source that has failed too often recently, or empty if the login may
+     * proceed to the password check.
+     */
+    public Optional<Source> blockedBy(String clientAddress, String email) {
+        Source source = null;
+        if (byAddress.estimate(clientAddress) >= maxPerAddress) {
+            source = Source.ADDRESS;
+        } else if (bySubnet.estimate(subnet(clientAddress)) >= maxPerSubnet) {
+            source = Source.SUBNET;
+        } else if (email != null && byAccount.estimate(account(email)) >= maxPerAccount) {
+            source = Source.ACCOUNT;
+        }
+        if (source != null) {
+            Counter.builder("antifraud.auth.login.throttled")
+                    .description("Logins refused before the password check, by the source over its limit")
+                    .tag("source", source.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry)
+                    .increment();
+        }
+        return Optional.ofNullable(source);
+    }
+
+    /**
+     * Counts a login rejected for bad credentials, whether or not the email exists.
+     */
+    public void recordFailure(String clientAddress, String email) {
+        if (byAddress.add(clientAddress) == maxPerAddress) {
+            logger.warn("Refusing logins from {} after {} failures", clientAddress, maxPerAddress);
+        }
+        if (bySubnet.add(subnet(clientAddress)) == maxPerSubnet) {
+            logger.warn("Refusing logins from subnet {} after {} failures", subnet(clientAddress), maxPerSubnet);
+        }
+        if (email != null && byAccount.add(account(email)) == maxPerAccount) {
+            logger.warn("Refusing logins to an account after {} failures", maxPerAccount);
+        }
+    }
+
+    public Duration retryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * Client address the limits are counted against: the peer address only. Behind a proxy,
+     * {@code server.forward-headers-strategy=native} has Tomcat take it from
+     * {@code X-Forwarded-For}, and only when the request comes from a trusted proxy
+     * ({@code server.tomcat.remoteip.internal-proxies}), so a client cannot pick its own.
+     */
+    public static String clientAddress(HttpServletRequest request) {
+        return request.getRemoteAddr();
+    }
+
+    static String subnet(String address) {
+        int colon = -1;
+        for (int group = 0; group < 4; group++) {
+            colon = address.indexOf(':', colon + 1);
+            if (colon < 0) {
+                break;
+            }
+        }
+        if (colon > 0) {
+            return address.substring(0, colon);
+        }
+        if (address.indexOf(':') >= 0) {
+            return address;
+        }
+        int dot = address.lastIndexOf('.');
+        return dot < 0 ? address : address.substring(0, dot);
+    }
+
+    private static String account(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
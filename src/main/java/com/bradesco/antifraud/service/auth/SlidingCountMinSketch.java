@@ -0,0 +1,146 @@
+package com.bradesco.antifraud.service.auth;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Approximate per-key event counts over a sliding time window, in fixed memory.
+ * <p>
+ * The window is split into {@code slices} equal time slices, each a Count-Min sketch of
+ * {@code depth} rows by {@code width} counters; the slice that falls out of the window is
+ * cleared and reused for the newest one, so old events decay slice by slice. A key's count
+ * is the sum over the slices of its smallest counter, which never undercounts and only
+ * overcounts when other keys share all of its counters. Increments use conservative
+ * update (only the counters at the current minimum grow), which keeps that overcount low
+ * under a flood of distinct keys.
+ * <p>
+ * Memory is {@code slices * depth * width * 4} bytes whatever the number of keys. Hashes
+ * are seeded per instance, so callers cannot pick keys that collide on purpose. Reads and
+ * increments do not lock; an increment racing with the rotation of its slice may be lost,
+ * which only ever lowers a count by a few events.
+ */
+final class SlidingCountMinSketch {
+
+    private final int depth;
+    private final int mask;
+    private final long sliceMillis;
+    private final Clock clock;
+    private final long seed = ThreadLocalRandom.current().nextLong();
+    private final AtomicIntegerArray[] slices;
+    private final ReentrantLock rotateLock = new ReentrantLock();
+
+    private volatile long currentEpoch;
+
+    /**
+     * @param width counters per row, rounded up to a power of two
+     */
+    SlidingCountMinSketch(int slices, int depth, int width, long windowMillis, Clock clock) {
+        if (slices < 1 || depth < 1 || width < 1 || windowMillis < slices) {
+            throw new IllegalArgumentException("Invalid sketch dimensions");
+        }
+        int rowWidth = width == 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+        this.depth = depth;
+        this.mask = rowWidth - 1;
+        this.sliceMillis = windowMillis / slices;
+        this.clock = clock;
+        this.slices = new AtomicIntegerArray[slices];
+        for (int i = 0; i < slices; i++) {
+            this.slices[i] = new AtomicIntegerArray(depth * rowWidth);
+        }
+        this.currentEpoch = epoch();
+    }
+
+    /**
+     * Counts one event for {@code key} in the current slice and returns its new windowed count.
+     */
+    int add(String key) {
+        long hash = hash(key);
+        AtomicIntegerArray slice = slices[slot(roll())];
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, slice.get(index(row, hash)));
+        }
+        for (int row = 0; row < depth; row++) {
+            int i = index(row, hash);
+            // Conservative update: a counter above the minimum already counts someone else's events
+            if (slice.get(i) == min && min < Integer.MAX_VALUE) {
+                slice.incrementAndGet(i);
+            }
+        }
+        return estimate(hash);
+    }
+
+    /**
+     * Events counted for {@code key} within the window; never less than the true count.
+     */
+    int estimate(String key) {
+        return estimate(hash(key));
+    }
+
+    long sizeInBytes() {
+        return (long) slices.length * depth * (mask + 1) * Integer.BYTES;
+    }
+
+    private int estimate(long hash) {
+        roll();
+        long total = 0;
+        for (AtomicIntegerArray slice : slices) {
+            int min = Integer.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                min = Math.min(min, slice.get(index(row, hash)));
+            }
+            total += min;
+        }
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+
+    // Clears the slices that left the window since the last call; returns the current epoch
+    private long roll() {
+        long now = epoch();
+        if (now <= currentEpoch) {
+            return currentEpoch;
+        }
+        rotateLock.lock();
+        try {
+            for (long e = Math.max(currentEpoch + 1, now - slices.length + 1); e <= now; e++) {
+                AtomicIntegerArray slice = slices[slot(e)];
+                for (int i = 0; i < slice.length(); i++) {
+                    slice.set(i, 0);
+                }
+            }
+            currentEpoch = Math.max(currentEpoch, now);
+            return currentEpoch;
+        } finally {
+            rotateLock.unlock();
+        }
+    }
+
+    private long epoch() {
+        return clock.millis() / sliceMillis;
+    }
+
+    private int slot(long epoch) {
+        return (int) Math.floorMod(epoch, (long) slices.length);
+    }
+
+    // Row indexes come from two halves of one 64-bit hash (Kirsch-Mitzenmacher)
+    private int index(int row, long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return row * (mask + 1) + ((h1 + row * h2) & mask);
+    }
+
+    private long hash(String key) {
+        long h = seed;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h = (h ^ b) * 0x100000001b3L;
+        }
+        // SplitMix64 finalizer spreads FNV's weak low bits
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+}
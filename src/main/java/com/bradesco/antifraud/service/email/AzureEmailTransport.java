@@ -0,0 +1,48 @@
+package com.bradesco.antifraud.service.email;
+
+import com.azure.communication.email.EmailClient;
+import com.azure.communication.email.EmailClientBuilder;
+import com.azure.communication.email.models.EmailAddress;
+import com.azure.communication.email.models.EmailMessage;
+import com.azure.communication.email.models.EmailSendResult;
+import com.azure.communication.email.models.EmailSendStatus;
+import com.azure.core.util.polling.PollResponse;
+import com.azure.core.util.polling.SyncPoller;
+import com.bradesco.antifraud.model.EmailRequest;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sends through Azure Communication Services with a single client shared by all sends.
+ */
+@Component
+@ConditionalOnProperty(name = "antifraud.email.transport", havingValue = "azure", matchIfMissing = true)
+public class AzureEmailTransport implements EmailTransport {
+
+    private final EmailClient emailClient;
+
+    public AzureEmailTransport() {
+        String connectionString = "endpoint=" + System.getenv("AZURE_COMMUNICATION_SERVICE_ENDPOINT") +
+                ";accesskey=" + System.getenv("AZURE_COMMUNICATION_SERVICE_ACCESS_KEY");
+        this.emailClient = new EmailClientBuilder().connectionString(connectionString).buildClient();
+    }
+
+    @Override
+    public void send(EmailRequest request) {
+        EmailMessage emailMessage = new EmailMessage()
+                .setSenderAddress(SENDER_ADDRESS)
+                .setToRecipients(new EmailAddress(request.getSenderAddress()))
+                .setSubject(request.getSubject())
+                .setBodyPlainText(request.getSubject());
+
+        SyncPoller<EmailSendResult, EmailSendResult> poller = emailClient.beginSend(emailMessage, null);
+        PollResponse<EmailSendResult> response = poller.waitForCompletion();
+        EmailSendResult result = response.getValue();
+        if (result == null || !EmailSendStatus.SUCCEEDED.equals(result.getStatus())) {
+            String detail = result == null ? response.getStatus().toString()
+                    : result.getStatus() + (result.getError() != null ? ": " + result.getError().getMessage() : "");
+            throw new IllegalStateException("Email provider did not accept the message (" + detail + ")");
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.bradesco.antifraud.service.email;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Delivery state of one message, as reported by {@code GET /sendmailTest/{id}}.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record EmailDispatch(UUID id, String recipient, EmailStatus status, int attempts, String lastError, Instant updatedAt) {
+
+    public EmailDispatch next(EmailStatus status, int attempts, String lastError) {
+        return new EmailDispatch(id, recipient, status, attempts, lastError, Instant.now());
+    }
+}
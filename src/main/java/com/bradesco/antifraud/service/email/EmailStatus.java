@@ -0,0 +1,13 @@
+package com.bradesco.antifraud.service.email;
+
+public enum EmailStatus {
+    QUEUED,
+    SENDING,
+    RETRYING,
+    SENT,
+    FAILED;
+
+    public boolean isFinal() {
+        return this == SENT || this == FAILED;
+    }
+}
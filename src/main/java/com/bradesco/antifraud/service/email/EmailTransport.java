@@ -0,0 +1,17 @@
+package com.bradesco.antifraud.service.email;
+
+import com.bradesco.antifraud.model.EmailRequest;
+
+/**
+ * Delivers one email. Implementations may block; {@code EmailService} calls them from
+ * virtual threads and retries on any exception.
+ * <p>
+ * The implementation is chosen with {@code antifraud.email.transport}: {@code azure}
+ * (default), {@code memory} or {@code file}.
+ */
+public interface EmailTransport {
+
+    String SENDER_ADDRESS = "DoNotReply@antifraudsystem.com.br";
+
+    void send(EmailRequest request) throws Exception;
+}
@@ -0,0 +1,48 @@
+package com.bradesco.antifraud.service.email;
+
+import com.bradesco.antifraud.model.EmailRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Appends each message as one JSON line to a local outbox file, for running the
+ * application without Azure credentials.
+ */
+@Component
+@ConditionalOnProperty(name = "antifraud.email.transport", havingValue = "file")
+public class FileEmailTransport implements EmailTransport {
+
+    private final ObjectMapper objectMapper;
+    private final Path outbox;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public FileEmailTransport(ObjectMapper objectMapper,
+                              @Value("${antifraud.email.file.path:data/outbox.ndjson}") Path outbox) {
+        this.objectMapper = objectMapper;
+        this.outbox = outbox;
+    }
+
+    @Override
+    public void send(EmailRequest request) throws IOException {
+        String line = objectMapper.writeValueAsString(request) + "\n";
+        lock.lock();
+        try {
+            Path parent = outbox.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.writeString(outbox, line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
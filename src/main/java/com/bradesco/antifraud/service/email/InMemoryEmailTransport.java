@@ -0,0 +1,48 @@
+package com.bradesco.antifraud.service.email;
+
+import com.bradesco.antifraud.model.EmailRequest;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Keeps the last sent messages in memory, optionally after a fixed delay that stands in
+ * for the provider round-trip. Meant for tests and for benchmarking login offline.
+ */
+@Component
+@ConditionalOnProperty(name = "antifraud.email.transport", havingValue = "memory")
+public class InMemoryEmailTransport implements EmailTransport {
+
+    private static final int MAX_KEPT = 1000;
+
+    private final ConcurrentLinkedDeque<EmailRequest> sent = new ConcurrentLinkedDeque<>();
+    private final long latencyMillis;
+
+    public InMemoryEmailTransport(@Value("${antifraud.email.memory.latency-ms:0}") long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    @Override
+    public void send(EmailRequest request) throws InterruptedException {
+        if (latencyMillis > 0) {
+            Thread.sleep(latencyMillis);
+        }
+        sent.addLast(request);
+        if (sent.size() > MAX_KEPT) {
+            sent.pollFirst();
+        }
+    }
+
+    public List<EmailRequest> sent() {
+        return new ArrayList<>(sent);
+    }
+
+    public void clear() {
+        sent.clear();
+    }
+}
@@ -0,0 +1,155 @@
+package com.bradesco.antifraud.service.fraud;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-account ring buffer of recent events with running count/sum for the last minute,
+ * hour and day. Each window keeps its own tail pointer into the ring, so recording an
+ * event and reading the features are amortized O(1): expired events are subtracted as
+ * the tails move forward instead of rescanning the buffer.
+ * <p>
+ * The ring starts small and doubles up to {@link #MAX_CAPACITY}; once full, the oldest
+ * event is dropped from every window, which keeps memory bounded for very busy accounts.
+ */
+final class AccountActivityWindow {
+
+    static final long MINUTE_MILLIS = 60_000L;
+    static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+    static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    static final int INITIAL_CAPACITY = 16;
+    static final int MAX_CAPACITY = 1024;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private long[] amounts = new long[INITIAL_CAPACITY];
+    private UUID[] destinations = new UUID[INITIAL_CAPACITY];
+
+    // Absolute sequence numbers; the slot of event n is n & (capacity - 1).
+    private long next;
+    private long minuteTail;
+    private long hourTail;
+    private long dayTail;
+
+    private long minuteSum;
+    private long hourSum;
+    private long daySum;
+
+    private final Map<UUID, Integer> destinationCounts = new HashMap<>();
+    private long lastTimestamp = -1;
+
+    ActivityFeatures features(long now) {
+        lock.lock();
+        try {
+            expire(now);
+            return new ActivityFeatures(
+                    (int) (next - minuteTail), minuteSum,
+                    (int) (next - hourTail), hourSum,
+                    (int) (next - dayTail), daySum,
+                    destinationCounts.size(),
+                    lastTimestamp < 0 ? -1 : Math.max(0, now - lastTimestamp));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void record(long now, long amount, UUID destination) {
+        lock.lock();
+        try {
+            // Concurrent callers may observe the clock slightly out of order; keep the ring monotonic.
+            long timestamp = Math.max(now, lastTimestamp);
+            expire(timestamp);
+            if (next - dayTail == timestamps.length) {
+                if (timestamps.length < MAX_CAPACITY) {
+                    grow();
+                } else {
+                    dropOldest();
+                }
+            }
+            int slot = slot(next);
+            timestamps[slot] = timestamp;
+            amounts[slot] = amount;
+            destinations[slot] = destination;
+            next++;
+
+            minuteSum += amount;
+            hourSum += amount;
+            daySum += amount;
+            if (destination != null) {
+                destinationCounts.merge(destination, 1, Integer::sum);
+            }
+            lastTimestamp = timestamp;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void expire(long now) {
+        while (minuteTail < next && timestamps[slot(minuteTail)] <= now - MINUTE_MILLIS) {
+            minuteSum -= amounts[slot(minuteTail++)];
+        }
+        while (hourTail < next && timestamps[slot(hourTail)] <= now - HOUR_MILLIS) {
+            hourSum -= amounts[slot(hourTail++)];
+        }
+        while (dayTail < next && timestamps[slot(dayTail)] <= now - DAY_MILLIS) {
+            evictFromDay();
+        }
+    }
+
+    private void dropOldest() {
+        if (minuteTail == dayTail) {
+            minuteSum -= amounts[slot(minuteTail++)];
+        }
+        if (hourTail == dayTail) {
+            hourSum -= amounts[slot(hourTail++)];
+        }
+        evictFromDay();
+    }
+
+    private void evictFromDay() {
+        int slot = slot(dayTail++);
+        daySum -= amounts[slot];
+        UUID destination = destinations[slot];
+        if (destination != null) {
+            destinationCounts.computeIfPresent(destination, (key, count) -> count == 1 ? null : count - 1);
+            destinations[slot] = null;
+        }
+    }
+
+    private void grow() {
+        int capacity = timestamps.length * 2;
+        long[] newTimestamps = new long[capacity];
+        long[] newAmounts = new long[capacity];
+        UUID[] newDestinations = new UUID[capacity];
+        for (long n = dayTail; n < next; n++) {
+            int from = slot(n);
+            int to = (int) (n & (capacity - 1));
+            newTimestamps[to] = timestamps[from];
+            newAmounts[to] = amounts[from];
+            newDestinations[to] = destinations[from];
+        }
+        timestamps = newTimestamps;
+        amounts = newAmounts;
+        destinations = newDestinations;
+    }
+
+    /**
+     * Whether the last event is older than {@code cutoff}, so the window can be dropped.
+     */
+    boolean idleSince(long cutoff) {
+        lock.lock();
+        try {
+            return lastTimestamp < cutoff;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence & (timestamps.length - 1));
+    }
+}
@@ -0,0 +1,19 @@
+package com.bradesco.antifraud.service.fraud;
+
+/**
+ * Sliding-window features of one account, as seen at scoring time. Amounts are in cents.
+ * {@code millisSinceLast} is {@code -1} when the account has no recorded activity.
+ */
+public record ActivityFeatures(
+        int countLastMinute,
+        long sumLastMinute,
+        int countLastHour,
+        long sumLastHour,
+        int countLastDay,
+        long sumLastDay,
+        int distinctDestinationsLastDay,
+        long millisSinceLast
+) {
+
+    public static final ActivityFeatures EMPTY = new ActivityFeatures(0, 0, 0, 0, 0, 0, 0, -1);
+}
@@ -0,0 +1,7 @@
+package com.bradesco.antifraud.service.fraud;
+
+public enum FraudDecision {
+    ALLOW,
+    REVIEW,
+    BLOCK
+}
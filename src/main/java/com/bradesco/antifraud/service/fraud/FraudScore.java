@@ -0,0 +1,14 @@
+package com.bradesco.antifraud.service.fraud;
+
+import java.util.List;
+
+/**
+ * Result of scoring a single transaction: a 0-100 risk score, the decision derived
+ * from it and the reasons that contributed points.
+ */
+public record FraudScore(int score, FraudDecision decision, List<String> reasons) {
+
+    public boolean isBlocked() {
+        return decision == FraudDecision.BLOCK;
+    }
+}
@@ -0,0 +1,277 @@
+package com.bradesco.antifraud.service.fraud;
+
+import com.bradesco.antifraud.cache.ExpiringStore;
+import com.bradesco.antifraud.model.Account;
+import com.bradesco.antifraud.model.Transaction;
+import com.bradesco.antifraud.service.fraud.graph.TransferGraph;
+import com.bradesco.antifraud.service.fraud.profile.AccountProfileStore;
+import com.bradesco.antifraud.service.fraud.rules.Feature;
+import com.bradesco.antifraud.service.fraud.rules.FeatureVector;
+import com.bradesco.antifraud.service.fraud.rules.FraudRuleEngine;
+import com.bradesco.antifraud.service.fraud.rules.FraudRuleSet;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Synchronous fraud scoring on the payment path. Keeps per-account sliding-window
+ * activity in memory, so {@link #score(Transaction)} never touches the database.
+ * Only transactions that were actually committed should be fed back through
+ * {@link #record(Transaction)}. Windows idle for longer than {@code idle-ttl} are evicted
+ * periodically; an evicted account scores like one never seen ({@link ActivityFeatures#millisSinceLast} -1).
+ * When a source first paid a destination is kept per pair for {@code payees.ttl} after
+ * their last payment, up to {@code payees.capacity} pairs, so "new payee" rules fire for
+ * the first payment of each source, however many other accounts already pay that destination.
+ * <p>
+ * Committed transactions also update the account's long-term profile in
+ * {@link AccountProfileStore}, which the rules see as deviation features, and transfers
+ * between two accounts become edges of the {@link TransferGraph}.
+ * <p>
+ * The built-in checks below are followed by the analyst rules of {@link FraudRuleEngine}:
+ * their weights add to the score and their actions can only raise the decision, except
+ * for allow-list rules, which clear it.
+ */
+@Service
+public class FraudScoringService {
+
+    public static final String SCORE_HEADER = "X-Fraud-Score";
+    public static final String DECISION_HEADER = "X-Fraud-Decision";
+
+    static final long HIGH_VALUE_CENTS = 10_000_00L;
+    static final long DAILY_VOLUME_CENTS = 50_000_00L;
+
+    private final Map<UUID, AccountActivityWindow> windows = new ConcurrentHashMap<>();
+    // When the source first paid the destination, for "new payee" rules
+    private final ExpiringStore<Payee, Long> payees;
+    private final Duration payeeTtl;
+    private final int reviewThreshold;
+    private final int blockThreshold;
+    private final long idleTtlMillis;
+    private final Clock clock;
+    private final Supplier<FraudRuleSet> rules;
+    private final AccountProfileStore profiles;
+    private final TransferGraph graph;
+
+    @Autowired
+    public FraudScoringService(@Value("${antifraud.fraud.review-threshold:50}") int reviewThreshold,
+                               @Value("${antifraud.fraud.block-threshold:80}") int blockThreshold,
+                               @Value("${antifraud.fraud.activity.idle-ttl:P1D}") Duration idleTtl,
+                               @Value("${antifraud.fraud.payees.ttl:P90D}") Duration payeeTtl,
+                               @Value("${antifraud.fraud.payees.capacity:1000000}") int payeeCapacity,
+                               FraudRuleEngine ruleEngine, AccountProfileStore profiles, TransferGraph graph) {
+        this(reviewThreshold, blockThreshold, Clock.systemUTC(), ruleEngine::rules, profiles, graph, idleTtl,
+                payeeTtl, payeeCapacity);
+    }
+
+    FraudScoringService(int reviewThreshold, int blockThreshold, Clock clock) {
+        this(reviewThreshold, blockThreshold, clock, () -> FraudRuleSet.EMPTY);
+    }
+
+    FraudScoringService(int reviewThreshold, int blockThreshold, Clock clock, Supplier<FraudRuleSet> rules) {
+        this(reviewThreshold, blockThreshold, clock, rules, new AccountProfileStore(10_000, 0.1));
+    }
+
+    FraudScoringService(int reviewThreshold, int blockThreshold, Clock clock, Supplier<FraudRuleSet> rules,
+                        AccountProfileStore profiles) {
+        this(reviewThreshold, blockThreshold, clock, rules, profiles, new TransferGraph(Duration.ofDays(7), 1.0, clock));
+    }
+
+    FraudScoringService(int reviewThreshold, int blockThreshold, Clock clock, Supplier<FraudRuleSet> rules,
+                        AccountProfileStore profiles, TransferGraph graph) {
+        this(reviewThreshold, blockThreshold, clock, rules, profiles, graph, Duration.ofDays(1), Duration.ofDays(90), 10_000);
+    }
+
+    FraudScoringService(int reviewThreshold, int blockThreshold, Clock clock, Supplier<FraudRuleSet> rules,
+                        AccountProfileStore profiles, TransferGraph graph, Duration idleTtl,
+                        Duration payeeTtl, int payeeCapacity) {
+        this.reviewThreshold = reviewThreshold;
+        this.blockThreshold = blockThreshold;
+        this.idleTtlMillis = idleTtl.toMillis();
+        this.clock = clock;
+        this.rules = rules;
+        this.profiles = profiles;
+        this.graph = graph;
+        this.payeeTtl = payeeTtl;
+        // Same clock as the windows; TTLs are days long, so minute ticks are fine-grained enough
+        this.payees = new ExpiringStore<>("payees", payeeCapacity, Duration.ofMinutes(1), 512,
+                () -> TimeUnit.MILLISECONDS.toNanos(clock.millis()));
+    }
+
+    public FraudScore score(Transaction transaction) {
+        UUID accountId = actingAccountId(transaction);
+        long amount = toCents(transaction.getValor());
+        ActivityFeatures features = features(accountId);
+        UUID destination = accountId(transaction.getContaDeDestino());
+
+        int score = 0;
+        List<String> reasons = new ArrayList<>(4);
+
+        if (features.countLastMinute() >= 5) {
+            score += 35;
+            reasons.add("VELOCITY_1M");
+        } else if (features.countLastMinute() >= 3) {
+            score += 15;
+            reasons.add("VELOCITY_1M");
+        }
+        if (features.countLastHour() >= 20) {
+            score += 20;
+            reasons.add("VELOCITY_1H");
+        }
+        if (features.countLastDay() >= 3 && amount > 3 * (features.sumLastDay() / features.countLastDay())) {
+            score += 25;
+            reasons.add("AMOUNT_ABOVE_DAILY_AVERAGE");
+        }
+        if (features.sumLastDay() + amount > DAILY_VOLUME_CENTS) {
+            score += 25;
+            reasons.add("DAILY_VOLUME");
+        }
+        if (amount >= HIGH_VALUE_CENTS) {
+            score += 15;
+            reasons.add("HIGH_VALUE");
+        }
+        if (features.distinctDestinationsLastDay() >= 10) {
+            score += 20;
+            reasons.add("FAN_OUT_1D");
+        }
+        if (features.millisSinceLast() >= 0 && features.millisSinceLast() < 2_000) {
+            score += 15;
+            reasons.add("RAPID_SUCCESSION");
+        }
+        boolean selfTransfer = destination != null && destination.equals(accountId);
+        if (selfTransfer) {
+            score += 50;
+            reasons.add("SELF_TRANSFER");
+        }
+
+        FeatureVector vector = FeatureVector.of(transaction, amount, features, payeeAgeMillis(accountId, destination), selfTransfer);
+        AccountProfileStore.Deviation deviation = profiles.deviation(accountId, transaction.getTipo(), amount / 100.0,
+                hourOf(transaction), destination);
+        vector.set(Feature.TYPE_HISTORY, deviation.typeHistory())
+                .set(Feature.AMOUNT_Z_SCORE, deviation.amountZScore())
+                .set(Feature.HOUR_SHARE, deviation.hourShare())
+                .set(Feature.KNOWN_COUNTERPARTY, deviation.knownCounterparty() ? 1 : 0)
+                .set(Feature.DESTINATION_FLAGGED_HOPS, graph.flaggedHops(destination))
+                .set(Feature.DESTINATION_FAN_IN, graph.fanIn(destination))
+                .set(Feature.SOURCE_FAN_OUT, graph.fanOut(accountId));
+        FraudRuleSet.Outcome outcome = rules.get().evaluate(vector);
+        reasons.addAll(outcome.matched());
+        score = Math.max(0, Math.min(score + outcome.weight(), 100));
+        if (outcome.allowListed()) {
+            return new FraudScore(score, FraudDecision.ALLOW, reasons);
+        }
+        FraudDecision decision = decide(score);
+        return new FraudScore(score, outcome.action().compareTo(decision) > 0 ? outcome.action() : decision, reasons);
+    }
+
+    /**
+     * Feeds a committed transaction into the acting account's windows and profile, and
+     * transfers between two accounts into the transfer graph.
+     */
+    public void record(Transaction transaction) {
+        UUID accountId = actingAccountId(transaction);
+        if (accountId == null) {
+            return;
+        }
+        long now = clock.millis();
+        long amount = toCents(transaction.getValor());
+        UUID destination = accountId(transaction.getContaDeDestino());
+        // Recorded under the map's lock for the key, so eviction cannot drop the window meanwhile
+        windows.compute(accountId, (id, window) -> {
+            AccountActivityWindow target = window == null ? new AccountActivityWindow() : window;
+            target.record(now, amount, destination);
+            return target;
+        });
+        profiles.update(accountId, transaction.getTipo(), amount / 100.0, hourOf(transaction), destination, now);
+        if (destination != null) {
+            // Re-put on every payment so the TTL counts from the last one; a lost race only moves firstSeen by ms
+            Payee payee = new Payee(accountId, destination);
+            Long firstSeen = payees.get(payee);
+            payees.put(payee, firstSeen != null ? firstSeen : now, payeeTtl);
+            graph.record(accountId, destination, amount / 100.0);
+        }
+    }
+
+    public ActivityFeatures features(UUID accountId) {
+        AccountActivityWindow window = accountId == null ? null : windows.get(accountId);
+        return window == null ? ActivityFeatures.EMPTY : window.features(clock.millis());
+    }
+
+    public int trackedAccounts() {
+        return windows.size();
+    }
+
+    public ExpiringStore.Stats payeeStats() {
+        return payees.stats();
+    }
+
+    @Scheduled(fixedDelayString = "${antifraud.fraud.activity.evict-interval-ms:600000}")
+    public void evictIdle() {
+        evictIdle(clock.millis());
+        payees.expire();
+    }
+
+    /**
+     * Drops the windows of accounts without activity for {@code idle-ttl}; returns how many.
+     */
+    int evictIdle(long now) {
+        long cutoff = now - idleTtlMillis;
+        int evicted = 0;
+        for (UUID accountId : windows.keySet()) {
+            if (windows.computeIfPresent(accountId, (id, window) -> window.idleSince(cutoff) ? null : window) == null) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    private int hourOf(Transaction transaction) {
+        LocalDateTime dataHora = transaction.getDataHora();
+        return (dataHora != null ? dataHora : LocalDateTime.now(clock)).getHour();
+    }
+
+    private long payeeAgeMillis(UUID source, UUID destination) {
+        if (destination == null) {
+            return -1;
+        }
+        Long firstSeen = source == null ? null : payees.get(new Payee(source, destination));
+        return firstSeen == null ? 0 : Math.max(0, clock.millis() - firstSeen);
+    }
+
+    private FraudDecision decide(int score) {
+        if (score >= blockThreshold) {
+            return FraudDecision.BLOCK;
+        }
+        return score >= reviewThreshold ? FraudDecision.REVIEW : FraudDecision.ALLOW;
+    }
+
+    private static UUID actingAccountId(Transaction transaction) {
+        UUID source = accountId(transaction.getContaDeOrigem());
+        return source != null ? source : accountId(transaction.getContaDeDestino());
+    }
+
+    private static UUID accountId(Account account) {
+        return account == null ? null : account.getId();
+    }
+
+    private record Payee(UUID source, UUID destination) {
+    }
+
+    static long toCents(BigDecimal value) {
+        return value == null ? 0 : value.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+}
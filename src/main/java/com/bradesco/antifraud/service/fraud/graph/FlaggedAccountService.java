@@ -0,0 +1,55 @@
+package com.bradesco.antifraud.service.fraud.graph;
+
+import com.bradesco.antifraud.model.FlaggedAccount;
+import com.bradesco.antifraud.repository.FlaggedAccountRepository;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The accounts flagged as fraud or mules. The flags are written to {@code flagged_accounts}
+ * before the {@link TransferGraph} is updated, and loaded back into it on startup, so a
+ * restart does not silently clear them.
+ */
+@Service
+public class FlaggedAccountService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlaggedAccountService.class);
+
+    private final FlaggedAccountRepository repository;
+    private final TransferGraph graph;
+
+    public FlaggedAccountService(FlaggedAccountRepository repository, TransferGraph graph) {
+        this.repository = repository;
+        this.graph = graph;
+    }
+
+    @PostConstruct
+    void load() {
+        int flagged = 0;
+        for (FlaggedAccount account : repository.findAll()) {
+            graph.flag(account.getAccountId());
+            flagged++;
+        }
+        if (flagged > 0) {
+            logger.info("Loaded {} flagged accounts into the transfer graph", flagged);
+        }
+    }
+
+    public void flag(UUID accountId) {
+        if (!repository.existsById(accountId)) {
+            repository.save(new FlaggedAccount(accountId, LocalDateTime.now()));
+        }
+        graph.flag(accountId);
+    }
+
+    public void unflag(UUID accountId) {
+        repository.deleteById(accountId);
+        graph.unflag(accountId);
+    }
+}
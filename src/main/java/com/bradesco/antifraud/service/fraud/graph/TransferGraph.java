@@ -0,0 +1,431 @@
+package com.bradesco.antifraud.service.fraud.graph;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.UUID;
+
+/**
+ * Directed graph of money flowing between accounts, maintained one transfer at a time.
+ * <p>
+ * Each edge carries the transferred amount with exponential time decay (the weight halves
+ * every {@code half-life}); edges that decay below {@code min-weight} are dropped by the
+ * periodic {@link #prune()}. Connected components (ignoring direction) are a union-find
+ * updated on every new edge. Every account also keeps its distance, ignoring direction and
+ * capped at {@value #MAX_HOPS} hops, to the nearest flagged account: adding an edge or a
+ * flag only relaxes the distances around it, so the payment path reads a precomputed value.
+ * That distance and the fan-in/fan-out counts are read without locking; everything else
+ * takes the read lock.
+ * <p>
+ * Additions are exact. Removals (pruned edges, unflagged accounts) can only make components
+ * smaller and distances longer, so they are applied by rebuilding both, which
+ * {@link #unflag} and {@link #prune()} do. Until then components may be larger than the live edges imply.
+ * <p>
+ * The graph itself lives in memory only: {@link FlaggedAccountService} persists the flags
+ * and loads them on startup, and {@link TransferGraphSeeder} rebuilds the edges from the
+ * transactions of the last {@code seed-window}.
+ */
+@Component
+public class TransferGraph {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransferGraph.class);
+
+    public static final int MAX_HOPS = 2;
+    private static final int FAR = Integer.MAX_VALUE;
+    private static final int MAX_CYCLE_LENGTH = 4;
+    private static final int MAX_CYCLES = 16;
+
+    /**
+     * Flow around one account: distinct counterparties and their decayed amounts, in reais.
+     */
+    public record Degree(int fanIn, int fanOut, double inWeight, double outWeight) {
+
+        public static final Degree NONE = new Degree(0, 0, 0, 0);
+    }
+
+    /**
+     * Everything the graph knows about one account.
+     *
+     * @param flaggedHops hops to the nearest flagged account, or {@code -1} if further than {@link #MAX_HOPS}
+     */
+    public record Summary(UUID accountId, boolean flagged, int flaggedHops, Degree degree,
+                          UUID component, int componentSize, List<List<UUID>> cycles) {
+    }
+
+    private static final class Edge {
+        double weight;
+        long updatedAt;
+
+        double weightAt(long now, double decayPerMilli) {
+            return weight * Math.exp(-decayPerMilli * Math.max(0, now - updatedAt));
+        }
+    }
+
+    private static final class Node {
+        final UUID id;
+        final Map<Node, Edge> out = new HashMap<>();
+        final Map<Node, Edge> in = new HashMap<>();
+        boolean flagged;
+        // Published for the lock-free reads on the payment path
+        volatile int flaggedDistance = FAR;
+        volatile int fanIn;
+        volatile int fanOut;
+
+        // Union-find
+        Node parent = this;
+        int size = 1;
+
+        Node(UUID id) {
+            this.id = id;
+        }
+    }
+
+    private final Map<UUID, Node> nodes = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final double decayPerMilli;
+    private final double minWeight;
+    private final Clock clock;
+
+    @Autowired
+    public TransferGraph(@Value("${antifraud.fraud.graph.half-life:P7D}") Duration halfLife,
+                         @Value("${antifraud.fraud.graph.min-weight:1.0}") double minWeight) {
+        this(halfLife, minWeight, Clock.systemUTC());
+    }
+
+    public TransferGraph(Duration halfLife, double minWeight, Clock clock) {
+        this.decayPerMilli = Math.log(2) / halfLife.toMillis();
+        this.minWeight = minWeight;
+        this.clock = clock;
+    }
+
+    /**
+     * Adds a transfer of {@code amount} reais from one account to another.
+     */
+    public void record(UUID from, UUID to, double amount) {
+        record(from, to, amount, clock.millis());
+    }
+
+    /**
+     * Adds a transfer made at {@code at} (epoch millis), decayed from then. Transfers older
+     * than the last one on the same edge are decayed to it, so the order they arrive in
+     * does not matter.
+     */
+    public void record(UUID from, UUID to, double amount, long at) {
+        if (from == null || to == null || from.equals(to)) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Node source = nodes.computeIfAbsent(from, Node::new);
+            Node target = nodes.computeIfAbsent(to, Node::new);
+            Edge edge = source.out.get(target);
+            if (edge == null) {
+                edge = new Edge();
+                source.out.put(target, edge);
+                target.in.put(source, edge);
+                source.fanOut = source.out.size();
+                target.fanIn = target.in.size();
+                union(source, target);
+                relax(target, step(source.flaggedDistance));
+                relax(source, step(target.flaggedDistance));
+            }
+            if (at >= edge.updatedAt) {
+                edge.weight = edge.weightAt(at, decayPerMilli) + amount;
+                edge.updatedAt = at;
+            } else {
+                edge.weight += amount * Math.exp(-decayPerMilli * (edge.updatedAt - at));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void flag(UUID accountId) {
+        lock.writeLock().lock();
+        try {
+            Node node = nodes.computeIfAbsent(accountId, Node::new);
+            node.flagged = true;
+            relax(node, 0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void unflag(UUID accountId) {
+        lock.writeLock().lock();
+        try {
+            Node node = nodes.get(accountId);
+            if (node != null && node.flagged) {
+                node.flagged = false;
+                rebuildDistances();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Lock-free: hops to the nearest flagged account, or {@code -1} if further than {@link #MAX_HOPS}.
+     */
+    public int flaggedHops(UUID accountId) {
+        Node node = accountId == null ? null : nodes.get(accountId);
+        int distance = node == null ? FAR : node.flaggedDistance;
+        return distance == FAR ? -1 : distance;
+    }
+
+    public boolean isWithinHopsOfFlagged(UUID accountId, int hops) {
+        int distance = flaggedHops(accountId);
+        return distance >= 0 && distance <= hops;
+    }
+
+    /**
+     * Lock-free: distinct accounts that sent money to the account.
+     */
+    public int fanIn(UUID accountId) {
+        Node node = accountId == null ? null : nodes.get(accountId);
+        return node == null ? 0 : node.fanIn;
+    }
+
+    /**
+     * Lock-free: distinct accounts the account sent money to.
+     */
+    public int fanOut(UUID accountId) {
+        Node node = accountId == null ? null : nodes.get(accountId);
+        return node == null ? 0 : node.fanOut;
+    }
+
+    public Degree degree(UUID accountId) {
+        long now = clock.millis();
+        lock.readLock().lock();
+        try {
+            Node node = accountId == null ? null : nodes.get(accountId);
+            if (node == null) {
+                return Degree.NONE;
+            }
+            return new Degree(node.in.size(), node.out.size(), sum(node.in, now), sum(node.out, now));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Directed cycles of up to {@code maxLength} transfers that start and end at the account,
+     * each listed from the account onwards. At most {@value #MAX_CYCLES} are returned.
+     */
+    public List<List<UUID>> cyclesThrough(UUID accountId, int maxLength) {
+        int limit = Math.min(maxLength, MAX_CYCLE_LENGTH);
+        lock.readLock().lock();
+        try {
+            Node start = accountId == null ? null : nodes.get(accountId);
+            List<List<UUID>> cycles = new ArrayList<>();
+            if (start != null && limit >= 2) {
+                List<Node> path = new ArrayList<>(limit);
+                path.add(start);
+                findCycles(start, start, path, limit, cycles);
+            }
+            return cycles;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Representative account of the component the account belongs to, or the account itself.
+     */
+    public UUID component(UUID accountId) {
+        lock.readLock().lock();
+        try {
+            Node node = nodes.get(accountId);
+            return node == null ? accountId : peekRoot(node).id;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int componentSize(UUID accountId) {
+        lock.readLock().lock();
+        try {
+            Node node = nodes.get(accountId);
+            return node == null ? 1 : peekRoot(node).size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Summary summary(UUID accountId) {
+        lock.readLock().lock();
+        try {
+            Node node = nodes.get(accountId);
+            return new Summary(accountId, node != null && node.flagged, flaggedHops(accountId), degree(accountId),
+                    component(accountId), componentSize(accountId), cyclesThrough(accountId, MAX_CYCLE_LENGTH));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int accounts() {
+        return nodes.size();
+    }
+
+    /**
+     * Drops decayed edges and isolated accounts, then rebuilds components and distances.
+     */
+    @Scheduled(fixedDelayString = "${antifraud.fraud.graph.prune-interval-ms:600000}")
+    public void prune() {
+        long now = clock.millis();
+        lock.writeLock().lock();
+        try {
+            int edges = 0;
+            for (Node node : nodes.values()) {
+                Iterator<Map.Entry<Node, Edge>> it = node.out.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<Node, Edge> entry = it.next();
+                    if (entry.getValue().weightAt(now, decayPerMilli) < minWeight) {
+                        entry.getKey().in.remove(node);
+                        it.remove();
+                        edges++;
+                    }
+                }
+            }
+            for (Node node : nodes.values()) {
+                node.fanIn = node.in.size();
+                node.fanOut = node.out.size();
+            }
+            int before = nodes.size();
+            nodes.values().removeIf(node -> node.out.isEmpty() && node.in.isEmpty() && !node.flagged);
+            rebuildComponents();
+            rebuildDistances();
+            if (edges > 0) {
+                logger.debug("Pruned {} transfer edges and {} accounts", edges, before - nodes.size());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void findCycles(Node start, Node current, List<Node> path, int limit, List<List<UUID>> cycles) {
+        for (Node next : current.out.keySet()) {
+            if (cycles.size() >= MAX_CYCLES) {
+                return;
+            }
+            if (next == start && path.size() >= 2) {
+                cycles.add(path.stream().map(node -> node.id).toList());
+            } else if (path.size() < limit && !path.contains(next)) {
+                path.add(next);
+                findCycles(start, next, path, limit, cycles);
+                path.remove(path.size() - 1);
+            }
+        }
+    }
+
+    private static int step(int distance) {
+        return distance == FAR ? FAR : distance + 1;
+    }
+
+    // Lowers the node's distance and spreads it to neighbours in both directions, up to MAX_HOPS
+    private static void relax(Node node, int distance) {
+        if (distance > MAX_HOPS || distance >= node.flaggedDistance) {
+            return;
+        }
+        node.flaggedDistance = distance;
+        for (Node neighbour : node.out.keySet()) {
+            relax(neighbour, distance + 1);
+        }
+        for (Node neighbour : node.in.keySet()) {
+            relax(neighbour, distance + 1);
+        }
+    }
+
+    private void rebuildDistances() {
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        Map<Node, Integer> distances = new HashMap<>();
+        for (Node node : nodes.values()) {
+            if (node.flagged) {
+                distances.put(node, 0);
+                queue.add(node);
+            }
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            int next = distances.get(node) + 1;
+            if (next > MAX_HOPS) {
+                continue;
+            }
+            for (Map<Node, Edge> edges : List.of(node.out, node.in)) {
+                for (Node neighbour : edges.keySet()) {
+                    if (distances.putIfAbsent(neighbour, next) == null) {
+                        queue.add(neighbour);
+                    }
+                }
+            }
+        }
+        for (Node node : nodes.values()) {
+            node.flaggedDistance = distances.getOrDefault(node, FAR);
+        }
+    }
+
+    private void rebuildComponents() {
+        for (Node node : nodes.values()) {
+            node.parent = node;
+            node.size = 1;
+        }
+        for (Node node : nodes.values()) {
+            for (Node target : node.out.keySet()) {
+                union(node, target);
+            }
+        }
+    }
+
+    private static Node root(Node node) {
+        while (node.parent != node) {
+            node.parent = node.parent.parent;
+            node = node.parent;
+        }
+        return node;
+    }
+
+    // Read-only variant for callers holding only the read lock: no path compression
+    private static Node peekRoot(Node node) {
+        while (node.parent != node) {
+            node = node.parent;
+        }
+        return node;
+    }
+
+    private static void union(Node a, Node b) {
+        Node rootA = root(a);
+        Node rootB = root(b);
+        if (rootA == rootB) {
+            return;
+        }
+        if (rootA.size < rootB.size) {
+            Node swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+        rootB.parent = rootA;
+        rootA.size += rootB.size;
+    }
+
+    private double sum(Map<Node, Edge> edges, long now) {
+        double total = 0;
+        for (Edge edge : edges.values()) {
+            total += edge.weightAt(now, decayPerMilli);
+        }
+        return total;
+    }
+}
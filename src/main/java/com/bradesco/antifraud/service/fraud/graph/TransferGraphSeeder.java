@@ -0,0 +1,93 @@
+package com.bradesco.antifraud.service.fraud.graph;
+
+import com.bradesco.antifraud.dto.TransactionDto;
+import com.bradesco.antifraud.repository.TransactionJdbcRepository;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Rebuilds the edges of the {@link TransferGraph} on startup from the transfers of the last
+ * {@code seed-window}, each decayed from the time it was made. A window of one half-life
+ * restores at least half the weight of every edge the graph held before the restart; older
+ * transfers are left out to keep the startup short. With a zero window the graph starts cold
+ * and only learns the transfers made after the start.
+ */
+@Component
+public class TransferGraphSeeder {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransferGraphSeeder.class);
+
+    private final TransferGraph graph;
+    private final TransactionJdbcRepository repository;
+    private final TransactionOperations readOnly;
+    private final Duration window;
+    private final int fetchSize;
+    private final Clock clock;
+
+    @Autowired
+    public TransferGraphSeeder(TransferGraph graph, TransactionJdbcRepository repository,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${antifraud.fraud.graph.seed-window:${antifraud.fraud.graph.half-life:P7D}}") Duration window,
+                               @Value("${antifraud.fraud.graph.seed-fetch-size:5000}") int fetchSize) {
+        this(graph, repository, readOnly(transactionManager), window, fetchSize, Clock.systemDefaultZone());
+    }
+
+    TransferGraphSeeder(TransferGraph graph, TransactionJdbcRepository repository, TransactionOperations readOnly,
+                        Duration window, int fetchSize, Clock clock) {
+        this.graph = graph;
+        this.repository = repository;
+        this.readOnly = readOnly;
+        this.window = window;
+        this.fetchSize = fetchSize;
+        this.clock = clock;
+    }
+
+    private static TransactionTemplate readOnly(PlatformTransactionManager transactionManager) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        return template;
+    }
+
+    @PostConstruct
+    void seed() {
+        if (window.isZero() || window.isNegative()) {
+            return;
+        }
+        long start = System.nanoTime();
+        LocalDateTime to = LocalDateTime.now(clock);
+        LocalDateTime from = to.minus(window);
+        ZoneId zone = clock.getZone();
+        long[] transfers = new long[1];
+        // One read-only transaction so PostgreSQL streams the rows with a cursor
+        readOnly.executeWithoutResult(status -> repository.streamBetween(from, to, fetchSize, transaction -> {
+            if (record(transaction, zone)) {
+                transfers[0]++;
+            }
+        }));
+        logger.info("Seeded the transfer graph with {} transfers since {} ({} accounts, {} ms)", transfers[0], from,
+                graph.accounts(), Duration.ofNanos(System.nanoTime() - start).toMillis());
+    }
+
+    private boolean record(TransactionDto transaction, ZoneId zone) {
+        if (transaction.getContaDeOrigemId() == null || transaction.getContaDeDestinoId() == null
+                || transaction.getValor() == null || transaction.getDataHora() == null) {
+            return false;
+        }
+        graph.record(transaction.getContaDeOrigemId(), transaction.getContaDeDestinoId(),
+                transaction.getValor().doubleValue(), transaction.getDataHora().atZone(zone).toInstant().toEpochMilli());
+        return true;
+    }
+}
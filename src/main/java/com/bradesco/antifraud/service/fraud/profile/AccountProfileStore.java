@@ -0,0 +1,401 @@
+package com.bradesco.antifraud.service.fraud.profile;
+
+import com.bradesco.antifraud.model.Transaction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Running behavioural profile of every account, kept in fixed-width records in off-heap
+ * memory instead of one object graph per account.
+ * <p>
+ * A record holds, per {@link Transaction.TransactionType}, the count and the exponentially
+ * weighted mean and variance of the amount; a 24-bucket hour-of-day histogram; the four
+ * most frequent counterparties (by id hash, least-frequent replaced); the total count and
+ * the last activity time. Records live in 4096-record direct-buffer chunks allocated on
+ * demand, and account ids map to record slots through a primitive open-addressing table.
+ * <p>
+ * Memory: {@value #RECORD_BYTES} bytes per record plus 20 bytes per index entry at a load
+ * factor of at most 1/2, so roughly 320 to 360 bytes per account (about 340 MB for one
+ * million accounts). An update is a map probe and ~30 field writes under a striped lock.
+ * <p>
+ * Readers never lock: each record carries a sequence number that writers make odd while
+ * they change the record (a seqlock), and a read that overlaps a write is retried. Once
+ * {@code max-accounts} records exist, new accounts are simply not profiled.
+ */
+@Component
+public class AccountProfileStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountProfileStore.class);
+
+    static final int TYPE_COUNT = Transaction.TransactionType.values().length;
+    static final int PEERS = 4;
+
+    // Record layout, byte offsets
+    private static final int SEQ = 0;
+    private static final int LAST_ACTIVITY = 8;
+    private static final int TOTAL = 16;
+    private static final int TYPES = 24;                          // per type: count, mean, variance
+    private static final int TYPE_BYTES = 24;
+    private static final int HOURS = TYPES + TYPE_COUNT * TYPE_BYTES; // 24 int counters
+    private static final int PEER_HASHES = HOURS + 24 * 4;        // PEERS longs
+    private static final int PEER_WEIGHTS = PEER_HASHES + PEERS * 8; // PEERS longs
+    static final int RECORD_BYTES = PEER_WEIGHTS + PEERS * 8;
+
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_RECORDS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_RECORDS - 1;
+
+    // Amounts are compared against at least this standard deviation, in reais
+    private static final double MIN_STD_DEV = 1.0;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    /**
+     * Per-type amount statistics of a profile snapshot, in reais.
+     */
+    public record AmountStats(long count, double mean, double stdDev) {
+    }
+
+    /**
+     * Heap copy of one record, for inspection. The scorer uses {@link #deviation} instead.
+     */
+    public record AccountProfile(long lastActivityMillis, long transactions,
+                                 Map<Transaction.TransactionType, AmountStats> amounts, int[] hourHistogram) {
+    }
+
+    /**
+     * How a transaction compares with the acting account's profile.
+     *
+     * @param typeHistory        earlier transactions of the same type
+     * @param amountZScore       distance of the amount from the type's mean, in standard deviations
+     *                           ({@code 0} until the type has {@code minHistory} transactions)
+     * @param hourShare          fraction of the account's transactions made in the same hour of day
+     * @param knownCounterparty  whether the counterparty is one of the account's usual ones
+     */
+    public record Deviation(long typeHistory, double amountZScore, double hourShare, boolean knownCounterparty) {
+
+        public static final Deviation NONE = new Deviation(0, 0, 0, false);
+    }
+
+    private static final class Index {
+        final long[] keys;   // msb, lsb per entry
+        final int[] slots;   // record slot + 1; 0 marks a free entry
+        final int mask;
+
+        Index(int capacity) {
+            keys = new long[capacity * 2];
+            slots = new int[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    private final int maxAccounts;
+    private final double alpha;
+    private final int minHistory;
+    private final ReentrantLock[] locks = new ReentrantLock[64];
+    private final ReentrantLock indexLock = new ReentrantLock();
+
+    private volatile Index index = new Index(1024);
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private volatile int accounts;
+    private boolean fullLogged;
+
+    @Autowired
+    public AccountProfileStore(@Value("${antifraud.fraud.profiles.max-accounts:1000000}") int maxAccounts,
+                               @Value("${antifraud.fraud.profiles.alpha:0.1}") double alpha) {
+        this(maxAccounts, alpha, 3);
+    }
+
+    AccountProfileStore(int maxAccounts, double alpha, int minHistory) {
+        this.maxAccounts = maxAccounts;
+        this.alpha = alpha;
+        this.minHistory = minHistory;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Folds one processed transaction into the account's profile.
+     *
+     * @param amount in reais
+     * @param hour   hour of day, 0-23
+     */
+    public void update(UUID accountId, Transaction.TransactionType type, double amount, int hour,
+                       UUID counterparty, long nowMillis) {
+        if (accountId == null || type == null) {
+            return;
+        }
+        int slot = slotFor(accountId);
+        if (slot < 0) {
+            return;
+        }
+        ByteBuffer chunk = chunks[slot >>> CHUNK_SHIFT];
+        int base = (slot & CHUNK_MASK) * RECORD_BYTES;
+        ReentrantLock lock = locks[slot & (locks.length - 1)];
+        lock.lock();
+        try {
+            long seq = (long) LONGS.get(chunk, base + SEQ);
+            LONGS.setOpaque(chunk, base + SEQ, seq + 1);
+            VarHandle.storeStoreFence();
+
+            LONGS.set(chunk, base + LAST_ACTIVITY, nowMillis);
+            LONGS.set(chunk, base + TOTAL, (long) LONGS.get(chunk, base + TOTAL) + 1);
+
+            int typeBase = base + TYPES + type.ordinal() * TYPE_BYTES;
+            long count = (long) LONGS.get(chunk, typeBase);
+            double mean = getDouble(chunk, typeBase + 8);
+            double variance = getDouble(chunk, typeBase + 16);
+            if (count == 0) {
+                mean = amount;
+                variance = 0;
+            } else {
+                // Exponentially weighted mean and variance (West's incremental form)
+                double diff = amount - mean;
+                double increment = alpha * diff;
+                mean += increment;
+                variance = (1 - alpha) * (variance + diff * increment);
+            }
+            LONGS.set(chunk, typeBase, count + 1);
+            setDouble(chunk, typeBase + 8, mean);
+            setDouble(chunk, typeBase + 16, variance);
+
+            if (hour >= 0 && hour < 24) {
+                int hourOffset = base + HOURS + hour * 4;
+                INTS.set(chunk, hourOffset, (int) INTS.get(chunk, hourOffset) + 1);
+            }
+            if (counterparty != null) {
+                countPeer(chunk, base, peerHash(counterparty));
+            }
+
+            LONGS.setRelease(chunk, base + SEQ, seq + 2);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lock-free comparison of a candidate transaction with the account's profile.
+     */
+    public Deviation deviation(UUID accountId, Transaction.TransactionType type, double amount, int hour,
+                               UUID counterparty) {
+        int slot = accountId == null || type == null ? -1 : find(accountId);
+        if (slot < 0) {
+            return Deviation.NONE;
+        }
+        ByteBuffer chunk = chunks[slot >>> CHUNK_SHIFT];
+        int base = (slot & CHUNK_MASK) * RECORD_BYTES;
+        int typeBase = base + TYPES + type.ordinal() * TYPE_BYTES;
+        long peer = counterparty == null ? 0 : peerHash(counterparty);
+        for (;;) {
+            long seq = (long) LONGS.getAcquire(chunk, base + SEQ);
+            if ((seq & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long total = (long) LONGS.get(chunk, base + TOTAL);
+            long count = (long) LONGS.get(chunk, typeBase);
+            double mean = getDouble(chunk, typeBase + 8);
+            double variance = getDouble(chunk, typeBase + 16);
+            int hourCount = hour >= 0 && hour < 24 ? (int) INTS.get(chunk, base + HOURS + hour * 4) : 0;
+            boolean known = peer != 0 && peerWeight(chunk, base, peer) >= 2;
+            VarHandle.loadLoadFence();
+            if ((long) LONGS.getOpaque(chunk, base + SEQ) != seq) {
+                continue;
+            }
+            double zScore = count < minHistory ? 0 : (amount - mean) / Math.max(Math.sqrt(variance), MIN_STD_DEV);
+            return new Deviation(count, zScore, total == 0 ? 0 : (double) hourCount / total, known);
+        }
+    }
+
+    public Optional<AccountProfile> profile(UUID accountId) {
+        int slot = accountId == null ? -1 : find(accountId);
+        if (slot < 0) {
+            return Optional.empty();
+        }
+        ByteBuffer chunk = chunks[slot >>> CHUNK_SHIFT];
+        int base = (slot & CHUNK_MASK) * RECORD_BYTES;
+        for (;;) {
+            long seq = (long) LONGS.getAcquire(chunk, base + SEQ);
+            if ((seq & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            Map<Transaction.TransactionType, AmountStats> amounts = new EnumMap<>(Transaction.TransactionType.class);
+            for (Transaction.TransactionType type : Transaction.TransactionType.values()) {
+                int typeBase = base + TYPES + type.ordinal() * TYPE_BYTES;
+                long count = (long) LONGS.get(chunk, typeBase);
+                if (count > 0) {
+                    amounts.put(type, new AmountStats(count, getDouble(chunk, typeBase + 8),
+                            Math.sqrt(getDouble(chunk, typeBase + 16))));
+                }
+            }
+            int[] hours = new int[24];
+            for (int h = 0; h < 24; h++) {
+                hours[h] = (int) INTS.get(chunk, base + HOURS + h * 4);
+            }
+            AccountProfile profile = new AccountProfile((long) LONGS.get(chunk, base + LAST_ACTIVITY),
+                    (long) LONGS.get(chunk, base + TOTAL), amounts, hours);
+            VarHandle.loadLoadFence();
+            if ((long) LONGS.getOpaque(chunk, base + SEQ) == seq) {
+                return Optional.of(profile);
+            }
+        }
+    }
+
+    public int accounts() {
+        return accounts;
+    }
+
+    /**
+     * Bytes held by records and index, allocated or not yet used.
+     */
+    public long memoryBytes() {
+        Index current = index;
+        return (long) chunks.length * CHUNK_RECORDS * RECORD_BYTES
+                + current.keys.length * 8L + current.slots.length * 4L;
+    }
+
+    private int find(UUID accountId) {
+        long msb = accountId.getMostSignificantBits();
+        long lsb = accountId.getLeastSignificantBits();
+        Index current = index;
+        int i = hash(msb, lsb) & current.mask;
+        for (;;) {
+            int slot = (int) SLOTS.getAcquire(current.slots, i);
+            if (slot == 0) {
+                return -1;
+            }
+            if (current.keys[2 * i] == msb && current.keys[2 * i + 1] == lsb) {
+                return slot - 1;
+            }
+            i = (i + 1) & current.mask;
+        }
+    }
+
+    private int slotFor(UUID accountId) {
+        int slot = find(accountId);
+        if (slot >= 0) {
+            return slot;
+        }
+        indexLock.lock();
+        try {
+            slot = find(accountId);
+            if (slot >= 0) {
+                return slot;
+            }
+            if (accounts >= maxAccounts) {
+                if (!fullLogged) {
+                    fullLogged = true;
+                    logger.warn("Account profile store is full ({} accounts), new accounts are not profiled", maxAccounts);
+                }
+                return -1;
+            }
+            slot = accounts;
+            if ((slot >>> CHUNK_SHIFT) == chunks.length) {
+                addChunk();
+            }
+            if ((slot + 1) * 2 > index.slots.length) {
+                index = rehash(index, index.slots.length * 2);
+            }
+            insert(index, accountId.getMostSignificantBits(), accountId.getLeastSignificantBits(), slot);
+            accounts = slot + 1;
+            return slot;
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    private void addChunk() {
+        ByteBuffer[] current = chunks;
+        ByteBuffer[] grown = new ByteBuffer[current.length + 1];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        // Aligned so the 8-byte fields support atomic access modes
+        grown[current.length] = ByteBuffer.allocateDirect(CHUNK_RECORDS * RECORD_BYTES + 8).alignedSlice(8);
+        chunks = grown;
+    }
+
+    // Readers keep using the old table until the new one is published, complete
+    private static Index rehash(Index old, int capacity) {
+        Index grown = new Index(capacity);
+        for (int i = 0; i < old.slots.length; i++) {
+            if (old.slots[i] != 0) {
+                insert(grown, old.keys[2 * i], old.keys[2 * i + 1], old.slots[i] - 1);
+            }
+        }
+        return grown;
+    }
+
+    private static void insert(Index target, long msb, long lsb, int slot) {
+        int i = hash(msb, lsb) & target.mask;
+        while (target.slots[i] != 0) {
+            i = (i + 1) & target.mask;
+        }
+        target.keys[2 * i] = msb;
+        target.keys[2 * i + 1] = lsb;
+        SLOTS.setRelease(target.slots, i, slot + 1);
+    }
+
+    private static int hash(long msb, long lsb) {
+        long h = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static long peerHash(UUID id) {
+        long h = id.getMostSignificantBits() * 0x9E3779B97F4A7C15L ^ id.getLeastSignificantBits();
+        return h == 0 ? 1 : h;
+    }
+
+    private static long peerWeight(ByteBuffer chunk, int base, long peer) {
+        for (int p = 0; p < PEERS; p++) {
+            if ((long) LONGS.get(chunk, base + PEER_HASHES + p * 8) == peer) {
+                return (long) LONGS.get(chunk, base + PEER_WEIGHTS + p * 8);
+            }
+        }
+        return 0;
+    }
+
+    // Top-PEERS counterparties: a newcomer replaces the least frequent one
+    private static void countPeer(ByteBuffer chunk, int base, long peer) {
+        int victim = 0;
+        long victimWeight = Long.MAX_VALUE;
+        for (int p = 0; p < PEERS; p++) {
+            long hash = (long) LONGS.get(chunk, base + PEER_HASHES + p * 8);
+            long weight = (long) LONGS.get(chunk, base + PEER_WEIGHTS + p * 8);
+            if (hash == peer) {
+                LONGS.set(chunk, base + PEER_WEIGHTS + p * 8, weight + 1);
+                return;
+            }
+            if (weight < victimWeight) {
+                victim = p;
+                victimWeight = weight;
+            }
+        }
+        LONGS.set(chunk, base + PEER_HASHES + victim * 8, peer);
+        LONGS.set(chunk, base + PEER_WEIGHTS + victim * 8, 1L);
+    }
+
+    private static double getDouble(ByteBuffer chunk, int offset) {
+        return Double.longBitsToDouble((long) LONGS.get(chunk, offset));
+    }
+
+    private static void setDouble(ByteBuffer chunk, int offset, double value) {
+        LONGS.set(chunk, offset, Double.doubleToRawLongBits(value));
+    }
+}
@@ -0,0 +1,121 @@
+package com.bradesco.antifraud.service.fraud.rules;
+
+/**
+ * Compiled form of a rule's {@code when} expression. Nodes only read feature slots by
+ * index; {@code and}/{@code or} stop at the first child that decides the result.
+ */
+sealed interface Condition {
+
+    boolean test(double[] features);
+
+    enum Operator {
+        EQ("=="), NE("!="), LT("<"), LE("<="), GT(">"), GE(">=");
+
+        final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        static Operator of(String symbol) {
+            for (Operator operator : values()) {
+                if (operator.symbol.equals(symbol)) {
+                    return operator;
+                }
+            }
+            return null;
+        }
+    }
+
+    record Compare(int feature, Operator operator, double value) implements Condition {
+        @Override
+        public boolean test(double[] features) {
+            return compare(features[feature], operator, value);
+        }
+    }
+
+    /**
+     * {@code and} of plain comparisons, the most common rule shape, kept in flat arrays so
+     * it is a single loop with no call per clause.
+     */
+    record Conjunction(int[] features, Operator[] operators, double[] values) implements Condition {
+
+        static Conjunction of(Condition[] compares) {
+            int[] features = new int[compares.length];
+            Operator[] operators = new Operator[compares.length];
+            double[] values = new double[compares.length];
+            for (int i = 0; i < compares.length; i++) {
+                Compare compare = (Compare) compares[i];
+                features[i] = compare.feature();
+                operators[i] = compare.operator();
+                values[i] = compare.value();
+            }
+            return new Conjunction(features, operators, values);
+        }
+
+        @Override
+        public boolean test(double[] input) {
+            for (int i = 0; i < features.length; i++) {
+                if (!compare(input[features[i]], operators[i], values[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    record In(int feature, double[] values) implements Condition {
+        @Override
+        public boolean test(double[] features) {
+            double actual = features[feature];
+            for (double value : values) {
+                if (actual == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    record All(Condition[] children) implements Condition {
+        @Override
+        public boolean test(double[] features) {
+            for (Condition child : children) {
+                if (!child.test(features)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    record Any(Condition[] children) implements Condition {
+        @Override
+        public boolean test(double[] features) {
+            for (Condition child : children) {
+                if (child.test(features)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    record Not(Condition child) implements Condition {
+        @Override
+        public boolean test(double[] features) {
+            return !child.test(features);
+        }
+    }
+
+    private static boolean compare(double actual, Operator operator, double value) {
+        return switch (operator) {
+            case EQ -> actual == value;
+            case NE -> actual != value;
+            case LT -> actual < value;
+            case LE -> actual <= value;
+            case GT -> actual > value;
+            case GE -> actual >= value;
+        };
+    }
+}
@@ -0,0 +1,195 @@
+package com.bradesco.antifraud.service.fraud.rules;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recursive-descent parser for rule conditions, e.g.
+ * {@code type == TRANSFERENCIA and amount > 5000 and destinationAgeHours < 24}.
+ * <pre>
+ * or         := and ("or" and)*
+ * and        := unary ("and" unary)*
+ * unary      := "not" unary | "(" or ")" | comparison
+ * comparison := feature op value | feature "in" "(" value ("," value)* ")" | flag
+ * </pre>
+ * Names and symbols are resolved here, so the resulting tree never looks anything up.
+ */
+final class ConditionParser {
+
+    private final String source;
+    private final List<String> tokens = new ArrayList<>();
+    private final List<Integer> positions = new ArrayList<>();
+    private int index;
+
+    private ConditionParser(String source) {
+        this.source = source;
+        tokenize();
+    }
+
+    static Condition parse(String source) {
+        if (source == null || source.isBlank()) {
+            throw new IllegalArgumentException("Condition is empty");
+        }
+        ConditionParser parser = new ConditionParser(source);
+        Condition condition = parser.or();
+        if (parser.index < parser.tokens.size()) {
+            throw parser.error("Unexpected '" + parser.peek() + "'");
+        }
+        return condition;
+    }
+
+    private Condition or() {
+        List<Condition> children = new ArrayList<>();
+        children.add(and());
+        while (acceptKeyword("or")) {
+            children.add(and());
+        }
+        return children.size() == 1 ? children.get(0) : new Condition.Any(flatten(children, Condition.Any.class));
+    }
+
+    private Condition and() {
+        List<Condition> children = new ArrayList<>();
+        children.add(unary());
+        while (acceptKeyword("and")) {
+            children.add(unary());
+        }
+        return children.size() == 1 ? children.get(0) : new Condition.All(flatten(children, Condition.All.class));
+    }
+
+    private Condition unary() {
+        if (acceptKeyword("not")) {
+            Condition child = unary();
+            return child instanceof Condition.Not not ? not.child() : new Condition.Not(child);
+        }
+        if (accept("(")) {
+            Condition inner = or();
+            expect(")");
+            return inner;
+        }
+        return comparison();
+    }
+
+    private Condition comparison() {
+        int start = index;
+        String name = next("feature name");
+        Feature feature = Feature.byName(name);
+        if (feature == null) {
+            index = start;
+            throw error("Unknown feature '" + name + "'");
+        }
+        if (acceptKeyword("in")) {
+            expect("(");
+            List<Double> values = new ArrayList<>();
+            do {
+                values.add(value(feature));
+            } while (accept(","));
+            expect(")");
+            return new Condition.In(feature.ordinal(), values.stream().mapToDouble(Double::doubleValue).toArray());
+        }
+        Condition.Operator operator = peek() == null ? null : Condition.Operator.of(peek());
+        if (operator == null) {
+            if (feature.isFlag()) {
+                return new Condition.Compare(feature.ordinal(), Condition.Operator.NE, 0);
+            }
+            throw error("Expected a comparison after '" + name + "'");
+        }
+        index++;
+        return new Condition.Compare(feature.ordinal(), operator, value(feature));
+    }
+
+    private double value(Feature feature) {
+        String token = next("value");
+        Double symbol = feature.symbol(token);
+        if (symbol != null) {
+            return symbol;
+        }
+        try {
+            return Double.parseDouble(token.replace("_", ""));
+        } catch (NumberFormatException e) {
+            index--;
+            throw error("'" + token + "' is not a valid value for " + feature.ruleName());
+        }
+    }
+
+    // and(a, and(b, c)) from parentheses becomes and(a, b, c)
+    private static Condition[] flatten(List<Condition> children, Class<? extends Condition> type) {
+        List<Condition> flat = new ArrayList<>();
+        for (Condition child : children) {
+            if (child instanceof Condition.All all && type == Condition.All.class) {
+                flat.addAll(List.of(all.children()));
+            } else if (child instanceof Condition.Any any && type == Condition.Any.class) {
+                flat.addAll(List.of(any.children()));
+            } else {
+                flat.add(child);
+            }
+        }
+        return flat.toArray(Condition[]::new);
+    }
+
+    private void tokenize() {
+        int i = 0;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            int start = i;
+            if (Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '-') {
+                i++;
+                while (i < source.length() && (Character.isLetterOrDigit(source.charAt(i))
+                        || source.charAt(i) == '_' || source.charAt(i) == '.')) {
+                    i++;
+                }
+            } else if ((c == '=' || c == '!' || c == '<' || c == '>')
+                    && i + 1 < source.length() && source.charAt(i + 1) == '=') {
+                i += 2;
+            } else if (c == '<' || c == '>' || c == '(' || c == ')' || c == ',') {
+                i++;
+            } else {
+                throw new IllegalArgumentException("Unexpected character '" + c + "' at position " + (i + 1));
+            }
+            tokens.add(source.substring(start, i));
+            positions.add(start);
+        }
+    }
+
+    private String peek() {
+        return index < tokens.size() ? tokens.get(index) : null;
+    }
+
+    private String next(String expected) {
+        if (index >= tokens.size()) {
+            throw error("Expected " + expected + " but the condition ended");
+        }
+        return tokens.get(index++);
+    }
+
+    private boolean accept(String token) {
+        if (token.equals(peek())) {
+            index++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean acceptKeyword(String keyword) {
+        String token = peek();
+        if (token != null && token.equalsIgnoreCase(keyword)) {
+            index++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String token) {
+        if (!accept(token)) {
+            throw error("Expected '" + token + "'");
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        int position = index < positions.size() ? positions.get(index) + 1 : source.length() + 1;
+        return new IllegalArgumentException(message + " at position " + position);
+    }
+}
@@ -0,0 +1,92 @@
+package com.bradesco.antifraud.service.fraud.rules;
+
+import com.bradesco.antifraud.model.Transaction;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Inputs a fraud rule can test, by the name used in the rule file. Amounts are in reais,
+ * {@code -1} means "not available" (no previous activity, no destination, no timestamp).
+ */
+public enum Feature {
+    AMOUNT("amount"),
+    TYPE("type", Transaction.TransactionType.class),
+    HOUR_OF_DAY("hourOfDay"),
+    COUNT_LAST_MINUTE("countLastMinute"),
+    SUM_LAST_MINUTE("sumLastMinute"),
+    COUNT_LAST_HOUR("countLastHour"),
+    SUM_LAST_HOUR("sumLastHour"),
+    COUNT_LAST_DAY("countLastDay"),
+    SUM_LAST_DAY("sumLastDay"),
+    DISTINCT_DESTINATIONS_LAST_DAY("distinctDestinationsLastDay"),
+    SECONDS_SINCE_LAST("secondsSinceLast"),
+    // Hours since the source first paid the destination; 0 for a payee it never paid before
+    DESTINATION_AGE_HOURS("destinationAgeHours"),
+    SELF_TRANSFER("selfTransfer", Boolean.class),
+    // From the account's long-term profile: earlier transactions of this type, distance of the
+    // amount from their mean in standard deviations, share of activity at this hour of day
+    TYPE_HISTORY("typeHistory"),
+    AMOUNT_Z_SCORE("amountZScore"),
+    HOUR_SHARE("hourShare"),
+    KNOWN_COUNTERPARTY("knownCounterparty", Boolean.class),
+    // From the transfer graph: hops from the destination to a flagged account (-1 if more than 2),
+    // distinct accounts paying the destination and distinct accounts the source pays
+    DESTINATION_FLAGGED_HOPS("destinationFlaggedHops"),
+    DESTINATION_FAN_IN("destinationFanIn"),
+    SOURCE_FAN_OUT("sourceFanOut");
+
+    private static final Map<String, Feature> BY_NAME = new HashMap<>();
+
+    static {
+        for (Feature feature : values()) {
+            BY_NAME.put(feature.ruleName, feature);
+        }
+    }
+
+    private final String ruleName;
+    private final Class<?> symbols;
+
+    Feature(String ruleName) {
+        this(ruleName, null);
+    }
+
+    Feature(String ruleName, Class<?> symbols) {
+        this.ruleName = ruleName;
+        this.symbols = symbols;
+    }
+
+    public String ruleName() {
+        return ruleName;
+    }
+
+    public boolean isFlag() {
+        return symbols == Boolean.class;
+    }
+
+    static Feature byName(String name) {
+        return BY_NAME.get(name);
+    }
+
+    /**
+     * Numeric value of a symbolic constant ({@code TRANSFERENCIA}, {@code true}) for this
+     * feature, or {@code null} if the symbol does not belong to it.
+     */
+    Double symbol(String name) {
+        if (symbols == Boolean.class) {
+            return switch (name) {
+                case "true" -> 1.0;
+                case "false" -> 0.0;
+                default -> null;
+            };
+        }
+        if (symbols != null && symbols.isEnum()) {
+            for (Object constant : symbols.getEnumConstants()) {
+                if (((Enum<?>) constant).name().equals(name)) {
+                    return (double) ((Enum<?>) constant).ordinal();
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,48 @@
+package com.bradesco.antifraud.service.fraud.rules;
+
+import com.bradesco.antifraud.model.Transaction;
+import com.bradesco.antifraud.service.fraud.ActivityFeatures;
+
+/**
+ * Every {@link Feature} of one transaction, computed once before the rules run, so
+ * conditions only read an array slot.
+ */
+public final class FeatureVector {
+
+    private static final double HOUR_MILLIS = 3_600_000.0;
+
+    final double[] values = new double[Feature.values().length];
+
+    /**
+     * @param amountCents            transaction amount in cents
+     * @param destinationAgeMillis   time since the source first paid the destination, {@code 0}
+     *                               if never, {@code -1} if the transaction has no destination
+     */
+    public static FeatureVector of(Transaction transaction, long amountCents, ActivityFeatures activity,
+                                   long destinationAgeMillis, boolean selfTransfer) {
+        FeatureVector vector = new FeatureVector();
+        vector.set(Feature.AMOUNT, amountCents / 100.0);
+        vector.set(Feature.TYPE, transaction.getTipo() == null ? -1 : transaction.getTipo().ordinal());
+        vector.set(Feature.HOUR_OF_DAY, transaction.getDataHora() == null ? -1 : transaction.getDataHora().getHour());
+        vector.set(Feature.COUNT_LAST_MINUTE, activity.countLastMinute());
+        vector.set(Feature.SUM_LAST_MINUTE, activity.sumLastMinute() / 100.0);
+        vector.set(Feature.COUNT_LAST_HOUR, activity.countLastHour());
+        vector.set(Feature.SUM_LAST_HOUR, activity.sumLastHour() / 100.0);
+        vector.set(Feature.COUNT_LAST_DAY, activity.countLastDay());
+        vector.set(Feature.SUM_LAST_DAY, activity.sumLastDay() / 100.0);
+        vector.set(Feature.DISTINCT_DESTINATIONS_LAST_DAY, activity.distinctDestinationsLastDay());
+        vector.set(Feature.SECONDS_SINCE_LAST, activity.millisSinceLast() < 0 ? -1 : activity.millisSinceLast() / 1000.0);
+        vector.set(Feature.DESTINATION_AGE_HOURS, destinationAgeMillis < 0 ? -1 : destinationAgeMillis / HOUR_MILLIS);
+        vector.set(Feature.SELF_TRANSFER, selfTransfer ? 1 : 0);
+        return vector;
+    }
+
+    public FeatureVector set(Feature feature, double value) {
+        values[feature.ordinal()] = value;
+        return this;
+    }
+
+    public double get(Feature feature) {
+        return values[feature.ordinal()];
+    }
+}
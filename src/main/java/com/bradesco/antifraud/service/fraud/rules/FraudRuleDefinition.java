@@ -0,0 +1,12 @@
+package com.bradesco.antifraud.service.fraud.rules;
+
+/**
+ * One entry of the rule file, as written by an analyst.
+ *
+ * @param id     reported in the score reasons when the rule matches
+ * @param weight points added to the score on a match (may be negative)
+ * @param action {@code allow}, {@code review} or {@code block}; {@code review} when omitted
+ * @param when   condition over the {@link Feature} names
+ */
+public record FraudRuleDefinition(String id, int weight, String action, String when) {
+}
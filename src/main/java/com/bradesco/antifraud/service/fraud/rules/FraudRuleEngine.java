@@ -0,0 +1,81 @@
+package com.bradesco.antifraud.service.fraud.rules;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Holds the compiled rule set loaded from {@code antifraud.fraud.rules-file} (a JSON array
+ * of {@link FraudRuleDefinition}). The file is checked for changes periodically and
+ * recompiled, so analysts can change rules without a redeploy. A file that does not
+ * compile fails startup, but on reload it is logged and the previous rules stay active.
+ */
+@Component
+public class FraudRuleEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(FraudRuleEngine.class);
+
+    private final Resource resource;
+    private final ObjectReader reader;
+    private volatile FraudRuleSet rules;
+    private volatile long lastModified;
+
+    public FraudRuleEngine(@Value("${antifraud.fraud.rules-file:classpath:fraud-rules.json}") Resource resource,
+                           ObjectMapper objectMapper) {
+        this.resource = resource;
+        this.reader = objectMapper.readerFor(new TypeReference<List<FraudRuleDefinition>>() {
+        }).with(JsonParser.Feature.ALLOW_COMMENTS);
+        this.lastModified = lastModified();
+        this.rules = load();
+        logger.info("Loaded {} fraud rules from {}", rules.size(), resource.getDescription());
+    }
+
+    public FraudRuleSet rules() {
+        return rules;
+    }
+
+    @Scheduled(fixedDelayString = "${antifraud.fraud.rules-reload-ms:5000}")
+    public void reloadIfChanged() {
+        long modified = lastModified();
+        if (modified == lastModified) {
+            return;
+        }
+        lastModified = modified;
+        try {
+            rules = load();
+            logger.info("Reloaded {} fraud rules from {}", rules.size(), resource.getDescription());
+        } catch (RuntimeException e) {
+            logger.error("Keeping the previous fraud rules, {} is invalid: {}", resource.getDescription(), e.getMessage());
+        }
+    }
+
+    private FraudRuleSet load() {
+        try (InputStream in = resource.getInputStream()) {
+            return FraudRuleSet.compile(reader.readValue(in));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read fraud rules from " + resource.getDescription(), e);
+        }
+    }
+
+    // Resources inside a jar have no usable timestamp and are never reloaded
+    private long lastModified() {
+        try {
+            return resource.isFile() ? resource.lastModified() : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
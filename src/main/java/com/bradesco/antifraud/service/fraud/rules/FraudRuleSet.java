@@ -0,0 +1,199 @@
+package com.bradesco.antifraud.service.fraud.rules;
+
+import com.bradesco.antifraud.model.Transaction;
+import com.bradesco.antifraud.service.fraud.FraudDecision;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Immutable, compiled set of fraud rules, evaluated in file order.
+ * <p>
+ * A matching {@code review} rule adds its weight and evaluation goes on. A matching
+ * {@code block} rule ends evaluation, since nothing later can lower the outcome. A matching
+ * {@code allow} rule also ends evaluation and marks the transaction as allow-listed, which
+ * overrides the score: put allow-list rules first.
+ * <p>
+ * Most rules are about one transaction type, so at compile time each rule whose condition
+ * requires {@code type == X} is filed under that type with the type test removed. A
+ * transaction then only walks the rules of its own type plus the type-agnostic ones,
+ * still in file order.
+ */
+public final class FraudRuleSet {
+
+    private static final int TYPES = Transaction.TransactionType.values().length;
+
+    public static final FraudRuleSet EMPTY = compile(List.of());
+
+    /**
+     * What the rules contributed to a score. {@code action} is the strongest action among the
+     * matched rules ({@code ALLOW} if none matched).
+     */
+    public record Outcome(int weight, FraudDecision action, boolean allowListed, List<String> matched) {
+
+        static final Outcome NONE = new Outcome(0, FraudDecision.ALLOW, false, List.of());
+    }
+
+    private record Rule(String id, int weight, FraudDecision action, Condition condition) {
+    }
+
+    private final int size;
+    // Index = type ordinal; the last bucket holds the type-agnostic rules only
+    private final Rule[][] byType;
+
+    private FraudRuleSet(int size, Rule[][] byType) {
+        this.size = size;
+        this.byType = byType;
+    }
+
+    /**
+     * Parses every definition. Throws {@link IllegalArgumentException} naming the first bad
+     * rule, so a broken file is rejected as a whole.
+     */
+    public static FraudRuleSet compile(List<FraudRuleDefinition> definitions) {
+        List<List<Rule>> buckets = new ArrayList<>(TYPES + 1);
+        for (int i = 0; i <= TYPES; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < definitions.size(); i++) {
+            FraudRuleDefinition definition = definitions.get(i);
+            String label = definition.id() == null ? "#" + (i + 1) : "'" + definition.id() + "'";
+            if (definition.id() == null || definition.id().isBlank()) {
+                throw new IllegalArgumentException("Rule " + label + ": id is required");
+            }
+            if (!ids.add(definition.id())) {
+                throw new IllegalArgumentException("Rule " + label + ": duplicate id");
+            }
+            Condition condition;
+            FraudDecision action;
+            try {
+                condition = ConditionParser.parse(definition.when());
+                action = action(definition.action());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Rule " + label + ": " + e.getMessage(), e);
+            }
+            int type = requiredType(condition);
+            if (type >= 0) {
+                buckets.get(type).add(new Rule(definition.id(), definition.weight(), action,
+                        packComparisons(withoutTypeTest(condition))));
+            } else {
+                Rule rule = new Rule(definition.id(), definition.weight(), action, packComparisons(condition));
+                buckets.forEach(bucket -> bucket.add(rule));
+            }
+        }
+        return new FraudRuleSet(ids.size(), buckets.stream().map(bucket -> bucket.toArray(Rule[]::new)).toArray(Rule[][]::new));
+    }
+
+    public Outcome evaluate(FeatureVector vector) {
+        double[] features = vector.values;
+        int type = (int) features[Feature.TYPE.ordinal()];
+        Rule[] rules = byType[type >= 0 && type < TYPES ? type : TYPES];
+        int weight = 0;
+        FraudDecision action = FraudDecision.ALLOW;
+        List<String> matched = null;
+        for (Rule rule : rules) {
+            if (!rule.condition.test(features)) {
+                continue;
+            }
+            if (matched == null) {
+                matched = new ArrayList<>(4);
+            }
+            matched.add(rule.id);
+            weight += rule.weight;
+            if (rule.action == FraudDecision.ALLOW) {
+                return new Outcome(weight, FraudDecision.ALLOW, true, matched);
+            }
+            if (rule.action.compareTo(action) > 0) {
+                action = rule.action;
+            }
+            if (action == FraudDecision.BLOCK) {
+                break;
+            }
+        }
+        return matched == null ? Outcome.NONE : new Outcome(weight, action, false, matched);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Type ordinal the condition requires by itself or through a top-level and, else -1
+    private static int requiredType(Condition condition) {
+        if (isTypeTest(condition)) {
+            return (int) ((Condition.Compare) condition).value();
+        }
+        if (condition instanceof Condition.All all) {
+            for (Condition child : all.children()) {
+                if (isTypeTest(child)) {
+                    return (int) ((Condition.Compare) child).value();
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isTypeTest(Condition condition) {
+        return condition instanceof Condition.Compare compare
+                && compare.feature() == Feature.TYPE.ordinal()
+                && compare.operator() == Condition.Operator.EQ
+                && compare.value() >= 0 && compare.value() < TYPES;
+    }
+
+    // Only called for conditions that passed requiredType; an empty and is always true
+    private static Condition withoutTypeTest(Condition condition) {
+        if (!(condition instanceof Condition.All all)) {
+            return new Condition.All(new Condition[0]);
+        }
+        List<Condition> rest = new ArrayList<>(List.of(all.children()));
+        for (int i = 0; i < rest.size(); i++) {
+            if (isTypeTest(rest.get(i))) {
+                rest.remove(i);
+                break;
+            }
+        }
+        return rest.size() == 1 ? rest.get(0) : new Condition.All(rest.toArray(Condition[]::new));
+    }
+
+    // Replaces every and made only of comparisons with its flat-array form
+    private static Condition packComparisons(Condition condition) {
+        if (condition instanceof Condition.All all) {
+            Condition[] children = pack(all.children());
+            for (Condition child : children) {
+                if (!(child instanceof Condition.Compare)) {
+                    return new Condition.All(children);
+                }
+            }
+            return Condition.Conjunction.of(children);
+        }
+        if (condition instanceof Condition.Any any) {
+            return new Condition.Any(pack(any.children()));
+        }
+        if (condition instanceof Condition.Not not) {
+            return new Condition.Not(packComparisons(not.child()));
+        }
+        return condition;
+    }
+
+    private static Condition[] pack(Condition[] conditions) {
+        Condition[] packed = new Condition[conditions.length];
+        for (int i = 0; i < conditions.length; i++) {
+            packed[i] = packComparisons(conditions[i]);
+        }
+        return packed;
+    }
+
+    private static FraudDecision action(String action) {
+        if (action == null) {
+            return FraudDecision.REVIEW;
+        }
+        try {
+            return FraudDecision.valueOf(action.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown action '" + action + "', expected allow, review or block");
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.bradesco.antifraud.service.idempotency;
+
+import com.bradesco.antifraud.cache.ExpiringStore;
+import com.bradesco.antifraud.model.IdempotencyRecord;
+import com.bradesco.antifraud.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs a request at most once per {@code Idempotency-Key} and replays its response to
+ * retries.
+ * <p>
+ * Completed responses are kept in memory for the key's time to live and persisted to
+ * {@code idempotency_keys}, so a retry after a restart (or on another instance, once the
+ * first one has finished) is still answered from the stored response. A retry that
+ * arrives while the first request is still running waits for it and gets the same
+ * response instead of running it again. Server errors and exceptions are not stored: the
+ * key can be retried. Reusing a key for a different request is refused with 422. Keys are
+ * scoped by endpoint and by owner (the customer the request acts for), so two customers
+ * picking the same key never see each other's responses.
+ * <p>
+ * The key is inserted {@link IdempotencyRecord#PENDING pending}, in a transaction of its
+ * own, before the request runs, and completed with the response once it returns. A key
+ * still pending in the table (running on another instance, or left behind by a crash or a
+ * database failure between the request's commit and the completion) is answered with 409
+ * rather than run again, until it expires: within its time to live a key never moves money
+ * twice, at the price of a client that hits such a key having to look the outcome up
+ * itself. Once the key expires a retry runs the request again, as before.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private record StoredResponse(String fingerprint, int status, HttpHeaders headers, Object body) {
+    }
+
+    private final IdempotencyRecordRepository repository;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Duration ttl;
+    private final ExpiringStore<String, StoredResponse> responses;
+    private final Map<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyService(IdempotencyRecordRepository repository, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                              @Value("${antifraud.idempotency.capacity:100000}") int capacity,
+                              @Value("${antifraud.idempotency.ttl:PT24H}") Duration ttl) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.ttl = ttl;
+        this.responses = new ExpiringStore<>("idempotency-keys", capacity);
+    }
+
+    /**
+     * Runs {@code action} unless {@code owner} already used {@code key} in {@code scope}, in
+     * which case the stored response is returned. Without a key the action simply runs.
+     *
+     * @param owner       customer the request acts for; {@code null} if it cannot be told
+     * @param fingerprint identifies the request; see {@link #fingerprint(Object...)}
+     * @param bodyType    type the stored JSON body is read back as
+     * @throws ResponseStatusException 400 if the key is too long, 422 if it was used for a different request
+     */
+    public <T> ResponseEntity<T> execute(String scope, UUID owner, String key, String fingerprint, Class<T> bodyType,
+                                         Supplier<ResponseEntity<T>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    KEY_HEADER + " must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+        String storedKey = scope + ":" + (owner == null ? "" : owner) + ":" + key;
+
+        StoredResponse stored = responses.get(storedKey);
+        if (stored != null) {
+            return replay(stored, fingerprint, "replayed");
+        }
+
+        CompletableFuture<StoredResponse> execution = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(storedKey, execution);
+        if (running != null) {
+            return replay(await(running), fingerprint, "collapsed");
+        }
+        try {
+            stored = responses.get(storedKey);
+            if (stored == null) {
+                stored = stored(storedKey, fingerprint, bodyType);
+            }
+            if (stored == null && !reserve(storedKey, fingerprint)) {
+                // Inserted by another instance since it was looked up
+                stored = stored(storedKey, fingerprint, bodyType);
+                if (stored == null) {
+                    throw pending();
+                }
+            }
+            if (stored != null) {
+                execution.complete(stored);
+                return replay(stored, fingerprint, "replayed");
+            }
+
+            ResponseEntity<T> response;
+            try {
+                response = action.get();
+            } catch (RuntimeException e) {
+                release(storedKey);
+                throw e;
+            }
+            stored = new StoredResponse(fingerprint, response.getStatusCode().value(), response.getHeaders(), response.getBody());
+            if (response.getStatusCode().is5xxServerError()) {
+                release(storedKey);
+            } else {
+                complete(storedKey, stored);
+            }
+            execution.complete(stored);
+            count("executed");
+            return response;
+        } catch (RuntimeException e) {
+            execution.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(storedKey, execution);
+        }
+    }
+
+    /**
+     * SHA-256 of the given request fields, used to detect a key reused for another request.
+     */
+    public static String fingerprint(Object... fields) {
+        StringBuilder joined = new StringBuilder();
+        for (Object field : fields) {
+            joined.append(field).append('|');
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(joined.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public int size() {
+        return responses.size();
+    }
+
+    @Scheduled(fixedDelayString = "${antifraud.idempotency.cleanup-interval-ms:60000}")
+    public void deleteExpired() {
+        responses.expire();
+        int deleted = repository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            logger.debug("Deleted {} expired idempotency keys", deleted);
+        }
+    }
+
+    // The completed response stored for the key, or null if it has none; 409 while it is pending
+    private StoredResponse stored(String storedKey, String fingerprint, Class<?> bodyType) {
+        IdempotencyRecord record = repository.findLive(storedKey, LocalDateTime.now()).orElse(null);
+        if (record == null) {
+            return null;
+        }
+        if (record.isPending()) {
+            if (!record.getFingerprint().equals(fingerprint)) {
+                count("mismatch");
+                throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                        KEY_HEADER + " was already used for a different request");
+            }
+            throw pending();
+        }
+        return restore(storedKey, record, bodyType);
+    }
+
+    // Committed before the action runs; false if the key is already in the table
+    private boolean reserve(String storedKey, String fingerprint) {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            repository.save(IdempotencyRecord.builder()
+                    .key(storedKey)
+                    .fingerprint(fingerprint)
+                    .status(IdempotencyRecord.PENDING)
+                    .createdAt(now)
+                    .expiresAt(now.plus(ttl))
+                    .build());
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    private void complete(String storedKey, StoredResponse stored) {
+        String body;
+        try {
+            body = stored.body() == null ? null : objectMapper.writeValueAsString(stored.body());
+        } catch (JsonProcessingException e) {
+            logger.warn("Could not store response for idempotency key {}: {}", storedKey, e.getOriginalMessage());
+            release(storedKey);
+            return;
+        }
+        try {
+            repository.complete(storedKey, stored.status(), encodeHeaders(stored.headers()), body);
+        } catch (DataAccessException e) {
+            // Left pending: retries reaching another instance get 409 instead of running the request again
+            logger.warn("Could not store response for idempotency key {}, leaving it pending: {}", storedKey, e.getMessage());
+        }
+        responses.put(storedKey, stored, ttl);
+    }
+
+    // Frees the key of a request that failed, so it can be retried
+    private void release(String storedKey) {
+        try {
+            repository.deleteById(storedKey);
+        } catch (DataAccessException e) {
+            logger.warn("Could not release idempotency key {}, it stays pending until it expires: {}", storedKey, e.getMessage());
+        }
+    }
+
+    private ResponseStatusException pending() {
+        count("pending");
+        return new ResponseStatusException(HttpStatus.CONFLICT,
+                KEY_HEADER + " belongs to a request that has not completed; check its outcome before retrying");
+    }
+
+    private StoredResponse restore(String storedKey, IdempotencyRecord record, Class<?> bodyType) {
+        Object body;
+        try {
+            body = record.getBody() == null ? null : objectMapper.readValue(record.getBody(), bodyType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable stored response for idempotency key " + storedKey, e);
+        }
+        StoredResponse stored = new StoredResponse(record.getFingerprint(), record.getStatus(),
+                decodeHeaders(record.getHeaders()), body);
+        Duration remaining = Duration.between(LocalDateTime.now(), record.getExpiresAt());
+        if (remaining.isPositive()) {
+            responses.put(storedKey, stored, remaining);
+        }
+        return stored;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> ResponseEntity<T> replay(StoredResponse stored, String fingerprint, String result) {
+        if (!stored.fingerprint().equals(fingerprint)) {
+            count("mismatch");
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    KEY_HEADER + " was already used for a different request");
+        }
+        count(result);
+        HttpHeaders headers = new HttpHeaders();
+        headers.addAll(stored.headers());
+        headers.set(REPLAYED_HEADER, "true");
+        return ResponseEntity.status(stored.status()).headers(headers).body((T) stored.body());
+    }
+
+    private static StoredResponse await(CompletableFuture<StoredResponse> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            // The first request failed: its caller got the error, and so do duplicates waiting on it
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static String encodeHeaders(HttpHeaders headers) {
+        StringBuilder encoded = new StringBuilder();
+        headers.forEach((name, values) -> values.forEach(value -> encoded.append(name).append(": ").append(value).append('\n')));
+        return encoded.toString();
+    }
+
+    private static HttpHeaders decodeHeaders(String encoded) {
+        HttpHeaders headers = new HttpHeaders();
+        if (encoded != null) {
+            for (String line : encoded.split("\n")) {
+                int colon = line.indexOf(": ");
+                if (colon > 0) {
+                    headers.add(line.substring(0, colon), line.substring(colon + 2));
+                }
+            }
+        }
+        return headers;
+    }
+
+    private void count(String result) {
+        Counter.builder("antifraud.idempotency.requests")
+                .description("Requests carrying an Idempotency-Key, by how they were answered")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,441 @@
+package com.bradesco.antifraud.service.journal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-ahead journal of accepted payments in memory-mapped segment files.
+ * <p>
+ * Each segment is sized up front and mapped once; records are framed as
+ * {@code length (4) | CRC32C (4) | sequence (8) | PaymentRecord}, and the first frame whose
+ * length, checksum or sequence does not line up marks the end of the journal (a torn
+ * write is simply overwritten). A record that does not fit closes the segment and opens
+ * the next one, named after its first sequence.
+ * <p>
+ * {@link #append} returns once the record is on disk. Appenders only copy bytes into the
+ * mapping; a single flusher thread forces everything written since its previous pass in
+ * one call, so concurrent appenders share one sync (group commit). After each sync the
+ * new records are handed to the sink in sequence order; a slow sink holds back the
+ * flusher and, through it, the appenders.
+ * <p>
+ * The last sequence applied downstream is kept in a checkpoint file. On open, the records
+ * after it are read back; {@link #replay} hands them to the sink, and appends are refused
+ * until it has, so replayed records always come first. Segments that only hold applied
+ * records are deleted as the checkpoint moves.
+ */
+public class PaymentJournal implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentJournal.class);
+
+    public record Entry(long sequence, PaymentRecord payment) {
+    }
+
+    static final int FRAME_HEADER = 8;
+    private static final int SEQUENCE_SIZE = 8;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String CHECKPOINT = "applied.checkpoint";
+
+    private static final class Segment {
+        final long firstSequence;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int position;
+        int flushed;
+
+        Segment(long firstSequence, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.firstSequence = firstSequence;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Consumer<Entry> sink;
+    private final FileChannel checkpoint;
+    private final CRC32C crc = new CRC32C();
+    // First sequence of every segment on disk -> its file
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition written = lock.newCondition();
+    private final Condition synced = lock.newCondition();
+
+    private Segment current;
+    private long nextSequence;
+    private long lastWritten;
+    private long lastSynced;
+    private long lastApplied;
+    private List<Entry> unsynced = new ArrayList<>();
+    private List<Entry> recovered = new ArrayList<>();
+    private boolean replayed;
+    private IOException failure;
+    private boolean closed;
+    private final Thread flusher;
+
+    /**
+     * Opens (or creates) the journal in {@code directory}, reads back every record after
+     * the checkpoint and starts the flusher. Call {@link #replay} before appending.
+     */
+    public PaymentJournal(Path directory, int segmentSize, Consumer<Entry> sink) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.sink = sink;
+        Files.createDirectories(directory);
+        this.checkpoint = FileChannel.open(directory.resolve(CHECKPOINT),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.lastApplied = readCheckpoint();
+        recover();
+        this.flusher = new Thread(this::flushLoop, "payment-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Writes the record and waits until it is durable; returns its sequence.
+     *
+     * @throws UncheckedIOException  if the journal could not be written or synced
+     * @throws IllegalStateException if the journal is closed or not replayed yet
+     */
+    public long append(PaymentRecord payment) {
+        int size = FRAME_HEADER + SEQUENCE_SIZE + payment.encodedSize();
+        if (size > segmentSize) {
+            throw new IllegalArgumentException("Record of " + size + " bytes does not fit a journal segment");
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Payment journal is closed");
+            }
+            if (!replayed) {
+                throw new IllegalStateException("Payment journal has not been replayed yet");
+            }
+            checkFailure();
+            if (current.position + size > segmentSize) {
+                roll();
+            }
+            long sequence = nextSequence;
+            int position = current.position;
+            ByteBuffer payload = current.buffer.slice(position + FRAME_HEADER, size - FRAME_HEADER);
+            payload.putLong(sequence);
+            payment.writeTo(payload);
+            crc.reset();
+            crc.update(payload.flip());
+            current.buffer.putInt(position + 4, (int) crc.getValue());
+            current.buffer.putInt(position, size - FRAME_HEADER);
+            current.position += size;
+            nextSequence++;
+
+            unsynced.add(new Entry(sequence, payment));
+            lastWritten = sequence;
+            written.signal();
+            while (lastSynced < sequence) {
+                checkFailure();
+                synced.awaitUninterruptibly();
+            }
+            return sequence;
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hands the records left unapplied by the previous run to the sink, in sequence order,
+     * and then lets appends in. Runs without the lock, so a sink that waits for the records
+     * to be applied (and {@link #markApplied}) does not deadlock; later calls do nothing.
+     */
+    public void replay() {
+        List<Entry> pending;
+        lock.lock();
+        try {
+            pending = recovered;
+            recovered = List.of();
+        } finally {
+            lock.unlock();
+        }
+        if (!pending.isEmpty()) {
+            logger.info("Replaying {} payment journal records after sequence {}", pending.size(), pending.get(0).sequence() - 1);
+        }
+        for (Entry entry : pending) {
+            sink.accept(entry);
+        }
+        lock.lock();
+        try {
+            replayed = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records that every entry up to {@code sequence} has been applied downstream and drops
+     * the segments that no longer hold anything else.
+     */
+    public void markApplied(long sequence) {
+        lock.lock();
+        try {
+            if (sequence <= lastApplied) {
+                return;
+            }
+            lastApplied = sequence;
+            checkpoint.write(ByteBuffer.allocate(8).putLong(0, sequence), 0);
+            checkpoint.force(false);
+            deleteAppliedSegments();
+        } catch (IOException e) {
+            logger.warn("Could not write payment journal checkpoint: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long lastApplied() {
+        lock.lock();
+        try {
+            return lastApplied;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records synced but not yet applied downstream.
+     */
+    public long lag() {
+        lock.lock();
+        try {
+            return lastSynced - lastApplied;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int segmentCount() {
+        lock.lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Refuses new appends, syncs what is written and stops the flusher once it has handed the
+     * last records to the sink. {@link #markApplied} keeps working until {@link #close}, so the
+     * sink can still drain what it was handed.
+     */
+    public void seal() {
+        lock.lock();
+        try {
+            closed = true;
+            written.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Seals the journal if it is not yet and closes the files.
+     */
+    @Override
+    public void close() throws IOException {
+        seal();
+        lock.lock();
+        try {
+            current.channel.close();
+            checkpoint.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            Segment segment;
+            int from;
+            int to;
+            long target;
+            List<Entry> batch;
+            lock.lock();
+            try {
+                while (lastWritten == lastSynced && !closed) {
+                    written.awaitUninterruptibly();
+                }
+                if (lastWritten == lastSynced) {
+                    return;
+                }
+                segment = current;
+                from = segment.flushed;
+                to = segment.position;
+                target = lastWritten;
+                batch = unsynced;
+                unsynced = new ArrayList<>();
+            } finally {
+                lock.unlock();
+            }
+            // Earlier segments were forced whole when they were rolled over
+            IOException error = null;
+            try {
+                segment.buffer.force(from, to - from);
+            } catch (UncheckedIOException e) {
+                error = e.getCause();
+            }
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                    logger.error("Payment journal sync failed, rejecting new payments: {}", error.getMessage());
+                } else {
+                    segment.flushed = Math.max(segment.flushed, to);
+                    lastSynced = target;
+                }
+                synced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (error != null) {
+                return;
+            }
+            for (Entry entry : batch) {
+                sink.accept(entry);
+            }
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Called with the lock held
+    private void roll() throws IOException {
+        current.buffer.force();
+        current.flushed = current.position;
+        current.channel.close();
+        current = openSegment(nextSequence);
+        segments.put(current.firstSequence, current.path);
+    }
+
+    private void deleteAppliedSegments() throws IOException {
+        while (segments.size() > 1) {
+            Map.Entry<Long, Path> oldest = segments.firstEntry();
+            long nextFirst = segments.higherKey(oldest.getKey());
+            if (nextFirst - 1 > lastApplied) {
+                return;
+            }
+            Files.deleteIfExists(oldest.getValue());
+            segments.pollFirstEntry();
+        }
+    }
+
+    private void recover() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .forEach(file -> segments.put(firstSequenceOf(file), file));
+        }
+        if (segments.isEmpty()) {
+            nextSequence = lastApplied + 1;
+            current = openSegment(nextSequence);
+            segments.put(current.firstSequence, current.path);
+            lastWritten = lastSynced = lastApplied;
+            return;
+        }
+
+        long expected = segments.firstKey();
+        for (Map.Entry<Long, Path> file : segments.entrySet()) {
+            Segment segment = openSegment(file.getKey());
+            if (segment.firstSequence != expected) {
+                logger.warn("Payment journal segment {} does not follow sequence {}", segment.path, expected - 1);
+            }
+            expected = scan(segment, segment.firstSequence, recovered);
+            if (file.getKey().equals(segments.lastKey())) {
+                current = segment;
+            } else {
+                segment.channel.close();
+            }
+        }
+        current.flushed = current.position;
+        nextSequence = expected;
+        lastWritten = lastSynced = expected - 1;
+        deleteAppliedSegments();
+    }
+
+    // Reads frames until one does not check out; leaves the segment positioned after the last good one
+    private long scan(Segment segment, long expected, List<Entry> pending) {
+        ByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + FRAME_HEADER + SEQUENCE_SIZE <= segmentSize) {
+            int length = buffer.getInt(position);
+            if (length < SEQUENCE_SIZE || position + FRAME_HEADER + length > segmentSize) {
+                break;
+            }
+            ByteBuffer payload = buffer.slice(position + FRAME_HEADER, length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(position + 4) || payload.getLong() != expected) {
+                break;
+            }
+            if (expected > lastApplied) {
+                pending.add(new Entry(expected, PaymentRecord.readFrom(payload)));
+            }
+            expected++;
+            position += FRAME_HEADER + length;
+        }
+        segment.position = position;
+        return expected;
+    }
+
+    private Segment openSegment(long firstSequence) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < segmentSize) {
+            // Extends the file to its full size once, so the mapping never has to grow
+            channel.write(ByteBuffer.allocate(1), segmentSize - 1);
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        return new Segment(firstSequence, path, channel, buffer);
+    }
+
+    private long readCheckpoint() throws IOException {
+        if (checkpoint.size() < 8) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        checkpoint.read(buffer, 0);
+        return buffer.getLong(0);
+    }
+
+    private static long firstSequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,213 @@
+package com.bradesco.antifraud.service.journal;
+
+import com.bradesco.antifraud.exception.transactionExceptions.InsufficientFundsException;
+import com.bradesco.antifraud.model.Transaction;
+import com.bradesco.antifraud.service.fraud.FraudScoringService;
+import com.bradesco.antifraud.service.ledger.AccountLedger;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accepts payments by writing them to the {@link PaymentJournal} and posts them to the
+ * database in the background.
+ * <p>
+ * A payment is acknowledged once its journal record is synced; the applier thread then
+ * posts it through {@link AccountLedger#apply} in journal order, records it in the fraud
+ * models and moves the journal checkpoint after each batch. Payments the database refuses
+ * (insufficient funds, unknown account) are stored as rejected by {@code apply}, so their
+ * outcome can be read by id, and are counted and logged; any other failure is retried,
+ * since the record stays in the journal until it is applied. Records left unapplied by a
+ * previous run are replayed before new payments are accepted, and {@code apply} skips ids
+ * already posted or rejected, so a record is never applied twice.
+ */
+@Service
+@ConditionalOnProperty(name = "antifraud.payments.journal.enabled", havingValue = "true")
+public class PaymentJournalService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentJournalService.class);
+
+    private static final int APPLY_BATCH = 256;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final AccountLedger accountLedger;
+    private final FraudScoringService fraudScoringService;
+    private final MeterRegistry meterRegistry;
+    private final Path directory;
+    private final int segmentSize;
+    private final long shutdownTimeoutMillis;
+    private final boolean virtualThreads;
+    private final BlockingQueue<PaymentJournal.Entry> queue;
+
+    private volatile boolean running;
+    // Written on the starting thread, read by the applier
+    private volatile PaymentJournal journal;
+    private Thread applier;
+
+    public PaymentJournalService(AccountLedger accountLedger,
+                                 FraudScoringService fraudScoringService,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${antifraud.payments.journal.dir:data/journal}") Path directory,
+                                 @Value("${antifraud.payments.journal.segment-size:67108864}") int segmentSize,
+                                 @Value("${antifraud.payments.journal.queue-capacity:10000}") int queueCapacity,
+                                 @Value("${antifraud.payments.journal.shutdown-timeout-ms:10000}") long shutdownTimeoutMillis,
+                                 @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.accountLedger = accountLedger;
+        this.fraudScoringService = fraudScoringService;
+        this.meterRegistry = meterRegistry;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+        this.virtualThreads = virtualThreads;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    // The journal is opened before the applier starts, and replayed once it runs: replayed records
+    // go through the same bounded queue, so more of them than it holds need the applier draining it
+    @PostConstruct
+    public void start() throws IOException {
+        journal = new PaymentJournal(directory, segmentSize, this::enqueue);
+        running = true;
+        // Follows the execution mode; the journal's flusher stays a platform thread, as it spends its time in fsync
+        Thread.Builder builder = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform().daemon();
+        applier = builder.name("payment-journal-applier").start(this::run);
+        journal.replay();
+        Gauge.builder("antifraud.journal.lag", journal, PaymentJournal::lag)
+                .description("Journaled payments not yet posted to the database")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        // Sealing first lets the flusher hand over its last batch; the checkpoint stays open until
+        // the applier has drained it, so what it applies is not replayed on the next start
+        journal.seal();
+        running = false;
+        applier.join(shutdownTimeoutMillis);
+        if (applier.isAlive()) {
+            logger.warn("Payment journal applier did not drain within {} ms, {} payments left for the next start",
+                    shutdownTimeoutMillis, journal.lag());
+        }
+        journal.close();
+    }
+
+    /**
+     * Journals the payment and returns once it is durable. The transaction gets an id here
+     * if it has none, so the response and the later database row agree.
+     *
+     * @throws UncheckedIOException if the journal could not be written
+     */
+    public Transaction accept(Transaction transaction) {
+        if (transaction.getId() == null) {
+            transaction.setId(UUID.randomUUID());
+        }
+        journal.append(PaymentRecord.of(transaction));
+        return transaction;
+    }
+
+    public long lag() {
+        return journal.lag();
+    }
+
+    // Runs on the journal flusher; blocking here slows down new appends
+    private void enqueue(PaymentJournal.Entry entry) {
+        try {
+            queue.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // A batch that fails unexpectedly is kept and retried whole; apply skips what it already posted
+    private void run() {
+        List<PaymentJournal.Entry> batch = new ArrayList<>(APPLY_BATCH);
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    PaymentJournal.Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, APPLY_BATCH - 1);
+                }
+                for (PaymentJournal.Entry entry : batch) {
+                    apply(entry);
+                }
+                journal.markApplied(batch.get(batch.size() - 1).sequence());
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                if (!running) {
+                    // The checkpoint stays behind the batch, so the next start replays it
+                    logger.error("Payment journal applier stopped with a batch of {} unapplied", batch.size(), e);
+                    return;
+                }
+                logger.error("Payment journal applier failed on a batch of {}, retrying", batch.size(), e);
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void apply(PaymentJournal.Entry entry) throws InterruptedException {
+        Transaction transaction = entry.payment().toTransaction();
+        while (true) {
+            try {
+                if (accountLedger.apply(transaction)) {
+                    fraudScoringService.record(transaction);
+                    count("applied");
+                } else {
+                    count("duplicate");
+                }
+                return;
+            } catch (InsufficientFundsException | EntityNotFoundException e) {
+                count("rejected");
+                logger.warn("Journaled payment {} (sequence {}) rejected: {}", transaction.getId(), entry.sequence(), e.getMessage());
+                return;
+            } catch (RuntimeException e) {
+                if (!running) {
+                    // Left unapplied: the checkpoint stays behind it and the next start replays it
+                    throw new InterruptedException("Stopped before payment " + transaction.getId() + " could be applied");
+                }
+                logger.warn("Could not apply journaled payment {}, retrying: {}", transaction.getId(), e.getMessage());
+                Thread.sleep(RETRY_DELAY_MILLIS);
+            }
+        }
+    }
+
+    private void count(String outcome) {
+        Counter.builder("antifraud.journal.applied")
+                .description("Journaled payments posted to the database, by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,145 @@
+package com.bradesco.antifraud.service.journal;
+
+import com.bradesco.antifraud.model.Account;
+import com.bradesco.antifraud.model.Transaction;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * The part of an accepted payment the journal keeps: enough to post it later, in a fixed
+ * binary layout.
+ * <pre>
+ * id (16) | type (1) | flags (1) | unscaled amount (8) | scale (1)
+ * [dataHora: epoch second (8) | nano (4)] [source (16)] [destination (16)] [descricao: length (2) | UTF-8]
+ * </pre>
+ * Bracketed fields are present when the matching flag bit is set.
+ */
+public record PaymentRecord(UUID id, Transaction.TransactionType type, BigDecimal amount, LocalDateTime dataHora,
+                            String descricao, UUID sourceId, UUID destinationId) {
+
+    private static final Transaction.TransactionType[] TYPES = Transaction.TransactionType.values();
+
+    private static final int HAS_DATA_HORA = 1;
+    private static final int HAS_SOURCE = 1 << 1;
+    private static final int HAS_DESTINATION = 1 << 2;
+    private static final int HAS_DESCRICAO = 1 << 3;
+
+    private static final int FIXED_SIZE = 16 + 1 + 1 + 8 + 1;
+    private static final int MAX_DESCRICAO_BYTES = 0xFFFF;
+
+    public static PaymentRecord of(Transaction transaction) {
+        return new PaymentRecord(transaction.getId(), transaction.getTipo(), transaction.getValor(),
+                transaction.getDataHora(), transaction.getDescricao(),
+                accountId(transaction.getContaDeOrigem()), accountId(transaction.getContaDeDestino()));
+    }
+
+    /**
+     * Rebuilds the transaction with id-only account references.
+     */
+    public Transaction toTransaction() {
+        return Transaction.builder()
+                .id(id)
+                .tipo(type)
+                .valor(amount)
+                .dataHora(dataHora)
+                .descricao(descricao)
+                .contaDeOrigem(sourceId == null ? null : Account.builder().id(sourceId).build())
+                .contaDeDestino(destinationId == null ? null : Account.builder().id(destinationId).build())
+                .build();
+    }
+
+    int encodedSize() {
+        int size = FIXED_SIZE;
+        if (dataHora != null) {
+            size += 12;
+        }
+        if (sourceId != null) {
+            size += 16;
+        }
+        if (destinationId != null) {
+            size += 16;
+        }
+        if (descricao != null) {
+            size += 2 + descricaoBytes().length;
+        }
+        return size;
+    }
+
+    /**
+     * @throws ArithmeticException if the amount does not fit the 64-bit unscaled field
+     */
+    void writeTo(ByteBuffer buffer) {
+        int flags = (dataHora != null ? HAS_DATA_HORA : 0)
+                | (sourceId != null ? HAS_SOURCE : 0)
+                | (destinationId != null ? HAS_DESTINATION : 0)
+                | (descricao != null ? HAS_DESCRICAO : 0);
+        putUuid(buffer, id);
+        buffer.put((byte) type.ordinal());
+        buffer.put((byte) flags);
+        buffer.putLong(amount.unscaledValue().longValueExact());
+        buffer.put((byte) amount.scale());
+        if (dataHora != null) {
+            buffer.putLong(dataHora.toEpochSecond(ZoneOffset.UTC));
+            buffer.putInt(dataHora.getNano());
+        }
+        if (sourceId != null) {
+            putUuid(buffer, sourceId);
+        }
+        if (destinationId != null) {
+            putUuid(buffer, destinationId);
+        }
+        if (descricao != null) {
+            byte[] bytes = descricaoBytes();
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    static PaymentRecord readFrom(ByteBuffer buffer) {
+        UUID id = getUuid(buffer);
+        Transaction.TransactionType type = TYPES[buffer.get()];
+        int flags = buffer.get();
+        long unscaled = buffer.getLong();
+        BigDecimal amount = new BigDecimal(BigInteger.valueOf(unscaled), buffer.get());
+        LocalDateTime dataHora = (flags & HAS_DATA_HORA) == 0 ? null
+                : LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC);
+        UUID source = (flags & HAS_SOURCE) == 0 ? null : getUuid(buffer);
+        UUID destination = (flags & HAS_DESTINATION) == 0 ? null : getUuid(buffer);
+        String descricao = null;
+        if ((flags & HAS_DESCRICAO) != 0) {
+            byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+            buffer.get(bytes);
+            descricao = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new PaymentRecord(id, type, amount, dataHora, descricao, source, destination);
+    }
+
+    // Descriptions longer than the 16-bit length field are cut at the byte limit
+    private byte[] descricaoBytes() {
+        byte[] bytes = descricao.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_DESCRICAO_BYTES) {
+            return bytes;
+        }
+        return Arrays.copyOf(bytes, MAX_DESCRICAO_BYTES);
+    }
+
+    private static void putUuid(ByteBuffer buffer, UUID uuid) {
+        buffer.putLong(uuid.getMostSignificantBits());
+        buffer.putLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID getUuid(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private static UUID accountId(Account account) {
+        return account == null ? null : account.getId();
+    }
+}
@@ -0,0 +1,359 @@
+package com.bradesco.antifraud.service.ledger;
+
+import com.bradesco.antifraud.config.TransactionStageTimers;
+import com.bradesco.antifraud.dto.PaymentStatus;
+import com.bradesco.antifraud.exception.transactionExceptions.InsufficientFundsException;
+import com.bradesco.antifraud.model.Account;
+import com.bradesco.antifraud.model.LedgerEntry;
+import com.bradesco.antifraud.model.RejectedPayment;
+import com.bradesco.antifraud.model.Transaction;
+import com.bradesco.antifraud.repository.AccountRepository;
+import com.bradesco.antifraud.repository.LedgerJdbcRepository;
+import com.bradesco.antifraud.repository.RejectedPaymentRepository;
+import com.bradesco.antifraud.repository.TransactionJdbcRepository;
+import com.bradesco.antifraud.repository.TransactionRepository;
+import com.bradesco.antifraud.service.archive.TransactionArchiveService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import jakarta.persistence.EntityNotFoundException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Applies the balance movements of a {@link Transaction} atomically.
+ * <p>
+ * Mutations are serialized per account through a fixed array of striped locks: the
+ * stripes of both accounts are taken in index order (so opposite transfers cannot
+ * deadlock) and held until the database transaction commits. Payments touching
+ * different stripes run in parallel. Balances are changed with single
+ * {@code UPDATE ... SET balance = balance +/- ?} statements, so nothing is read back
+ * and only the two balance columns are written; the debit is conditional on funds,
+ * which keeps it correct even if another instance writes the same row.
+ * <p>
+ * Every movement is also appended to the ledger ({@link LedgerEntry}) in the same database
+ * transaction, so {@code accounts.balance} is always the projection of the ledger: a debit
+ * and a credit entry per transfer, one entry for deposits and withdrawals, an opening entry
+ * per account and an adjustment entry whenever a balance is set by hand.
+ * <p>
+ * With {@code antifraud.ledger.write-behind.enabled} the balance statements are skipped:
+ * funds are checked against the {@link BalanceCache} under the same stripes, the ledger
+ * entries are still committed with the transaction, and the cache writes the resulting
+ * balances to {@code accounts.balance} in periodic batches.
+ * <p>
+ * Postings also append their {@link AccountRollups} deltas in the same database transaction,
+ * and once committed mark the month's {@link TransactionArchiveService archive} stale when it
+ * was already exported.
+ */
+@Service
+public class AccountLedger {
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final LedgerJdbcRepository ledgerRepository;
+    private final TransactionJdbcRepository transactionJdbcRepository;
+    private final RejectedPaymentRepository rejectedPaymentRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BalanceCache balanceCache;
+    private final AccountRollups rollups;
+    private final TransactionArchiveService archive;
+    private final ReentrantLock[] stripes;
+    private final Timer lockWaitTimer;
+    private final Timer balanceUpdateTimer;
+    private final Timer persistTimer;
+
+    public AccountLedger(AccountRepository accountRepository,
+                         TransactionRepository transactionRepository,
+                         LedgerJdbcRepository ledgerRepository,
+                         TransactionJdbcRepository transactionJdbcRepository,
+                         RejectedPaymentRepository rejectedPaymentRepository,
+                         PlatformTransactionManager transactionManager,
+                         BalanceCache balanceCache,
+                         AccountRollups rollups,
+                         TransactionArchiveService archive,
+                         MeterRegistry meterRegistry,
+                         @Value("${antifraud.ledger.lock-stripes:1024}") int stripeCount) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.ledgerRepository = ledgerRepository;
+        this.transactionJdbcRepository = transactionJdbcRepository;
+        this.rejectedPaymentRepository = rejectedPaymentRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.balanceCache = balanceCache;
+        this.rollups = rollups;
+        this.archive = archive;
+        this.stripes = new ReentrantLock[Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.lockWaitTimer = TransactionStageTimers.stageTimer(meterRegistry, "lock-wait");
+        this.balanceUpdateTimer = TransactionStageTimers.stageTimer(meterRegistry, "balance-update");
+        this.persistTimer = TransactionStageTimers.stageTimer(meterRegistry, "persist");
+    }
+
+    /**
+     * Persists the transaction and moves its amount between the accounts involved:
+     * deposits only credit the destination, withdrawals only debit the source and
+     * transfers/payments do both.
+     *
+     * @throws InsufficientFundsException if the source balance does not cover the amount
+     * @throws EntityNotFoundException    if one of the accounts does not exist
+     */
+    public Transaction post(Transaction transaction) {
+        return move(transaction, false);
+    }
+
+    /**
+     * Posts a payment replayed from the journal, which already carries its id. Returns
+     * {@code false} without touching any balance when that id was posted or rejected before,
+     * so a record applied twice (e.g. after a crash before the checkpoint) moves money once
+     * and a rejected one is not retried once funds arrive. A rejection is stored as a
+     * {@link RejectedPayment} before the exception is rethrown.
+     *
+     * @throws InsufficientFundsException if the source balance does not cover the amount
+     * @throws EntityNotFoundException    if one of the accounts does not exist
+     */
+    public boolean apply(Transaction transaction) {
+        try {
+            return move(transaction, true) != null;
+        } catch (InsufficientFundsException | EntityNotFoundException e) {
+            // Journaled payments are applied by one thread, so nothing posts this id meanwhile
+            rejectedPaymentRepository.save(new RejectedPayment(transaction.getId(), e.getMessage(), LocalDateTime.now()));
+            throw e;
+        }
+    }
+
+    /**
+     * Whether the payment with this id was posted or rejected; empty while it is still in
+     * the journal, or if there is no such payment.
+     */
+    public Optional<PaymentStatus> status(UUID paymentId) {
+        if (transactionRepository.existsById(paymentId)) {
+            return Optional.of(PaymentStatus.posted(paymentId));
+        }
+        return rejectedPaymentRepository.findById(paymentId)
+                .map(rejected -> PaymentStatus.rejected(paymentId, rejected.getReason(), rejected.getRejectedAt()));
+    }
+
+    private Transaction move(Transaction transaction, boolean journaled) {
+        UUID debitId = debitAccountId(transaction);
+        UUID creditId = creditAccountId(transaction);
+        BigDecimal amount = transaction.getValor();
+
+        int debitStripe = stripeIndex(debitId);
+        int creditStripe = stripeIndex(creditId);
+        int first = Math.min(debitStripe, creditStripe);
+        int second = Math.max(debitStripe, creditStripe);
+        if (first < 0 || first == second) {
+            first = second;
+            second = -1;
+        }
+
+        long waitStart = System.nanoTime();
+        lock(first);
+        lock(second);
+        lockWaitTimer.record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+        try {
+            long[] balancesUpdatedAt = new long[1];
+            Transaction saved = transactionTemplate.execute(status -> {
+                if (journaled && (transactionRepository.existsById(transaction.getId())
+                        || rejectedPaymentRepository.existsById(transaction.getId()))) {
+                    return null;
+                }
+                long start = System.nanoTime();
+                if (balanceCache.enabled()) {
+                    checkCached(debitId, creditId, amount);
+                } else {
+                    if (debitId != null && accountRepository.debit(debitId, amount) == 0) {
+                        throw notDebitable(debitId);
+                    }
+                    if (creditId != null && accountRepository.credit(creditId, amount) == 0) {
+                        throw new EntityNotFoundException("Account with ID " + creditId + " does not exist.");
+                    }
+                }
+                balancesUpdatedAt[0] = System.nanoTime();
+                balanceUpdateTimer.record(balancesUpdatedAt[0] - start, TimeUnit.NANOSECONDS);
+                Transaction persisted = transaction;
+                if (journaled) {
+                    // save() would treat an entity with an id as detached and try to merge it
+                    transactionJdbcRepository.insert(transaction);
+                } else {
+                    persisted = transactionRepository.save(transaction);
+                }
+                ledgerRepository.append(entries(persisted, debitId, creditId, amount));
+                rollups.record(persisted);
+                return persisted;
+            });
+            if (saved == null) {
+                return null;
+            }
+            if (balanceCache.enabled()) {
+                // Only once the entries are committed, and still under the stripes
+                if (debitId != null) {
+                    balanceCache.move(debitId, amount.negate());
+                }
+                if (creditId != null) {
+                    balanceCache.move(creditId, amount);
+                }
+            }
+            archive.invalidate(saved.getDataHora());
+            // The insert is only flushed at commit, so "persist" runs until the commit returns
+            persistTimer.record(System.nanoTime() - balancesUpdatedAt[0], TimeUnit.NANOSECONDS);
+            return saved;
+        } finally {
+            unlock(second);
+            unlock(first);
+        }
+    }
+
+    /**
+     * Appends the opening entry of a newly created account, for its initial balance.
+     */
+    public void open(Account account) {
+        BigDecimal balance = account.getBalance() == null ? BigDecimal.ZERO : account.getBalance();
+        ledgerRepository.append(List.of(entry(account.getId(), null, LedgerEntry.Kind.OPENING, balance)));
+    }
+
+    /**
+     * Sets the balance of an account by hand, recording the difference as an adjustment entry.
+     *
+     * @throws EntityNotFoundException if the account does not exist
+     */
+    public void adjust(UUID accountId, BigDecimal balance) {
+        int stripe = stripeIndex(accountId);
+        lock(stripe);
+        try {
+            BigDecimal adjusted = transactionTemplate.execute(status -> {
+                BigDecimal current = balanceCache.enabled()
+                        ? balanceCache.balance(accountId)
+                        : accountRepository.findBalanceById(accountId)
+                                .orElseThrow(() -> new EntityNotFoundException("Account with ID " + accountId + " does not exist."));
+                BigDecimal delta = balance.subtract(current);
+                if (delta.signum() != 0) {
+                    if (!balanceCache.enabled()) {
+                        accountRepository.credit(accountId, delta);
+                    }
+                    ledgerRepository.append(List.of(entry(accountId, null, LedgerEntry.Kind.ADJUSTMENT, delta)));
+                }
+                return delta;
+            });
+            if (balanceCache.enabled() && adjusted.signum() != 0) {
+                balanceCache.move(accountId, adjusted);
+            }
+        } finally {
+            unlock(stripe);
+        }
+    }
+
+    /**
+     * Sets the account's current balance on it, which {@code accounts.balance} may not show
+     * yet when balances are written behind.
+     */
+    public void loadCurrentBalance(Account account) {
+        if (balanceCache.enabled()) {
+            balanceCache.cached(account.getId()).ifPresent(account::setBalance);
+        }
+    }
+
+    /**
+     * Drops whatever is cached for a deleted account.
+     */
+    public void forget(UUID accountId) {
+        balanceCache.evict(accountId);
+    }
+
+    public List<LedgerEntry> history(UUID accountId, long afterSequence, int limit) {
+        return ledgerRepository.findEntries(accountId, afterSequence, limit);
+    }
+
+    private static List<LedgerEntry> entries(Transaction transaction, UUID debitId, UUID creditId, BigDecimal amount) {
+        List<LedgerEntry> entries = new ArrayList<>(2);
+        if (debitId != null) {
+            entries.add(entry(debitId, transaction.getId(), LedgerEntry.Kind.DEBIT, amount.negate()));
+        }
+        if (creditId != null) {
+            entries.add(entry(creditId, transaction.getId(), LedgerEntry.Kind.CREDIT, amount));
+        }
+        return entries;
+    }
+
+    private static LedgerEntry entry(UUID accountId, UUID transactionId, LedgerEntry.Kind kind, BigDecimal amount) {
+        return LedgerEntry.builder()
+                .accountId(accountId)
+                .transactionId(transactionId)
+                .kind(kind)
+                .amount(amount)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    // Write-behind counterpart of the conditional debit and the credit statement
+    private void checkCached(UUID debitId, UUID creditId, BigDecimal amount) {
+        if (debitId != null && balanceCache.balance(debitId).compareTo(amount) < 0) {
+            throw new InsufficientFundsException("Insufficient funds in account " + debitId);
+        }
+        if (creditId != null) {
+            balanceCache.balance(creditId);
+        }
+    }
+
+    private RuntimeException notDebitable(UUID accountId) {
+        if (!accountRepository.existsById(accountId)) {
+            return new EntityNotFoundException("Account with ID " + accountId + " does not exist.");
+        }
+        return new InsufficientFundsException("Insufficient funds in account " + accountId);
+    }
+
+    static UUID debitAccountId(Transaction transaction) {
+        return debitAccountId(transaction.getTipo(), id(transaction.getContaDeOrigem()));
+    }
+
+    static UUID debitAccountId(Transaction.TransactionType type, UUID sourceId) {
+        return type == Transaction.TransactionType.DEPOSITO ? null : sourceId;
+    }
+
+    static UUID creditAccountId(Transaction transaction) {
+        return creditAccountId(transaction.getTipo(), id(transaction.getContaDeDestino()));
+    }
+
+    static UUID creditAccountId(Transaction.TransactionType type, UUID destinationId) {
+        return type == Transaction.TransactionType.SAQUE ? null : destinationId;
+    }
+
+    private static UUID id(Account account) {
+        return account == null ? null : account.getId();
+    }
+
+    private int stripeIndex(UUID accountId) {
+        if (accountId == null) {
+            return -1;
+        }
+        int h = accountId.hashCode();
+        return (h ^ (h >>> 16)) & (stripes.length - 1);
+    }
+
+    private void lock(int stripe) {
+        if (stripe >= 0) {
+            stripes[stripe].lock();
+        }
+    }
+
+    private void unlock(int stripe) {
+        if (stripe >= 0) {
+            stripes[stripe].unlock();
+        }
+    }
+}
@@ -0,0 +1,497 @@
+package com.bradesco.antifraud.service.ledger;
+
+import com.bradesco.antifraud.dto.AccountRollupSummary;
+import com.bradesco.antifraud.dto.TransactionDto;
+import com.bradesco.antifraud.model.Transaction;
+import com.bradesco.antifraud.model.Transaction.TransactionType;
+import com.bradesco.antifraud.repository.AccountRollupJdbcRepository;
+import com.bradesco.antifraud.repository.AccountRollupJdbcRepository.Row;
+import com.bradesco.antifraud.repository.TransactionJdbcRepository;
+
+import jakarta.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-account rollups of the transaction table: for every account, how many transactions
+ * credited and debited it and by how much, per {@link TransactionType}, in hourly, daily and
+ * monthly buckets. "How much did this account move today, this month, per type" then reads
+ * the buckets of the period instead of aggregating transaction rows, whatever the account's
+ * history.
+ * <p>
+ * The buckets are persisted in {@code account_rollups}, so every instance reads the same ones
+ * and a restart does not recompute anything. The writers of the transaction table
+ * ({@link AccountLedger}, the batch and CRUD paths) append a delta per account moved in the
+ * same database transaction as their write, and the fold adds the deltas to the buckets and
+ * deletes them, {@code fold-batch} deltas at a time, each range of sequences in one
+ * repeatable-read transaction so exactly the deltas it read are deleted.
+ * Reads add the deltas not folded yet. Amounts follow the ledger: the source account is
+ * debited except for deposits, the destination credited except for withdrawals. Buckets older
+ * than the retention of their granularity are pruned.
+ * <p>
+ * A rebuild recomputes every bucket from the transaction table in one repeatable-read
+ * transaction: writes committed while it runs are not in its snapshot, and their deltas are
+ * kept. It runs on demand, and on startup only with {@code rebuild-on-startup}.
+ */
+@Component
+public class AccountRollups {
+
+    public enum Granularity {
+        HOUR {
+            @Override
+            public LocalDateTime start(LocalDateTime time) {
+                return time.truncatedTo(ChronoUnit.HOURS);
+            }
+
+            @Override
+            public LocalDateTime next(LocalDateTime start) {
+                return start.plusHours(1);
+            }
+        },
+        DAY {
+            @Override
+            public LocalDateTime start(LocalDateTime time) {
+                return time.toLocalDate().atStartOfDay();
+            }
+
+            @Override
+            public LocalDateTime next(LocalDateTime start) {
+                return start.plusDays(1);
+            }
+        },
+        MONTH {
+            @Override
+            public LocalDateTime start(LocalDateTime time) {
+                return time.toLocalDate().withDayOfMonth(1).atStartOfDay();
+            }
+
+            @Override
+            public LocalDateTime next(LocalDateTime start) {
+                return start.plusMonths(1);
+            }
+        };
+
+        /** Start of the bucket containing {@code time}. */
+        public abstract LocalDateTime start(LocalDateTime time);
+
+        /** Start of the bucket after the one starting at {@code start}. */
+        public abstract LocalDateTime next(LocalDateTime start);
+    }
+
+    /**
+     * A transaction as the rollups see it: the accounts it debits and credits, its amount and when.
+     */
+    public record Posting(UUID id, TransactionType tipo, long cents, LocalDateTime at, UUID debitId, UUID creditId) {
+
+        public static Posting of(Transaction transaction) {
+            return new Posting(transaction.getId(), transaction.getTipo(), toCents(transaction.getValor()),
+                    transaction.getDataHora(), AccountLedger.debitAccountId(transaction),
+                    AccountLedger.creditAccountId(transaction));
+        }
+
+        static Posting of(TransactionDto transaction) {
+            return new Posting(transaction.getId(), transaction.getTipo(), toCents(transaction.getValor()),
+                    transaction.getDataHora(),
+                    AccountLedger.debitAccountId(transaction.getTipo(), transaction.getContaDeOrigemId()),
+                    AccountLedger.creditAccountId(transaction.getTipo(), transaction.getContaDeDestinoId()));
+        }
+    }
+
+    public record Rebuild(long transactions, int accounts, long buckets, long elapsedMillis) {
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountRollups.class);
+
+    // Per type: credits, cents credited, debits, cents debited
+    private static final int SLOTS = 4;
+    private static final int WIDTH = TransactionType.values().length * SLOTS;
+
+    // Buckets a rebuild accumulates in memory before adding them to the table
+    private static final int REBUILD_FLUSH = 50_000;
+
+    private final TransactionJdbcRepository repository;
+    private final AccountRollupJdbcRepository rollupRepository;
+    private final TransactionTemplate repeatableRead;
+    private final TransactionTemplate readOnly;
+    private final boolean enabled;
+    private final boolean rebuildOnStartup;
+    private final Duration hourRetention;
+    private final Duration dayRetention;
+    private final Duration monthRetention;
+    private final int fetchSize;
+    private final int foldBatch;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong folded = new AtomicLong();
+    private volatile Map<Granularity, LocalDateTime> retainedSince;
+
+    public AccountRollups(TransactionJdbcRepository repository,
+                          AccountRollupJdbcRepository rollupRepository,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${antifraud.rollups.enabled:true}") boolean enabled,
+                          @Value("${antifraud.rollups.rebuild-on-startup:false}") boolean rebuildOnStartup,
+                          @Value("${antifraud.rollups.hour-retention:P7D}") Duration hourRetention,
+                          @Value("${antifraud.rollups.day-retention:P400D}") Duration dayRetention,
+                          @Value("${antifraud.rollups.month-retention:P1830D}") Duration monthRetention,
+                          @Value("${antifraud.rollups.fetch-size:5000}") int fetchSize,
+                          @Value("${antifraud.rollups.fold-batch:10000}") int foldBatch) {
+        this.repository = repository;
+        this.rollupRepository = rollupRepository;
+        this.repeatableRead = new TransactionTemplate(transactionManager);
+        this.repeatableRead.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.readOnly.setReadOnly(true);
+        this.enabled = enabled;
+        this.rebuildOnStartup = rebuildOnStartup;
+        this.hourRetention = hourRetention;
+        this.dayRetention = dayRetention;
+        this.monthRetention = monthRetention;
+        this.fetchSize = fetchSize;
+        this.foldBatch = foldBatch;
+        this.retainedSince = retainedSince(LocalDateTime.now());
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        if (rebuildOnStartup) {
+            rebuild();
+        } else if (!rollupRepository.hasBuckets() && repository.findEarliestDataHora() != null) {
+            logger.warn("account_rollups is empty but the transaction table is not: rebuild the rollups once with "
+                    + "POST /accounts/rollups/rebuild or antifraud.rollups.rebuild-on-startup=true");
+        }
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    public void record(Transaction transaction) {
+        record(Posting.of(transaction));
+    }
+
+    /**
+     * Appends the deltas of a transaction being written; must run in the database transaction
+     * that writes it, so the deltas commit (or roll back) with the row.
+     */
+    public void record(Posting posting) {
+        if (enabled) {
+            rollupRepository.appendDeltas(deltas(posting, 1));
+        }
+    }
+
+    /**
+     * Like {@link #record(Posting)}, for a batch of transactions, in one statement batch.
+     */
+    public void record(Collection<Transaction> transactions) {
+        if (!enabled) {
+            return;
+        }
+        List<Row> deltas = new ArrayList<>(transactions.size() * 2);
+        for (Transaction transaction : transactions) {
+            deltas.addAll(deltas(Posting.of(transaction), 1));
+        }
+        rollupRepository.appendDeltas(deltas);
+    }
+
+    /**
+     * Takes a transaction out of the rollups, as it was recorded; must run in the database
+     * transaction of its update or deletion.
+     */
+    public void forget(Posting posting) {
+        if (enabled) {
+            rollupRepository.appendDeltas(deltas(posting, -1));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${antifraud.rollups.fold-interval-ms:5000}",
+            initialDelayString = "${antifraud.rollups.fold-interval-ms:5000}")
+    public void fold() {
+        if (enabled) {
+            fold(LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Adds the deltas committed when it starts to their buckets and deletes them, in ranges of
+     * at most {@code fold-batch} deltas, one transaction each; returns how many were folded.
+     * Deltas committed since, even with a lower sequence, are left to the next fold. An
+     * instance racing another one over the same deltas fails its range and leaves the rest to
+     * the other.
+     */
+    int fold(LocalDateTime now) {
+        lock.lock();
+        int count = 0;
+        try {
+            Map<Granularity, LocalDateTime> since = retainedSince(now);
+            long upTo = rollupRepository.lastDeltaSequence();
+            long after = 0;
+            while (after < upTo) {
+                long from = after;
+                long[] range = repeatableRead.execute(status -> {
+                    long to = rollupRepository.deltaRangeEnd(from, upTo, foldBatch);
+                    if (to == from) {
+                        return null;
+                    }
+                    List<Row> deltas = rollupRepository.findDeltas(from, to);
+                    Map<Key, long[]> buckets = new HashMap<>();
+                    for (Row delta : deltas) {
+                        accumulate(buckets, delta, since);
+                    }
+                    rollupRepository.add(rows(buckets));
+                    rollupRepository.deleteDeltas(from, to);
+                    return new long[]{to, deltas.size()};
+                });
+                if (range == null) {
+                    break;
+                }
+                after = range[0];
+                count += (int) range[1];
+                folded.addAndGet(range[1]);
+            }
+            return count;
+        } catch (ConcurrencyFailureException | DuplicateKeyException e) {
+            logger.debug("Rollup deltas were folded concurrently, leaving them: {}", e.getMessage());
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Recomputes every bucket from the transaction table and replaces them in one transaction;
+     * until it commits the previous ones keep answering. Rebuilds and folds do not overlap.
+     */
+    public Rebuild rebuild() {
+        lock.lock();
+        try {
+            long start = System.nanoTime();
+            Map<Granularity, LocalDateTime> since = retainedSince(LocalDateTime.now());
+            long[] counts = new long[2];
+            Set<UUID> accounts = new HashSet<>();
+            repeatableRead.executeWithoutResult(status -> {
+                rollupRepository.deleteBuckets();
+                // Deltas of writes in this snapshot; later ones are not, and stay for the next fold
+                rollupRepository.deleteDeltas(0, Long.MAX_VALUE);
+                Map<Key, long[]> buckets = new HashMap<>();
+                repository.stream(null, fetchSize, transaction -> {
+                    counts[0]++;
+                    for (Row delta : deltas(Posting.of(transaction), 1)) {
+                        accounts.add(delta.accountId());
+                        accumulate(buckets, delta, since);
+                    }
+                    if (buckets.size() >= REBUILD_FLUSH) {
+                        counts[1] += flush(buckets);
+                    }
+                });
+                counts[1] += flush(buckets);
+            });
+            retainedSince = since;
+
+            Rebuild rebuild = new Rebuild(counts[0], accounts.size(), counts[1],
+                    Duration.ofNanos(System.nanoTime() - start).toMillis());
+            logger.info("Rebuilt account rollups from {} transactions of {} accounts in {} ms", rebuild.transactions(),
+                    rebuild.accounts(), rebuild.elapsedMillis());
+            return rebuild;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${antifraud.rollups.prune-interval-ms:3600000}",
+            initialDelayString = "${antifraud.rollups.prune-interval-ms:3600000}")
+    public void prune() {
+        if (enabled) {
+            prune(LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Deletes the buckets past the retention of their granularity; returns how many.
+     */
+    int prune(LocalDateTime now) {
+        Map<Granularity, LocalDateTime> since = retainedSince(now);
+        retainedSince = since;
+        int pruned = 0;
+        for (Map.Entry<Granularity, LocalDateTime> expired : since.entrySet()) {
+            pruned += rollupRepository.deleteBucketsBefore(expired.getKey().name(), expired.getValue());
+        }
+        if (pruned > 0) {
+            logger.debug("Pruned {} expired rollup buckets", pruned);
+        }
+        return pruned;
+    }
+
+    /**
+     * Start of the oldest bucket of {@code granularity} still kept.
+     */
+    public LocalDateTime retainedSince(Granularity granularity) {
+        return retainedSince.get(granularity);
+    }
+
+    /**
+     * What the account moved in the buckets of {@code granularity} overlapping {@code [from, to)}.
+     */
+    public AccountRollupSummary summary(UUID accountId, Granularity granularity, LocalDateTime from, LocalDateTime to) {
+        LocalDateTime start = granularity.start(from);
+        LocalDateTime end = granularity.start(to);
+        if (end.isBefore(to)) {
+            end = granularity.next(end);
+        }
+        LocalDateTime since = retainedSince.get(granularity);
+        LocalDateTime rangeEnd = end;
+        // One snapshot, so a fold committing in between neither hides nor doubles the deltas
+        NavigableMap<LocalDateTime, long[]> range = readOnly.execute(status -> {
+            NavigableMap<LocalDateTime, long[]> buckets = new TreeMap<>();
+            for (Row bucket : rollupRepository.findBuckets(accountId, granularity.name(), start, rangeEnd)) {
+                add(buckets.computeIfAbsent(bucket.start(), key -> new long[WIDTH]), bucket);
+            }
+            for (Row delta : rollupRepository.findDeltas(accountId)) {
+                LocalDateTime bucket = granularity.start(delta.start());
+                if (!bucket.isBefore(start) && bucket.isBefore(rangeEnd) && !bucket.isBefore(since)) {
+                    add(buckets.computeIfAbsent(bucket, key -> new long[WIDTH]), delta);
+                }
+            }
+            // Buckets whose transactions were all taken back out
+            buckets.values().removeIf(AccountRollups::isZero);
+            return buckets;
+        });
+
+        long[] total = new long[WIDTH];
+        List<AccountRollupSummary.Bucket> result = new ArrayList<>(range.size());
+        for (Map.Entry<LocalDateTime, long[]> bucket : range.entrySet()) {
+            long[] values = bucket.getValue();
+            for (int i = 0; i < WIDTH; i++) {
+                total[i] += values[i];
+            }
+            result.add(new AccountRollupSummary.Bucket(bucket.getKey(), byType(values)));
+        }
+        return new AccountRollupSummary(accountId, granularity.name(), start, end, result, byType(total));
+    }
+
+    /**
+     * Deltas folded into the buckets by this instance since it started.
+     */
+    public long folded() {
+        return folded.get();
+    }
+
+    private Map<Granularity, LocalDateTime> retainedSince(LocalDateTime now) {
+        Map<Granularity, LocalDateTime> since = new EnumMap<>(Granularity.class);
+        since.put(Granularity.HOUR, Granularity.HOUR.start(now.minus(hourRetention)));
+        since.put(Granularity.DAY, Granularity.DAY.start(now.minus(dayRetention)));
+        since.put(Granularity.MONTH, Granularity.MONTH.start(now.minus(monthRetention)));
+        return since;
+    }
+
+    private long flush(Map<Key, long[]> buckets) {
+        List<Row> rows = rows(buckets);
+        rollupRepository.add(rows);
+        buckets.clear();
+        return rows.size();
+    }
+
+    // One delta per account the posting moves, in the hour of the posting
+    private static List<Row> deltas(Posting posting, int sign) {
+        List<Row> deltas = new ArrayList<>(2);
+        LocalDateTime hour = Granularity.HOUR.start(posting.at());
+        if (posting.debitId() != null) {
+            deltas.add(new Row(posting.debitId(), Granularity.HOUR.name(), hour, posting.tipo(),
+                    0, 0, sign, sign * posting.cents()));
+        }
+        if (posting.creditId() != null) {
+            deltas.add(new Row(posting.creditId(), Granularity.HOUR.name(), hour, posting.tipo(),
+                    sign, sign * posting.cents(), 0, 0));
+        }
+        return deltas;
+    }
+
+    // Adds an hourly delta to the buckets of every granularity still retained at its time
+    private static void accumulate(Map<Key, long[]> buckets, Row delta, Map<Granularity, LocalDateTime> retainedSince) {
+        for (Granularity granularity : Granularity.values()) {
+            LocalDateTime start = granularity.start(delta.start());
+            if (start.isBefore(retainedSince.get(granularity))) {
+                continue;
+            }
+            long[] values = buckets.computeIfAbsent(new Key(delta.accountId(), granularity, start, delta.tipo()),
+                    key -> new long[SLOTS]);
+            values[0] += delta.credits();
+            values[1] += delta.creditedCents();
+            values[2] += delta.debits();
+            values[3] += delta.debitedCents();
+        }
+    }
+
+    private static List<Row> rows(Map<Key, long[]> buckets) {
+        List<Row> rows = new ArrayList<>(buckets.size());
+        buckets.forEach((key, values) -> rows.add(new Row(key.accountId(), key.granularity().name(), key.start(),
+                key.tipo(), values[0], values[1], values[2], values[3])));
+        return rows;
+    }
+
+    private static void add(long[] bucket, Row row) {
+        int offset = row.tipo().ordinal() * SLOTS;
+        bucket[offset] += row.credits();
+        bucket[offset + 1] += row.creditedCents();
+        bucket[offset + 2] += row.debits();
+        bucket[offset + 3] += row.debitedCents();
+    }
+
+    private static boolean isZero(long[] bucket) {
+        for (long value : bucket) {
+            if (value != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<TransactionType, AccountRollupSummary.Totals> byType(long[] values) {
+        Map<TransactionType, AccountRollupSummary.Totals> byType = new EnumMap<>(TransactionType.class);
+        for (TransactionType type : TransactionType.values()) {
+            int offset = type.ordinal() * SLOTS;
+            if (values[offset] != 0 || values[offset + 2] != 0) {
+                byType.put(type, new AccountRollupSummary.Totals(values[offset], BigDecimal.valueOf(values[offset + 1], 2),
+                        values[offset + 2], BigDecimal.valueOf(values[offset + 3], 2)));
+            }
+        }
+        return byType;
+    }
+
+    private static long toCents(BigDecimal valor) {
+        return valor.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private record Key(UUID accountId, Granularity granularity, LocalDateTime start, TransactionType tipo) {
+    }
+}
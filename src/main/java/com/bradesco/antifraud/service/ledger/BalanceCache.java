@@ -0,0 +1,234 @@
+package com.bradesco.antifraud.service.ledger;
+
+import com.bradesco.antifraud.repository.AccountRepository;
+import com.bradesco.antifraud.repository.LedgerJdbcRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind cache of account balances, used by {@link AccountLedger} when
+ * {@code antifraud.ledger.write-behind.enabled} is set.
+ * <p>
+ * The ledger entries of a movement are still inserted synchronously; only the balance
+ * projection ({@code accounts.balance}) is deferred. Balances are checked and moved here
+ * under the ledger's stripe locks, and every {@code flush-interval-ms} the accounts that
+ * moved since the previous flush are written in one batch with their latest balance, so
+ * any number of movements on a hot account cost one row write per flush. Flushes run one
+ * at a time and write absolute values, so a later flush always supersedes an earlier one.
+ * <p>
+ * Shutdown flushes whatever is pending. After a crash the projection lags the ledger,
+ * which is why {@link LedgerProjection} rebuilds it on startup in this mode. The cache
+ * assumes it is the only writer of the accounts it holds: with several instances posting
+ * to the same accounts, keep write-behind off and let the conditional SQL debit arbitrate.
+ */
+@Component
+public class BalanceCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceCache.class);
+
+    private record Slot(BigDecimal balance, boolean dirty, long dirtySinceNanos) {
+    }
+
+    private final boolean enabled;
+    private final int capacity;
+    private final AccountRepository accountRepository;
+    private final LedgerJdbcRepository ledgerRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<UUID, Slot> slots = new ConcurrentHashMap<>();
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Counter movements;
+    private final Counter rowsWritten;
+    private final Timer flushTimer;
+
+    public BalanceCache(AccountRepository accountRepository,
+                        LedgerJdbcRepository ledgerRepository,
+                        PlatformTransactionManager transactionManager,
+                        MeterRegistry meterRegistry,
+                        @Value("${antifraud.ledger.write-behind.enabled:false}") boolean enabled,
+                        @Value("${antifraud.ledger.write-behind.capacity:1000000}") int capacity) {
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.accountRepository = accountRepository;
+        this.ledgerRepository = ledgerRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.movements = Counter.builder("antifraud.ledger.write-behind.movements")
+                .description("Balance movements absorbed by the write-behind cache")
+                .register(meterRegistry);
+        this.rowsWritten = Counter.builder("antifraud.ledger.write-behind.rows")
+                .description("Account balance rows written by write-behind flushes")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("antifraud.ledger.write-behind.flush")
+                .description("Time taken by one write-behind flush")
+                .register(meterRegistry);
+        Gauge.builder("antifraud.ledger.write-behind.pending", dirty, Set::size)
+                .description("Accounts whose balance has not been flushed yet")
+                .register(meterRegistry);
+        Gauge.builder("antifraud.ledger.write-behind.lag", this, BalanceCache::lagSeconds)
+                .description("Age in seconds of the oldest balance change not flushed yet")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Current balance, loaded from the database on a miss. Callers hold the account's stripe.
+     *
+     * @throws EntityNotFoundException if the account does not exist
+     */
+    BigDecimal balance(UUID accountId) {
+        Slot slot = slots.get(accountId);
+        if (slot == null) {
+            slot = slots.computeIfAbsent(accountId, id -> new Slot(load(id), false, 0));
+        }
+        return slot.balance();
+    }
+
+    /**
+     * Adds {@code delta} once the ledger entries that record it are committed. Callers hold
+     * the account's stripe.
+     */
+    void move(UUID accountId, BigDecimal delta) {
+        long now = System.nanoTime();
+        // compute() keeps this atomic against eviction; an evicted slot was clean, so the database is current
+        slots.compute(accountId, (id, slot) -> {
+            BigDecimal balance = slot == null ? load(id) : slot.balance();
+            long since = slot != null && slot.dirty() ? slot.dirtySinceNanos() : now;
+            return new Slot(balance.add(delta), true, since);
+        });
+        dirty.add(accountId);
+        movements.increment();
+    }
+
+    /**
+     * Balance held here, if the account is cached; it may be ahead of {@code accounts.balance}.
+     */
+    public Optional<BigDecimal> cached(UUID accountId) {
+        Slot slot = slots.get(accountId);
+        return slot == null ? Optional.empty() : Optional.of(slot.balance());
+    }
+
+    public void evict(UUID accountId) {
+        dirty.remove(accountId);
+        slots.remove(accountId);
+    }
+
+    public int pending() {
+        return dirty.size();
+    }
+
+    /**
+     * Writes the latest balance of every account moved since the last flush; returns how
+     * many rows were written.
+     */
+    @Scheduled(fixedDelayString = "${antifraud.ledger.write-behind.flush-interval-ms:1000}")
+    public int flush() {
+        if (!enabled || dirty.isEmpty()) {
+            return 0;
+        }
+        flushLock.lock();
+        try {
+            long start = System.nanoTime();
+            Map<UUID, Slot> batch = new LinkedHashMap<>();
+            for (Iterator<UUID> it = dirty.iterator(); it.hasNext(); ) {
+                UUID id = it.next();
+                // Removed before reading: a movement after this point marks the account dirty again
+                it.remove();
+                Slot slot = slots.get(id);
+                if (slot != null && slot.dirty()) {
+                    batch.put(id, slot);
+                }
+            }
+            if (batch.isEmpty()) {
+                return 0;
+            }
+            try {
+                List<Map.Entry<UUID, BigDecimal>> rows = new ArrayList<>(batch.size());
+                batch.forEach((id, slot) -> rows.add(Map.entry(id, slot.balance())));
+                transactionTemplate.executeWithoutResult(status -> ledgerRepository.updateBalances(rows));
+            } catch (RuntimeException e) {
+                dirty.addAll(batch.keySet());
+                logger.warn("Could not flush {} account balances, retrying on the next flush: {}", batch.size(), e.getMessage());
+                return 0;
+            }
+            // Only slots left untouched since they were read are clean; the others stay dirty for the next flush
+            batch.forEach((id, written) -> slots.computeIfPresent(id,
+                    (key, slot) -> slot == written ? new Slot(slot.balance(), false, 0) : slot));
+            rowsWritten.increment(batch.size());
+            evictClean();
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return batch.size();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        int written = flush();
+        if (!dirty.isEmpty()) {
+            logger.warn("{} account balances were not flushed; the ledger rebuild on the next start restores them", dirty.size());
+        } else if (written > 0) {
+            logger.info("Flushed {} account balances on shutdown", written);
+        }
+    }
+
+    private BigDecimal load(UUID accountId) {
+        return accountRepository.findBalanceById(accountId)
+                .orElseThrow(() -> new EntityNotFoundException("Account with ID " + accountId + " does not exist."));
+    }
+
+    private void evictClean() {
+        if (slots.size() <= capacity) {
+            return;
+        }
+        for (UUID id : slots.keySet()) {
+            slots.computeIfPresent(id, (key, slot) -> slot.dirty() ? slot : null);
+            if (slots.size() <= capacity) {
+                return;
+            }
+        }
+    }
+
+    private double lagSeconds() {
+        long now = System.nanoTime();
+        long oldest = 0;
+        for (UUID id : dirty) {
+            Slot slot = slots.get(id);
+            if (slot != null && slot.dirty()) {
+                oldest = Math.max(oldest, now - slot.dirtySinceNanos());
+            }
+        }
+        return oldest / 1e9;
+    }
+}
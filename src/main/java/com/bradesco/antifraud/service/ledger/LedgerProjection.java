@@ -0,0 +1,106 @@
+package com.bradesco.antifraud.service.ledger;
+
+import com.bradesco.antifraud.repository.LedgerJdbcRepository;
+
+import jakarta.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Keeps the balance projection ({@code accounts.balance}) rebuildable from the ledger.
+ * <p>
+ * Snapshots are taken periodically for the accounts that moved since the previous one,
+ * so replaying an account reads one snapshot plus the entries appended after it instead
+ * of its whole history. Entries are only snapshotted once older than {@code snapshot-lag}:
+ * sequences are drawn at insert time, and the lag lets every transaction that drew a lower
+ * sequence commit before the snapshot passes it.
+ */
+@Service
+public class LedgerProjection {
+
+    private static final Logger logger = LoggerFactory.getLogger(LedgerProjection.class);
+
+    private final LedgerJdbcRepository ledgerRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration snapshotLag;
+    private final boolean rebuildOnStartup;
+
+    public LedgerProjection(LedgerJdbcRepository ledgerRepository, PlatformTransactionManager transactionManager,
+                            @Value("${antifraud.ledger.snapshot-lag:PT1M}") Duration snapshotLag,
+                            @Value("${antifraud.ledger.rebuild-on-startup:false}") boolean rebuildOnStartup,
+                            @Value("${antifraud.ledger.write-behind.enabled:false}") boolean writeBehind) {
+        this.ledgerRepository = ledgerRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotLag = snapshotLag;
+        // Balances written behind are lost by a crash before the flush; the ledger has them
+        this.rebuildOnStartup = rebuildOnStartup || writeBehind;
+    }
+
+    // Runs before the web server accepts payments
+    @PostConstruct
+    void start() {
+        int opened = transactionTemplate.execute(status -> ledgerRepository.openUnrecordedAccounts(LocalDateTime.now()));
+        if (opened > 0) {
+            logger.info("Opened ledger history for {} existing accounts", opened);
+        }
+        if (rebuildOnStartup) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Balance of the account replayed from its latest snapshot and the entries after it.
+     */
+    public BigDecimal replay(UUID accountId) {
+        return ledgerRepository.replayedBalance(accountId);
+    }
+
+    /**
+     * Rewrites every balance that differs from its replayed value. Payments posted while
+     * this runs are not blocked, so it is meant for startup or maintenance windows.
+     */
+    public int rebuild() {
+        int changed = transactionTemplate.execute(status -> ledgerRepository.rebuildBalances());
+        if (changed > 0) {
+            logger.warn("Rebuilt {} account balances that differed from the ledger", changed);
+        }
+        return changed;
+    }
+
+    @Scheduled(fixedDelayString = "${antifraud.ledger.snapshot-interval-ms:300000}")
+    public void snapshot() {
+        snapshot(LocalDateTime.now());
+    }
+
+    /**
+     * Snapshots the accounts with entries appended before {@code now} minus the lag; returns
+     * how many accounts were snapshotted.
+     */
+    int snapshot(LocalDateTime now) {
+        Integer accounts = transactionTemplate.execute(status -> {
+            long after = ledgerRepository.lastSnapshotSequence();
+            long upTo = ledgerRepository.lastSequenceBefore(now.minus(snapshotLag));
+            if (upTo <= after) {
+                return 0;
+            }
+            int snapshotted = ledgerRepository.snapshot(after, upTo, now);
+            ledgerRepository.deleteSupersededSnapshots();
+            return snapshotted;
+        });
+        if (accounts > 0) {
+            logger.debug("Snapshotted {} account balances", accounts);
+        }
+        return accounts;
+    }
+}
@@ -0,0 +1,61 @@
+-- Converts the plain access_log table Hibernate created into one range-partitioned on "timestamp".
+--
+-- Run once per database, before setting antifraud.access-log.partitions.enabled=true:
+--   psql -v ON_ERROR_STOP=1 -f access_log_partitioning.sql
+-- It takes an ACCESS EXCLUSIVE lock on access_log, rebuilds its primary key index and scans it for the
+-- bound check of the attach, so run it when logins and payments are quiet. It is a single statement: it either
+-- converts the table or leaves it untouched, and does nothing if access_log is already partitioned.
+--
+-- Nothing is copied: the existing table, rows and indexes included, is attached as the partition
+-- access_log_legacy holding everything before the start of next month. AccessLogPartitionManager creates
+-- the partitions from there on and drops access_log_legacy once retention is past its last row.
+--
+-- A partitioned table's primary key must contain the partition column, so the key becomes (id, "timestamp")
+-- while the entity keeps @Id on id alone. That holds because ids are random UUIDs generated on insert and
+-- rows are never updated. Hibernate's ddl-auto=update finds the table (hbm2ddl.extra_physical_table_types)
+-- and only adds missing columns to the parent, which passes them on to every partition; index and key
+-- changes to AccessLog need an addition to this directory instead.
+DO $$
+DECLARE
+    legacy_up_to timestamp := date_trunc('month', localtimestamp) + interval '1 month';
+    legacy_index text;
+    legacy_pkey text;
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass('access_log')) THEN
+        RAISE NOTICE 'access_log is already partitioned';
+        RETURN;
+    END IF;
+
+    LOCK TABLE access_log IN ACCESS EXCLUSIVE MODE;
+    ALTER TABLE access_log RENAME TO access_log_legacy;
+    -- Frees the index names for the partitioned table; attaching gives the legacy rows the parent's indexes
+    FOR legacy_index IN
+        SELECT c.relname FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid
+        WHERE i.indrelid = 'access_log_legacy'::regclass
+    LOOP
+        EXECUTE format('ALTER INDEX %I RENAME TO %I', legacy_index, legacy_index || '_legacy');
+    END LOOP;
+    -- A partition cannot keep a primary key of its own: it gets the parent's, (id, "timestamp"), instead
+    SELECT conname INTO legacy_pkey FROM pg_constraint
+    WHERE conrelid = 'access_log_legacy'::regclass AND contype = 'p';
+    IF legacy_pkey IS NOT NULL THEN
+        EXECUTE format('ALTER TABLE access_log_legacy DROP CONSTRAINT %I', legacy_pkey);
+    END IF;
+    ALTER TABLE access_log_legacy ADD CONSTRAINT access_log_legacy_pkey PRIMARY KEY (id, "timestamp");
+
+    CREATE TABLE access_log (LIKE access_log_legacy INCLUDING DEFAULTS) PARTITION BY RANGE ("timestamp");
+    ALTER TABLE access_log ADD CONSTRAINT access_log_pkey PRIMARY KEY (id, "timestamp");
+    ALTER TABLE access_log ADD CONSTRAINT fk_access_log_customer FOREIGN KEY (customer_id) REFERENCES customers (id);
+    -- Same names and columns as the @Index list on AccessLog
+    CREATE INDEX idx_access_log_timestamp_id ON access_log ("timestamp", id);
+    CREATE INDEX idx_access_log_customer_timestamp_id ON access_log (customer_id, "timestamp", id);
+    CREATE INDEX idx_access_log_ip_timestamp_id ON access_log (ip_address, "timestamp", id);
+    CREATE INDEX idx_access_log_session_timestamp_id ON access_log (session_id, "timestamp", id);
+    CREATE INDEX idx_access_log_action_status_timestamp_id ON access_log (action, status, "timestamp", id);
+    CREATE INDEX idx_access_log_status_timestamp_id ON access_log (status, "timestamp", id);
+
+    EXECUTE format('ALTER TABLE access_log ATTACH PARTITION access_log_legacy FOR VALUES FROM (MINVALUE) TO (%L)',
+            legacy_up_to);
+    RAISE NOTICE 'access_log partitioned; existing rows kept as access_log_legacy (before %)', legacy_up_to;
+END
+$$;
@@ -0,0 +1,6 @@
+-- Adds the (status, "timestamp", id) search index to an access_log already converted by
+-- access_log_partitioning.sql, which Hibernate's ddl-auto=update does not add indexes to.
+--   psql -v ON_ERROR_STOP=1 -f access_log_status_index.sql
+-- Creating it on the partitioned parent builds it on every partition and locks out writes to the
+-- table until it is done, so run it when logins and payments are quiet. Does nothing if it exists.
+CREATE INDEX IF NOT EXISTS idx_access_log_status_timestamp_id ON access_log (status, "timestamp", id);
@@ -0,0 +1,113 @@
+package com.bradesco.antifraud.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiringStoreTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+    private final ExpiringStore<String, String> store =
+            new ExpiringStore<>("test", 100, Duration.ofSeconds(1), 8, clock::get);
+
+    private void advance(Duration duration) {
+        clock.addAndGet(duration.toNanos());
+    }
+
+    @Test
+    void get_hidesEntryOnceTtlHasPassed() {
+        store.put("token", "user", Duration.ofSeconds(5));
+
+        advance(Duration.ofMillis(4999));
+        assertEquals("user", store.get("token"));
+
+        advance(Duration.ofMillis(1));
+        assertNull(store.get("token"));
+    }
+
+    @Test
+    void expire_removesExpiredEntriesFromMemory() {
+        for (int i = 0; i < 10; i++) {
+            store.put("short-" + i, "v", Duration.ofSeconds(2));
+        }
+        store.put("long", "v", Duration.ofMinutes(10));
+
+        advance(Duration.ofSeconds(3));
+
+        assertEquals(10, store.expire());
+        assertEquals(1, store.size());
+        assertEquals(10, store.stats().expired());
+    }
+
+    @Test
+    void expire_keepsEntriesScheduledInLaterRotations() {
+        // 8 one-second buckets: a 20 second TTL wraps the wheel twice
+        store.put("long", "v", Duration.ofSeconds(20));
+
+        for (int second = 1; second < 20; second++) {
+            advance(Duration.ofSeconds(1));
+            store.expire();
+            assertEquals("v", store.get("long"), "evicted early at second " + second);
+        }
+
+        advance(Duration.ofSeconds(1));
+        assertEquals(1, store.expire());
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void expire_afterLongPause_sweepsWholeWheelOnce() {
+        store.put("a", "v", Duration.ofSeconds(1));
+        store.put("b", "v", Duration.ofSeconds(30));
+
+        advance(Duration.ofHours(1));
+
+        assertEquals(2, store.expire());
+    }
+
+    @Test
+    void put_overCapacity_evictsOldestEntry() {
+        ExpiringStore<String, String> small = new ExpiringStore<>("small", 2, Duration.ofSeconds(1), 8, clock::get);
+
+        small.put("first", "1", Duration.ofMinutes(1));
+        small.put("second", "2", Duration.ofMinutes(1));
+        small.put("third", "3", Duration.ofMinutes(1));
+
+        assertNull(small.get("first"));
+        assertEquals("3", small.get("third"));
+        assertEquals(2, small.size());
+        assertEquals(1, small.stats().evicted());
+    }
+
+    @Test
+    void put_sameKey_replacesEntryAndDeadline() {
+        store.put("session", "old", Duration.ofSeconds(2));
+        store.put("session", "new", Duration.ofSeconds(10));
+
+        advance(Duration.ofSeconds(5));
+        store.expire();
+
+        assertEquals("new", store.get("session"));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void remove_returnsValueOnlyOnce() {
+        store.put("token", "user", Duration.ofMinutes(1));
+
+        assertEquals("user", store.remove("token"));
+        assertNull(store.remove("token"));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void remove_expiredEntry_returnsNull() {
+        store.put("token", "user", Duration.ofSeconds(1));
+        advance(Duration.ofSeconds(2));
+
+        assertNull(store.remove("token"));
+    }
+}
@@ -0,0 +1,35 @@
+package com.bradesco.antifraud.config;
+
+import com.bradesco.antifraud.service.TokenService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class MetricsConfigTest {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Test
+    void storeMetricsStillReadTheStoreAfterAGarbageCollection() {
+        tokenService.storeToken(UUID.randomUUID().toString(), UUID.randomUUID(), Duration.ofMinutes(5));
+
+        System.gc();
+
+        double size = meterRegistry.get("antifraud.store.size").tag("store", "tokens").gauge().value();
+        assertThat(size).isEqualTo(tokenService.stats().size()).isPositive();
+        double expired = meterRegistry.get("antifraud.store.expired").tag("store", "tokens").functionCounter().count();
+        assertThat(expired).isEqualTo(tokenService.stats().expired());
+    }
+}
@@ -0,0 +1,177 @@
+package com.bradesco.antifraud.controller;
+
+import com.bradesco.antifraud.dto.AccessLogFilter;
+import com.bradesco.antifraud.model.AccessLog;
+import com.bradesco.antifraud.model.Address;
+import com.bradesco.antifraud.model.Customer;
+import com.bradesco.antifraud.repository.AccessLogJdbcRepository;
+import com.bradesco.antifraud.repository.AccessLogRepository;
+import com.bradesco.antifraud.repository.CustomerRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc(addFilters = false)
+class AccessLogControllerTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 6, 1, 12, 0);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private AccessLogRepository accessLogRepository;
+
+    @Autowired
+    private AccessLogJdbcRepository accessLogJdbcRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Customer alice;
+    private Customer bob;
+
+    @BeforeEach
+    void setup() {
+        alice = customerRepository.save(customer("Alice", "245.118.903-74", "alice@example.com"));
+        bob = customerRepository.save(customer("Bob", "631.907.254-70", "bob@example.com"));
+        List<AccessLog> logs = new ArrayList<>();
+        // Alice: one login a minute from 10.0.0.1, every third one failed
+        for (int i = 0; i < 7; i++) {
+            logs.add(log(alice, START.plusMinutes(i), "LOGIN", i % 3 == 0 ? "FAILURE-INVALID_CREDENTIALS" : "SUCCESS-TOKEN_SENT",
+                    "10.0.0.1", "session-a"));
+        }
+        logs.add(log(bob, START.plusMinutes(3).plusSeconds(30), "LOGIN", "FAILURE-INVALID_CREDENTIALS", "10.0.0.1", "session-b"));
+        logs.add(log(bob, START.plusMinutes(4), "PAGAMENTO", "SUCCESS", "10.0.0.2", "session-b"));
+        accessLogRepository.saveAll(logs);
+    }
+
+    @AfterEach
+    void tearDown() {
+        accessLogRepository.deleteAll();
+        customerRepository.deleteAll();
+    }
+
+    @Test
+    void search_byCustomer_pagesNewestFirstWithCursor() throws Exception {
+        JsonNode first = page("/logs?customerId=" + alice.getId() + "&limit=4");
+        assertEquals(4, first.get("items").size());
+        assertEquals(START.plusMinutes(6).toString(), first.get("items").get(0).get("timestamp").asText().substring(0, 16));
+        assertEquals(7, first.get("total").asLong());
+        assertTrue(first.get("totalExact").asBoolean());
+
+        JsonNode second = page("/logs?customerId=" + alice.getId() + "&limit=4&cursor=" + first.get("nextCursor").asText());
+        assertEquals(3, second.get("items").size());
+        assertEquals(START.toString(), second.get("items").get(2).get("timestamp").asText().substring(0, 16));
+        assertNull(second.get("nextCursor"));
+        assertNull(second.get("total"));
+    }
+
+    @Test
+    void search_combinesFilters() throws Exception {
+        JsonNode failures = page("/logs?ipAddress=10.0.0.1&action=LOGIN&status=FAILURE-INVALID_CREDENTIALS"
+                + "&from=" + START.plusMinutes(1) + "&to=" + START.plusMinutes(6));
+        assertEquals(2, failures.get("items").size());
+        assertEquals(bob.getId().toString(), failures.get("items").get(0).get("customerId").asText());
+        assertEquals(alice.getId().toString(), failures.get("items").get(1).get("customerId").asText());
+
+        JsonNode session = page("/logs?sessionId=session-b");
+        assertEquals(2, session.get("total").asLong());
+    }
+
+    @Test
+    void search_rejectsBadParameters() throws Exception {
+        mockMvc.perform(get("/logs").param("limit", "0")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/logs").param("cursor", "not-a-cursor")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/logs").param("from", START.toString()).param("to", START.toString()))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void searchArchive_withNothingArchived_returnsEmptyList() throws Exception {
+        mockMvc.perform(get("/logs/archive").param("customerId", alice.getId().toString()))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[]"));
+        mockMvc.perform(get("/logs/archive").param("limit", "501")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void estimateCount_stopsCountingPastTheExactLimit() {
+        AccessLogFilter byAlice = new AccessLogFilter(alice.getId(), null, null, null, null, null, null);
+
+        assertEquals(new AccessLogJdbcRepository.CountEstimate(7, true), accessLogJdbcRepository.estimateCount(byAlice, 10));
+        // H2 has no planner estimate to offer: the count is reported as a lower bound
+        assertEquals(new AccessLogJdbcRepository.CountEstimate(4, false), accessLogJdbcRepository.estimateCount(byAlice, 3));
+    }
+
+    @Test
+    void search_byCustomer_readsItsCompositeIndex() {
+        String plan = jdbcTemplate.queryForObject("explain select id from access_log where customer_id = ? "
+                + "order by timestamp desc, id desc limit 50", String.class, alice.getId());
+
+        assertTrue(plan.toUpperCase().contains("IDX_ACCESS_LOG_CUSTOMER_TIMESTAMP_ID"), plan);
+    }
+
+    private JsonNode page(String uri) throws Exception {
+        String body = mockMvc.perform(get(uri))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private static AccessLog log(Customer customer, LocalDateTime at, String action, String status, String ip, String session) {
+        return AccessLog.builder()
+                .customer(customer)
+                .timestamp(at)
+                .accessTime(at)
+                .action(action)
+                .status(status)
+                .ipAddress(ip)
+                .sessionId(session)
+                .httpMethod("POST")
+                .path("/auth/login")
+                .build();
+    }
+
+    private static Customer customer(String name, String cpf, String email) {
+        return Customer.builder()
+                .name(name)
+                .cpf(cpf)
+                .dateOfBirth(LocalDate.of(1990, 1, 1))
+                .email(email)
+                .password("secret")
+                .address(Address.builder()
+                        .street("Rua A")
+                        .number("1")
+                        .neighborhood("Centro")
+                        .city("São Paulo")
+                        .state("SP")
+                        .zipCode("01001-000")
+                        .build())
+                .build();
+    }
+}
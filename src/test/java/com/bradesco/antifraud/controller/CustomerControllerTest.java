@@ -14,7 +14,10 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import java.time.LocalDate;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @SpringBootTest
@@ -59,4 +62,54 @@ public class CustomerControllerTest {
             .andExpect(status().isOk())
             .andExpect(jsonPath("$.email").value("john@example.com"));
     }
+
+    @Test
+    void import_ndjson_insertsValidRowsAndReportsEachRow() throws Exception {
+        String body = String.join("\n",
+                customerJson("Ana", "390.533.447-05", "ana@example.com"),
+                customerJson("Taken Email", "714.602.380-01", "john@example.com"),
+                customerJson("Bad Cpf", "111.111.111-12", "bad@example.com"),
+                customerJson("Same Cpf", "390.533.447-05", "other@example.com"),
+                "{\"name\": \"Broken\", \"dateOfBirth\": \"not-a-date\"}",
+                customerJson("Bia", "862.171.039-07", "bia@example.com"));
+
+        mockMvc.perform(post("/customers/import").contentType("application/x-ndjson").content(body))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.received").value(6))
+            .andExpect(jsonPath("$.inserted").value(2))
+            .andExpect(jsonPath("$.rejected").value(4))
+            .andExpect(jsonPath("$.rows[0].status").value("INSERTED"))
+            .andExpect(jsonPath("$.rows[1].error").value("Email já cadastrado: john@example.com"))
+            .andExpect(jsonPath("$.rows[2].error").value("cpf: Invalid CPF"))
+            .andExpect(jsonPath("$.rows[3].error").value("CPF já cadastrado: 390.533.447-05"))
+            .andExpect(jsonPath("$.rows[4].status").value("REJECTED"))
+            .andExpect(jsonPath("$.rows[5].status").value("INSERTED"));
+
+        Customer ana = repository.findByEmail("ana@example.com").orElseThrow();
+        assertTrue(ana.getPassword().startsWith("$2"), "password is stored hashed");
+        assertEquals(3, repository.count());
+    }
+
+    @Test
+    void import_csv_readsTheFlatLayout() throws Exception {
+        String body = "name,cpf,dateOfBirth,email,phone,password,street,number,neighborhood,city,state,zipCode\n"
+            + "Ana,390.533.447-05,1991-02-03,ana@example.com,+5511988887777,secret,Rua B,7,Centro,Osasco,SP,06010-000\n"
+            + "Bia,862.171.039-07,1992-04-05,bia@example.com,,secret,Rua C,8,Centro,Osasco,SP,06010-000\n";
+
+        mockMvc.perform(post("/customers/import").contentType("text/csv").content(body))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.inserted").value(2))
+            .andExpect(jsonPath("$.rows[1].status").value("INSERTED"));
+
+        Customer bia = repository.findByEmail("bia@example.com").orElseThrow();
+        assertEquals(LocalDate.of(1992, 4, 5), bia.getDateOfBirth());
+        assertEquals("Osasco", bia.getAddress().getCity());
+    }
+
+    private static String customerJson(String name, String cpf, String email) {
+        return "{\"name\": \"" + name + "\", \"cpf\": \"" + cpf + "\", \"email\": \"" + email + "\", "
+            + "\"dateOfBirth\": \"1990-01-01\", \"password\": \"secret\", "
+            + "\"address\": {\"street\": \"Rua A\", \"number\": \"1\", \"neighborhood\": \"Centro\", "
+            + "\"city\": \"São Paulo\", \"state\": \"SP\", \"zipCode\": \"01001-000\"}}";
+    }
 }
@@ -0,0 +1,407 @@
+package com.bradesco.antifraud.controller;
+
+import com.bradesco.antifraud.model.Account;
+import com.bradesco.antifraud.model.Address;
+import com.bradesco.antifraud.model.Customer;
+import com.bradesco.antifraud.repository.AccessLogRepository;
+import com.bradesco.antifraud.repository.AccountRepository;
+import com.bradesco.antifraud.repository.CustomerRepository;
+import com.bradesco.antifraud.repository.TransactionRepository;
+import com.bradesco.antifraud.service.TransactionService;
+import com.bradesco.antifraud.service.accesslog.AccessLogWriter;
+import com.bradesco.antifraud.service.ledger.AccountLedger;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import com.bradesco.antifraud.dto.TransactionPage;
+import com.bradesco.antifraud.model.Transaction;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc(addFilters = false)
+class TransactionControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private AccountLedger accountLedger;
+
+    @Autowired
+    private AccessLogRepository accessLogRepository;
+
+    @Autowired
+    private AccessLogWriter accessLogWriter;
+
+    private Account source;
+    private Account destination;
+
+    @BeforeEach
+    void setup() {
+        Customer customer = customerRepository.save(Customer.builder()
+                .name("Batch Test")
+                .cpf("111.444.777-35")
+                .dateOfBirth(LocalDate.of(1980, 3, 15))
+                .email("batch@example.com")
+                .password("secret")
+                .address(Address.builder()
+                        .street("Rua C")
+                        .number("1")
+                        .neighborhood("Centro")
+                        .city("Campinas")
+                        .state("SP")
+                        .zipCode("13010-000")
+                        .build())
+                .build());
+        source = accountRepository.save(account(customer, "B-0001"));
+        destination = accountRepository.save(account(customer, "B-0002"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionRepository.deleteAll();
+        accountRepository.deleteAll();
+        accessLogRepository.deleteAll();
+        customerRepository.deleteAll();
+    }
+
+    @Test
+    void batch_ndjson_insertsValidRowsAndReportsEachRow() throws Exception {
+        String body = row("TRANSFERENCIA", "10.00", source.getId(), destination.getId()) + "\n"
+                + row("TRANSFERENCIA", "-5.00", source.getId(), destination.getId()) + "\n"
+                + row("PAGAMENTO", "20.00", UUID.randomUUID(), null) + "\n"
+                + "{\"tipo\":\"TIPO_INVALIDO\",\"valor\":1}\n"
+                + row("PAGAMENTO", "30.00", source.getId(), null) + "\n";
+
+        mockMvc.perform(post("/transactions/batch")
+                        .contentType("application/x-ndjson")
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(5))
+                .andExpect(jsonPath("$.inserted").value(2))
+                .andExpect(jsonPath("$.rejected").value(3))
+                .andExpect(jsonPath("$.rows[0].status").value("INSERTED"))
+                .andExpect(jsonPath("$.rows[1].error").value("Transaction amount must be positive."))
+                .andExpect(jsonPath("$.rows[2].status").value("REJECTED"))
+                .andExpect(jsonPath("$.rows[3].status").value("REJECTED"))
+                .andExpect(jsonPath("$.rows[4].row").value(4))
+                .andExpect(jsonPath("$.rows[4].status").value("INSERTED"));
+
+        assertEquals(2, transactionRepository.count());
+    }
+
+    @Test
+    void batch_jsonArray_isAccepted() throws Exception {
+        String body = "[" + row("TRANSFERENCIA", "1.00", source.getId(), destination.getId())
+                + "," + row("TRANSFERENCIA", "2.00", destination.getId(), source.getId()) + "]";
+
+        mockMvc.perform(post("/transactions/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.inserted").value(2))
+                .andExpect(jsonPath("$.rejected").value(0));
+
+        assertEquals(2, transactionRepository.count());
+    }
+
+    @Test
+    void batch_rowsMissingRequiredFields_areRejectedBeforeTheInsert() throws Exception {
+        String body = "{\"valor\":5.00,\"dataHora\":\"2025-06-08T10:00:00\",\"contaDeOrigem\":{\"id\":\"" + source.getId() + "\"}}\n"
+                + "{\"tipo\":\"PAGAMENTO\",\"valor\":5.00,\"contaDeOrigem\":{\"id\":\"" + source.getId() + "\"}}\n"
+                + row("PAGAMENTO", "5.00", source.getId(), null) + "\n";
+
+        mockMvc.perform(post("/transactions/batch")
+                        .contentType("application/x-ndjson")
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.inserted").value(1))
+                .andExpect(jsonPath("$.rows[0].status").value("REJECTED"))
+                .andExpect(jsonPath("$.rows[0].error").value(startsWith("tipo: ")))
+                .andExpect(jsonPath("$.rows[1].status").value("REJECTED"))
+                .andExpect(jsonPath("$.rows[1].error").value(startsWith("dataHora: ")))
+                .andExpect(jsonPath("$.rows[2].status").value("INSERTED"));
+
+        assertEquals(1, transactionRepository.count());
+    }
+
+    @Test
+    void create_withSameIdempotencyKey_createsOneTransaction() throws Exception {
+        String key = UUID.randomUUID().toString();
+        String body = row("TRANSFERENCIA", "10.00", source.getId(), destination.getId());
+
+        String first = mockMvc.perform(post("/transactions")
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String retry = mockMvc.perform(post("/transactions")
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals(objectMapper.readTree(first).get("id"), objectMapper.readTree(retry).get("id"));
+        assertEquals(1, transactionRepository.count());
+        mockMvc.perform(post("/transactions")
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(row("TRANSFERENCIA", "99.00", source.getId(), destination.getId())))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
+    @Test
+    void payment_replayedWithIdempotencyKey_logsTheAccessOnce() throws Exception {
+        String key = UUID.randomUUID().toString();
+        String body = "{\"tipo\":\"PAGAMENTO\",\"valor\":10.00,\"dataHora\":\"2025-06-08T10:00:00\""
+                + ",\"contaDeOrigem\":{\"id\":\"" + source.getId() + "\",\"customer\":{\"id\":\"" + source.getCustomer().getId() + "\"}}"
+                + ",\"contaDeDestino\":{\"id\":\"" + destination.getId() + "\"}}";
+        long logged = meterRegistry.get("antifraud.access-log.enqueue").timer().count();
+        long written = accessLogWriter.written();
+
+        mockMvc.perform(post("/transactions/payment")
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isCreated());
+        mockMvc.perform(post("/transactions/payment")
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"));
+
+        assertEquals(1, transactionRepository.count());
+        assertEquals(logged + 1, meterRegistry.get("antifraud.access-log.enqueue").timer().count());
+        // Written behind: wait for the writer before counting the rows
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (accessLogWriter.written() == written && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, accessLogRepository.count());
+    }
+
+    @Test
+    void status_ofAPostedPayment_isPosted_andUnknownIdsAreNotFound() throws Exception {
+        saveTransactions(1);
+        UUID posted = transactionRepository.findAll().get(0).getId();
+
+        mockMvc.perform(get("/transactions/{id}/status", posted))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.outcome").value("POSTED"))
+                .andExpect(jsonPath("$.reason").doesNotExist());
+        mockMvc.perform(get("/transactions/{id}/status", UUID.randomUUID()))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void findAll_walksPagesWithCursor() throws Exception {
+        saveTransactions(5);
+
+        TransactionPage first = page(null);
+        TransactionPage second = page(first.nextCursor());
+        TransactionPage third = page(second.nextCursor());
+
+        assertEquals(2, first.items().size());
+        assertEquals(2, second.items().size());
+        assertEquals(1, third.items().size());
+        assertNull(third.nextCursor());
+        assertEquals(0, new BigDecimal("1").compareTo(first.items().get(0).getValor()));
+        assertEquals(0, new BigDecimal("5").compareTo(third.items().get(0).getValor()));
+    }
+
+    @Test
+    void findAll_rejectsInvalidCursor() throws Exception {
+        mockMvc.perform(get("/transactions").param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void stream_writesOneJsonObjectPerLine() throws Exception {
+        saveTransactions(3);
+
+        MvcResult started = mockMvc.perform(get("/transactions/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.trim().split("\n");
+        assertEquals(3, lines.length);
+        assertEquals(source.getId().toString(), objectMapper.readTree(lines[0]).get("contaDeOrigemId").asText());
+    }
+
+    @Test
+    void processTransaction_recordsOutcomeCounterAndStageTimers() throws Exception {
+        // Other tests post payments through the same registry, so only this test's increments are checked
+        String[] stages = {"validate", "fraud-score", "lock-wait", "balance-update", "persist", "fraud-record"};
+        double successes = count("antifraud.transactions", "type", "TRANSFERENCIA", "outcome", "success");
+        long[] stageCounts = new long[stages.length];
+        for (int i = 0; i < stages.length; i++) {
+            stageCounts[i] = stageCount(stages[i]);
+        }
+
+        transactionService.processTransaction(Transaction.builder()
+                .tipo(Transaction.TransactionType.TRANSFERENCIA)
+                .valor(new BigDecimal("10.00"))
+                .dataHora(LocalDateTime.now())
+                .contaDeOrigem(source)
+                .contaDeDestino(destination)
+                .build());
+
+        assertEquals(successes + 1, count("antifraud.transactions", "type", "TRANSFERENCIA", "outcome", "success"), 0.0);
+        for (int i = 0; i < stages.length; i++) {
+            assertEquals(stageCounts[i] + 1, stageCount(stages[i]), stages[i]);
+        }
+        mockMvc.perform(get("/actuator/metrics/antifraud.transaction.process")
+                        .param("tag", "type:TRANSFERENCIA", "outcome:success"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.availableTags").isArray());
+    }
+
+    @Test
+    void rollups_followBatchInsertsAndLedgerPostings() throws Exception {
+        mockMvc.perform(post("/transactions/batch")
+                        .contentType("application/x-ndjson")
+                        .content(row("TRANSFERENCIA", "1.00", source.getId(), destination.getId()) + "\n"
+                                + row("TRANSFERENCIA", "2.00", destination.getId(), source.getId()) + "\n"))
+                .andExpect(status().isOk());
+        LocalDateTime now = LocalDateTime.now();
+        // Straight to the ledger, so the payment counters asserted elsewhere are left alone
+        accountLedger.post(Transaction.builder()
+                .tipo(Transaction.TransactionType.TRANSFERENCIA)
+                .valor(new BigDecimal("10.00"))
+                .dataHora(now)
+                .contaDeOrigem(source)
+                .contaDeDestino(destination)
+                .build());
+
+        mockMvc.perform(get("/accounts/{id}/rollups", source.getId())
+                        .param("granularity", "MONTH")
+                        .param("from", "2025-06-01T00:00:00")
+                        .param("to", now.plusDays(1).toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.buckets.length()").value(2))
+                .andExpect(jsonPath("$.buckets[0].byType.TRANSFERENCIA.credited").value(2.00))
+                .andExpect(jsonPath("$.totals.TRANSFERENCIA.credits").value(1))
+                .andExpect(jsonPath("$.totals.TRANSFERENCIA.debits").value(2))
+                .andExpect(jsonPath("$.totals.TRANSFERENCIA.debited").value(11.00));
+        // Without a period, the current bucket
+        mockMvc.perform(get("/accounts/{id}/rollups", destination.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.granularity").value("DAY"))
+                .andExpect(jsonPath("$.totals.TRANSFERENCIA.credited").value(10.00));
+        mockMvc.perform(get("/accounts/{id}/rollups", source.getId())
+                        .param("granularity", "HOUR")
+                        .param("from", "2025-06-08T10:00:00"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(post("/accounts/rollups/rebuild"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactions").value(3));
+        mockMvc.perform(get("/accounts/{id}/rollups", source.getId())
+                        .param("granularity", "MONTH")
+                        .param("from", "2025-06-01T00:00:00")
+                        .param("to", now.plusDays(1).toString()))
+                .andExpect(jsonPath("$.totals.TRANSFERENCIA.debited").value(11.00));
+    }
+
+    private double count(String name, String... tags) {
+        Counter counter = meterRegistry.find(name).tags(tags).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private long stageCount(String stage) {
+        Timer timer = meterRegistry.find("antifraud.transaction.stage").tag("stage", stage).timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private TransactionPage page(String cursor) throws Exception {
+        var request = get("/transactions").param("limit", "2");
+        if (cursor != null) {
+            request.param("cursor", cursor);
+        }
+        String json = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(json, TransactionPage.class);
+    }
+
+    private void saveTransactions(int count) {
+        LocalDateTime base = LocalDateTime.of(2025, 6, 8, 10, 0);
+        for (int i = 1; i <= count; i++) {
+            transactionRepository.save(Transaction.builder()
+                    .tipo(Transaction.TransactionType.TRANSFERENCIA)
+                    .valor(BigDecimal.valueOf(i))
+                    .dataHora(base.plusMinutes(i))
+                    .contaDeOrigem(source)
+                    .contaDeDestino(destination)
+                    .build());
+        }
+    }
+
+    private static Account account(Customer customer, String number) {
+        return Account.builder()
+                .accountNumber(number)
+                .agency("0001")
+                .balance(new BigDecimal("100.00"))
+                .accountType(Account.AccountType.CORRENTE)
+                .accountStatus(Account.AccountStatus.ATIVA)
+                .customer(customer)
+                .build();
+    }
+
+    private static String row(String tipo, String valor, UUID from, UUID to) {
+        return "{\"tipo\":\"" + tipo + "\",\"valor\":" + valor + ",\"dataHora\":\"2025-06-08T10:00:00\""
+                + (from == null ? "" : ",\"contaDeOrigem\":{\"id\":\"" + from + "\"}")
+                + (to == null ? "" : ",\"contaDeDestino\":{\"id\":\"" + to + "\"}")
+                + "}";
+    }
+}
@@ -0,0 +1,115 @@
+package com.bradesco.antifraud.security;
+
+import com.bradesco.antifraud.exception.authExceptions.PasswordHashingSaturatedException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffloadingPasswordEncoderTest {
+
+    private final AtomicReference<Thread> hashedOn = new AtomicReference<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // One hasher thread and one queued hash at most
+    private final OffloadingPasswordEncoder encoder = new OffloadingPasswordEncoder(new PasswordEncoder() {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            hashedOn.set(Thread.currentThread());
+            if ("boom".contentEquals(rawPassword)) {
+                throw new IllegalArgumentException("cannot hash");
+            }
+            if ("slow".contentEquals(rawPassword)) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return "hash:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encode(rawPassword).equals(encodedPassword);
+        }
+    }, 1, 1, meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        encoder.shutdown();
+    }
+
+    @Test
+    void fromRequestThread_hashesOnHasherThread() {
+        assertTrue(encoder.matches("secret", "hash:secret"));
+
+        assertNotSame(Thread.currentThread(), hashedOn.get());
+        assertTrue(hashedOn.get().getName().startsWith("password-hasher-"));
+        assertEquals(1, meterRegistry.get("antifraud.auth.hashing").tag("operation", "matches").timer().count());
+    }
+
+    @Test
+    void fromVirtualThread_hashesOnPlatformThread() throws Exception {
+        AtomicReference<String> hash = new AtomicReference<>();
+        Thread.ofVirtual().start(() -> hash.set(encoder.encode("secret"))).join();
+
+        assertEquals("hash:secret", hash.get());
+        assertFalse(hashedOn.get().isVirtual());
+    }
+
+    @Test
+    void rethrowsDelegateFailure() {
+        assertThrows(IllegalArgumentException.class, () -> encoder.encode("boom"));
+    }
+
+    @Test
+    void whenQueueIsFull_rejectsAtOnce() throws Exception {
+        Thread running = Thread.ofPlatform().start(() -> encoder.encode("slow"));
+        Thread queued = Thread.ofPlatform().start(() -> encoder.encode("slow"));
+        awaitQueued(1);
+
+        long start = System.nanoTime();
+        assertThrows(PasswordHashingSaturatedException.class, () -> encoder.encode("secret"));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(1.0, meterRegistry.get("antifraud.auth.hashing.rejected").counter().count());
+
+        release.countDown();
+        running.join();
+        queued.join();
+        assertEquals("hash:secret", encoder.encode("secret"));
+    }
+
+    @Test
+    void encodeAsync_waitsForRoomInsteadOfFailing() throws Exception {
+        CompletableFuture<String> first = encoder.encodeAsync("slow");
+        AtomicReference<CompletableFuture<String>> second = new AtomicReference<>();
+        Thread bulk = Thread.ofPlatform().start(() -> second.set(encoder.encodeAsync("next")));
+
+        bulk.join(200);
+        assertTrue(bulk.isAlive(), "second bulk hash waits while the first holds the only bulk place");
+
+        release.countDown();
+        bulk.join();
+        assertEquals("hash:slow", first.get(5, TimeUnit.SECONDS));
+        assertEquals("hash:next", second.get().get(5, TimeUnit.SECONDS));
+    }
+
+    private void awaitQueued(int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("antifraud.auth.hashing.queue").gauge().value() < depth) {
+            assertTrue(System.nanoTime() < deadline, "hash never queued");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -9,6 +9,7 @@ import com.bradesco.antifraud.model.Address;
 import com.bradesco.antifraud.model.Customer; // Supondo que Customer exista
 import com.bradesco.antifraud.repository.AccountRepository;
 import com.bradesco.antifraud.repository.CustomerRepository;
+import com.bradesco.antifraud.service.ledger.AccountLedger;
 
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
@@ -37,6 +38,9 @@ class AccountServiceTest {
     @Mock
     private CustomerRepository customerRepository;
 
+    @Mock
+    private AccountLedger accountLedger;
+
     @InjectMocks
     private AccountService accountService;
 
@@ -180,6 +184,7 @@ class AccountServiceTest {
         verify(customerRepository).findById(customerId);
         verify(accountMapper).toEntity(newAccountDto);
         verify(accountRepository).save(accountToSave);
+        verify(accountLedger).open(savedAccount);
     }
 
     @Test
@@ -286,6 +291,8 @@ class AccountServiceTest {
             savedAccount.getId().equals(this.accountId) &&
             savedAccount.getAccountNumber().equals(updatedInfo.getAccountNumber())
         ));
+        // O saldo não é sobrescrito: a diferença vira um lançamento de ajuste no ledger
+        verify(accountLedger).adjust(this.accountId, BigDecimal.ONE);
     }
 
     @Test
@@ -321,6 +328,7 @@ class AccountServiceTest {
         verify(accountRepository, never()).save(any(Account.class));
         verify(customerRepository, never()).save(any(Customer.class));
         verify(customerRepository, never()).findById(any(UUID.class));
+        verify(accountLedger, never()).adjust(any(UUID.class), any(BigDecimal.class));
     }
 
     @Test
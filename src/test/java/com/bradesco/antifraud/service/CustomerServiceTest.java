@@ -1,5 +1,6 @@
 package com.bradesco.antifraud.service;
 
+import com.bradesco.antifraud.cache.CustomerCache;
 import com.bradesco.antifraud.model.Customer;
 import com.bradesco.antifraud.repository.CustomerRepository;
 
@@ -7,6 +8,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.time.Duration;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -17,7 +19,8 @@ public class CustomerServiceTest {
 
     CustomerRepository repository = Mockito.mock(CustomerRepository.class);
     PasswordEncoder passwordEncoder = Mockito.mock(PasswordEncoder.class);
-    CustomerService service = new CustomerService(repository, passwordEncoder);
+    CustomerCache customerCache = new CustomerCache(100, Duration.ofMinutes(5));
+    CustomerService service = new CustomerService(repository, passwordEncoder, customerCache);
 
     @Test
     void testFindById() {
@@ -33,4 +36,82 @@ public class CustomerServiceTest {
         assertNotNull(result);
         assertEquals("Test User", result.getName());
     }
+
+    @Test
+    void findByEmail_repeatLookupIsServedFromCache() {
+        Customer customer = customer("cached@example.com");
+        when(repository.findByEmail("cached@example.com")).thenReturn(Optional.of(customer));
+
+        service.findByEmail("cached@example.com");
+        Customer second = service.findByEmail("cached@example.com");
+        Customer byId = service.findById(customer.getId());
+
+        assertEquals(customer.getId(), second.getId());
+        assertEquals(customer.getId(), byId.getId());
+        verify(repository, times(1)).findByEmail("cached@example.com");
+        verify(repository, never()).findById(any());
+        assertEquals(2, customerCache.stats().hits());
+    }
+
+    @Test
+    void update_invalidatesOldEmailMapping() {
+        Customer customer = customer("old@example.com");
+        when(repository.findByEmail("old@example.com")).thenReturn(Optional.of(customer));
+        service.findByEmail("old@example.com");
+
+        Customer stored = customer("old@example.com");
+        stored.setId(customer.getId());
+        when(repository.findById(customer.getId())).thenReturn(Optional.of(stored));
+        when(repository.existsByEmail("new@example.com")).thenReturn(false);
+        when(repository.save(any(Customer.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(repository.findByEmail("old@example.com")).thenReturn(Optional.empty());
+
+        Customer newData = customer("new@example.com");
+        newData.setPassword(stored.getPassword());
+        service.update(customer.getId(), newData);
+
+        assertNull(service.findByEmail("old@example.com"));
+        assertEquals("new@example.com", service.findById(customer.getId()).getEmail());
+    }
+
+    @Test
+    void update_withCurrentPasswordInClear_doesNotRehash() {
+        Customer stored = customer("same@example.com");
+        when(repository.findById(stored.getId())).thenReturn(Optional.of(stored));
+        when(repository.save(any(Customer.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(passwordEncoder.matches("secret", "hash")).thenReturn(true);
+
+        Customer newData = customer("same@example.com");
+        newData.setPassword("secret");
+        Customer updated = service.update(stored.getId(), newData);
+
+        assertEquals("hash", updated.getPassword());
+        verify(passwordEncoder, never()).encode(any());
+    }
+
+    @Test
+    void update_withNewPassword_rehashesOnce() {
+        Customer stored = customer("change@example.com");
+        when(repository.findById(stored.getId())).thenReturn(Optional.of(stored));
+        when(repository.save(any(Customer.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(passwordEncoder.matches("new-secret", "hash")).thenReturn(false);
+        when(passwordEncoder.encode("new-secret")).thenReturn("new-hash");
+
+        Customer newData = customer("change@example.com");
+        newData.setPassword("new-secret");
+        Customer updated = service.update(stored.getId(), newData);
+
+        assertEquals("new-hash", updated.getPassword());
+        verify(passwordEncoder, times(1)).encode("new-secret");
+    }
+
+    private static Customer customer(String email) {
+        Customer customer = new Customer();
+        customer.setId(UUID.randomUUID());
+        customer.setName("Test User");
+        customer.setCpf("123.456.789-09");
+        customer.setEmail(email);
+        customer.setPassword("hash");
+        return customer;
+    }
 }
@@ -0,0 +1,131 @@
+package com.bradesco.antifraud.service;
+
+import com.bradesco.antifraud.exception.emailExceptions.EmailQueueFullException;
+import com.bradesco.antifraud.model.EmailRequest;
+import com.bradesco.antifraud.service.email.EmailDispatch;
+import com.bradesco.antifraud.service.email.EmailStatus;
+import com.bradesco.antifraud.service.email.EmailTransport;
+import com.bradesco.antifraud.service.email.InMemoryEmailTransport;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmailServiceTest {
+
+    private EmailService service;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        service.shutdown();
+    }
+
+    @Test
+    void sendEmail_returnsBeforeTransportFinishes() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        service = new EmailService(request -> release.await(), new SimpleMeterRegistry(), 4, 1, 1, 1, 100, 100, Duration.ofHours(1));
+
+        UUID id = service.sendEmail(request());
+
+        assertFalse(service.status(id).orElseThrow().status().isFinal());
+        release.countDown();
+        assertEquals(EmailStatus.SENT, awaitFinal(id).status());
+    }
+
+    @Test
+    void sendEmail_retriesUntilTransportSucceeds() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        EmailTransport flaky = request -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new IllegalStateException("provider unavailable");
+            }
+        };
+        service = new EmailService(flaky, new SimpleMeterRegistry(), 4, 4, 1, 5, 100, 100, Duration.ofHours(1));
+
+        EmailDispatch dispatch = awaitFinal(service.sendEmail(request()));
+
+        assertEquals(EmailStatus.SENT, dispatch.status());
+        assertEquals(3, dispatch.attempts());
+    }
+
+    @Test
+    void sendEmail_givesUpAfterMaxAttempts() throws Exception {
+        service = new EmailService(request -> {
+            throw new IllegalStateException("provider unavailable");
+        }, new SimpleMeterRegistry(), 4, 2, 1, 5, 100, 100, Duration.ofHours(1));
+
+        EmailDispatch dispatch = awaitFinal(service.sendEmail(request()));
+
+        assertEquals(EmailStatus.FAILED, dispatch.status());
+        assertEquals(2, dispatch.attempts());
+        assertEquals("provider unavailable", dispatch.lastError());
+    }
+
+    @Test
+    void sendEmail_deliversThroughInMemoryTransport() throws Exception {
+        InMemoryEmailTransport transport = new InMemoryEmailTransport(0);
+        service = new EmailService(transport, new SimpleMeterRegistry(), 4, 1, 1, 1, 100, 100, Duration.ofHours(1));
+
+        awaitFinal(service.sendEmail(request()));
+
+        assertEquals(1, transport.sent().size());
+        assertEquals("user@example.com", transport.sent().get(0).getSenderAddress());
+    }
+
+    @Test
+    void sendEmail_rejectsOnceMaxPendingAreWaiting() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        service = new EmailService(request -> release.await(), new SimpleMeterRegistry(), 1, 1, 1, 1, 100, 2,
+                Duration.ofHours(1));
+
+        UUID first = service.sendEmail(request());
+        service.sendEmail(request());
+
+        assertThrows(EmailQueueFullException.class, () -> service.sendEmail(request()));
+        assertEquals(2, service.pending());
+        release.countDown();
+        awaitFinal(first);
+        // Slots are given back once messages reach a final status
+        assertEquals(EmailStatus.SENT, awaitFinal(service.sendEmail(request())).status());
+    }
+
+    @Test
+    void status_expiresAfterTheTtl() throws Exception {
+        service = new EmailService(new InMemoryEmailTransport(0), new SimpleMeterRegistry(), 4, 1, 1, 1, 100, 100,
+                Duration.ofMillis(50));
+
+        UUID id = service.sendEmail(request());
+        awaitFinal(id);
+        Thread.sleep(100);
+
+        assertTrue(service.status(id).isEmpty());
+    }
+
+    private EmailDispatch awaitFinal(UUID id) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            EmailDispatch dispatch = service.status(id).orElseThrow();
+            if (dispatch.status().isFinal()) {
+                return dispatch;
+            }
+            Thread.sleep(5);
+        }
+        return fail("Email " + id + " did not finish");
+    }
+
+    private static EmailRequest request() {
+        return EmailRequest.builder()
+                .senderAddress("user@example.com")
+                .subject("Login Confirmation: 123")
+                .build();
+    }
+}
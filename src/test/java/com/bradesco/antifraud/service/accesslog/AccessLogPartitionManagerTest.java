@@ -0,0 +1,178 @@
+package com.bradesco.antifraud.service.accesslog;
+
+import com.bradesco.antifraud.dto.AccessLogDto;
+import com.bradesco.antifraud.dto.AccessLogFilter;
+import com.bradesco.antifraud.repository.AccessLogJdbcRepository;
+import com.bradesco.antifraud.repository.AccessLogJdbcRepository.Partition;
+import com.bradesco.antifraud.service.accesslog.AccessLogPartitionManager.Granularity;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AccessLogPartitionManagerTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 6, 15, 10, 30);
+
+    @TempDir
+    Path tempDir;
+
+    private final AccessLogJdbcRepository repository = mock(AccessLogJdbcRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void notOnPostgres_doesNothing() {
+        when(repository.isPostgres()).thenReturn(false);
+
+        manager(Granularity.MONTH, 3, Duration.ofDays(90)).maintain(NOW);
+
+        verify(repository).isPostgres();
+        verifyNoMoreInteractions(repository);
+    }
+
+    @Test
+    void notPartitioned_leavesTheTableToTheMigrationScript() {
+        when(repository.isPostgres()).thenReturn(true);
+        when(repository.isPartitioned()).thenReturn(false);
+
+        manager(Granularity.MONTH, 2, Duration.ofDays(365)).maintain(NOW);
+
+        verify(repository, never()).partitions();
+        verify(repository, never()).createPartition(any(), any(), any());
+        verify(repository, never()).dropPartition(any());
+    }
+
+    @Test
+    void afterMigration_createsPartitionsAfterTheLegacyOne() {
+        when(repository.isPostgres()).thenReturn(true);
+        when(repository.isPartitioned()).thenReturn(true);
+        when(repository.partitions()).thenReturn(List.of(
+                new Partition("access_log_legacy", null, LocalDateTime.of(2025, 7, 1, 0, 0))));
+
+        manager(Granularity.MONTH, 2, Duration.ofDays(365)).maintain(NOW);
+
+        // The migration leaves the current month to the legacy rows, so partitions start with the next one
+        verify(repository).createPartition("access_log_p202507", LocalDateTime.of(2025, 7, 1, 0, 0), LocalDateTime.of(2025, 8, 1, 0, 0));
+        verify(repository).createPartition("access_log_p202508", LocalDateTime.of(2025, 8, 1, 0, 0), LocalDateTime.of(2025, 9, 1, 0, 0));
+        verify(repository, times(2)).createPartition(any(), any(), any());
+        verify(repository, never()).dropPartition(any());
+    }
+
+    @Test
+    void dailyPartitions_onlyFillTheGapsLeftByExistingOnes() {
+        when(repository.isPostgres()).thenReturn(true);
+        when(repository.isPartitioned()).thenReturn(true);
+        when(repository.partitions()).thenReturn(List.of(
+                new Partition("access_log_p20250615", day(15), day(16)),
+                new Partition("access_log_p20250617", day(17), day(18))));
+
+        manager(Granularity.DAY, 3, Duration.ofDays(365)).maintain(NOW);
+
+        verify(repository).createPartition("access_log_p20250616", day(16), day(17));
+        verify(repository).createPartition("access_log_p20250618", day(18), day(19));
+        verify(repository, times(2)).createPartition(any(), any(), any());
+    }
+
+    @Test
+    void expiredPartitions_areArchivedOldestFirstThenDropped() {
+        when(repository.isPostgres()).thenReturn(true);
+        when(repository.isPartitioned()).thenReturn(true);
+        when(repository.partitions()).thenReturn(List.of(
+                new Partition("access_log_p202503", month(3), month(4)),
+                new Partition("access_log_legacy", null, month(2)),
+                new Partition("access_log_p202502", month(2), month(3)),
+                new Partition("access_log_p202506", month(6), month(7))));
+        UUID customerId = UUID.randomUUID();
+        doAnswer(invocation -> {
+            Consumer<AccessLogDto> sink = invocation.getArgument(2);
+            String partition = invocation.getArgument(0);
+            LocalDateTime at = partition.equals("access_log_legacy") ? month(1) : month(2).plusDays(3);
+            sink.accept(log(customerId, at, "LOGIN"));
+            sink.accept(log(customerId, at.plusMinutes(1), "PAGAMENTO"));
+            return null;
+        }).when(repository).streamPartition(any(), anyInt(), any());
+        AccessLogArchive archive = archive();
+
+        manager(archive, Granularity.MONTH, 0, Duration.ofDays(100)).maintain(NOW);
+
+        // Cut-off 2025-03-07: only the partitions ending by then are expired
+        InOrder order = inOrder(repository);
+        order.verify(repository).streamPartition(eq("access_log_legacy"), eq(1000), any());
+        order.verify(repository).dropPartition("access_log_legacy");
+        order.verify(repository).streamPartition(eq("access_log_p202502"), eq(1000), any());
+        order.verify(repository).dropPartition("access_log_p202502");
+        verify(repository, times(2)).dropPartition(any());
+        assertEquals(4.0, meterRegistry.get("antifraud.access-log.partitions.archived-rows").counter().count());
+
+        List<AccessLogDto> archived = archive.search(new AccessLogFilter(customerId, null, null, null, null, null, null), 10);
+        assertEquals(4, archived.size());
+        assertEquals(month(2).plusDays(3).plusMinutes(1), archived.get(0).timestamp());
+        assertEquals(month(1), archived.get(3).timestamp());
+        List<AccessLogDto> logins = archive.search(new AccessLogFilter(null, month(2), null, "LOGIN", null, null, null), 10);
+        assertEquals(List.of(month(2).plusDays(3)), logins.stream().map(AccessLogDto::timestamp).toList());
+        assertEquals(3, archive.search(new AccessLogFilter(null, null, null, null, null, null, null), 3).size());
+    }
+
+    @Test
+    void failedArchive_keepsThePartition() {
+        when(repository.isPostgres()).thenReturn(true);
+        when(repository.isPartitioned()).thenReturn(true);
+        when(repository.partitions()).thenReturn(List.of(new Partition("access_log_p202501", month(1), month(2))));
+        doThrow(new IllegalStateException("connection reset")).when(repository).streamPartition(any(), anyInt(), any());
+
+        manager(Granularity.MONTH, 0, Duration.ofDays(100)).maintain(NOW);
+
+        verify(repository, never()).dropPartition(any());
+        assertTrue(archive().search(new AccessLogFilter(null, null, null, null, null, null, null), 10).isEmpty());
+    }
+
+    @Test
+    void granularity_periodsAndNames() {
+        assertEquals(LocalDateTime.of(2025, 6, 1, 0, 0), Granularity.MONTH.start(NOW));
+        assertEquals(LocalDateTime.of(2025, 7, 1, 0, 0), Granularity.MONTH.next(Granularity.MONTH.start(NOW)));
+        assertEquals("access_log_p202506", Granularity.MONTH.partitionName(Granularity.MONTH.start(NOW)));
+        assertEquals(day(15), Granularity.DAY.start(NOW));
+        assertEquals("access_log_p20250616", Granularity.DAY.partitionName(Granularity.DAY.next(day(15))));
+    }
+
+    private AccessLogPartitionManager manager(Granularity granularity, int premake, Duration retention) {
+        return manager(archive(), granularity, premake, retention);
+    }
+
+    private AccessLogPartitionManager manager(AccessLogArchive archive, Granularity granularity, int premake, Duration retention) {
+        return new AccessLogPartitionManager(repository, archive, TransactionOperations.withoutTransaction(), meterRegistry,
+                true, granularity, premake, retention, 1000);
+    }
+
+    private AccessLogArchive archive() {
+        return new AccessLogArchive(new ObjectMapper().findAndRegisterModules(), tempDir);
+    }
+
+    private static AccessLogDto log(UUID customerId, LocalDateTime at, String action) {
+        return new AccessLogDto(UUID.randomUUID(), customerId, at, action, "SUCCESS", "10.0.0.1", "session-a",
+                "POST", "/auth/login", "curl");
+    }
+
+    private static LocalDateTime day(int dayOfMonth) {
+        return LocalDateTime.of(2025, 6, dayOfMonth, 0, 0);
+    }
+
+    private static LocalDateTime month(int month) {
+        return LocalDateTime.of(2025, month, 1, 0, 0);
+    }
+}
@@ -0,0 +1,138 @@
+package com.bradesco.antifraud.service.accesslog;
+
+import com.bradesco.antifraud.AntiFraudSystemApplication;
+import com.bradesco.antifraud.dto.AccessLogFilter;
+import com.bradesco.antifraud.model.AccessLog;
+import com.bradesco.antifraud.model.Address;
+import com.bradesco.antifraud.model.Customer;
+import com.bradesco.antifraud.repository.AccessLogJdbcRepository;
+import com.bradesco.antifraud.repository.AccessLogJdbcRepository.Partition;
+import com.bradesco.antifraud.repository.AccessLogRepository;
+import com.bradesco.antifraud.repository.CustomerRepository;
+import com.bradesco.antifraud.service.AccessLogService;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs {@code db/migration/access_log_partitioning.sql} against a real PostgreSQL, between
+ * two starts of the application: the first lets Hibernate create the plain table, the
+ * second runs {@code ddl-auto=update} and the partition maintenance on the converted one.
+ * Skipped where Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class AccessLogPartitioningMigrationTest {
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @TempDir
+    Path archiveDir;
+
+    @Test
+    void migration_convertsTheTableInPlaceAndTheApplicationKeepsWorkingOnIt() throws Exception {
+        UUID customerId;
+        UUID legacyId;
+        try (ConfigurableApplicationContext context = start(false)) {
+            Customer customer = context.getBean(CustomerRepository.class).save(customer());
+            customerId = customer.getId();
+            legacyId = context.getBean(AccessLogRepository.class)
+                    .save(accessLog(customer, LocalDateTime.now().minusDays(3))).getId();
+            assertFalse(context.getBean(AccessLogJdbcRepository.class).isPartitioned());
+        }
+
+        migrate();
+        // A second run finds the table partitioned and leaves it alone
+        migrate();
+
+        try (ConfigurableApplicationContext context = start(true)) {
+            AccessLogJdbcRepository jdbcRepository = context.getBean(AccessLogJdbcRepository.class);
+            assertTrue(jdbcRepository.isPartitioned());
+            List<Partition> partitions = jdbcRepository.partitions();
+            // The legacy rows cover the current month; the manager created the 3 months after it
+            assertEquals(4, partitions.size());
+            assertTrue(partitions.stream().anyMatch(partition -> partition.name().equals("access_log_legacy")));
+
+            AccessLogRepository repository = context.getBean(AccessLogRepository.class);
+            Customer customer = context.getBean(CustomerRepository.class).findById(customerId).orElseThrow();
+            UUID partitionedId = repository.save(accessLog(customer, LocalDateTime.now().plusMonths(1))).getId();
+            assertTrue(repository.findById(legacyId).isPresent());
+            assertTrue(repository.findById(partitionedId).isPresent());
+
+            AccessLogFilter byCustomer = new AccessLogFilter(customerId, null, null, null, null, null, null);
+            assertEquals(2, context.getBean(AccessLogService.class).search(byCustomer, null, 10).items().size());
+        }
+    }
+
+    private ConfigurableApplicationContext start(boolean partitioned) {
+        // Command-line arguments, so they win over the H2 settings of the test application.properties
+        return new SpringApplicationBuilder(AntiFraudSystemApplication.class).run(
+                "--spring.datasource.url=" + postgres.getJdbcUrl(),
+                "--spring.datasource.username=" + postgres.getUsername(),
+                "--spring.datasource.password=" + postgres.getPassword(),
+                "--spring.datasource.driver-class-name=org.postgresql.Driver",
+                "--spring.jpa.database-platform=org.hibernate.dialect.PostgreSQLDialect",
+                "--spring.jpa.hibernate.ddl-auto=update",
+                "--server.port=0",
+                "--antifraud.access-log.partitions.enabled=" + partitioned,
+                "--antifraud.access-log.partitions.archive-dir=" + archiveDir);
+    }
+
+    private static void migrate() throws Exception {
+        try (Connection connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(),
+                postgres.getPassword())) {
+            // The script is one DO block: run it whole, as psql does
+            ScriptUtils.executeSqlScript(connection,
+                    new EncodedResource(new ClassPathResource("db/migration/access_log_partitioning.sql")),
+                    false, false, ScriptUtils.DEFAULT_COMMENT_PREFIX, ScriptUtils.EOF_STATEMENT_SEPARATOR,
+                    ScriptUtils.DEFAULT_BLOCK_COMMENT_START_DELIMITER, ScriptUtils.DEFAULT_BLOCK_COMMENT_END_DELIMITER);
+        }
+    }
+
+    private static Customer customer() {
+        return Customer.builder()
+                .name("Partition Test")
+                .cpf("111.444.777-35")
+                .dateOfBirth(LocalDate.of(1985, 5, 20))
+                .email("partition@example.com")
+                .password("secret")
+                .address(Address.builder()
+                        .street("Rua D")
+                        .number("30")
+                        .neighborhood("Centro")
+                        .city("Osasco")
+                        .state("SP")
+                        .zipCode("06010-000")
+                        .build())
+                .build();
+    }
+
+    private static AccessLog accessLog(Customer customer, LocalDateTime timestamp) {
+        return AccessLog.builder()
+                .action("LOGIN")
+                .status("SUCCESS")
+                .timestamp(timestamp)
+                .accessTime(timestamp)
+                .customer(customer)
+                .ipAddress("203.0.113.9")
+                .build();
+    }
+}
@@ -0,0 +1,168 @@
+package com.bradesco.antifraud.service.accesslog;
+
+import com.bradesco.antifraud.model.AccessLog;
+import com.bradesco.antifraud.model.Customer;
+import com.bradesco.antifraud.repository.AccessLogRepository;
+import com.bradesco.antifraud.repository.CustomerRepository;
+import com.bradesco.antifraud.service.accesslog.AccessLogWriter.OverflowPolicy;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class AccessLogWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final AccessLogRepository repository = mock(AccessLogRepository.class);
+    private final CustomerRepository customerRepository = mock(CustomerRepository.class);
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final UUID customerId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        when(customerRepository.getReferenceById(any()))
+                .thenAnswer(invocation -> Customer.builder().id(invocation.getArgument(0)).build());
+    }
+
+    @Test
+    void enqueue_writesBatchesWithCustomerReference() throws Exception {
+        AccessLogWriter writer = writer(OverflowPolicy.DROP, 100);
+        writer.start();
+
+        for (int i = 0; i < 5; i++) {
+            writer.enqueue(entry(customerId));
+        }
+        writer.stop();
+
+        List<AccessLog> saved = savedLogs();
+        assertEquals(5, saved.size());
+        assertEquals(customerId, saved.get(0).getCustomer().getId());
+        assertEquals("LOGIN", saved.get(0).getAction());
+        assertEquals(5, writer.written());
+        verify(customerRepository, never()).findById(any());
+    }
+
+    @Test
+    void enqueue_withoutCustomer_isSkipped() throws Exception {
+        AccessLogWriter writer = writer(OverflowPolicy.DROP, 100);
+        writer.start();
+
+        writer.enqueue(entry(null));
+        writer.stop();
+
+        verify(repository, never()).saveAll(any());
+        assertEquals(0, writer.dropped());
+    }
+
+    @Test
+    void enqueue_whenQueueIsUnavailable_dropsAndCounts() {
+        AccessLogWriter writer = writer(OverflowPolicy.DROP, 1);
+
+        writer.enqueue(entry(customerId));
+        writer.enqueue(entry(customerId));
+
+        assertEquals(2, writer.dropped());
+    }
+
+    @Test
+    void spilledEntries_areReplayedOnStart() throws Exception {
+        AccessLogWriter writer = writer(OverflowPolicy.SPILL, 100);
+        Path spillFile = tempDir.resolve("spill.ndjson");
+
+        writer.enqueue(entry(customerId));
+        writer.enqueue(entry(customerId));
+        assertEquals(2, writer.spilled());
+        assertEquals(2, Files.readAllLines(spillFile).size());
+
+        writer.start();
+        waitUntil(() -> writer.written() == 2);
+        writer.stop();
+
+        assertEquals(2, savedLogs().size());
+        assertFalse(Files.exists(spillFile));
+    }
+
+    @Test
+    void replay_whileTheDatabaseIsDown_keepsTheFileAndBacksOff() throws Exception {
+        AtomicBoolean down = new AtomicBoolean(true);
+        when(repository.saveAll(any())).thenAnswer(invocation -> {
+            if (down.get()) {
+                throw new CannotCreateTransactionException("database down");
+            }
+            return invocation.getArgument(0);
+        });
+        when(repository.save(any())).thenAnswer(invocation -> {
+            if (down.get()) {
+                throw new CannotCreateTransactionException("database down");
+            }
+            return invocation.getArgument(0);
+        });
+        AccessLogWriter writer = writer(OverflowPolicy.SPILL, 100);
+        Path replayFile = tempDir.resolve("spill.ndjson.replay");
+        for (int i = 0; i < 3; i++) {
+            writer.enqueue(entry(customerId));
+        }
+
+        writer.start();
+        waitUntil(() -> Files.exists(replayFile));
+        Thread.sleep(300);
+
+        // Nothing spilled again, one entry tried per attempt, attempts 200 and 400 ms apart
+        assertEquals(3, writer.spilled());
+        assertEquals(3, Files.readAllLines(replayFile).size());
+        assertFalse(Files.exists(tempDir.resolve("spill.ndjson")));
+        verify(repository, atMost(2)).save(any());
+
+        down.set(false);
+        waitUntil(() -> writer.written() == 3);
+        writer.stop();
+        assertFalse(Files.exists(replayFile));
+        assertEquals(0, writer.dropped());
+    }
+
+    private AccessLogWriter writer(OverflowPolicy policy, int capacity) {
+        return new AccessLogWriter(repository, customerRepository, TransactionOperations.withoutTransaction(),
+                objectMapper, capacity, 50, 20, policy, tempDir.resolve("spill.ndjson"), 10, 5000, 200, 1000, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<AccessLog> savedLogs() {
+        ArgumentCaptor<List<AccessLog>> captor = ArgumentCaptor.forClass(List.class);
+        verify(repository, atLeastOnce()).saveAll(captor.capture());
+        List<AccessLog> all = new ArrayList<>();
+        captor.getAllValues().forEach(all::addAll);
+        return all;
+    }
+
+    private static AccessLogEntry entry(UUID customerId) {
+        return new AccessLogEntry(customerId, "LOGIN", "SUCCESS", LocalDateTime.now(),
+                "JUnit", "/auth/login", "127.0.0.1", null, "POST");
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
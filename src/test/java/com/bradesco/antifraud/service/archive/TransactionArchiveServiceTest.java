@@ -0,0 +1,243 @@
+package com.bradesco.antifraud.service.archive;
+
+import com.bradesco.antifraud.dto.TransactionArchiveSummary;
+import com.bradesco.antifraud.dto.TransactionDto;
+import com.bradesco.antifraud.model.Transaction.TransactionType;
+import com.bradesco.antifraud.repository.TransactionJdbcRepository;
+import com.bradesco.antifraud.service.archive.ArchiveQuery.GroupBy;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TransactionArchiveServiceTest {
+
+    private static final UUID ACCOUNT_A = UUID.randomUUID();
+    private static final UUID ACCOUNT_B = UUID.randomUUID();
+    private static final UUID ACCOUNT_C = UUID.randomUUID();
+
+    @TempDir
+    Path tempDir;
+
+    private final TransactionJdbcRepository repository = mock(TransactionJdbcRepository.class);
+    private final TransactionArchiveScanner scanner = new TransactionArchiveScanner(4);
+    private final List<TransactionDto> history = new ArrayList<>();
+    private TransactionArchiveService service;
+
+    @BeforeEach
+    void setUp() {
+        // Three months, one transaction every 7 minutes, amounts from cents to tens of thousands
+        Random random = new Random(42);
+        List<UUID> accounts = List.of(ACCOUNT_A, ACCOUNT_B, ACCOUNT_C);
+        TransactionType[] types = TransactionType.values();
+        for (LocalDateTime at = LocalDateTime.of(2025, 1, 1, 0, 3); at.isBefore(LocalDateTime.of(2025, 4, 1, 0, 0)); at = at.plusMinutes(7)) {
+            TransactionType tipo = types[random.nextInt(types.length)];
+            UUID account = accounts.get(random.nextInt(accounts.size()));
+            history.add(TransactionDto.builder()
+                    .id(UUID.randomUUID())
+                    .tipo(tipo)
+                    .valor(BigDecimal.valueOf((long) Math.pow(10, random.nextInt(7)) + random.nextInt(100), 2))
+                    .dataHora(at)
+                    .contaDeOrigemId(tipo == TransactionType.DEPOSITO ? null : account)
+                    .contaDeDestinoId(tipo == TransactionType.SAQUE ? null : accounts.get(random.nextInt(accounts.size())))
+                    .build());
+        }
+        doAnswer(invocation -> {
+            LocalDateTime from = invocation.getArgument(0);
+            LocalDateTime to = invocation.getArgument(1);
+            Consumer<TransactionDto> sink = invocation.getArgument(3);
+            history.stream().filter(t -> !t.getDataHora().isBefore(from) && t.getDataHora().isBefore(to)).forEach(sink);
+            return null;
+        }).when(repository).streamBetween(any(), any(), anyInt(), any());
+        when(repository.findEarliestDataHora()).thenReturn(history.get(0).getDataHora());
+        when(repository.findAgencies(anyList())).thenReturn(Map.of(ACCOUNT_A, "0001", ACCOUNT_B, "0001", ACCOUNT_C, "0002"));
+        service = new TransactionArchiveService(repository, new NoTransactions(), scanner, tempDir, Duration.ofDays(1), 500, true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scanner.shutdown();
+    }
+
+    @Test
+    void exportClosedMonths_writesOneCompactFilePerClosedMonth() throws Exception {
+        List<TransactionArchiveService.Export> exports = service.exportClosedMonths(LocalDateTime.of(2025, 3, 15, 0, 0));
+
+        assertEquals(List.of(YearMonth.of(2025, 1), YearMonth.of(2025, 2)),
+                exports.stream().map(TransactionArchiveService.Export::month).toList());
+        assertTrue(Files.exists(tempDir.resolve("transactions_2025-01.txarch")));
+        assertFalse(Files.exists(tempDir.resolve("transactions_2025-03.txarch")));
+        long januaryRows = history.stream().filter(t -> t.getDataHora().getMonthValue() == 1).count();
+        assertEquals(januaryRows, exports.get(0).rows());
+        // Far below the ~70 bytes a row takes as (id-less) NDJSON
+        assertTrue(exports.get(0).bytes() < januaryRows * 8, exports.get(0).bytes() + " bytes");
+
+        // Already archived months are not exported again
+        assertEquals(1, service.exportClosedMonths(LocalDateTime.of(2025, 4, 15, 0, 0)).size());
+    }
+
+    @Test
+    void invalidate_reexportsOnlyTheArchivedMonthsWrittenTo() {
+        service.exportClosedMonths(LocalDateTime.of(2025, 3, 15, 0, 0));
+        BigDecimal before = service.summarize(ArchiveQuery.all(GroupBy.NONE)).groups().get(0).total();
+
+        // A backdated insert into January, a write to March (not archived yet) and one to the current month
+        TransactionDto backdated = TransactionDto.builder()
+                .id(UUID.randomUUID())
+                .tipo(TransactionType.DEPOSITO)
+                .valor(new BigDecimal("123.45"))
+                .dataHora(LocalDateTime.of(2025, 1, 31, 23, 59))
+                .contaDeDestinoId(ACCOUNT_A)
+                .build();
+        history.add(backdated);
+        service.invalidate(backdated.getDataHora());
+        service.invalidate(backdated.getDataHora().minusMinutes(1));
+        service.invalidate(LocalDateTime.of(2025, 3, 2, 0, 0));
+        service.invalidate(LocalDateTime.now());
+
+        assertEquals(List.of(YearMonth.of(2025, 1)), service.staleMonths());
+        assertEquals(List.of(YearMonth.of(2025, 1)), service.reexportStaleMonths().stream()
+                .map(TransactionArchiveService.Export::month).toList());
+        assertTrue(service.staleMonths().isEmpty());
+        assertFalse(Files.exists(tempDir.resolve("transactions_2025-03.txarch")));
+        assertEquals(0, before.add(backdated.getValor())
+                .compareTo(service.summarize(ArchiveQuery.all(GroupBy.NONE)).groups().get(0).total()));
+
+        // The daily export picks up stale months too, next to the newly closed ones
+        service.invalidate(LocalDateTime.of(2025, 2, 10, 8, 0));
+        assertEquals(List.of(YearMonth.of(2025, 2), YearMonth.of(2025, 3)),
+                service.exportClosedMonths(LocalDateTime.of(2025, 4, 15, 0, 0)).stream()
+                        .map(TransactionArchiveService.Export::month).toList());
+        assertTrue(service.staleMonths().isEmpty());
+    }
+
+    @Test
+    void summarize_matchesAggregatingTheRowsDirectly() {
+        service.exportClosedMonths(LocalDateTime.of(2025, 5, 1, 0, 0));
+
+        assertSummary(ArchiveQuery.all(GroupBy.NONE), t -> true, t -> "all");
+        assertSummary(ArchiveQuery.all(GroupBy.TIPO), t -> true, t -> t.getTipo().name());
+        assertSummary(ArchiveQuery.all(GroupBy.MONTH), t -> true, t -> YearMonth.from(t.getDataHora()).toString());
+        assertSummary(ArchiveQuery.all(GroupBy.AGENCY), t -> true,
+                t -> ACCOUNT_C.equals(t.getContaDeOrigemId() != null ? t.getContaDeOrigemId() : t.getContaDeDestinoId()) ? "0002" : "0001");
+
+        LocalDateTime from = LocalDateTime.of(2025, 1, 20, 12, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 2, 3, 0, 0);
+        assertSummary(new ArchiveQuery(from, to, Set.of(TransactionType.PAGAMENTO, TransactionType.SAQUE), ACCOUNT_B, null,
+                        new BigDecimal("1.00"), new BigDecimal("5000"), GroupBy.DAY),
+                t -> !t.getDataHora().isBefore(from) && t.getDataHora().isBefore(to)
+                        && (t.getTipo() == TransactionType.PAGAMENTO || t.getTipo() == TransactionType.SAQUE)
+                        && (ACCOUNT_B.equals(t.getContaDeOrigemId()) || ACCOUNT_B.equals(t.getContaDeDestinoId()))
+                        && t.getValor().compareTo(new BigDecimal("1.00")) >= 0 && t.getValor().compareTo(new BigDecimal("5000")) <= 0,
+                t -> t.getDataHora().toLocalDate().toString());
+        assertSummary(new ArchiveQuery(null, null, null, null, "0002", null, null, GroupBy.AMOUNT_RANGE),
+                t -> ACCOUNT_C.equals(t.getContaDeOrigemId() != null ? t.getContaDeOrigemId() : t.getContaDeDestinoId()),
+                t -> amountRange(t.getValor()));
+    }
+
+    @Test
+    void scan_skipsSegmentsOutsideTheZoneMaps() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 2, 1, 0, 0);
+        Path path = tempDir.resolve("january.txarch");
+        try (TransactionArchiveWriter writer = new TransactionArchiveWriter(path, from, to, 500)) {
+            for (TransactionDto transaction : history) {
+                if (transaction.getDataHora().isBefore(to)) {
+                    writer.add(transaction);
+                }
+            }
+            writer.finish(accounts -> Map.of());
+        }
+
+        try (TransactionArchiveFile file = TransactionArchiveFile.open(path)) {
+            LocalDateTime day = LocalDateTime.of(2025, 1, 10, 0, 0);
+            TransactionArchiveSummary summary = scanner.scan(List.of(file), new ArchiveQuery(day, day.plusDays(1),
+                    null, null, null, null, null, GroupBy.NONE));
+
+            long expected = history.stream().filter(t -> t.getDataHora().toLocalDate().equals(day.toLocalDate())).count();
+            assertEquals(expected, summary.groups().get(0).count());
+            assertTrue(summary.scan().segmentsScanned() <= 2, summary.scan().toString());
+            assertEquals(file.segments().size(), summary.scan().segmentsScanned() + summary.scan().segmentsSkipped());
+
+            // No amount reaches 100000.00: every segment is skipped from its zone map
+            TransactionArchiveSummary large = scanner.scan(List.of(file), new ArchiveQuery(null, null, null, null, null,
+                    new BigDecimal("100000"), null, GroupBy.NONE));
+            assertEquals(0, large.scan().rowsScanned());
+            assertEquals(file.segments().size(), large.scan().segmentsSkipped());
+
+            TransactionArchiveSummary unknownAccount = scanner.scan(List.of(file), new ArchiveQuery(null, null, null,
+                    UUID.randomUUID(), null, null, null, GroupBy.NONE));
+            assertEquals(0, unknownAccount.scan().files());
+            assertTrue(unknownAccount.groups().isEmpty());
+        }
+    }
+
+    private void assertSummary(ArchiveQuery query, Predicate<TransactionDto> filter, Function<TransactionDto, String> key) {
+        Map<String, List<BigDecimal>> expected = history.stream().filter(filter)
+                .collect(Collectors.groupingBy(key, Collectors.mapping(TransactionDto::getValor, Collectors.toList())));
+        TransactionArchiveSummary summary = service.summarize(query);
+
+        assertEquals(expected.keySet(), summary.groups().stream().map(TransactionArchiveSummary.Group::key).collect(Collectors.toSet()),
+                query.toString());
+        for (TransactionArchiveSummary.Group group : summary.groups()) {
+            List<BigDecimal> values = expected.get(group.key());
+            assertEquals(values.size(), group.count(), group.key());
+            assertEquals(0, values.stream().reduce(BigDecimal.ZERO, BigDecimal::add).compareTo(group.total()), group.key());
+            assertEquals(0, values.stream().min(BigDecimal::compareTo).orElseThrow().compareTo(group.min()), group.key());
+            assertEquals(0, values.stream().max(BigDecimal::compareTo).orElseThrow().compareTo(group.max()), group.key());
+        }
+    }
+
+    private static String amountRange(BigDecimal valor) {
+        long cents = valor.movePointRight(2).longValueExact();
+        BigDecimal lower = BigDecimal.ONE.movePointLeft(2);
+        while (lower.multiply(BigDecimal.TEN).movePointRight(2).longValueExact() <= cents) {
+            lower = lower.multiply(BigDecimal.TEN);
+        }
+        return "[" + lower.setScale(2) + ", " + lower.multiply(BigDecimal.TEN).setScale(2) + ")";
+    }
+
+    private static final class NoTransactions extends AbstractPlatformTransactionManager {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.bradesco.antifraud.service.auth;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginAttemptGuardTest {
+
+    private static final long MINUTE = 60_000L;
+
+    private final long[] now = {1_700_000_000_000L};
+    private final Clock clock = new Clock() {
+        @Override
+        public long millis() {
+            return now[0];
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(now[0]);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    };
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // 10-minute window in 10 slices; 5 failures per address, 8 per subnet, 3 per account
+    private final LoginAttemptGuard guard = new LoginAttemptGuard(Duration.ofMinutes(10), 10, 4, 1024, 5, 8, 3,
+            meterRegistry, clock);
+
+    @Test
+    void address_isRefusedAtItsLimitAndLetBackInOnceTheWindowSlides() {
+        for (int i = 0; i < 4; i++) {
+            guard.recordFailure("10.0.0.1", "user" + i + "@example.com");
+        }
+        assertEquals(Optional.empty(), guard.blockedBy("10.0.0.1", "other@example.com"));
+
+        guard.recordFailure("10.0.0.1", "user4@example.com");
+
+        assertEquals(Optional.of(LoginAttemptGuard.Source.ADDRESS), guard.blockedBy("10.0.0.1", "other@example.com"));
+        assertEquals(Optional.empty(), guard.blockedBy("10.0.1.1", "other@example.com"));
+        assertEquals(1.0, meterRegistry.get("antifraud.auth.login.throttled").tag("source", "address").counter().count());
+
+        now[0] += 11 * MINUTE;
+        assertEquals(Optional.empty(), guard.blockedBy("10.0.0.1", "other@example.com"));
+    }
+
+    @Test
+    void failuresSpreadOverTheWindow_onlyCountWhileInside() {
+        for (int i = 0; i < 4; i++) {
+            guard.recordFailure("10.0.0.1", "user" + i + "@example.com");
+            now[0] += 3 * MINUTE;
+        }
+        // Failures at 0, 3, 6, 9 and 12 minutes: the first has left the 10-minute window by then
+        guard.recordFailure("10.0.0.1", "user4@example.com");
+
+        assertEquals(Optional.empty(), guard.blockedBy("10.0.0.1", "other@example.com"));
+    }
+
+    @Test
+    void subnet_addsUpFailuresFromItsAddresses() {
+        for (int i = 1; i <= 8; i++) {
+            guard.recordFailure("192.168.7." + i, "user" + i + "@example.com");
+        }
+
+        assertEquals(Optional.of(LoginAttemptGuard.Source.SUBNET), guard.blockedBy("192.168.7.200", "new@example.com"));
+        assertEquals(Optional.empty(), guard.blockedBy("192.168.8.1", "new@example.com"));
+    }
+
+    @Test
+    void account_isRefusedWhateverTheAddress() {
+        guard.recordFailure("10.0.0.1", "Victim@Example.com");
+        guard.recordFailure("172.16.0.1", "victim@example.com");
+        guard.recordFailure("2001:db8:1:2::9", " victim@example.com");
+
+        assertEquals(Optional.of(LoginAttemptGuard.Source.ACCOUNT), guard.blockedBy("198.51.100.7", "victim@example.com"));
+        assertEquals(Optional.empty(), guard.blockedBy("198.51.100.7", "someone@example.com"));
+    }
+
+    @Test
+    void floodOfDistinctAddresses_staysInFixedMemoryWithoutBlockingOthers() {
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(10, 4, 1024, 10 * MINUTE, clock);
+        long size = sketch.sizeInBytes();
+        for (int i = 0; i < 2_000; i++) {
+            sketch.add("203.0." + (i / 256) + "." + (i % 256));
+        }
+        sketch.add("10.0.0.1");
+
+        assertEquals(size, sketch.sizeInBytes());
+        assertTrue(sketch.estimate("10.0.0.1") >= 1);
+        // 2,000 keys over 1,024 counters per row: conservative update keeps unseen keys near zero
+        int overcounted = 0;
+        for (int i = 0; i < 1_000; i++) {
+            if (sketch.estimate("198.51." + (i / 256) + "." + (i % 256)) >= 5) {
+                overcounted++;
+            }
+        }
+        assertEquals(0, overcounted);
+    }
+
+    @Test
+    void subnet_ipv4UsesTheFirstThreeOctetsAndIpv6TheFirstFourGroups() {
+        assertEquals("192.168.7", LoginAttemptGuard.subnet("192.168.7.42"));
+        assertEquals("2001:db8:1:2", LoginAttemptGuard.subnet("2001:db8:1:2:0:0:0:9"));
+        assertEquals("::1", LoginAttemptGuard.subnet("::1"));
+    }
+
+    @Test
+    void clientAddress_spoofedForwardedHeaderDoesNotResetTheCount() {
+        for (int i = 0; i < 5; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.setRemoteAddr("203.0.113.9");
+            // A fresh address per attempt: counted against this header, the client would never hit the limit
+            request.addHeader("X-Forwarded-For", "198.51.100." + i);
+            guard.recordFailure(LoginAttemptGuard.clientAddress(request), "user" + i + "@example.com");
+        }
+
+        MockHttpServletRequest next = new MockHttpServletRequest();
+        next.setRemoteAddr("203.0.113.9");
+        next.addHeader("X-Forwarded-For", "198.51.100.200");
+        assertEquals("203.0.113.9", LoginAttemptGuard.clientAddress(next));
+        assertEquals(Optional.of(LoginAttemptGuard.Source.ADDRESS),
+                guard.blockedBy(LoginAttemptGuard.clientAddress(next), "other@example.com"));
+    }
+}
@@ -0,0 +1,220 @@
+package com.bradesco.antifraud.service.fraud;
+
+import com.bradesco.antifraud.model.Account;
+import com.bradesco.antifraud.model.Transaction;
+import com.bradesco.antifraud.service.fraud.graph.TransferGraph;
+import com.bradesco.antifraud.service.fraud.profile.AccountProfileStore;
+import com.bradesco.antifraud.service.fraud.rules.FraudRuleDefinition;
+import com.bradesco.antifraud.service.fraud.rules.FraudRuleSet;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FraudScoringServiceTest {
+
+    private final MutableClock clock = new MutableClock();
+    private final FraudScoringService service = new FraudScoringService(50, 80, clock);
+
+    private final UUID source = UUID.randomUUID();
+
+    private Transaction payment(String value, UUID destination) {
+        return Transaction.builder()
+                .tipo(Transaction.TransactionType.PAGAMENTO)
+                .valor(new BigDecimal(value))
+                .dataHora(LocalDateTime.now())
+                .contaDeOrigem(Account.builder().id(source).build())
+                .contaDeDestino(Account.builder().id(destination).build())
+                .build();
+    }
+
+    @Test
+    void score_firstSmallPayment_isAllowed() {
+        FraudScore score = service.score(payment("100.00", UUID.randomUUID()));
+
+        assertEquals(0, score.score());
+        assertEquals(FraudDecision.ALLOW, score.decision());
+    }
+
+    @Test
+    void features_trackCountsAndSumsPerWindow() {
+        UUID destination = UUID.randomUUID();
+        service.record(payment("10.00", destination));
+        clock.advance(30 * 60_000L);
+        service.record(payment("20.00", destination));
+        clock.advance(30_000L);
+        service.record(payment("30.00", UUID.randomUUID()));
+
+        ActivityFeatures features = service.features(source);
+        assertEquals(2, features.countLastMinute());
+        assertEquals(5000, features.sumLastMinute());
+        assertEquals(3, features.countLastHour());
+        assertEquals(6000, features.sumLastHour());
+        assertEquals(2, features.distinctDestinationsLastDay());
+        assertEquals(0, features.millisSinceLast());
+
+        clock.advance(31 * 60_000L);
+        features = service.features(source);
+        assertEquals(0, features.countLastMinute());
+        assertEquals(2, features.countLastHour());
+        assertEquals(3, features.countLastDay());
+
+        clock.advance(24 * 60 * 60_000L);
+        assertEquals(0, service.features(source).countLastDay());
+        assertEquals(0, service.features(source).distinctDestinationsLastDay());
+    }
+
+    @Test
+    void evictIdle_dropsWindowsWithoutActivityForTheTtl() {
+        UUID other = UUID.randomUUID();
+        service.record(payment("10.00", UUID.randomUUID()));
+        clock.advance(20 * 60 * 60_000L);
+        service.record(Transaction.builder()
+                .tipo(Transaction.TransactionType.PAGAMENTO)
+                .valor(new BigDecimal("10.00"))
+                .contaDeOrigem(Account.builder().id(other).build())
+                .build());
+        assertEquals(0, service.evictIdle(clock.millis()));
+
+        clock.advance(5 * 60 * 60_000L);
+        assertEquals(1, service.evictIdle(clock.millis()));
+        assertEquals(1, service.trackedAccounts());
+        assertEquals(ActivityFeatures.EMPTY, service.features(source));
+        assertEquals(1, service.features(other).countLastDay());
+    }
+
+    @Test
+    void score_burstOfPayments_isBlocked() {
+        for (int i = 0; i < 5; i++) {
+            service.record(payment("50.00", UUID.randomUUID()));
+            clock.advance(500);
+        }
+
+        FraudScore score = service.score(payment("15000.00", UUID.randomUUID()));
+
+        assertEquals(FraudDecision.BLOCK, score.decision());
+        assertTrue(score.reasons().contains("VELOCITY_1M"));
+        assertTrue(score.reasons().contains("RAPID_SUCCESSION"));
+    }
+
+    @Test
+    void score_appliesRuleOnDestinationFirstSeenRecently() {
+        FraudRuleSet rules = FraudRuleSet.compile(List.of(new FraudRuleDefinition("NEW_PAYEE_HIGH_PAYMENT", 20, "review",
+                "type == PAGAMENTO and amount > 5000 and destinationAgeHours < 24")));
+        FraudScoringService withRules = new FraudScoringService(50, 80, clock, () -> rules);
+        UUID destination = UUID.randomUUID();
+
+        FraudScore firstTime = withRules.score(payment("6000.00", destination));
+        assertEquals(FraudDecision.REVIEW, firstTime.decision());
+        assertEquals(List.of("NEW_PAYEE_HIGH_PAYMENT"), firstTime.reasons());
+        assertEquals(20, firstTime.score());
+
+        withRules.record(payment("10.00", destination));
+        clock.advance(25 * 60 * 60_000L);
+
+        FraudScore known = withRules.score(payment("6000.00", destination));
+        assertEquals(FraudDecision.ALLOW, known.decision());
+        assertTrue(known.reasons().isEmpty());
+    }
+
+    @Test
+    void score_treatsDestinationAsNewPayeePerSourceUntilTheTtl() {
+        FraudRuleSet rules = FraudRuleSet.compile(List.of(new FraudRuleDefinition("NEW_PAYEE_HIGH_PAYMENT", 20, "review",
+                "type == PAGAMENTO and amount > 5000 and destinationAgeHours < 24")));
+        FraudScoringService withRules = new FraudScoringService(50, 80, clock, () -> rules,
+                new AccountProfileStore(100, 0.1), new TransferGraph(Duration.ofDays(7), 1.0, clock),
+                Duration.ofDays(1), Duration.ofDays(30), 100);
+        UUID destination = UUID.randomUUID();
+        Transaction fromOther = payment("10.00", destination);
+        fromOther.setContaDeOrigem(Account.builder().id(UUID.randomUUID()).build());
+        withRules.record(fromOther);
+        clock.advance(25 * 60 * 60_000L);
+
+        // Other accounts already pay the destination, but this source never did
+        assertEquals(List.of("NEW_PAYEE_HIGH_PAYMENT"), withRules.score(payment("6000.00", destination)).reasons());
+
+        withRules.record(payment("10.00", destination));
+        clock.advance(25 * 60 * 60_000L);
+        assertTrue(withRules.score(payment("6000.00", destination)).reasons().isEmpty());
+
+        // Forgotten once the pair goes a full ttl without a payment
+        clock.advance(Duration.ofDays(30).toMillis());
+        withRules.evictIdle();
+        assertEquals(0, withRules.payeeStats().size());
+        assertEquals(List.of("NEW_PAYEE_HIGH_PAYMENT"), withRules.score(payment("6000.00", destination)).reasons());
+    }
+
+    @Test
+    void score_appliesRuleOnDestinationNearFlaggedAccount() {
+        FraudRuleSet rules = FraudRuleSet.compile(List.of(new FraudRuleDefinition("NEAR_FLAGGED", 30, "review",
+                "destinationFlaggedHops >= 0 and destinationFlaggedHops <= 2")));
+        TransferGraph graph = new TransferGraph(Duration.ofDays(7), 1.0, clock);
+        FraudScoringService withGraph = new FraudScoringService(50, 80, clock, () -> rules,
+                new AccountProfileStore(100, 0.1), graph);
+        UUID mule = UUID.randomUUID();
+        UUID collector = UUID.randomUUID();
+        graph.flag(collector);
+
+        assertTrue(withGraph.score(payment("100.00", mule)).reasons().isEmpty());
+
+        // Someone else's money already went from the mule to the flagged account
+        graph.record(mule, collector, 900);
+        FraudScore score = withGraph.score(payment("100.00", mule));
+        assertEquals(List.of("NEAR_FLAGGED"), score.reasons());
+
+        withGraph.record(payment("100.00", mule));
+        assertEquals(1, graph.fanIn(mule));
+        assertEquals(1, graph.flaggedHops(mule));
+        assertEquals(2, graph.flaggedHops(source));
+    }
+
+    @Test
+    void window_keepsBoundedHistoryForBusyAccounts() {
+        for (int i = 0; i < AccountActivityWindow.MAX_CAPACITY + 100; i++) {
+            service.record(payment("1.00", UUID.randomUUID()));
+        }
+
+        ActivityFeatures features = service.features(source);
+        assertEquals(AccountActivityWindow.MAX_CAPACITY, features.countLastDay());
+        assertEquals(AccountActivityWindow.MAX_CAPACITY * 100L, features.sumLastDay());
+        assertEquals(AccountActivityWindow.MAX_CAPACITY, features.distinctDestinationsLastDay());
+    }
+
+    private static class MutableClock extends Clock {
+        private long millis = 1_700_000_000_000L;
+
+        void advance(long delta) {
+            millis += delta;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
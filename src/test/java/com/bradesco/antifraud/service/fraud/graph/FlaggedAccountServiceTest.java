@@ -0,0 +1,44 @@
+package com.bradesco.antifraud.service.fraud.graph;
+
+import com.bradesco.antifraud.repository.FlaggedAccountRepository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class FlaggedAccountServiceTest {
+
+    @Autowired
+    private FlaggedAccountService flaggedAccountService;
+
+    @Autowired
+    private FlaggedAccountRepository repository;
+
+    @Autowired
+    private TransferGraph graph;
+
+    @Test
+    void flag_survivesARestart() {
+        UUID mule = UUID.randomUUID();
+        flaggedAccountService.flag(mule);
+        flaggedAccountService.flag(mule);
+        assertEquals(0, graph.flaggedHops(mule));
+
+        // A new graph, as after a restart, is loaded from the table
+        TransferGraph restarted = new TransferGraph(Duration.ofDays(7), 1.0);
+        new FlaggedAccountService(repository, restarted).load();
+        assertEquals(0, restarted.flaggedHops(mule));
+
+        flaggedAccountService.unflag(mule);
+        assertEquals(-1, graph.flaggedHops(mule));
+        TransferGraph restartedAgain = new TransferGraph(Duration.ofDays(7), 1.0);
+        new FlaggedAccountService(repository, restartedAgain).load();
+        assertEquals(-1, restartedAgain.flaggedHops(mule));
+    }
+}
@@ -0,0 +1,72 @@
+package com.bradesco.antifraud.service.fraud.graph;
+
+import com.bradesco.antifraud.dto.TransactionDto;
+import com.bradesco.antifraud.model.Transaction;
+import com.bradesco.antifraud.repository.TransactionJdbcRepository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TransferGraphSeederTest {
+
+    private final Clock clock = Clock.fixed(Instant.parse("2026-03-10T12:00:00Z"), ZoneOffset.UTC);
+    private final TransferGraph graph = new TransferGraph(Duration.ofDays(1), 1.0, clock);
+    private final TransactionJdbcRepository repository = mock(TransactionJdbcRepository.class);
+
+    private final UUID a = UUID.randomUUID();
+    private final UUID b = UUID.randomUUID();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void seed_recordsTheTransfersOfTheWindowDecayedFromWhenTheyWereMade() {
+        LocalDateTime now = LocalDateTime.now(clock);
+        doAnswer(invocation -> {
+            Consumer<TransactionDto> sink = invocation.getArgument(3);
+            sink.accept(transfer(a, b, "100.00", now.minusDays(1)));
+            sink.accept(transfer(b, a, "40.00", now.minusHours(1)));
+            // A deposit has no source account and is not an edge
+            sink.accept(transfer(null, b, "500.00", now.minusHours(1)));
+            return null;
+        }).when(repository).streamBetween(eq(now.minusDays(1)), eq(now), eq(100), any(Consumer.class));
+
+        new TransferGraphSeeder(graph, repository, TransactionOperations.withoutTransaction(), Duration.ofDays(1), 100,
+                clock).seed();
+
+        assertEquals(50, graph.degree(a).outWeight(), 1e-9);
+        assertEquals(40 * Math.pow(2, -1 / 24.0), graph.degree(a).inWeight(), 1e-9);
+        assertEquals(2, graph.accounts());
+    }
+
+    @Test
+    void seed_withAZeroWindow_leavesTheGraphCold() {
+        new TransferGraphSeeder(graph, repository, TransactionOperations.withoutTransaction(), Duration.ZERO, 100,
+                clock).seed();
+
+        verifyNoInteractions(repository);
+        assertEquals(0, graph.accounts());
+    }
+
+    private static TransactionDto transfer(UUID from, UUID to, String valor, LocalDateTime dataHora) {
+        return TransactionDto.builder()
+                .id(UUID.randomUUID())
+                .tipo(Transaction.TransactionType.TRANSFERENCIA)
+                .valor(new BigDecimal(valor))
+                .dataHora(dataHora)
+                .contaDeOrigemId(from)
+                .contaDeDestinoId(to)
+                .build();
+    }
+}
@@ -0,0 +1,154 @@
+package com.bradesco.antifraud.service.fraud.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferGraphTest {
+
+    private static final long DAY = 24 * 60 * 60_000L;
+
+    private final long[] now = {1_700_000_000_000L};
+    private final Clock clock = new Clock() {
+        @Override
+        public long millis() {
+            return now[0];
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(now[0]);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    };
+    private final TransferGraph graph = new TransferGraph(Duration.ofDays(1), 1.0, clock);
+
+    private final UUID a = UUID.randomUUID();
+    private final UUID b = UUID.randomUUID();
+    private final UUID c = UUID.randomUUID();
+    private final UUID d = UUID.randomUUID();
+
+    @Test
+    void degree_countsCounterpartiesAndDecaysWeights() {
+        graph.record(a, c, 100);
+        graph.record(b, c, 50);
+        graph.record(b, c, 50);
+        graph.record(c, d, 180);
+
+        TransferGraph.Degree degree = graph.degree(c);
+        assertEquals(2, degree.fanIn());
+        assertEquals(1, degree.fanOut());
+        assertEquals(200, degree.inWeight(), 1e-9);
+        assertEquals(180, degree.outWeight(), 1e-9);
+
+        now[0] += DAY;
+        assertEquals(100, graph.degree(c).inWeight(), 1e-9);
+        assertEquals(TransferGraph.Degree.NONE, graph.degree(UUID.randomUUID()));
+    }
+
+    @Test
+    void record_decaysPastTransfersFromWhenTheyWereMade_inAnyOrder() {
+        graph.record(a, c, 100, now[0] - DAY);
+        graph.record(a, c, 100, now[0] - 2 * DAY);
+        graph.record(b, c, 100, now[0] - 2 * DAY);
+        graph.record(b, c, 100, now[0] - DAY);
+
+        assertEquals(75, graph.degree(a).outWeight(), 1e-9);
+        assertEquals(75, graph.degree(b).outWeight(), 1e-9);
+        assertEquals(150, graph.degree(c).inWeight(), 1e-9);
+    }
+
+    @Test
+    void flaggedHops_followsTransfersInBothDirectionsUpToTwoHops() {
+        graph.record(a, b, 10);
+        graph.record(c, b, 10);
+        graph.record(c, d, 10);
+        assertEquals(-1, graph.flaggedHops(b));
+
+        graph.flag(a);
+        assertEquals(0, graph.flaggedHops(a));
+        assertEquals(1, graph.flaggedHops(b));
+        assertEquals(2, graph.flaggedHops(c));
+        assertEquals(-1, graph.flaggedHops(d));
+
+        // A later shortcut lowers distances already computed
+        graph.record(d, a, 10);
+        assertEquals(1, graph.flaggedHops(d));
+        assertEquals(2, graph.flaggedHops(c));
+        assertTrue(graph.isWithinHopsOfFlagged(c, 2));
+
+        graph.unflag(a);
+        assertEquals(-1, graph.flaggedHops(b));
+        assertEquals(-1, graph.flaggedHops(d));
+    }
+
+    @Test
+    void cyclesThrough_findsShortLoopsBackToTheAccount() {
+        graph.record(a, b, 10);
+        graph.record(b, c, 10);
+        graph.record(c, a, 10);
+        graph.record(b, a, 10);
+        graph.record(c, d, 10);
+
+        List<List<UUID>> cycles = graph.cyclesThrough(a, 4);
+
+        assertEquals(2, cycles.size());
+        assertTrue(cycles.contains(List.of(a, b)));
+        assertTrue(cycles.contains(List.of(a, b, c)));
+        assertEquals(List.of(List.of(a, b)), graph.cyclesThrough(a, 2));
+        assertTrue(graph.cyclesThrough(d, 4).isEmpty());
+    }
+
+    @Test
+    void components_mergeOnTransferAndSplitAfterPrune() {
+        graph.record(a, b, 10);
+        graph.record(c, d, 1_000);
+        assertEquals(2, graph.componentSize(a));
+        assertNotEquals(graph.component(a), graph.component(c));
+
+        graph.record(b, c, 10);
+        assertEquals(4, graph.componentSize(d));
+        assertEquals(graph.component(a), graph.component(d));
+
+        // 10 reais decay below the 1 real minimum after four half-lives; 1000 reais do not
+        now[0] += 4 * DAY;
+        graph.prune();
+
+        assertEquals(2, graph.accounts());
+        assertEquals(2, graph.componentSize(c));
+        assertEquals(1, graph.componentSize(a));
+        assertEquals(0, graph.degree(b).fanOut());
+    }
+
+    @Test
+    void prune_keepsFlaggedAccountsAndRecomputesDistances() {
+        graph.flag(a);
+        graph.record(a, b, 10);
+        graph.record(b, c, 1_000);
+        assertEquals(2, graph.flaggedHops(c));
+
+        now[0] += 4 * DAY;
+        graph.prune();
+
+        assertEquals(0, graph.flaggedHops(a));
+        assertEquals(-1, graph.flaggedHops(b));
+        assertEquals(-1, graph.flaggedHops(c));
+    }
+}
@@ -0,0 +1,117 @@
+package com.bradesco.antifraud.service.fraud.profile;
+
+import com.bradesco.antifraud.model.Transaction.TransactionType;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountProfileStoreTest {
+
+    private final AccountProfileStore store = new AccountProfileStore(100_000, 0.5, 3);
+    private final UUID account = UUID.randomUUID();
+
+    @Test
+    void update_tracksEwmaAndVariancePerType() {
+        store.update(account, TransactionType.PAGAMENTO, 100, 10, null, 1);
+        store.update(account, TransactionType.PAGAMENTO, 200, 10, null, 2);
+        store.update(account, TransactionType.SAQUE, 50, 22, null, 3);
+
+        AccountProfileStore.AccountProfile profile = store.profile(account).orElseThrow();
+        AccountProfileStore.AmountStats payments = profile.amounts().get(TransactionType.PAGAMENTO);
+        assertEquals(2, payments.count());
+        // alpha 0.5: mean 100 -> 150, variance 0 -> 0.5 * (0 + 100 * 50)
+        assertEquals(150.0, payments.mean(), 1e-9);
+        assertEquals(Math.sqrt(2500.0), payments.stdDev(), 1e-9);
+        assertEquals(1, profile.amounts().get(TransactionType.SAQUE).count());
+        assertFalse(profile.amounts().containsKey(TransactionType.DEPOSITO));
+        assertEquals(3, profile.transactions());
+        assertEquals(3, profile.lastActivityMillis());
+        assertEquals(2, profile.hourHistogram()[10]);
+        assertEquals(1, profile.hourHistogram()[22]);
+    }
+
+    @Test
+    void deviation_scoresAmountOnlyAfterMinimumHistory() {
+        store.update(account, TransactionType.PAGAMENTO, 100, 9, null, 1);
+        store.update(account, TransactionType.PAGAMENTO, 110, 9, null, 2);
+        assertEquals(0.0, store.deviation(account, TransactionType.PAGAMENTO, 10_000, 9, null).amountZScore());
+
+        store.update(account, TransactionType.PAGAMENTO, 90, 9, null, 3);
+        AccountProfileStore.Deviation deviation = store.deviation(account, TransactionType.PAGAMENTO, 10_000, 3, null);
+
+        assertEquals(3, deviation.typeHistory());
+        assertTrue(deviation.amountZScore() > 100);
+        assertEquals(0.0, deviation.hourShare());
+        assertEquals(1.0, store.deviation(account, TransactionType.PAGAMENTO, 100, 9, null).hourShare());
+        assertSame(AccountProfileStore.Deviation.NONE,
+                store.deviation(UUID.randomUUID(), TransactionType.PAGAMENTO, 100, 9, null));
+    }
+
+    @Test
+    void deviation_knowsRepeatedCounterpartiesAndForgetsRareOnes() {
+        UUID usual = UUID.randomUUID();
+        store.update(account, TransactionType.TRANSFERENCIA, 10, 9, usual, 1);
+        assertFalse(store.deviation(account, TransactionType.TRANSFERENCIA, 10, 9, usual).knownCounterparty());
+
+        store.update(account, TransactionType.TRANSFERENCIA, 10, 9, usual, 2);
+        for (int i = 0; i < 20; i++) {
+            store.update(account, TransactionType.TRANSFERENCIA, 10, 9, UUID.randomUUID(), 3 + i);
+        }
+
+        assertTrue(store.deviation(account, TransactionType.TRANSFERENCIA, 10, 9, usual).knownCounterparty());
+    }
+
+    @Test
+    void update_growsAcrossChunksAndIndexResizes() {
+        UUID[] ids = new UUID[10_000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = UUID.randomUUID();
+            store.update(ids[i], TransactionType.DEPOSITO, i, 12, null, i);
+        }
+
+        assertEquals(ids.length, store.accounts());
+        for (int i = 0; i < ids.length; i += 997) {
+            assertEquals(i, store.profile(ids[i]).orElseThrow().amounts().get(TransactionType.DEPOSITO).mean(), 1e-9);
+        }
+        assertTrue(store.memoryBytes() >= (long) ids.length * AccountProfileStore.RECORD_BYTES);
+    }
+
+    @Test
+    void update_stopsProfilingNewAccountsWhenFull() {
+        AccountProfileStore small = new AccountProfileStore(2, 0.1, 3);
+        small.update(UUID.randomUUID(), TransactionType.DEPOSITO, 1, 0, null, 0);
+        small.update(UUID.randomUUID(), TransactionType.DEPOSITO, 1, 0, null, 0);
+        UUID third = UUID.randomUUID();
+        small.update(third, TransactionType.DEPOSITO, 1, 0, null, 0);
+
+        assertEquals(2, small.accounts());
+        assertTrue(small.profile(third).isEmpty());
+    }
+
+    @Test
+    void profile_readerNeverSeesHalfWrittenRecord() throws Exception {
+        // Every update adds 1 to the total and to one hour bucket, so a consistent read
+        // always has the bucket equal to the total
+        AtomicReference<String> torn = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 200_000; i++) {
+                store.update(account, TransactionType.PAGAMENTO, i, 5, null, i);
+            }
+        });
+        store.update(account, TransactionType.PAGAMENTO, 0, 5, null, 0);
+        writer.start();
+        while (writer.isAlive()) {
+            AccountProfileStore.AccountProfile profile = store.profile(account).orElseThrow();
+            if (profile.hourHistogram()[5] != profile.transactions()) {
+                torn.set(profile.hourHistogram()[5] + " != " + profile.transactions());
+            }
+        }
+        writer.join();
+
+        assertNull(torn.get());
+    }
+}
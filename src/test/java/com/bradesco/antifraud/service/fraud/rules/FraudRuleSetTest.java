@@ -0,0 +1,95 @@
+package com.bradesco.antifraud.service.fraud.rules;
+
+import com.bradesco.antifraud.model.Transaction;
+import com.bradesco.antifraud.service.fraud.FraudDecision;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FraudRuleSetTest {
+
+    private static FraudRuleSet rules(FraudRuleDefinition... definitions) {
+        return FraudRuleSet.compile(List.of(definitions));
+    }
+
+    private static FeatureVector transfer(double amount, double destinationAgeHours) {
+        return new FeatureVector()
+                .set(Feature.TYPE, Transaction.TransactionType.TRANSFERENCIA.ordinal())
+                .set(Feature.AMOUNT, amount)
+                .set(Feature.DESTINATION_AGE_HOURS, destinationAgeHours);
+    }
+
+    @Test
+    void evaluate_newPayeeRule_matchesOnlyWhenEveryClauseHolds() {
+        FraudRuleSet set = rules(new FraudRuleDefinition("NEW_PAYEE", 40, "review",
+                "type == TRANSFERENCIA and amount > 5000 and destinationAgeHours < 24"));
+
+        FraudRuleSet.Outcome matched = set.evaluate(transfer(6000, 2));
+        assertEquals(List.of("NEW_PAYEE"), matched.matched());
+        assertEquals(40, matched.weight());
+        assertEquals(FraudDecision.REVIEW, matched.action());
+
+        assertTrue(set.evaluate(transfer(6000, 48)).matched().isEmpty());
+        assertTrue(set.evaluate(transfer(4000, 2)).matched().isEmpty());
+        assertTrue(set.evaluate(transfer(6000, 2).set(Feature.TYPE, Transaction.TransactionType.SAQUE.ordinal()))
+                .matched().isEmpty());
+    }
+
+    @Test
+    void evaluate_respectsPrecedenceParenthesesNotAndIn() {
+        FraudRuleSet set = rules(new FraudRuleDefinition("R", 1, "review",
+                "not selfTransfer and (amount >= 1_000 or countLastMinute > 3) and type in (TRANSFERENCIA, PAGAMENTO)"));
+
+        assertFalse(set.evaluate(transfer(1000, 0)).matched().isEmpty());
+        assertTrue(set.evaluate(transfer(1000, 0).set(Feature.SELF_TRANSFER, 1)).matched().isEmpty());
+        assertTrue(set.evaluate(transfer(10, 0)).matched().isEmpty());
+        assertFalse(set.evaluate(transfer(10, 0).set(Feature.COUNT_LAST_MINUTE, 4)).matched().isEmpty());
+    }
+
+    @Test
+    void evaluate_allowListRuleStopsAndOverrides() {
+        FraudRuleSet set = rules(
+                new FraudRuleDefinition("TRUSTED", 0, "allow", "amount < 10"),
+                new FraudRuleDefinition("ANY", 90, "block", "amount >= 0"));
+
+        FraudRuleSet.Outcome outcome = set.evaluate(transfer(5, 0));
+
+        assertTrue(outcome.allowListed());
+        assertEquals(List.of("TRUSTED"), outcome.matched());
+        assertEquals(FraudDecision.BLOCK, set.evaluate(transfer(50, 0)).action());
+    }
+
+    @Test
+    void evaluate_blockRuleShortCircuitsLaterRules() {
+        FraudRuleSet set = rules(
+                new FraudRuleDefinition("FIRST", 10, "review", "amount > 0"),
+                new FraudRuleDefinition("STOP", 50, "block", "amount > 100"),
+                new FraudRuleDefinition("LATER", 5, "review", "amount > 0"));
+
+        FraudRuleSet.Outcome outcome = set.evaluate(transfer(500, 0));
+
+        assertEquals(List.of("FIRST", "STOP"), outcome.matched());
+        assertEquals(60, outcome.weight());
+        assertEquals(FraudDecision.BLOCK, outcome.action());
+    }
+
+    @Test
+    void compile_rejectsInvalidRulesWithRuleAndPosition() {
+        IllegalArgumentException unknownFeature = assertThrows(IllegalArgumentException.class,
+                () -> rules(new FraudRuleDefinition("BAD", 1, "review", "amount > 1 and balance < 0")));
+        assertEquals("Rule 'BAD': Unknown feature 'balance' at position 16", unknownFeature.getMessage());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> rules(new FraudRuleDefinition("BAD", 1, "review", "type == CHEQUE")));
+        assertThrows(IllegalArgumentException.class,
+                () -> rules(new FraudRuleDefinition("BAD", 1, "review", "(amount > 1")));
+        assertThrows(IllegalArgumentException.class,
+                () -> rules(new FraudRuleDefinition("BAD", 1, "escalate", "amount > 1")));
+        assertThrows(IllegalArgumentException.class, () -> rules(
+                new FraudRuleDefinition("DUP", 1, "review", "amount > 1"),
+                new FraudRuleDefinition("DUP", 1, "review", "amount > 2")));
+    }
+}
@@ -0,0 +1,225 @@
+package com.bradesco.antifraud.service.idempotency;
+
+import com.bradesco.antifraud.model.IdempotencyRecord;
+import com.bradesco.antifraud.model.Transaction;
+import com.bradesco.antifraud.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceTest {
+
+    private static final UUID OWNER = UUID.randomUUID();
+
+    @Mock
+    private IdempotencyRecordRepository repository;
+
+    private IdempotencyService service;
+    private final AtomicInteger executions = new AtomicInteger();
+    private final Transaction body = Transaction.builder()
+            .id(UUID.randomUUID())
+            .tipo(Transaction.TransactionType.PAGAMENTO)
+            .valor(new BigDecimal("25.00"))
+            .build();
+
+    @BeforeEach
+    void setUp() {
+        service = new IdempotencyService(repository, new ObjectMapper().registerModule(new JavaTimeModule()),
+                new SimpleMeterRegistry(), 100, Duration.ofHours(1));
+    }
+
+    private ResponseEntity<Transaction> action() {
+        executions.incrementAndGet();
+        return ResponseEntity.status(HttpStatus.CREATED).header("X-Fraud-Score", "12").body(body);
+    }
+
+    @Test
+    void execute_replaysStoredResponseWithoutRunningTheActionAgain() {
+        ResponseEntity<Transaction> first = service.execute("payment", OWNER, "k1", "f", Transaction.class, this::action);
+        ResponseEntity<Transaction> retry = service.execute("payment", OWNER, "k1", "f", Transaction.class, this::action);
+
+        assertEquals(1, executions.get());
+        assertSame(body, first.getBody());
+        assertEquals(HttpStatus.CREATED, retry.getStatusCode());
+        assertEquals(body.getId(), retry.getBody().getId());
+        assertEquals("12", retry.getHeaders().getFirst("X-Fraud-Score"));
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        verify(repository, times(1)).save(any());
+        verify(repository, times(1)).findLive(anyString(), any());
+    }
+
+    @Test
+    void execute_keyReusedForAnotherRequest_isRejected() {
+        service.execute("payment", OWNER, "k1", "f", Transaction.class, this::action);
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> service.execute("payment", OWNER, "k1", "other", Transaction.class, this::action));
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, e.getStatusCode());
+        // Scopes do not share keys
+        service.execute("transaction", OWNER, "k1", "other", Transaction.class, this::action);
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void execute_sameKeyFromAnotherOwner_runsSeparately() {
+        service.execute("payment", OWNER, "k1", "f", Transaction.class, this::action);
+
+        ResponseEntity<Transaction> other = service.execute("payment", UUID.randomUUID(), "k1", "f", Transaction.class, this::action);
+
+        assertEquals(2, executions.get());
+        assertNull(other.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    @Test
+    void execute_afterRestart_replaysFromTheTable() {
+        when(repository.findLive(eq("payment:" + OWNER + ":k1"), any())).thenReturn(Optional.of(IdempotencyRecord.builder()
+                .key("payment:" + OWNER + ":k1")
+                .fingerprint("f")
+                .status(403)
+                .headers("X-Fraud-Decision: BLOCK\n")
+                .body(null)
+                .createdAt(LocalDateTime.now())
+                .expiresAt(LocalDateTime.now().plusMinutes(5))
+                .build()));
+
+        ResponseEntity<Transaction> retry = service.execute("payment", OWNER, "k1", "f", Transaction.class, this::action);
+        service.execute("payment", OWNER, "k1", "f", Transaction.class, this::action);
+
+        assertEquals(0, executions.get());
+        assertEquals(HttpStatus.FORBIDDEN, retry.getStatusCode());
+        assertEquals("BLOCK", retry.getHeaders().getFirst("X-Fraud-Decision"));
+        verify(repository, times(1)).findLive(anyString(), any());
+    }
+
+    @Test
+    void execute_concurrentDuplicatesShareOneExecution() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        Future<ResponseEntity<Transaction>> first = pool.submit(() -> service.execute("payment", OWNER, "k1", "f", Transaction.class, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return action();
+        }));
+        started.await();
+        Future<ResponseEntity<Transaction>> duplicate = pool.submit(() -> service.execute("payment", OWNER, "k1", "f", Transaction.class, this::action));
+        Thread.sleep(50);
+        release.countDown();
+
+        assertEquals(HttpStatus.CREATED, first.get().getStatusCode());
+        assertEquals(body.getId(), duplicate.get().getBody().getId());
+        assertEquals(1, executions.get());
+        pool.shutdown();
+    }
+
+    @Test
+    void execute_doesNotStoreFailures() {
+        assertThrows(IllegalStateException.class, () -> service.execute("payment", OWNER, "k1", "f", Transaction.class, () -> {
+            throw new IllegalStateException("database down");
+        }));
+        service.execute("payment", OWNER, "k1", "f", Transaction.class, () -> ResponseEntity.internalServerError().build());
+        service.execute("payment", OWNER, "k1", "f", Transaction.class, this::action);
+
+        // Each run reserved the key; the two failures freed it again
+        assertEquals(1, executions.get());
+        verify(repository, times(3)).save(any());
+        verify(repository, times(2)).deleteById("payment:" + OWNER + ":k1");
+        verify(repository, times(1)).complete(eq("payment:" + OWNER + ":k1"), eq(201), anyString(), anyString());
+    }
+
+    @Test
+    void execute_reservesTheKeyBeforeTheActionRuns() {
+        service.execute("payment", OWNER, "k1", "f", Transaction.class, () -> {
+            verify(repository).save(argThat(record -> record.isPending() && record.getFingerprint().equals("f")));
+            verify(repository, never()).complete(anyString(), anyInt(), any(), any());
+            return action();
+        });
+
+        verify(repository).complete(eq("payment:" + OWNER + ":k1"), eq(201), contains("X-Fraud-Score: 12"), anyString());
+    }
+
+    @Test
+    void execute_keyLeftPending_isAConflictAndDoesNotRun() {
+        when(repository.findLive(eq("payment:" + OWNER + ":k1"), any())).thenReturn(Optional.of(IdempotencyRecord.builder()
+                .key("payment:" + OWNER + ":k1")
+                .fingerprint("f")
+                .status(IdempotencyRecord.PENDING)
+                .createdAt(LocalDateTime.now())
+                .expiresAt(LocalDateTime.now().plusMinutes(5))
+                .build()));
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> service.execute("payment", OWNER, "k1", "f", Transaction.class, this::action));
+
+        assertEquals(HttpStatus.CONFLICT, e.getStatusCode());
+        assertEquals(0, executions.get());
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void execute_keyReservedConcurrentlyByAnotherInstance_replaysItsResponse() {
+        IdempotencyRecord completed = IdempotencyRecord.builder()
+                .key("payment:" + OWNER + ":k1")
+                .fingerprint("f")
+                .status(201)
+                .headers("X-Fraud-Score: 12\n")
+                .createdAt(LocalDateTime.now())
+                .expiresAt(LocalDateTime.now().plusMinutes(5))
+                .build();
+        when(repository.findLive(eq("payment:" + OWNER + ":k1"), any()))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(completed));
+        when(repository.save(any())).thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        ResponseEntity<Transaction> response = service.execute("payment", OWNER, "k1", "f", Transaction.class, this::action);
+
+        assertEquals(0, executions.get());
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals("true", response.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    @Test
+    void execute_withoutKey_alwaysRuns() {
+        service.execute("payment", OWNER, null, "f", Transaction.class, this::action);
+        service.execute("payment", OWNER, null, "f", Transaction.class, this::action);
+
+        assertEquals(2, executions.get());
+        verifyNoInteractions(repository);
+    }
+}
@@ -0,0 +1,219 @@
+package com.bradesco.antifraud.service.journal;
+
+import com.bradesco.antifraud.dto.PaymentStatus;
+import com.bradesco.antifraud.model.Account;
+import com.bradesco.antifraud.model.Address;
+import com.bradesco.antifraud.model.Customer;
+import com.bradesco.antifraud.model.Transaction;
+import com.bradesco.antifraud.repository.AccountRepository;
+import com.bradesco.antifraud.repository.CustomerRepository;
+import com.bradesco.antifraud.repository.TransactionRepository;
+import com.bradesco.antifraud.service.TransactionService;
+import com.bradesco.antifraud.service.fraud.FraudScoringService;
+import com.bradesco.antifraud.service.ledger.AccountLedger;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(properties = "antifraud.payments.journal.enabled=true")
+class PaymentJournalServiceTest {
+
+    @TempDir
+    static Path journalDir;
+
+    @DynamicPropertySource
+    static void journalProperties(DynamicPropertyRegistry registry) {
+        registry.add("antifraud.payments.journal.dir", () -> journalDir.toString());
+        registry.add("antifraud.payments.journal.segment-size", () -> 65536);
+    }
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private PaymentJournalService paymentJournal;
+
+    @Autowired
+    private AccountLedger ledger;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        transactionRepository.deleteAll();
+        jdbcTemplate.update("delete from balance_snapshots");
+        jdbcTemplate.update("delete from ledger_entries");
+        jdbcTemplate.update("delete from rejected_payments");
+        accountRepository.deleteAll();
+        customerRepository.deleteAll();
+    }
+
+    @Test
+    void processTransaction_acceptsFromTheJournalAndPostsInTheBackground() throws Exception {
+        Customer customer = customerRepository.save(Customer.builder()
+                .name("Journal Test")
+                .cpf("111.444.777-35")
+                .dateOfBirth(LocalDate.of(1990, 1, 15))
+                .email("journal@example.com")
+                .password("secret")
+                .address(Address.builder()
+                        .street("Rua C")
+                        .number("20")
+                        .neighborhood("Centro")
+                        .city("Barueri")
+                        .state("SP")
+                        .zipCode("06401-000")
+                        .build())
+                .build());
+        Account payer = account(customer, "J-0001", "100.00");
+        Account payee = account(customer, "J-0002", "0");
+
+        ResponseEntity<Transaction> accepted = transactionService.processTransaction(Transaction.builder()
+                .tipo(Transaction.TransactionType.TRANSFERENCIA)
+                .valor(new BigDecimal("40.00"))
+                .dataHora(LocalDateTime.now())
+                .descricao("Journal")
+                .contaDeOrigem(payer)
+                .contaDeDestino(payee)
+                .build());
+        // Overdraws the payer once the first one is posted: accepted, then rejected by the applier
+        ResponseEntity<Transaction> overdraft = transactionService.processTransaction(Transaction.builder()
+                .tipo(Transaction.TransactionType.TRANSFERENCIA)
+                .valor(new BigDecimal("70.00"))
+                .dataHora(LocalDateTime.now())
+                .contaDeOrigem(payer)
+                .contaDeDestino(payee)
+                .build());
+
+        assertEquals(HttpStatus.ACCEPTED, accepted.getStatusCode());
+        assertEquals(HttpStatus.ACCEPTED, overdraft.getStatusCode());
+        assertNotNull(accepted.getBody().getId());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (paymentJournal.lag() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, paymentJournal.lag());
+        assertTrue(transactionRepository.existsById(accepted.getBody().getId()));
+        assertFalse(transactionRepository.existsById(overdraft.getBody().getId()));
+        assertEquals(0, new BigDecimal("60.00").compareTo(balanceOf(payer)));
+        assertEquals(0, new BigDecimal("40.00").compareTo(balanceOf(payee)));
+
+        // The rejection is stored: readable by id, and not applied again once the payer has the funds
+        assertEquals(PaymentStatus.Outcome.POSTED,
+                transactionService.findPaymentStatus(accepted.getBody().getId()).orElseThrow().outcome());
+        PaymentStatus rejected = transactionService.findPaymentStatus(overdraft.getBody().getId()).orElseThrow();
+        assertEquals(PaymentStatus.Outcome.REJECTED, rejected.outcome());
+        assertTrue(rejected.reason().startsWith("Insufficient funds"), rejected.reason());
+        jdbcTemplate.update("update accounts set balance = 1000 where id = ?", payer.getId());
+        assertFalse(ledger.apply(overdraft.getBody()));
+        assertFalse(transactionRepository.existsById(overdraft.getBody().getId()));
+        assertTrue(transactionService.findPaymentStatus(UUID.randomUUID()).isEmpty());
+    }
+
+    @Test
+    void start_replaysMoreRecordsThanTheQueueHolds(@TempDir Path dir) throws Exception {
+        try (PaymentJournal journal = new PaymentJournal(dir, 65536, entry -> { })) {
+            journal.replay();
+            for (int i = 0; i < 50; i++) {
+                journal.append(new PaymentRecord(UUID.randomUUID(), Transaction.TransactionType.PAGAMENTO,
+                        new BigDecimal("1.00"), LocalDateTime.now(), "replay " + i, UUID.randomUUID(), UUID.randomUUID()));
+            }
+        }
+        AccountLedger ledgerMock = mock(AccountLedger.class);
+        when(ledgerMock.apply(any())).thenReturn(true);
+        PaymentJournalService service = new PaymentJournalService(ledgerMock, mock(FraudScoringService.class),
+                new SimpleMeterRegistry(), dir, 65536, 4, 10000, false);
+
+        // The 50 pending records only fit the queue of 4 if the applier drains it while start() replays
+        assertTimeoutPreemptively(Duration.ofSeconds(10), service::start);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (service.lag() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        service.stop();
+
+        assertEquals(0, service.lag());
+        verify(ledgerMock, times(50)).apply(any());
+    }
+
+    @Test
+    void stop_checkpointsWhatTheApplierDrains(@TempDir Path dir) throws Exception {
+        AccountLedger ledgerMock = mock(AccountLedger.class);
+        when(ledgerMock.apply(any())).thenAnswer(invocation -> {
+            Thread.sleep(20);
+            return true;
+        });
+        PaymentJournalService service = new PaymentJournalService(ledgerMock, mock(FraudScoringService.class),
+                new SimpleMeterRegistry(), dir, 65536, 100, 10000, false);
+        service.start();
+        for (int i = 0; i < 20; i++) {
+            service.accept(Transaction.builder()
+                    .tipo(Transaction.TransactionType.PAGAMENTO)
+                    .valor(new BigDecimal("1.00"))
+                    .dataHora(LocalDateTime.now())
+                    .contaDeOrigem(Account.builder().id(UUID.randomUUID()).build())
+                    .build());
+        }
+
+        // Most of the payments are still queued: the applier drains them during stop()
+        service.stop();
+
+        verify(ledgerMock, times(20)).apply(any());
+        List<PaymentJournal.Entry> replayed = new ArrayList<>();
+        try (PaymentJournal journal = new PaymentJournal(dir, 65536, replayed::add)) {
+            journal.replay();
+        }
+        assertEquals(List.of(), replayed);
+    }
+
+    private Account account(Customer customer, String number, String balance) {
+        Account account = accountRepository.save(Account.builder()
+                .accountNumber(number)
+                .agency("0001")
+                .balance(new BigDecimal(balance))
+                .accountType(Account.AccountType.CORRENTE)
+                .accountStatus(Account.AccountStatus.ATIVA)
+                .customer(customer)
+                .build());
+        ledger.open(account);
+        return account;
+    }
+
+    private BigDecimal balanceOf(Account account) {
+        return accountRepository.findById(account.getId()).orElseThrow().getBalance();
+    }
+}
@@ -0,0 +1,176 @@
+package com.bradesco.antifraud.service.journal;
+
+import com.bradesco.antifraud.model.Transaction;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentJournalTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path dir;
+
+    private final List<PaymentJournal.Entry> sunk = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    void append_handsEntriesToSinkInOrderAndRoundTripsThePayment() throws Exception {
+        PaymentRecord first = payment("10.50", "Aluguel de março");
+        try (PaymentJournal journal = open()) {
+            assertEquals(1, journal.append(first));
+            assertEquals(2, journal.append(payment("0.01", null)));
+            awaitSunk(2);
+        }
+
+        assertEquals(1, sunk.get(0).sequence());
+        assertEquals(first, sunk.get(0).payment());
+        assertEquals(2, sunk.get(1).sequence());
+    }
+
+    @Test
+    void reopen_replaysOnlyEntriesAfterTheCheckpoint() throws Exception {
+        try (PaymentJournal journal = open()) {
+            for (int i = 0; i < 5; i++) {
+                journal.append(payment("1.00", "p" + i));
+            }
+            awaitSunk(5);
+            journal.markApplied(3);
+        }
+        sunk.clear();
+
+        try (PaymentJournal journal = open()) {
+            assertEquals(List.of(4L, 5L), sunk.stream().map(PaymentJournal.Entry::sequence).toList());
+            assertEquals(2, journal.lag());
+            assertEquals(6, journal.append(payment("1.00", null)));
+        }
+    }
+
+    @Test
+    void append_isRefusedUntilTheJournalIsReplayed() throws Exception {
+        try (PaymentJournal journal = new PaymentJournal(dir, SEGMENT_SIZE, sunk::add)) {
+            assertThrows(IllegalStateException.class, () -> journal.append(payment("1.00", null)));
+            journal.replay();
+            assertEquals(1, journal.append(payment("1.00", null)));
+        }
+    }
+
+    @Test
+    void reopen_stopsAtACorruptRecordAndOverwritesIt() throws Exception {
+        try (PaymentJournal journal = open()) {
+            journal.append(payment("1.00", "ok"));
+            journal.append(payment("2.00", "torn"));
+            awaitSunk(2);
+        }
+        Path segment = segments().get(0);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            // Flip the last byte of the second record's description
+            long second = PaymentJournal.FRAME_HEADER + readInt(file, 0);
+            long secondEnd = second + PaymentJournal.FRAME_HEADER + readInt(file, second);
+            file.seek(secondEnd - 1);
+            file.write('X');
+        }
+        sunk.clear();
+
+        try (PaymentJournal journal = open()) {
+            assertEquals(1, sunk.size());
+            assertEquals(2, journal.append(payment("3.00", "replacement")));
+            awaitSunk(2);
+        }
+        sunk.clear();
+        try (PaymentJournal ignored = open()) {
+            assertEquals(2, sunk.size());
+            assertEquals("replacement", sunk.get(1).payment().descricao());
+        }
+    }
+
+    @Test
+    void rollover_startsNewSegmentsAndDropsAppliedOnes() throws Exception {
+        try (PaymentJournal journal = open()) {
+            for (int i = 0; i < 200; i++) {
+                journal.append(payment("1.00", "rollover " + i));
+            }
+            awaitSunk(200);
+            assertTrue(journal.segmentCount() > 2);
+
+            journal.markApplied(200);
+            assertEquals(1, journal.segmentCount());
+            assertEquals(1, segments().size());
+        }
+        sunk.clear();
+
+        try (PaymentJournal journal = open()) {
+            assertTrue(sunk.isEmpty());
+            assertEquals(201, journal.append(payment("1.00", null)));
+        }
+    }
+
+    @Test
+    void append_concurrentAppendersGetDistinctSequences() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<Long>> futures = new ArrayList<>();
+        try (PaymentJournal journal = open()) {
+            for (int i = 0; i < 400; i++) {
+                futures.add(pool.submit(() -> journal.append(payment("1.00", "concurrent"))));
+            }
+            List<Long> sequences = new ArrayList<>();
+            for (Future<Long> future : futures) {
+                sequences.add(future.get());
+            }
+            pool.shutdown();
+            awaitSunk(400);
+
+            assertEquals(400, sequences.stream().distinct().count());
+            for (int i = 0; i < 400; i++) {
+                assertEquals(i + 1, sunk.get(i).sequence());
+            }
+        }
+    }
+
+    private PaymentJournal open() throws IOException {
+        PaymentJournal journal = new PaymentJournal(dir, SEGMENT_SIZE, sunk::add);
+        journal.replay();
+        return journal;
+    }
+
+    private void awaitSunk(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sunk.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, sunk.size());
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".journal")).sorted().toList();
+        }
+    }
+
+    private static int readInt(RandomAccessFile file, long position) throws IOException {
+        file.seek(position);
+        return file.readInt();
+    }
+
+    private static PaymentRecord payment(String value, String descricao) {
+        return new PaymentRecord(UUID.randomUUID(), Transaction.TransactionType.TRANSFERENCIA, new BigDecimal(value),
+                LocalDateTime.of(2025, 3, 10, 14, 30, 15, 123_000_000), descricao, UUID.randomUUID(), UUID.randomUUID());
+    }
+}
@@ -0,0 +1,221 @@
+package com.bradesco.antifraud.service.ledger;
+
+import com.bradesco.antifraud.exception.transactionExceptions.InsufficientFundsException;
+import com.bradesco.antifraud.model.Account;
+import com.bradesco.antifraud.model.Address;
+import com.bradesco.antifraud.model.Customer;
+import com.bradesco.antifraud.model.Transaction;
+import com.bradesco.antifraud.repository.AccountRepository;
+import com.bradesco.antifraud.repository.CustomerRepository;
+import com.bradesco.antifraud.repository.TransactionRepository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class AccountLedgerTest {
+
+    @Autowired
+    private AccountLedger ledger;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private LedgerProjection projection;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Customer customer;
+    private Account merchant;
+    private final List<Account> payers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        customer = customerRepository.save(Customer.builder()
+                .name("Ledger Test")
+                .cpf("529.982.247-25")
+                .dateOfBirth(LocalDate.of(1985, 5, 20))
+                .email("ledger@example.com")
+                .password("secret")
+                .address(Address.builder()
+                        .street("Rua B")
+                        .number("10")
+                        .neighborhood("Centro")
+                        .city("Osasco")
+                        .state("SP")
+                        .zipCode("06010-000")
+                        .build())
+                .build());
+        merchant = account("M-0001", "0");
+        for (int i = 0; i < 4; i++) {
+            payers.add(account("P-000" + i, "1000.00"));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionRepository.deleteAll();
+        jdbcTemplate.update("delete from balance_snapshots");
+        jdbcTemplate.update("delete from ledger_entries");
+        accountRepository.deleteAll();
+        customerRepository.deleteAll();
+    }
+
+    @Test
+    void post_concurrentPaymentsToHotAccount_loseNoUpdates() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Account payer = payers.get(i % payers.size());
+            futures.add(pool.submit(() -> ledger.post(payment(payer, merchant, "1.50"))));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        assertEquals(0, new BigDecimal("300.00").compareTo(balanceOf(merchant)));
+        for (Account payer : payers) {
+            assertEquals(0, new BigDecimal("925.00").compareTo(balanceOf(payer)));
+        }
+        assertEquals(200, transactionRepository.count());
+    }
+
+    @Test
+    void post_whenFundsAreInsufficient_changesNothing() {
+        Account payer = payers.get(0);
+
+        assertThrows(InsufficientFundsException.class, () -> ledger.post(payment(payer, merchant, "1000.01")));
+
+        assertEquals(0, new BigDecimal("1000.00").compareTo(balanceOf(payer)));
+        assertEquals(0, BigDecimal.ZERO.compareTo(balanceOf(merchant)));
+        assertEquals(0, transactionRepository.count());
+    }
+
+    @Test
+    void post_depositOnlyCreditsDestination() {
+        Transaction deposit = payment(payers.get(0), merchant, "50.00");
+        deposit.setTipo(Transaction.TransactionType.DEPOSITO);
+
+        ledger.post(deposit);
+
+        assertEquals(0, new BigDecimal("1000.00").compareTo(balanceOf(payers.get(0))));
+        assertEquals(0, new BigDecimal("50.00").compareTo(balanceOf(merchant)));
+    }
+
+    @Test
+    void apply_postsJournaledPaymentOnce() {
+        Account payer = payers.get(0);
+        Transaction journaled = payment(Account.builder().id(payer.getId()).build(),
+                Account.builder().id(merchant.getId()).build(), "30.00");
+        journaled.setId(UUID.randomUUID());
+
+        assertTrue(ledger.apply(journaled));
+        assertFalse(ledger.apply(journaled));
+
+        assertEquals(0, new BigDecimal("970.00").compareTo(balanceOf(payer)));
+        assertEquals(0, new BigDecimal("30.00").compareTo(balanceOf(merchant)));
+        assertTrue(transactionRepository.existsById(journaled.getId()));
+        assertEquals(2, entryCount(payer));
+    }
+
+    @Test
+    void post_appendsLedgerEntriesThatReplayToTheBalance() {
+        Account payer = payers.get(0);
+        ledger.post(payment(payer, merchant, "100.00"));
+        ledger.post(payment(payer, merchant, "25.50"));
+
+        assertEquals(3, entryCount(payer));
+        assertEquals(0, new BigDecimal("874.50").compareTo(projection.replay(payer.getId())));
+        assertEquals(0, new BigDecimal("125.50").compareTo(projection.replay(merchant.getId())));
+    }
+
+    @Test
+    void replay_startsFromLatestSnapshot() {
+        Account payer = payers.get(0);
+        ledger.post(payment(payer, merchant, "100.00"));
+        assertEquals(0, projection.snapshot(LocalDateTime.now().minusHours(1)));
+        assertEquals(5, projection.snapshot(LocalDateTime.now().plusHours(1)));
+
+        ledger.post(payment(payer, merchant, "50.00"));
+        ledger.adjust(merchant.getId(), new BigDecimal("10.00"));
+        assertEquals(2, projection.snapshot(LocalDateTime.now().plusHours(1)));
+
+        ledger.post(payment(payer, merchant, "1.00"));
+        assertEquals(0, new BigDecimal("849.00").compareTo(projection.replay(payer.getId())));
+        assertEquals(0, new BigDecimal("11.00").compareTo(projection.replay(merchant.getId())));
+        assertEquals(0, new BigDecimal("11.00").compareTo(balanceOf(merchant)));
+        // Superseded snapshots are dropped: one per account remains
+        assertEquals(5, jdbcTemplate.queryForObject("select count(*) from balance_snapshots", Integer.class));
+    }
+
+    @Test
+    void rebuild_restoresBalancesChangedOutsideTheLedger() {
+        Account payer = payers.get(0);
+        ledger.post(payment(payer, merchant, "40.00"));
+        projection.snapshot(LocalDateTime.now().plusHours(1));
+        ledger.post(payment(payer, merchant, "2.00"));
+        jdbcTemplate.update("update accounts set balance = 0 where id = ?", payer.getId());
+
+        assertEquals(1, projection.rebuild());
+
+        assertEquals(0, new BigDecimal("958.00").compareTo(balanceOf(payer)));
+        assertEquals(0, new BigDecimal("42.00").compareTo(balanceOf(merchant)));
+    }
+
+    private int entryCount(Account account) {
+        return jdbcTemplate.queryForObject("select count(*) from ledger_entries where account_id = ?", Integer.class,
+                account.getId());
+    }
+
+    private Account account(String number, String balance) {
+        Account account = accountRepository.save(Account.builder()
+                .accountNumber(number)
+                .agency("0001")
+                .balance(new BigDecimal(balance))
+                .accountType(Account.AccountType.CORRENTE)
+                .accountStatus(Account.AccountStatus.ATIVA)
+                .customer(customer)
+                .build());
+        ledger.open(account);
+        return account;
+    }
+
+    private BigDecimal balanceOf(Account account) {
+        return accountRepository.findById(account.getId()).orElseThrow().getBalance();
+    }
+
+    private static Transaction payment(Account from, Account to, String value) {
+        return Transaction.builder()
+                .tipo(Transaction.TransactionType.PAGAMENTO)
+                .valor(new BigDecimal(value))
+                .dataHora(LocalDateTime.now())
+                .contaDeOrigem(from)
+                .contaDeDestino(to)
+                .build();
+    }
+}
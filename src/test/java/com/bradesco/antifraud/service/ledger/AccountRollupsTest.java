@@ -0,0 +1,286 @@
+package com.bradesco.antifraud.service.ledger;
+
+import com.bradesco.antifraud.dto.AccountRollupSummary;
+import com.bradesco.antifraud.dto.TransactionDto;
+import com.bradesco.antifraud.model.Account;
+import com.bradesco.antifraud.model.Transaction;
+import com.bradesco.antifraud.model.Transaction.TransactionType;
+import com.bradesco.antifraud.repository.AccountRollupJdbcRepository;
+import com.bradesco.antifraud.repository.TransactionJdbcRepository;
+import com.bradesco.antifraud.service.ledger.AccountRollups.Granularity;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// The application's own rollups fold on their schedule; pushed out so only the tests fold
+@SpringBootTest(properties = "antifraud.rollups.fold-interval-ms=3600000")
+class AccountRollupsTest {
+
+    private static final UUID ACCOUNT_A = UUID.randomUUID();
+    private static final UUID ACCOUNT_B = UUID.randomUUID();
+
+    @Autowired
+    private AccountRollupJdbcRepository rollupRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final TransactionJdbcRepository repository = mock(TransactionJdbcRepository.class);
+    private final List<TransactionDto> table = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("delete from account_rollup_deltas");
+        jdbcTemplate.update("delete from account_rollups");
+    }
+
+    @Test
+    void record_addsToTheHourDayAndMonthBucketsOfBothAccounts() {
+        AccountRollups rollups = rollups();
+        LocalDateTime at = LocalDateTime.now().withHour(10).withMinute(15);
+        record(rollups, transaction(TransactionType.TRANSFERENCIA, "100.00", at, ACCOUNT_A, ACCOUNT_B));
+        record(rollups, transaction(TransactionType.TRANSFERENCIA, "50.25", at.plusMinutes(30), ACCOUNT_A, ACCOUNT_B));
+        record(rollups, transaction(TransactionType.DEPOSITO, "20.00", at.plusHours(1), ACCOUNT_B, ACCOUNT_A));
+        record(rollups, transaction(TransactionType.SAQUE, "5.00", at.plusHours(1), ACCOUNT_A, ACCOUNT_B));
+
+        // Read from the deltas first, then from the buckets they were folded into
+        AccountRollupSummary unfolded = rollups.summary(ACCOUNT_A, Granularity.HOUR, at.withMinute(0), at.plusHours(2));
+        assertEquals(6, rollups.fold(LocalDateTime.now()));
+        AccountRollupSummary hours = rollups.summary(ACCOUNT_A, Granularity.HOUR, at.withMinute(0), at.plusHours(2));
+        assertEquals(unfolded, hours);
+        assertEquals(2, hours.buckets().size());
+        AccountRollupSummary.Totals transfers = hours.buckets().get(0).byType().get(TransactionType.TRANSFERENCIA);
+        assertEquals(new AccountRollupSummary.Totals(0, new BigDecimal("0.00"), 2, new BigDecimal("150.25")), transfers);
+        // Deposits only credit the destination, withdrawals only debit the source
+        assertEquals(new AccountRollupSummary.Totals(1, new BigDecimal("20.00"), 0, new BigDecimal("0.00")),
+                hours.buckets().get(1).byType().get(TransactionType.DEPOSITO));
+        assertEquals(new AccountRollupSummary.Totals(0, new BigDecimal("0.00"), 1, new BigDecimal("5.00")),
+                hours.buckets().get(1).byType().get(TransactionType.SAQUE));
+
+        AccountRollupSummary day = rollups.summary(ACCOUNT_B, Granularity.DAY, at, at);
+        assertEquals(at.toLocalDate().atStartOfDay(), day.from());
+        assertEquals(Map.of(TransactionType.TRANSFERENCIA,
+                new AccountRollupSummary.Totals(2, new BigDecimal("150.25"), 0, new BigDecimal("0.00"))), day.totals());
+        assertEquals(day.totals(), rollups.summary(ACCOUNT_B, Granularity.MONTH, at, at.plusSeconds(1)).totals());
+        assertTrue(rollups.summary(UUID.randomUUID(), Granularity.DAY, at, at.plusDays(1)).buckets().isEmpty());
+    }
+
+    @Test
+    void fold_readsAtMostFoldBatchDeltasPerTransaction() {
+        AccountRollupJdbcRepository ranges = spy(new AccountRollupJdbcRepository(jdbcTemplate));
+        AccountRollups rollups = new AccountRollups(repository, ranges, transactionManager, true, false,
+                Duration.ofDays(2), Duration.ofDays(400), Duration.ofDays(800), 100, 4);
+        LocalDateTime at = LocalDateTime.now();
+        for (int i = 0; i < 5; i++) {
+            record(rollups, transaction(TransactionType.TRANSFERENCIA, "10.00", at, ACCOUNT_A, ACCOUNT_B));
+        }
+
+        // Two deltas per transfer: ranges of 4, 4 and 2
+        assertEquals(10, rollups.fold(at));
+        verify(ranges, times(3)).findDeltas(anyLong(), anyLong());
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from account_rollup_deltas", Integer.class));
+        assertEquals(new AccountRollupSummary.Totals(5, new BigDecimal("50.00"), 0, new BigDecimal("0.00")),
+                rollups.summary(ACCOUNT_B, Granularity.DAY, at, at).totals().get(TransactionType.TRANSFERENCIA));
+    }
+
+    @Test
+    void rebuild_matchesWhatWasRecordedIncrementally() {
+        AccountRollups rollups = rollups();
+        Random random = new Random(7);
+        TransactionType[] types = TransactionType.values();
+        LocalDateTime start = LocalDateTime.now().minusDays(20);
+        List<Transaction> transactions = new ArrayList<>();
+        for (LocalDateTime at = start; at.isBefore(LocalDateTime.now()); at = at.plusMinutes(17)) {
+            UUID source = random.nextBoolean() ? ACCOUNT_A : ACCOUNT_B;
+            Transaction transaction = transaction(types[random.nextInt(types.length)],
+                    BigDecimal.valueOf(random.nextInt(100_000) + 1, 2).toPlainString(), at, source,
+                    source == ACCOUNT_A ? ACCOUNT_B : ACCOUNT_A);
+            table.add(dto(transaction));
+            transactions.add(transaction);
+        }
+        inTransaction(() -> rollups.record(transactions));
+        rollups.fold(LocalDateTime.now());
+        Map<String, AccountRollupSummary> incremental = summaries(rollups, start);
+
+        AccountRollups.Rebuild rebuild = rollups.rebuild();
+
+        assertEquals(table.size(), rebuild.transactions());
+        assertEquals(2, rebuild.accounts());
+        assertEquals(incremental, summaries(rollups, start));
+        // Hourly buckets are only built within their retention
+        assertTrue(rollups.summary(ACCOUNT_A, Granularity.HOUR, start, LocalDateTime.now().minusDays(8)).buckets().isEmpty());
+    }
+
+    @Test
+    void rebuild_keepsTheDeltasOfWritesCommittedWhileItRuns() {
+        LocalDateTime now = LocalDateTime.now();
+        Transaction old = transaction(TransactionType.PAGAMENTO, "10.00", now.minusDays(2), ACCOUNT_A, ACCOUNT_B);
+        Transaction unfolded = transaction(TransactionType.PAGAMENTO, "20.00", now, ACCOUNT_A, ACCOUNT_B);
+        Transaction concurrent = transaction(TransactionType.PAGAMENTO, "40.00", now, ACCOUNT_A, ACCOUNT_B);
+        table.addAll(List.of(dto(old), dto(unfolded)));
+
+        AccountRollups rollups = rollups();
+        // In the table and still a delta when the rebuild starts: counted once, from the table
+        record(rollups, unfolded);
+        doAnswer(invocation -> {
+            Consumer<TransactionDto> sink = invocation.getArgument(2);
+            table.forEach(sink);
+            // Committed by another connection after the rebuild took its snapshot: neither its row nor its delta is seen
+            CompletableFuture.runAsync(() -> record(rollups, concurrent)).join();
+            return null;
+        }).when(repository).stream(isNull(), anyInt(), any());
+
+        rollups.rebuild();
+
+        AccountRollupSummary summary = rollups.summary(ACCOUNT_A, Granularity.MONTH, now.minusMonths(1), now.plusDays(1));
+        assertEquals(new AccountRollupSummary.Totals(0, new BigDecimal("0.00"), 3, new BigDecimal("70.00")),
+                summary.totals().get(TransactionType.PAGAMENTO));
+        // One delta per account of the concurrent payment
+        assertEquals(2, rollups.fold(now));
+        assertEquals(summary, rollups.summary(ACCOUNT_A, Granularity.MONTH, now.minusMonths(1), now.plusDays(1)));
+    }
+
+    @Test
+    void summary_includesWhatOtherInstancesRecorded() {
+        AccountRollups first = rollups();
+        AccountRollups second = rollups();
+        LocalDateTime now = LocalDateTime.now();
+        record(first, transaction(TransactionType.TRANSFERENCIA, "7.00", now, ACCOUNT_A, ACCOUNT_B));
+        record(second, transaction(TransactionType.TRANSFERENCIA, "3.00", now, ACCOUNT_A, ACCOUNT_B));
+
+        AccountRollupSummary.Totals expected = new AccountRollupSummary.Totals(2, new BigDecimal("10.00"), 0,
+                new BigDecimal("0.00"));
+        assertEquals(expected, first.summary(ACCOUNT_B, Granularity.DAY, now, now).totals().get(TransactionType.TRANSFERENCIA));
+        // Either instance folds the deltas of both, once
+        assertEquals(4, second.fold(now));
+        assertEquals(0, first.fold(now));
+        assertEquals(expected, first.summary(ACCOUNT_B, Granularity.DAY, now, now).totals().get(TransactionType.TRANSFERENCIA));
+    }
+
+    @Test
+    void forgetAndPrune_dropWhatNoLongerApplies() {
+        AccountRollups rollups = rollups();
+        LocalDateTime now = LocalDateTime.now();
+        Transaction recent = transaction(TransactionType.TRANSFERENCIA, "30.00", now, ACCOUNT_A, ACCOUNT_B);
+        Transaction updated = transaction(TransactionType.TRANSFERENCIA, "35.00", now, ACCOUNT_A, ACCOUNT_B);
+        updated.setId(recent.getId());
+        record(rollups, recent);
+        record(rollups, transaction(TransactionType.TRANSFERENCIA, "1.00", now.minusHours(36), ACCOUNT_A, ACCOUNT_B));
+        rollups.fold(now);
+
+        inTransaction(() -> {
+            rollups.forget(AccountRollups.Posting.of(recent));
+            rollups.record(updated);
+        });
+        assertEquals(new BigDecimal("35.00"), rollups.summary(ACCOUNT_B, Granularity.DAY, now, now)
+                .totals().get(TransactionType.TRANSFERENCIA).credited());
+        rollups.fold(now);
+
+        // A day later the hourly buckets of the older transfer, one per account, are past the 2-day retention
+        assertEquals(2, rollups.prune(now.plusDays(1)));
+        assertEquals(now.minusDays(1).truncatedTo(ChronoUnit.HOURS), rollups.retainedSince(Granularity.HOUR));
+        assertEquals(1, rollups.summary(ACCOUNT_A, Granularity.HOUR, now.minusDays(1), now.plusSeconds(1)).buckets().size());
+        AccountRollupSummary month = rollups.summary(ACCOUNT_A, Granularity.MONTH, now.minusDays(3), now.plusSeconds(1));
+        assertEquals(2, month.totals().get(TransactionType.TRANSFERENCIA).debits());
+
+        inTransaction(() -> rollups.forget(AccountRollups.Posting.of(updated)));
+        assertTrue(rollups.summary(ACCOUNT_A, Granularity.DAY, now, now).buckets().isEmpty());
+
+        // Monthly buckets are bounded too: past the 800-day retention every bucket is gone
+        rollups.fold(now);
+        assertTrue(rollups.prune(now.plusDays(900)) > 0);
+        assertEquals(Granularity.MONTH.start(now.plusDays(100)), rollups.retainedSince(Granularity.MONTH));
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from account_rollups", Integer.class));
+    }
+
+    @Test
+    void start_onlyRebuildsWhenAskedTo() {
+        table.add(dto(transaction(TransactionType.DEPOSITO, "5.00", LocalDateTime.now(), ACCOUNT_A, ACCOUNT_B)));
+        rollups().start();
+        verify(repository, never()).stream(any(), anyInt(), any());
+
+        new AccountRollups(repository, rollupRepository, transactionManager, true, true,
+                Duration.ofDays(2), Duration.ofDays(400), Duration.ofDays(800), 100, 1000).start();
+        verify(repository).stream(isNull(), anyInt(), any());
+        assertEquals(1, rollups().summary(ACCOUNT_B, Granularity.DAY, LocalDateTime.now(), LocalDateTime.now())
+                .totals().get(TransactionType.DEPOSITO).credits());
+    }
+
+    private AccountRollups rollups() {
+        doAnswer(invocation -> {
+            Consumer<TransactionDto> sink = invocation.getArgument(2);
+            table.forEach(sink);
+            return null;
+        }).when(repository).stream(isNull(), anyInt(), any());
+        return new AccountRollups(repository, rollupRepository, transactionManager, true, false,
+                Duration.ofDays(2), Duration.ofDays(400), Duration.ofDays(800), 100, 1000);
+    }
+
+    // Deltas are appended by the writers in the transaction of their write
+    private void record(AccountRollups rollups, Transaction transaction) {
+        inTransaction(() -> rollups.record(transaction));
+    }
+
+    private void inTransaction(Runnable write) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> write.run());
+    }
+
+    private static Map<String, AccountRollupSummary> summaries(AccountRollups rollups, LocalDateTime start) {
+        Map<String, AccountRollupSummary> summaries = new HashMap<>();
+        LocalDateTime end = LocalDateTime.now().plusDays(1);
+        for (UUID account : List.of(ACCOUNT_A, ACCOUNT_B)) {
+            for (Granularity granularity : Granularity.values()) {
+                LocalDateTime from = granularity == Granularity.HOUR ? LocalDateTime.now().minusDays(1) : start;
+                summaries.put(account + "/" + granularity, rollups.summary(account, granularity, from, end));
+            }
+        }
+        return summaries;
+    }
+
+    private static Transaction transaction(TransactionType tipo, String valor, LocalDateTime at, UUID source, UUID destination) {
+        return Transaction.builder()
+                .id(UUID.randomUUID())
+                .tipo(tipo)
+                .valor(new BigDecimal(valor))
+                .dataHora(at)
+                .contaDeOrigem(Account.builder().id(source).build())
+                .contaDeDestino(Account.builder().id(destination).build())
+                .build();
+    }
+
+    private static TransactionDto dto(Transaction transaction) {
+        return TransactionDto.builder()
+                .id(transaction.getId())
+                .tipo(transaction.getTipo())
+                .valor(transaction.getValor())
+                .dataHora(transaction.getDataHora())
+                .contaDeOrigemId(transaction.getContaDeOrigem().getId())
+                .contaDeDestinoId(transaction.getContaDeDestino().getId())
+                .build();
+    }
+}
@@ -0,0 +1,202 @@
+package com.bradesco.antifraud.service.ledger;
+
+import com.bradesco.antifraud.exception.transactionExceptions.InsufficientFundsException;
+import com.bradesco.antifraud.model.Account;
+import com.bradesco.antifraud.model.Address;
+import com.bradesco.antifraud.model.Customer;
+import com.bradesco.antifraud.model.Transaction;
+import com.bradesco.antifraud.repository.AccountRepository;
+import com.bradesco.antifraud.repository.CustomerRepository;
+import com.bradesco.antifraud.repository.TransactionRepository;
+import com.bradesco.antifraud.service.AccountService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Own database: this context lives next to the default one and create-drop would clash
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:writebehind;DB_CLOSE_DELAY=-1",
+        "antifraud.ledger.write-behind.enabled=true",
+        "antifraud.ledger.write-behind.flush-interval-ms=3600000"
+})
+class BalanceCacheTest {
+
+    @Autowired
+    private AccountLedger ledger;
+
+    @Autowired
+    private BalanceCache cache;
+
+    @Autowired
+    private LedgerProjection projection;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Customer customer;
+    private Account merchant;
+    private final List<Account> payers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        customer = customerRepository.save(Customer.builder()
+                .name("Write Behind Test")
+                .cpf("529.982.247-25")
+                .dateOfBirth(LocalDate.of(1985, 5, 20))
+                .email("write-behind@example.com")
+                .password("secret")
+                .address(Address.builder()
+                        .street("Rua C")
+                        .number("20")
+                        .neighborhood("Centro")
+                        .city("Osasco")
+                        .state("SP")
+                        .zipCode("06010-000")
+                        .build())
+                .build());
+        merchant = account("M-0001", "0");
+        for (int i = 0; i < 4; i++) {
+            payers.add(account("P-000" + i, "1000.00"));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.flush();
+        transactionRepository.deleteAll();
+        jdbcTemplate.update("delete from balance_snapshots");
+        jdbcTemplate.update("delete from ledger_entries");
+        accountRepository.deleteAll();
+        customerRepository.deleteAll();
+    }
+
+    @Test
+    void hotAccount_manyPaymentsAreFlushedAsOneRowWrite() throws Exception {
+        double rowsBefore = meterRegistry.get("antifraud.ledger.write-behind.rows").counter().count();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Account payer = payers.get(i % payers.size());
+            futures.add(pool.submit(() -> ledger.post(payment(payer, merchant, "1.50"))));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        // Not written yet, but served from memory
+        assertEquals(0, BigDecimal.ZERO.compareTo(storedBalanceOf(merchant)));
+        assertEquals(0, new BigDecimal("300.00").compareTo(
+                accountService.getAccountById(merchant.getId()).orElseThrow().getBalance()));
+        assertEquals(5, cache.pending());
+
+        assertEquals(5, cache.flush());
+
+        assertEquals(5.0, meterRegistry.get("antifraud.ledger.write-behind.rows").counter().count() - rowsBefore);
+        assertEquals(0, cache.pending());
+        assertEquals(0, new BigDecimal("300.00").compareTo(storedBalanceOf(merchant)));
+        for (Account payer : payers) {
+            assertEquals(0, new BigDecimal("925.00").compareTo(storedBalanceOf(payer)));
+        }
+        assertEquals(0, projection.rebuild());
+    }
+
+    @Test
+    void post_checksFundsAgainstTheUnflushedBalance() {
+        Account payer = payers.get(0);
+        ledger.post(payment(payer, merchant, "600.00"));
+
+        assertThrows(InsufficientFundsException.class, () -> ledger.post(payment(payer, merchant, "600.00")));
+
+        assertEquals(1, transactionRepository.count());
+        cache.flush();
+        assertEquals(0, new BigDecimal("400.00").compareTo(storedBalanceOf(payer)));
+        assertEquals(0, new BigDecimal("600.00").compareTo(storedBalanceOf(merchant)));
+    }
+
+    @Test
+    void adjust_startsFromTheUnflushedBalance() {
+        Account payer = payers.get(0);
+        ledger.post(payment(payer, merchant, "100.00"));
+
+        ledger.adjust(payer.getId(), new BigDecimal("1000.00"));
+        cache.stop();
+
+        assertEquals(0, new BigDecimal("1000.00").compareTo(storedBalanceOf(payer)));
+        assertEquals(0, new BigDecimal("1000.00").compareTo(projection.replay(payer.getId())));
+    }
+
+    @Test
+    void rebuild_recoversBalancesLostBeforeAFlush() {
+        Account payer = payers.get(0);
+        ledger.post(payment(payer, merchant, "40.00"));
+        // What a crash leaves behind: entries committed, balances never flushed
+        cache.evict(payer.getId());
+        cache.evict(merchant.getId());
+
+        assertEquals(2, projection.rebuild());
+
+        assertEquals(0, new BigDecimal("960.00").compareTo(storedBalanceOf(payer)));
+        assertEquals(0, new BigDecimal("40.00").compareTo(storedBalanceOf(merchant)));
+    }
+
+    private Account account(String number, String balance) {
+        Account account = accountRepository.save(Account.builder()
+                .accountNumber(number)
+                .agency("0001")
+                .balance(new BigDecimal(balance))
+                .accountType(Account.AccountType.CORRENTE)
+                .accountStatus(Account.AccountStatus.ATIVA)
+                .customer(customer)
+                .build());
+        ledger.open(account);
+        return account;
+    }
+
+    private BigDecimal storedBalanceOf(Account account) {
+        return jdbcTemplate.queryForObject("select balance from accounts where id = ?", BigDecimal.class,
+                account.getId());
+    }
+
+    private static Transaction payment(Account from, Account to, String value) {
+        return Transaction.builder()
+                .tipo(Transaction.TransactionType.PAGAMENTO)
+                .valor(new BigDecimal(value))
+                .dataHora(LocalDateTime.now())
+                .contaDeOrigem(from)
+                .contaDeDestino(to)
+                .build();
+    }
+}